@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import org.anhonesteffort.p25.ImbeefConfig;
+
+import java.io.IOException;
+import java.util.Properties;
+
+public class BenchmarkConfig {
+
+  public static Properties properties() {
+    Properties properties = new Properties();
+
+    properties.setProperty("region",        "us-west-2");
+    properties.setProperty("stream_name",   "benchmark-stream");
+    properties.setProperty("access_key_id", "benchmark");
+    properties.setProperty("secret_key",    "benchmark");
+    properties.setProperty("app_name",      "imbeef-benchmark");
+    properties.setProperty("app_version",   "benchmark");
+
+    properties.setProperty("read_interval_ms",         "2000");
+    properties.setProperty("min_call_data_unit_rate",  "0.025");
+    properties.setProperty("call_inactive_check_rate", "1.0");
+    properties.setProperty("terminator_timeout_ms",    "1000");
+    properties.setProperty("max_audio_chunk_size",     "96000");
+
+    properties.setProperty("s3_pool_size",  "8");
+    properties.setProperty("s3_bucket",     "benchmark");
+    properties.setProperty("s3_key_prefix", "imbeef/wav/");
+
+    return properties;
+  }
+
+  public static ImbeefConfig create() throws IOException {
+    return new ImbeefConfig(properties());
+  }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import org.anhonesteffort.jmbe.iface.AudioConverter;
+import org.anhonesteffort.p25.audio.ImbeConverterFactory;
+
+import java.util.Optional;
+
+/**
+ * Uses jmbe when it is on the classpath, otherwise a stand in that returns
+ * a fresh 160 sample frame per codeword like jmbe does.
+ */
+public class BenchmarkConverterFactory extends ImbeConverterFactory {
+
+  public static final int SAMPLES_PER_FRAME = 160;
+
+  @Override
+  public Optional<AudioConverter> create(String format) {
+    Optional<AudioConverter> converter = super.create(format);
+    return converter.isPresent() ? converter : Optional.of(new SyntheticConverter());
+  }
+
+  private static class SyntheticConverter implements AudioConverter {
+    @Override
+    public float[] decode(byte[] frame) {
+      float[] audio = new float[SAMPLES_PER_FRAME];
+
+      for (int i = 0; i < audio.length; i++) {
+        audio[i] = (frame[i % frame.length] / 128f) * 0.5f;
+      }
+
+      return audio;
+    }
+
+    @Override
+    public void dispose() { }
+  }
+
+}
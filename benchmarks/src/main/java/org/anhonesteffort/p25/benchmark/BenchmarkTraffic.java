@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.p25.CheckpointedDataUnit;
+import org.anhonesteffort.p25.protocol.Duid;
+import org.anhonesteffort.p25.protocol.Nid;
+import org.anhonesteffort.p25.protocol.frame.DataUnit;
+import org.anhonesteffort.p25.protocol.frame.HeaderDataUnit;
+import org.anhonesteffort.p25.protocol.frame.LogicalLinkDataUnit1;
+import org.anhonesteffort.p25.protocol.frame.LogicalLinkDataUnit2;
+import org.anhonesteffort.p25.protocol.frame.SimpleTerminatorDataUnit;
+import org.anhonesteffort.p25.protocol.frame.VoiceFrame;
+import org.anhonesteffort.p25.protocol.frame.linkcontrol.GroupVoiceUserLwc;
+import org.anhonesteffort.p25.protocol.frame.linkcontrol.LinkControlWord;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+import static io.radiowitness.proto.p25.ProtoP25.P25DataUnit;
+
+/**
+ * Unencrypted group voice calls shaped like real traffic: a header, LLDU1
+ * and LLDU2 alternating with nine IMBE frames each (180ms of audio per data
+ * unit) and a simple terminator.
+ */
+public class BenchmarkTraffic {
+
+  public static final int ALGORITHM_CLEAR  = 0x80;
+  public static final int ALGORITHM_AES    = 0x84;
+  public static final int NAC              = 0x293;
+  public static final int SOURCE_ID        = 0x1020;
+  public static final int IMBE_FRAME_BYTES = 18;
+  public static final int FRAMES_PER_LDU   = 9;
+  public static final int HDU_BYTES        = 81;
+  public static final int LDU_BYTES        = 196;
+  public static final int TDU_BYTES        = 4;
+
+  private static Nid nid(int duid) {
+    return new Nid(NAC, new Duid(duid), true);
+  }
+
+  private static VoiceFrame[] frames(Random random) {
+    VoiceFrame[] frames = new VoiceFrame[FRAMES_PER_LDU];
+
+    for (int i = 0; i < frames.length; i++) {
+      byte[] bytes = new byte[IMBE_FRAME_BYTES];
+      random.nextBytes(bytes);
+      frames[i] = new VoiceFrame(bytes);
+    }
+
+    return frames;
+  }
+
+  public static DataUnit hdu(int algorithmId) {
+    return new HeaderDataUnit(nid(Duid.ID_HEADER), ByteBuffer.allocate(HDU_BYTES)) {
+      @Override
+      public int getAlgorithmId() {
+        return algorithmId;
+      }
+    };
+  }
+
+  public static DataUnit lldu1(VoiceFrame[] frames, int sourceId) {
+    LinkControlWord word = new GroupVoiceUserLwc() {
+      @Override
+      public int getLinkControlOpcode() {
+        return LinkControlWord.LCF_GROUP;
+      }
+
+      @Override
+      public int getSourceId() {
+        return sourceId;
+      }
+    };
+
+    return new LogicalLinkDataUnit1(nid(Duid.ID_LLDU1), ByteBuffer.allocate(LDU_BYTES)) {
+      @Override
+      public VoiceFrame[] getVoiceFrames() {
+        return frames;
+      }
+
+      @Override
+      public LinkControlWord getLinkControlWord() {
+        return word;
+      }
+    };
+  }
+
+  public static DataUnit lldu2(VoiceFrame[] frames, int algorithmId) {
+    return new LogicalLinkDataUnit2(nid(Duid.ID_LLDU2), ByteBuffer.allocate(LDU_BYTES)) {
+      @Override
+      public VoiceFrame[] getVoiceFrames() {
+        return frames;
+      }
+
+      @Override
+      public int getAlgorithmId() {
+        return algorithmId;
+      }
+    };
+  }
+
+  public static DataUnit tdu() {
+    return new SimpleTerminatorDataUnit(nid(Duid.ID_TERMINATOR_WO_LINK), ByteBuffer.allocate(TDU_BYTES));
+  }
+
+  /**
+   * @return header, ldus alternating LLDU1 and LLDU2, then terminator.
+   */
+  public static DataUnit[] voiceCall(int ldus, long seed) {
+    Random     random = new Random(seed);
+    DataUnit[] call   = new DataUnit[ldus + 2];
+
+    call[0] = hdu(ALGORITHM_CLEAR);
+    for (int i = 1; i <= ldus; i++) {
+      call[i] = (i % 2 == 1) ? lldu1(frames(random), SOURCE_ID) : lldu2(frames(random), ALGORITHM_CLEAR);
+    }
+    call[call.length - 1] = tdu();
+
+    return call;
+  }
+
+  /**
+   * Data units stamped 180ms apart from now, checkpoints are no-ops.
+   */
+  public static CheckpointedDataUnit[] checkpointed(DataUnit[] call) {
+    CheckpointedDataUnit[] checkpointed = new CheckpointedDataUnit[call.length];
+    long                   time         = System.currentTimeMillis();
+
+    for (int i = 0; i < call.length; i++) {
+      checkpointed[i] = new CheckpointedDataUnit(time + (i * 180l), 10d, 20d, call[i], () -> { });
+    }
+
+    return checkpointed;
+  }
+
+  /**
+   * The same call shape as it arrives off Kinesis, before DataUnitFactory.
+   */
+  public static P25DataUnit[] protoCall(int ldus, long seed) {
+    ProtoP25Factory      proto   = new ProtoP25Factory();
+    P25ChannelId.Builder channel = proto.groupId(1, 2, 3, SOURCE_ID, 100, 851_000_000d);
+    Random               random  = new Random(seed);
+    P25DataUnit[]        call    = new P25DataUnit[ldus + 2];
+
+    call[0] = proto.dataUnit(channel, 10d, 20d, NAC, Duid.ID_HEADER, bytes(random, HDU_BYTES)).build();
+    for (int i = 1; i <= ldus; i++) {
+      int duid = (i % 2 == 1) ? Duid.ID_LLDU1 : Duid.ID_LLDU2;
+      call[i]  = proto.dataUnit(channel, 10d, 20d, NAC, duid, bytes(random, LDU_BYTES)).build();
+    }
+    call[call.length - 1] = proto.dataUnit(
+        channel, 10d, 20d, NAC, Duid.ID_TERMINATOR_WO_LINK, bytes(random, TDU_BYTES)
+    ).build();
+
+    return call;
+  }
+
+  private static byte[] bytes(Random random, int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.p25.AudioBudget;
+import org.anhonesteffort.p25.AudioBufferPool;
+import org.anhonesteffort.p25.AudioConverterPool;
+import org.anhonesteffort.p25.CallPipeline;
+import org.anhonesteffort.p25.CallPipelineFactory;
+import org.anhonesteffort.p25.CheckpointedDataUnit;
+import org.anhonesteffort.p25.ImbeefConfig;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.anhonesteffort.p25.UploadBudget;
+import org.anhonesteffort.p25.call.CallManager;
+import org.anhonesteffort.p25.wav.WaveHeaderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+
+/**
+ * Measures CallManager.process() throughput as the number of KCL record
+ * processor threads grows. Each thread feeds data units to random channels
+ * out of a fixed set. With pipeline spin the pipelines burn a fixed amount of
+ * cpu per data unit to stand in for IMBE decode, with pipeline slicer each
+ * channel runs the real CallSlicer, SaneCallFilter and s3 sink over back to
+ * back voice calls with S3 replaced by a StubTransferManager.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallManagerBenchmark {
+
+  @Param({"512"})
+  private int channelCount;
+
+  @Param({"256"})
+  private long decodeTokens;
+
+  @Param({"spin", "slicer"})
+  private String pipeline;
+
+  private CallManager            callManager;
+  private P25ChannelId[]         channels;
+  private CheckpointedDataUnit   dataUnit;
+  private CheckpointedDataUnit[] call;
+  private AtomicIntegerArray     cursors;
+  private ExecutorService        s3Pool;
+
+  @Setup
+  public void setup() throws IOException {
+    ProtoP25Factory proto = new ProtoP25Factory();
+    channels = new P25ChannelId[channelCount];
+
+    for (int i = 0; i < channelCount; i++) {
+      channels[i] = proto.groupId(1, 2, 3, 0, 100 + i, 851_000_000d + (i * 12_500d)).build();
+    }
+
+    ImbeefConfig  config  = BenchmarkConfig.create();
+    ImbeefMetrics metrics = new ImbeefMetrics(new MetricRegistry());
+    dataUnit = new CheckpointedDataUnit(System.currentTimeMillis(), 10d, 20d, null, () -> { });
+    call     = BenchmarkTraffic.checkpointed(BenchmarkTraffic.voiceCall(33, 1337l));
+    cursors  = new AtomicIntegerArray(channelCount);
+    s3Pool   = Executors.newSingleThreadExecutor();
+
+    if (pipeline.equals("slicer")) {
+      callManager = new CallManager(config, new CallPipelineFactory(
+          config, new AudioConverterPool(config, new BenchmarkConverterFactory(), metrics),
+          new WaveHeaderFactory(), new StubTransferManager(s3Pool),
+          new AudioBufferPool(config, metrics), s3Pool, new UploadBudget(0, 0, metrics),
+          new AudioBudget(0), metrics
+      ), metrics);
+    } else {
+      callManager = new CallManager(config, new SpinningPipelineFactory(decodeTokens), metrics);
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    s3Pool.shutdownNow();
+  }
+
+  private void process() {
+    int channel = ThreadLocalRandom.current().nextInt(channels.length);
+
+    if (pipeline.equals("slicer")) {
+      int next = (cursors.getAndIncrement(channel) & Integer.MAX_VALUE) % call.length;
+      callManager.process(channels[channel], call[next]);
+    } else {
+      callManager.process(channels[channel], dataUnit);
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void process01() {
+    process();
+  }
+
+  @Benchmark
+  @Threads(2)
+  public void process02() {
+    process();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void process04() {
+    process();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void process08() {
+    process();
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void process16() {
+    process();
+  }
+
+  private static class SpinningPipelineFactory extends CallPipelineFactory {
+    private final long tokens;
+
+    public SpinningPipelineFactory(long tokens) {
+      super(null, null, null, null, null, null, null, null, null);
+      this.tokens = tokens;
+    }
+
+    @Override
+    public CallPipeline create(P25ChannelId channelId) {
+      return new SpinningPipeline(channelId, tokens);
+    }
+  }
+
+  private static class SpinningPipeline implements CallPipeline {
+    private final P25ChannelId channelId;
+    private final long         tokens;
+
+    public SpinningPipeline(P25ChannelId channelId, long tokens) {
+      this.channelId = channelId;
+      this.tokens    = tokens;
+    }
+
+    @Override
+    public synchronized void consume(CheckpointedDataUnit dataUnit) {
+      Blackhole.consumeCPU(tokens);
+    }
+
+    @Override
+    public long getInactiveTime() {
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public synchronized boolean isInactive(long localTime) {
+      return false;
+    }
+
+    @Override
+    public long getBufferedBytes() {
+      return 0;
+    }
+
+    @Override
+    public void flush() { }
+
+    @Override
+    public void close() { }
+
+    @Override
+    public P25ChannelId getChannelId() {
+      return channelId;
+    }
+  }
+
+}
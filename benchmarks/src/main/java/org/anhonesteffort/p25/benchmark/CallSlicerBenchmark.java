@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.dsp.Sink;
+import org.anhonesteffort.p25.AudioBufferPool;
+import org.anhonesteffort.p25.CheckpointedDataUnit;
+import org.anhonesteffort.p25.CheckpointingAudioChunk;
+import org.anhonesteffort.p25.ImbeefConfig;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.anhonesteffort.p25.audio.ImbeConverterFactory;
+import org.anhonesteffort.p25.call.CallSlicer;
+import org.anhonesteffort.p25.call.SafeAudioConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+
+/**
+ * CallSlicer.consume() one data unit at a time over back to back voice calls.
+ * With audio_format wav each LLDU decodes nine IMBE frames into pooled pcm,
+ * with imbe the codewords are only copied. Chunks are released as soon as they
+ * leave the slicer so the pool is exercised the way the s3 sink would.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallSlicerBenchmark {
+
+  @Param({"wav", "imbe"})
+  private String audioFormat;
+
+  @Param({"33"})
+  private int ldusPerCall;
+
+  private CallSlicer             slicer;
+  private CheckpointedDataUnit[] call;
+  private int                    next = 0;
+
+  private static class ReleasingSink implements Sink<CheckpointingAudioChunk> {
+    @Override
+    public void consume(CheckpointingAudioChunk chunk) {
+      chunk.release();
+    }
+  }
+
+  @Setup
+  public void setup() throws IOException {
+    ImbeefConfig  config  = BenchmarkConfig.create();
+    ImbeefMetrics metrics = new ImbeefMetrics(new MetricRegistry());
+    P25ChannelId  channel = new ProtoP25Factory().groupId(1, 2, 3, 0, 100, 851_000_000d).build();
+
+    if (audioFormat.equals(ImbeefConfig.AUDIO_FORMAT_IMBE)) {
+      slicer = new CallSlicer(config, channel, metrics);
+    } else {
+      SafeAudioConverter converter = new SafeAudioConverter(
+          new BenchmarkConverterFactory().create(ImbeConverterFactory.AUDIO_FORMAT_8khz).get()
+      );
+      slicer = new CallSlicer(config, channel, converter, new AudioBufferPool(config, metrics), metrics);
+    }
+
+    call = BenchmarkTraffic.checkpointed(BenchmarkTraffic.voiceCall(ldusPerCall, 1337l));
+    slicer.addSink(new ReleasingSink());
+  }
+
+  @Benchmark
+  public void consume() {
+    slicer.consume(call[next]);
+    next = (next + 1) % call.length;
+  }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import org.anhonesteffort.p25.consumer.DataUnitFactory;
+import org.anhonesteffort.p25.protocol.frame.DataUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25DataUnit;
+
+/**
+ * DataUnitFactory.create() over the data units of a 6s voice call, in the
+ * order KinesisP25Consumer sees them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataUnitFactoryBenchmark {
+
+  private final DataUnitFactory factory = new DataUnitFactory();
+
+  private P25DataUnit[] call;
+  private int           next = 0;
+
+  @Setup
+  public void setup() {
+    call = BenchmarkTraffic.protoCall(33, 1337l);
+  }
+
+  @Benchmark
+  public DataUnit create() {
+    DataUnit dataUnit = factory.create(call[next]);
+    next = (next + 1) % call.length;
+    return dataUnit;
+  }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import com.amazonaws.services.kinesis.clientlibrary.types.ShutdownReason;
+import com.google.common.util.concurrent.SettableFuture;
+import io.radiowitness.kinesis.consumer.Checkpointer;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.anhonesteffort.p25.UploadBudget;
+import org.anhonesteffort.p25.call.CallProcessor;
+import org.anhonesteffort.p25.consumer.KinesisP25Consumer;
+import org.anhonesteffort.p25.consumer.ShardCheckpointer;
+
+import static io.radiowitness.proto.Proto.BaseMessage;
+
+/**
+ * A KinesisP25Consumer fed directly instead of by a KCL worker, records
+ * checkpoint to nowhere.
+ */
+public class DirectConsumer extends KinesisP25Consumer {
+
+  private static final Checkpointer NONE = () -> { };
+
+  public DirectConsumer(SettableFuture<ShutdownReason> shutdown,
+                        CallProcessor                  callProcessor,
+                        UploadBudget                   uploads,
+                        ShardCheckpointer              checkpoints,
+                        ImbeefMetrics                  metrics)
+  {
+    super(shutdown, new SyntheticDataUnitFactory(), callProcessor, uploads, checkpoints, metrics);
+  }
+
+  public void feed(BaseMessage message) {
+    process(message, NONE);
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import org.anhonesteffort.jmbe.iface.AudioConverter;
+import org.anhonesteffort.p25.audio.ImbeConverterFactory;
+import org.anhonesteffort.p25.flac.FlacEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FLAC encode time and compression ratio against 16 bit PCM for 12s (the
+ * default max_audio_chunk_size) of decoded IMBE audio. The audio comes from
+ * random IMBE codewords run through jmbe. When no IMBE converter is on the
+ * classpath it falls back to a synthetic voice: a pitch pulse train through
+ * three formant resonators, with gaps between syllables. The ratio is printed
+ * once each trial ends.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlacEncoderBenchmark {
+
+  private static final int SAMPLE_COUNT     = 96000;
+  private static final int IMBE_FRAME_BYTES = 18;
+
+  private static class CountingOutputStream extends OutputStream {
+    private long count = 0;
+
+    @Override
+    public void write(int b) {
+      count++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+      count += length;
+    }
+  }
+
+  @Param({"576", "1152", "4096"})
+  private int blockSize;
+
+  @Param({"0", "8"})
+  private int maxLpcOrder;
+
+  private final CountingOutputStream out = new CountingOutputStream();
+
+  private FloatBuffer samples;
+  private FlacEncoder encoder;
+  private String      source;
+
+  private static float[] imbe(AudioConverter converter) {
+    Random  random  = new Random(1337l);
+    float[] audio   = new float[SAMPLE_COUNT];
+    byte[]  frame   = new byte[IMBE_FRAME_BYTES];
+    int     decoded = 0;
+
+    while (decoded < audio.length) {
+      random.nextBytes(frame);
+      float[] pcm   = converter.decode(frame);
+      int     count = Math.min(pcm.length, audio.length - decoded);
+
+      System.arraycopy(pcm, 0, audio, decoded, count);
+      decoded += count;
+    }
+
+    converter.dispose();
+    return audio;
+  }
+
+  private static float[] voice() {
+    Random   random   = new Random(1337l);
+    float[]  audio    = new float[SAMPLE_COUNT];
+    double[] formants = new double[] {500d, 1500d, 2500d};
+    double[] last1    = new double[formants.length];
+    double[] last2    = new double[formants.length];
+    int      pulse    = 0;
+    float    peak     = 0f;
+
+    for (int i = 0; i < audio.length; i++) {
+      double excitation = 0.02d * random.nextGaussian();
+      if (i == pulse) {
+        excitation += 1d;
+        pulse      += 60 + random.nextInt(12);
+      }
+
+      for (int f = 0; f < formants.length; f++) {
+        double omega = (2d * Math.PI * formants[f]) / ImbeConverterFactory.SAMPLE_RATE_8khz;
+        double next  = excitation + (2d * 0.97d * Math.cos(omega) * last1[f]) - (0.97d * 0.97d * last2[f]);
+        last2[f]     = last1[f];
+        last1[f]     = next;
+        excitation   = next * 0.03d;
+      }
+
+      audio[i] = (i % 2400) < 1600 ? (float) excitation : 0f;
+      peak     = Math.max(peak, Math.abs(audio[i]));
+    }
+
+    for (int i = 0; i < audio.length; i++) {
+      audio[i] = (audio[i] * (0.6f / peak)) + (float) (0.0003d * random.nextGaussian());
+    }
+
+    return audio;
+  }
+
+  @Setup
+  public void setup() {
+    Optional<AudioConverter> converter = new ImbeConverterFactory().create(ImbeConverterFactory.AUDIO_FORMAT_8khz);
+
+    if (converter.isPresent()) {
+      samples = FloatBuffer.wrap(imbe(converter.get()));
+      source  = "imbe";
+    } else {
+      samples = FloatBuffer.wrap(voice());
+      source  = "synthetic voice";
+    }
+
+    encoder = new FlacEncoder(ImbeConverterFactory.SAMPLE_RATE_8khz, blockSize, maxLpcOrder);
+  }
+
+  @Benchmark
+  public long encode() throws IOException {
+    out.count = 0;
+    encoder.reset();
+    encoder.append(samples.duplicate(), out);
+    encoder.finish(out);
+    return out.count;
+  }
+
+  @TearDown(Level.Trial)
+  public void ratio() throws IOException {
+    long pcm  = (long) samples.remaining() * Short.BYTES;
+    long flac = FlacEncoder.HEADER_LENGTH + encode();
+
+    System.out.println(String.format(
+        "%s blockSize=%d maxLpcOrder=%d flac=%d pcm16=%d ratio=%.3f",
+        source, blockSize, maxLpcOrder, flac, pcm, (double) flac / pcm
+    ));
+  }
+
+}
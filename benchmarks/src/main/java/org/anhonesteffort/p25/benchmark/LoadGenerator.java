@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import com.amazonaws.services.kinesis.clientlibrary.types.ShutdownReason;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.SettableFuture;
+import org.anhonesteffort.p25.AudioBudget;
+import org.anhonesteffort.p25.AudioBufferPool;
+import org.anhonesteffort.p25.AudioConverterPool;
+import org.anhonesteffort.p25.CallPipelineFactory;
+import org.anhonesteffort.p25.ImbeefConfig;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.anhonesteffort.p25.UploadBudget;
+import org.anhonesteffort.p25.call.CallManager;
+import org.anhonesteffort.p25.call.ChannelWorkerPool;
+import org.anhonesteffort.p25.consumer.ShardCheckpointer;
+import org.anhonesteffort.p25.wav.WaveHeaderFactory;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Drives a {@link TrafficGenerator} through KinesisP25Consumer and the real
+ * call pipeline on one machine, S3 is a {@link StubTransferManager}. Settings
+ * are key=value arguments, any imbeef.properties key is accepted as well:
+ *
+ *   talkgroups              concurrent talkgroups (64)
+ *   call_seconds            mean call length (6)
+ *   idle_seconds            mean idle time between calls per talkgroup (20)
+ *   encrypted_rate          fraction of calls encrypted (0.1)
+ *   dropped_terminator_rate fraction of calls missing a terminator (0.05)
+ *   rate                    data units per second, 0 for as fast as possible (0)
+ *   duration_seconds        how long to run (60)
+ */
+public class LoadGenerator {
+
+  private final Properties   properties;
+  private final ImbeefConfig config;
+
+  public LoadGenerator(Properties properties) throws IOException {
+    this.properties = properties;
+    this.config     = new ImbeefConfig(properties);
+  }
+
+  private double setting(String key, String defaultValue) {
+    return Double.parseDouble(properties.getProperty(key, defaultValue));
+  }
+
+  public void run() {
+    int    talkgroups = (int) setting("talkgroups", "64");
+    double rate       = setting("rate", "0");
+    long   durationMs = (long) (setting("duration_seconds", "60") * 1000d);
+
+    TrafficGenerator traffic = new TrafficGenerator(
+        talkgroups, setting("call_seconds", "6"), setting("idle_seconds", "20"),
+        setting("encrypted_rate", "0.1"), setting("dropped_terminator_rate", "0.05"),
+        System.currentTimeMillis(), 1337l
+    );
+
+    ImbeefMetrics       metrics   = new ImbeefMetrics(new MetricRegistry());
+    ExecutorService     s3Pool    = Executors.newFixedThreadPool(config.getS3PoolSize());
+    StubTransferManager s3        = new StubTransferManager(s3Pool);
+    UploadBudget        uploads   = new UploadBudget(config, metrics);
+    AudioBudget         memory    = new AudioBudget(config, metrics);
+    CallPipelineFactory pipelines = new CallPipelineFactory(
+        config, new AudioConverterPool(config, new BenchmarkConverterFactory(), metrics),
+        new WaveHeaderFactory(config.getWavEncoding()),
+        s3, new AudioBufferPool(config, metrics), s3Pool, uploads, memory, metrics
+    );
+
+    ChannelWorkerPool              workers     = new ChannelWorkerPool(
+        config, new CallManager(config, pipelines, memory, s3Pool, metrics), metrics
+    );
+    SettableFuture<ShutdownReason> shutdown    = SettableFuture.create();
+    ShardCheckpointer              checkpoints = new ShardCheckpointer(metrics);
+    DirectConsumer                 consumer    = new DirectConsumer(shutdown, workers, uploads, checkpoints, metrics);
+    Timer                          timer       = new Timer(true);
+
+    timer.scheduleAtFixedRate(checkpoints, config.getCheckpointIntervalMs(), config.getCheckpointIntervalMs());
+
+    long start      = System.nanoTime();
+    long end        = start + TimeUnit.MILLISECONDS.toNanos(durationMs);
+    long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+    long sent       = 0;
+    long lastSent   = 0;
+
+    while (System.nanoTime() < end && !shutdown.isDone() && !workers.getErrorFuture().isDone()) {
+      if (rate > 0) {
+        long due = start + (long) ((sent * 1_000_000_000d) / rate);
+        LockSupport.parkNanos(due - System.nanoTime());
+      }
+
+      consumer.feed(traffic.next());
+      sent++;
+
+      if (System.nanoTime() >= nextReport) {
+        report((nextReport - start) / 1_000_000_000l, sent - lastSent, s3);
+        lastSent    = sent;
+        nextReport += TimeUnit.SECONDS.toNanos(1);
+      }
+    }
+
+    double seconds = (System.nanoTime() - start) / 1_000_000_000d;
+    System.out.printf(
+        "sent %d data units in %.1fs (%.0f/s), %d uploads totalling %d KiB%n",
+        sent, seconds, sent / seconds, s3.getUploads(), s3.getBytes() / 1024
+    );
+
+    timer.cancel();
+    workers.shutdown();
+    s3Pool.shutdownNow();
+
+    if (shutdown.isDone() || workers.getErrorFuture().isDone()) {
+      System.out.println("stopped early on consumer or worker error");
+      System.exit(1);
+    }
+  }
+
+  private void report(long second, long sent, StubTransferManager s3) {
+    Runtime runtime = Runtime.getRuntime();
+    long    heapMiB = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+
+    System.out.printf(
+        "%4ds %8d data units/s %8d uploads %10d KiB uploaded %6d MiB heap%n",
+        second, sent, s3.getUploads(), s3.getBytes() / 1024, heapMiB
+    );
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (System.getProperty("org.slf4j.simpleLogger.defaultLogLevel") == null) {
+      System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+    }
+
+    Properties properties = BenchmarkConfig.properties();
+    for (String arg : args) {
+      String[] setting = arg.split("=", 2);
+      if (setting.length != 2) {
+        System.err.println("expected key=value, got " + arg);
+        System.exit(1);
+      }
+      properties.setProperty(setting[0], setting[1]);
+    }
+
+    new LoadGenerator(properties).run();
+    System.exit(0);
+  }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import org.anhonesteffort.p25.wav.Pcm16Encoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the IntStream based toBytes() WaveFileWriter used to have with
+ * Pcm16Encoder writing into a reused buffer. Sample counts are 1s, 12s (the
+ * default max_audio_chunk_size) and 60s of 8khz audio.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Pcm16EncoderBenchmark {
+
+  @Param({"8000", "96000", "480000"})
+  private int sampleCount;
+
+  private FloatBuffer  samples;
+  private ByteBuffer   out;
+  private Pcm16Encoder encoder;
+
+  @Setup
+  public void setup() {
+    Random  random = new Random(1337l);
+    float[] floats = new float[sampleCount];
+
+    for (int i = 0; i < floats.length; i++) {
+      floats[i] = (random.nextFloat() * 2.2f) - 1.1f;
+    }
+
+    samples = FloatBuffer.wrap(floats);
+    out     = ByteBuffer.allocate(sampleCount * Short.BYTES);
+    encoder = new Pcm16Encoder();
+  }
+
+  @Benchmark
+  public byte[] intStream() {
+    ByteBuffer  bytes  = ByteBuffer.allocate(samples.remaining() * 2).order(ByteOrder.LITTLE_ENDIAN);
+    ShortBuffer shorts = bytes.asShortBuffer();
+
+    IntStream.range(0, samples.remaining()).forEach(i -> shorts.put((short) (samples.get(i) * Short.MAX_VALUE)));
+
+    return bytes.array();
+  }
+
+  @Benchmark
+  public ByteBuffer pcm16Encoder() {
+    out.clear();
+    encoder.encode(samples.duplicate(), out);
+    return out;
+  }
+
+}
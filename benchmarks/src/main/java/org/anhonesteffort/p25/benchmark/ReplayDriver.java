@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import org.anhonesteffort.p25.AudioBudget;
+import org.anhonesteffort.p25.AudioBufferPool;
+import org.anhonesteffort.p25.AudioConverterPool;
+import org.anhonesteffort.p25.CallPipelineFactory;
+import org.anhonesteffort.p25.ImbeefConfig;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.anhonesteffort.p25.UploadBudget;
+import org.anhonesteffort.p25.call.CallManager;
+import org.anhonesteffort.p25.call.ChannelWorkerPool;
+import org.anhonesteffort.p25.consumer.KinesisP25ConsumerFactory;
+import org.anhonesteffort.p25.consumer.RecordFileReader;
+import org.anhonesteffort.p25.consumer.RecordReplayer;
+import org.anhonesteffort.p25.wav.WaveHeaderFactory;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Replays a file captured with the record_file setting through the real
+ * KinesisP25ConsumerFactory, CallManager and call pipeline, S3 is a
+ * {@link StubTransferManager}. Settings are key=value arguments, any
+ * imbeef.properties key is accepted as well:
+ *
+ *   file   record file to replay (required)
+ *   speed  1 for recorded pace, 10 for ten times that, 0 for as fast as possible (0)
+ */
+public class ReplayDriver {
+
+  private final Properties   properties;
+  private final ImbeefConfig config;
+
+  public ReplayDriver(Properties properties) throws IOException {
+    this.properties = properties;
+    this.config     = new ImbeefConfig(properties);
+  }
+
+  private static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+
+  private static long allocatedBytes() {
+    if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long[]                          ids     = threads.getAllThreadIds();
+    long                            total   = 0;
+
+    for (long allocated : threads.getThreadAllocatedBytes(ids)) {
+      total += Math.max(0, allocated);
+    }
+    return total;
+  }
+
+  public void run() throws IOException {
+    String file  = properties.getProperty("file");
+    double speed = Double.parseDouble(properties.getProperty("speed", "0"));
+
+    if (file == null) {
+      throw new IOException("file=<record file> is required");
+    }
+
+    ImbeefMetrics             metrics   = new ImbeefMetrics(new MetricRegistry());
+    ExecutorService           s3Pool    = Executors.newFixedThreadPool(config.getS3PoolSize());
+    StubTransferManager       s3        = new StubTransferManager(s3Pool);
+    UploadBudget              uploads   = new UploadBudget(config, metrics);
+    AudioBudget               memory    = new AudioBudget(config, metrics);
+    CallPipelineFactory       pipelines = new CallPipelineFactory(
+        config, new AudioConverterPool(config, new BenchmarkConverterFactory(), metrics),
+        new WaveHeaderFactory(config.getWavEncoding()),
+        s3, new AudioBufferPool(config, metrics), s3Pool, uploads, memory, metrics
+    );
+    ChannelWorkerPool         workers   = new ChannelWorkerPool(
+        config, new CallManager(config, pipelines, memory, s3Pool, metrics), metrics
+    );
+    KinesisP25ConsumerFactory consumers = new KinesisP25ConsumerFactory(config, workers, uploads, metrics);
+
+    long gcCount   = gcCount();
+    long gcMillis  = gcMillis();
+    long allocated = allocatedBytes();
+    long start     = System.nanoTime();
+    long replayed;
+
+    try (RecordFileReader reader = new RecordFileReader(Paths.get(file))) {
+      replayed = new RecordReplayer(consumers, speed).replay(reader);
+    }
+
+    double seconds = (System.nanoTime() - start) / 1_000_000_000d;
+    System.out.printf(
+        "replayed %d records in %.1fs (%.0f/s), %d uploads totalling %d KiB%n",
+        replayed, seconds, replayed / seconds, s3.getUploads(), s3.getBytes() / 1024
+    );
+    System.out.printf(
+        "%d gcs taking %dms, %d MiB allocated%n",
+        gcCount() - gcCount, gcMillis() - gcMillis,
+        allocated < 0 ? -1 : (allocatedBytes() - allocated) / (1024 * 1024)
+    );
+
+    workers.shutdown();
+    s3Pool.shutdownNow();
+
+    if (workers.getErrorFuture().isDone()) {
+      System.out.println("stopped early on worker error");
+      System.exit(1);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (System.getProperty("org.slf4j.simpleLogger.defaultLogLevel") == null) {
+      System.setProperty("org.slf4j.simpleLogger.defaultLogLevel", "warn");
+    }
+
+    Properties properties = BenchmarkConfig.properties();
+    for (String arg : args) {
+      String[] setting = arg.split("=", 2);
+      if (setting.length != 2) {
+        System.err.println("expected key=value, got " + arg);
+        System.exit(1);
+      }
+      properties.setProperty(setting[0], setting[1]);
+    }
+
+    new ReplayDriver(properties).run();
+    System.exit(0);
+  }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import org.anhonesteffort.p25.wav.SampleEncoder;
+import org.anhonesteffort.p25.wav.WaveEncoding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoder throughput for each wav_encoding over 12s (the default
+ * max_audio_chunk_size) of 8khz audio. The output buffer size shows the
+ * per-chunk heap and S3 bytes for each encoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleEncoderBenchmark {
+
+  @Param({"PCM16", "ULAW", "ALAW"})
+  private WaveEncoding encoding;
+
+  @Param({"96000"})
+  private int sampleCount;
+
+  private FloatBuffer   samples;
+  private ByteBuffer    out;
+  private SampleEncoder encoder;
+
+  @Setup
+  public void setup() {
+    Random  random = new Random(1337l);
+    float[] floats = new float[sampleCount];
+
+    for (int i = 0; i < floats.length; i++) {
+      floats[i] = (random.nextFloat() * 2.2f) - 1.1f;
+    }
+
+    samples = FloatBuffer.wrap(floats);
+    out     = ByteBuffer.allocate(sampleCount * encoding.getBytesPerSample());
+    encoder = encoding.newEncoder();
+  }
+
+  @Benchmark
+  public ByteBuffer encode() {
+    out.clear();
+    encoder.encode(samples.duplicate(), out);
+    return out;
+  }
+
+}
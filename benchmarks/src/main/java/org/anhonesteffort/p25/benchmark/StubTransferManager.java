@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.Upload;
+import com.amazonaws.services.s3.transfer.internal.S3ProgressListener;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stands in for S3, uploads are drained on the calling thread and
+ * reported complete before upload() returns.
+ */
+public class StubTransferManager extends TransferManager {
+
+  private final AtomicLong uploads = new AtomicLong(0);
+  private final AtomicLong bytes   = new AtomicLong(0);
+  private final byte[]     sink    = new byte[8192];
+
+  public StubTransferManager(ExecutorService executor) {
+    super((AmazonS3) null, executor);
+  }
+
+  public long getUploads() {
+    return uploads.get();
+  }
+
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  @Override
+  public Upload upload(PutObjectRequest request, S3ProgressListener listener) {
+    try (InputStream in = request.getInputStream()) {
+
+      long read = 0;
+      for (int count = in.read(sink); count >= 0; count = in.read(sink)) {
+        read += count;
+      }
+
+      bytes.addAndGet(read);
+      uploads.incrementAndGet();
+
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    listener.progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_COMPLETED_EVENT));
+    return null;
+  }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import org.anhonesteffort.p25.consumer.DataUnitFactory;
+import org.anhonesteffort.p25.protocol.Duid;
+import org.anhonesteffort.p25.protocol.Nid;
+import org.anhonesteffort.p25.protocol.frame.DataUnit;
+import org.anhonesteffort.p25.protocol.frame.VoiceFrame;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25DataUnit;
+
+/**
+ * Reads the data units written by {@link TrafficGenerator}. Real data unit
+ * bytes carry FEC that a generator can't cheaply produce, so the fields the
+ * call pipeline reads are laid out plainly at the front of a body padded to
+ * on-air size: the algorithm id for headers and LLDU2, a 24 bit source id for
+ * LLDU1, followed by nine IMBE codewords for both LLDUs.
+ */
+public class SyntheticDataUnitFactory extends DataUnitFactory {
+
+  private static final int FRAMES_OFFSET = 3;
+
+  public static byte[] hdu(int algorithmId) {
+    byte[] bytes = new byte[BenchmarkTraffic.HDU_BYTES];
+    bytes[0] = (byte) algorithmId;
+    return bytes;
+  }
+
+  private static byte[] ldu(int field, byte[] frames) {
+    byte[] bytes = new byte[BenchmarkTraffic.LDU_BYTES];
+
+    bytes[0] = (byte) (field >> 16);
+    bytes[1] = (byte) (field >>  8);
+    bytes[2] = (byte)  field;
+    System.arraycopy(frames, 0, bytes, FRAMES_OFFSET, frames.length);
+
+    return bytes;
+  }
+
+  public static byte[] lldu1(int sourceId, byte[] frames) {
+    return ldu(sourceId, frames);
+  }
+
+  public static byte[] lldu2(int algorithmId, byte[] frames) {
+    return ldu(algorithmId, frames);
+  }
+
+  private static int field(byte[] bytes) {
+    return ((bytes[0] & 0xFF) << 16) | ((bytes[1] & 0xFF) << 8) | (bytes[2] & 0xFF);
+  }
+
+  private static VoiceFrame[] frames(byte[] bytes) {
+    VoiceFrame[] frames = new VoiceFrame[BenchmarkTraffic.FRAMES_PER_LDU];
+
+    for (int i = 0; i < frames.length; i++) {
+      int offset = FRAMES_OFFSET + (i * BenchmarkTraffic.IMBE_FRAME_BYTES);
+      frames[i]  = new VoiceFrame(Arrays.copyOfRange(bytes, offset, offset + BenchmarkTraffic.IMBE_FRAME_BYTES));
+    }
+
+    return frames;
+  }
+
+  @Override
+  public DataUnit create(P25DataUnit dataUnit) {
+    byte[] bytes = dataUnit.getBytes().toByteArray();
+
+    switch (dataUnit.getDuid()) {
+      case Duid.ID_HEADER:
+        return BenchmarkTraffic.hdu(bytes[0] & 0xFF);
+
+      case Duid.ID_LLDU1:
+        return BenchmarkTraffic.lldu1(frames(bytes), field(bytes));
+
+      case Duid.ID_LLDU2:
+        return BenchmarkTraffic.lldu2(frames(bytes), field(bytes));
+
+      case Duid.ID_TERMINATOR_WO_LINK:
+        return BenchmarkTraffic.tdu();
+
+      default:
+        return new DataUnit(new Nid(dataUnit.getNac(), new Duid(dataUnit.getDuid()), true), ByteBuffer.wrap(bytes));
+    }
+  }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.p25.protocol.Duid;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static io.radiowitness.proto.Proto.BaseMessage;
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+
+/**
+ * Generates the P25_DATA_UNIT messages of talkgroups keying up independently,
+ * ordered by remote time. A talkgroup idles for an exponentially distributed
+ * time, then sends a header, LLDU1 and LLDU2 180ms apart for an exponentially
+ * distributed call length and a terminator. Some calls are encrypted and some
+ * lose their terminator. Data unit bytes are laid out for
+ * {@link SyntheticDataUnitFactory}, not the air interface.
+ */
+public class TrafficGenerator {
+
+  public static final long LDU_MS = 180;
+
+  private final ProtoP25Factory          proto      = new ProtoP25Factory();
+  private final PriorityQueue<Talkgroup> talkgroups = new PriorityQueue<>(
+      (a, b) -> Long.compare(a.nextTime, b.nextTime)
+  );
+
+  private final Random random;
+  private final double meanCallMs;
+  private final double meanIdleMs;
+  private final double encryptedRate;
+  private final double droppedTerminatorRate;
+
+  private enum Phase { IDLE, VOICE, TERMINATOR }
+
+  private static class Talkgroup {
+    private final P25ChannelId.Builder channelId;
+    private final int                  sourceId;
+    private       Phase                phase = Phase.IDLE;
+    private       long                 nextTime;
+    private       int                  ldusRemaining;
+    private       int                  ldusSent;
+    private       boolean              encrypted;
+
+    public Talkgroup(P25ChannelId.Builder channelId, int sourceId, long nextTime) {
+      this.channelId = channelId;
+      this.sourceId  = sourceId;
+      this.nextTime  = nextTime;
+    }
+  }
+
+  public TrafficGenerator(int    talkgroupCount,
+                          double meanCallSeconds,
+                          double meanIdleSeconds,
+                          double encryptedRate,
+                          double droppedTerminatorRate,
+                          long   startTime,
+                          long   seed)
+  {
+    this.random                = new Random(seed);
+    this.meanCallMs            = meanCallSeconds * 1000d;
+    this.meanIdleMs            = meanIdleSeconds * 1000d;
+    this.encryptedRate         = encryptedRate;
+    this.droppedTerminatorRate = droppedTerminatorRate;
+
+    for (int i = 0; i < talkgroupCount; i++) {
+      P25ChannelId.Builder channelId = proto.groupId(1, 2, 3, 0, 100 + i, 851_000_000d + (i * 12_500d));
+      talkgroups.add(new Talkgroup(channelId, 0x1000 + i, startTime + exponential(meanIdleMs)));
+    }
+  }
+
+  private long exponential(double mean) {
+    return (long) (-mean * Math.log(1d - random.nextDouble()));
+  }
+
+  private byte[] bytes(int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+  private BaseMessage message(Talkgroup talkgroup, int duid, byte[] bytes) {
+    return proto.messageP25(
+        talkgroup.nextTime,
+        proto.dataUnit(talkgroup.channelId, 10d, 20d, BenchmarkTraffic.NAC, duid, bytes)
+    );
+  }
+
+  private BaseMessage header(Talkgroup talkgroup) {
+    talkgroup.encrypted     = random.nextDouble() < encryptedRate;
+    talkgroup.ldusRemaining = (int) Math.max(1, exponential(meanCallMs) / LDU_MS);
+    talkgroup.ldusSent      = 0;
+    talkgroup.phase         = Phase.VOICE;
+
+    return message(talkgroup, Duid.ID_HEADER, SyntheticDataUnitFactory.hdu(algorithm(talkgroup)));
+  }
+
+  private int algorithm(Talkgroup talkgroup) {
+    return talkgroup.encrypted ? BenchmarkTraffic.ALGORITHM_AES : BenchmarkTraffic.ALGORITHM_CLEAR;
+  }
+
+  private BaseMessage voice(Talkgroup talkgroup) {
+    byte[] frames = bytes(BenchmarkTraffic.FRAMES_PER_LDU * BenchmarkTraffic.IMBE_FRAME_BYTES);
+    boolean lldu1 = (talkgroup.ldusSent++ % 2) == 0;
+
+    if (--talkgroup.ldusRemaining <= 0) {
+      talkgroup.phase = Phase.TERMINATOR;
+    }
+
+    if (lldu1) {
+      return message(talkgroup, Duid.ID_LLDU1, SyntheticDataUnitFactory.lldu1(talkgroup.sourceId, frames));
+    } else {
+      return message(talkgroup, Duid.ID_LLDU2, SyntheticDataUnitFactory.lldu2(algorithm(talkgroup), frames));
+    }
+  }
+
+  private BaseMessage terminator(Talkgroup talkgroup) {
+    talkgroup.phase = Phase.IDLE;
+    return message(talkgroup, Duid.ID_TERMINATOR_WO_LINK, new byte[BenchmarkTraffic.TDU_BYTES]);
+  }
+
+  /**
+   * @return the next data unit across all talkgroups, timestamped in remote time.
+   */
+  public BaseMessage next() {
+    Talkgroup   talkgroup = talkgroups.poll();
+    BaseMessage message   = null;
+
+    while (message == null) {
+      switch (talkgroup.phase) {
+        case IDLE:
+          message = header(talkgroup);
+          talkgroup.nextTime += LDU_MS;
+          break;
+
+        case VOICE:
+          message = voice(talkgroup);
+          talkgroup.nextTime += LDU_MS;
+          break;
+
+        case TERMINATOR:
+          if (random.nextDouble() < droppedTerminatorRate) {
+            talkgroup.phase = Phase.IDLE;
+          } else {
+            message = terminator(talkgroup);
+          }
+          talkgroup.nextTime += exponential(meanIdleMs);
+          break;
+      }
+
+      if (message == null) {
+        talkgroups.add(talkgroup);
+        talkgroup = talkgroups.poll();
+      }
+    }
+
+    talkgroups.add(talkgroup);
+    return message;
+  }
+
+}
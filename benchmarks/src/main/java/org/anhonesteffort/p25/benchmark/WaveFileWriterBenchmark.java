@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.benchmark;
+
+import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.p25.CheckpointingAudioChunk;
+import org.anhonesteffort.p25.wav.WaveEncoding;
+import org.anhonesteffort.p25.wav.WaveFile;
+import org.anhonesteffort.p25.wav.WaveFileWriter;
+import org.anhonesteffort.p25.wav.WaveHeaderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+
+/**
+ * WaveFileWriter.write() for a whole call of 12s split over chunkCount chunks,
+ * the way WaveFileS3Sender hands a finished call to the writer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaveFileWriterBenchmark {
+
+  private static final int SAMPLE_COUNT = 96000;
+
+  @Param({"PCM16", "ULAW"})
+  private WaveEncoding encoding;
+
+  @Param({"1", "8"})
+  private int chunkCount;
+
+  private WaveFileWriter                writer;
+  private List<CheckpointingAudioChunk> chunks;
+
+  @Setup
+  public void setup() {
+    P25ChannelId channel = new ProtoP25Factory().groupId(1, 2, 3, 0, 100, 851_000_000d).build();
+    Random       random  = new Random(1337l);
+
+    writer = new WaveFileWriter(new WaveHeaderFactory(encoding));
+    chunks = new ArrayList<>(chunkCount);
+
+    for (int i = 0; i < chunkCount; i++) {
+      float[] samples = new float[SAMPLE_COUNT / chunkCount];
+      for (int j = 0; j < samples.length; j++) {
+        samples[j] = (random.nextFloat() * 2f) - 1f;
+      }
+
+      chunks.add(new CheckpointingAudioChunk(
+          channel, i == 0, i == chunkCount - 1, true, 10l, 20l, 10d, 20d, 30,
+          FloatBuffer.wrap(samples), Collections.emptyList()
+      ));
+    }
+  }
+
+  @Benchmark
+  public int write() throws IOException {
+    WaveFile file = writer.write(chunks).get();
+    file.release();
+    return file.getLength();
+  }
+
+}
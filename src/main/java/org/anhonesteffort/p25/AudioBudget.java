@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import com.codahale.metrics.Gauge;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks bytes of audio held in memory for calls that have not been encoded
+ * yet, from the buffer a CallSlicer fills to the chunks a WaveFileS3Sender
+ * queues. CallManager flushes the largest calls early while it is exceeded.
+ * A max of 0 means no limit.
+ */
+public class AudioBudget {
+
+  private final AtomicLong bytes = new AtomicLong(0);
+  private final long       maxBytes;
+
+  public AudioBudget(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  public AudioBudget(ImbeefConfig config, ImbeefMetrics metrics) {
+    this(config.getMaxBufferedAudioBytes());
+
+    metrics.registerAudioBudget(new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return getBytes();
+      }
+    });
+  }
+
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public boolean isExceeded() {
+    return maxBytes > 0 && bytes.get() >= maxBytes;
+  }
+
+  /**
+   * @return an account for the audio buffered by a single call pipeline.
+   */
+  public Account account() {
+    return new Account();
+  }
+
+  public class Account {
+
+    private final AtomicLong bytes = new AtomicLong(0);
+
+    private Account() { }
+
+    public long getBytes() {
+      return bytes.get();
+    }
+
+    public void allocate(long bytes) {
+      this.bytes.addAndGet(bytes);
+      AudioBudget.this.bytes.addAndGet(bytes);
+    }
+
+    public void free(long bytes) {
+      this.bytes.addAndGet(-bytes);
+      AudioBudget.this.bytes.addAndGet(-bytes);
+    }
+
+  }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import com.codahale.metrics.Gauge;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AudioBufferPool {
+
+  private final Queue<FloatBuffer> idle      = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger      idleCount = new AtomicInteger(0);
+  private final AtomicInteger      inUse     = new AtomicInteger(0);
+
+  private final int           bufferSize;
+  private final int           poolSize;
+  private final boolean       direct;
+  private final ImbeefMetrics metrics;
+
+  public AudioBufferPool(int bufferSize, int poolSize, boolean direct, ImbeefMetrics metrics) {
+    this.bufferSize = bufferSize;
+    this.poolSize   = poolSize;
+    this.direct     = direct;
+    this.metrics    = metrics;
+
+    metrics.registerAudioBufferPool(
+        new Gauge<Integer>() {
+          @Override
+          public Integer getValue() {
+            return idleCount.get();
+          }
+        },
+        new Gauge<Integer>() {
+          @Override
+          public Integer getValue() {
+            return inUse.get();
+          }
+        }
+    );
+  }
+
+  public AudioBufferPool(ImbeefConfig config, ImbeefMetrics metrics) {
+    this(config.getMaxAudioChunkSize(), config.getAudioBufferPoolSize(), config.getAudioBufferDirect(), metrics);
+  }
+
+  private FloatBuffer allocate() {
+    if (direct) {
+      return ByteBuffer.allocateDirect(bufferSize * Float.BYTES)
+                       .order(ByteOrder.nativeOrder())
+                       .asFloatBuffer();
+    } else {
+      return FloatBuffer.allocate(bufferSize);
+    }
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  public FloatBuffer acquire() {
+    FloatBuffer buffer = idle.poll();
+
+    if (buffer != null) {
+      idleCount.decrementAndGet();
+    } else {
+      metrics.audioBufferPoolMiss();
+      buffer = allocate();
+    }
+
+    inUse.incrementAndGet();
+    return buffer;
+  }
+
+  public void release(FloatBuffer buffer) {
+    if (buffer.capacity() != bufferSize || buffer.isDirect() != direct) {
+      return;
+    }
+
+    inUse.decrementAndGet();
+    buffer.clear();
+
+    if (idleCount.incrementAndGet() <= poolSize) {
+      idle.offer(buffer);
+    } else {
+      idleCount.decrementAndGet();
+    }
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import com.codahale.metrics.Gauge;
+import org.anhonesteffort.p25.audio.ImbeConverterFactory;
+import org.anhonesteffort.p25.call.SafeAudioConverter;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps IMBE converters from pipelines removed for inactivity so new pipelines
+ * can reuse them instead of building a decoder from scratch.
+ */
+public class AudioConverterPool {
+
+  private final Queue<SafeAudioConverter> idle      = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger             idleCount = new AtomicInteger(0);
+  private final AtomicInteger             inUse     = new AtomicInteger(0);
+
+  private final ImbeConverterFactory converters;
+  private final int                  poolSize;
+  private final ImbeefMetrics        metrics;
+
+  public AudioConverterPool(ImbeConverterFactory converters, int poolSize, ImbeefMetrics metrics) {
+    this.converters = converters;
+    this.poolSize   = poolSize;
+    this.metrics    = metrics;
+
+    metrics.registerConverterPool(
+        new Gauge<Integer>() {
+          @Override
+          public Integer getValue() {
+            return idleCount.get();
+          }
+        },
+        new Gauge<Integer>() {
+          @Override
+          public Integer getValue() {
+            return inUse.get();
+          }
+        }
+    );
+  }
+
+  public AudioConverterPool(ImbeefConfig config, ImbeConverterFactory converters, ImbeefMetrics metrics) {
+    this(converters, config.getConverterPoolSize(), metrics);
+  }
+
+  private SafeAudioConverter create() {
+    long start = System.nanoTime();
+
+    SafeAudioConverter converter = new SafeAudioConverter(
+        converters.create(ImbeConverterFactory.AUDIO_FORMAT_8khz).get()
+    );
+
+    converter.prime();
+    metrics.converterCreate(System.nanoTime() - start);
+    return converter;
+  }
+
+  public SafeAudioConverter acquire() {
+    SafeAudioConverter converter = idle.poll();
+
+    if (converter != null) {
+      idleCount.decrementAndGet();
+      metrics.converterPoolHit();
+    } else {
+      metrics.converterPoolMiss();
+      converter = create();
+    }
+
+    inUse.incrementAndGet();
+    return converter;
+  }
+
+  public void release(SafeAudioConverter converter) {
+    inUse.decrementAndGet();
+    converter.reset();
+
+    if (idleCount.incrementAndGet() <= poolSize) {
+      idle.offer(converter);
+    } else {
+      idleCount.decrementAndGet();
+      converter.dispose();
+    }
+  }
+
+}
@@ -25,6 +25,23 @@ public interface CallPipeline extends Sink<CheckpointedDataUnit> {
 
   P25ChannelId getChannelId();
 
+  long getInactiveTime();
+
   boolean isInactive(long localTime);
 
+  /**
+   * @return bytes of audio held in memory for the call in progress.
+   */
+  long getBufferedBytes();
+
+  /**
+   * Ends the call in progress early, sending whatever audio it has as a partial file.
+   */
+  void flush();
+
+  /**
+   * Releases anything pooled by the pipeline once it has been removed.
+   */
+  void close();
+
 }
\ No newline at end of file
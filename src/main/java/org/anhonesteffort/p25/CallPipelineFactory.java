@@ -18,45 +18,75 @@
 package org.anhonesteffort.p25;
 
 import com.amazonaws.services.s3.transfer.TransferManager;
-import org.anhonesteffort.jmbe.iface.AudioConverter;
-import org.anhonesteffort.p25.audio.ImbeConverterFactory;
 import org.anhonesteffort.p25.call.CallSlicer;
-import org.anhonesteffort.p25.call.SafeAudioConverter;
 import org.anhonesteffort.p25.call.SaneCallFilter;
+import org.anhonesteffort.p25.trace.CallSpan;
+import org.anhonesteffort.p25.trace.CallStage;
+import org.anhonesteffort.p25.trace.CallTrace;
+import org.anhonesteffort.p25.wav.PagePool;
 import org.anhonesteffort.p25.wav.WaveFileS3Sink;
 import org.anhonesteffort.p25.wav.WaveHeaderFactory;
 
+import java.util.concurrent.ExecutorService;
+
 import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
 
 public class CallPipelineFactory {
 
+  private final PagePool pages = new PagePool();
+
   private final ImbeefConfig         config;
-  private final ImbeConverterFactory converters;
+  private final AudioConverterPool   converters;
   private final WaveHeaderFactory    headers;
   private final TransferManager      transfers;
+  private final AudioBufferPool      buffers;
+  private final ExecutorService      s3Pool;
+  private final UploadBudget         uploads;
+  private final AudioBudget          memory;
+  private final ImbeefMetrics        metrics;
 
   public CallPipelineFactory(ImbeefConfig         config,
-                             ImbeConverterFactory converters,
+                             AudioConverterPool   converters,
                              WaveHeaderFactory    headers,
-                             TransferManager      transfers)
+                             TransferManager      transfers,
+                             AudioBufferPool      buffers,
+                             ExecutorService      s3Pool,
+                             UploadBudget         uploads,
+                             AudioBudget          memory,
+                             ImbeefMetrics        metrics)
   {
     this.config     = config;
     this.converters = converters;
     this.headers    = headers;
     this.transfers  = transfers;
+    this.buffers    = buffers;
+    this.s3Pool     = s3Pool;
+    this.uploads    = uploads;
+    this.memory     = memory;
+    this.metrics    = metrics;
+  }
+
+  private CallSlicer slicer(P25ChannelId channelId, AudioBudget.Account account) {
+    if (ImbeefConfig.AUDIO_FORMAT_IMBE.equals(config.getAudioFormat())) {
+      return new CallSlicer(config, channelId, account, metrics);
+    }
+
+    return new CallSlicer(config, channelId, converters, buffers, account, metrics);
   }
 
   public CallPipeline create(P25ChannelId channelId) {
-    ImbeefMetrics.getInstance().createPipeline();
+    CallSpan event = CallTrace.begin(CallStage.PIPELINE_CREATED);
+    metrics.createPipeline();
 
-    AudioConverter converter = converters.create(ImbeConverterFactory.AUDIO_FORMAT_8khz).get();
-    CallSlicer     slicer    = new CallSlicer(config, channelId, new SafeAudioConverter(converter));
-    SaneCallFilter sanity    = new SaneCallFilter();
-    WaveFileS3Sink s3Sink    = new WaveFileS3Sink(config, headers, transfers);
+    AudioBudget.Account account = memory.account();
+    CallSlicer          slicer  = slicer(channelId, account);
+    SaneCallFilter      sanity  = new SaneCallFilter();
+    WaveFileS3Sink      s3Sink  = new WaveFileS3Sink(config, headers, pages, transfers, s3Pool, uploads, account, metrics);
 
     slicer.addSink(sanity);
     sanity.addSink(s3Sink);
 
+    event.commit(channelId, 0, 0);
     return slicer;
   }
 
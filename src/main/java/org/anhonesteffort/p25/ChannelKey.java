@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+
+/**
+ * Packs a P25ChannelId into two longs for use with {@link ChannelKeyMap}.
+ * <ul>
+ * <li> high - wacn (20 bits), system (12 bits), rfss (8 bits), source unit (24 bits).
+ * <li> low - type (8 bits), destination unit or group (24 bits), frequency as float bits (32 bits).
+ * </ul>
+ * The frequency is narrowed to a float, that is still well under one 6.25 kHz channel step.
+ */
+public class ChannelKey {
+
+  public static long high(P25ChannelId channelId) {
+    return ((channelId.getWacn()          & 0xFFFFFL) << 44) |
+           ((channelId.getSystemId()      & 0xFFFL)   << 32) |
+           ((channelId.getRfSubsystemId() & 0xFFL)    << 24) |
+            (channelId.getSourceId()      & 0xFFFFFFL);
+  }
+
+  public static long low(P25ChannelId channelId) {
+    long target;
+
+    switch (channelId.getType()) {
+      case TRAFFIC_DIRECT:
+        target = channelId.getDestinationId();
+        break;
+
+      case TRAFFIC_GROUP:
+        target = channelId.getGroupId();
+        break;
+
+      default:
+        target = 0;
+    }
+
+    return ((channelId.getType().getNumber() & 0xFFL)     << 56) |
+           ((target                          & 0xFFFFFFL) << 32) |
+           (Float.floatToIntBits((float) channelId.getFrequency()) & 0xFFFFFFFFL);
+  }
+
+  public static int hash(long high, long low) {
+    long hash = (high * 0x9E3779B97F4A7C15L) ^ low;
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    return (int) hash;
+  }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Open addressing map from {@link ChannelKey} pairs to values, linear probing
+ * with backward shift deletion. Not thread safe.
+ */
+public class ChannelKeyMap<V> {
+
+  private static final int MIN_CAPACITY = 16;
+
+  private long[]   highs;
+  private long[]   lows;
+  private Object[] values;
+  private int      size = 0;
+
+  public ChannelKeyMap() {
+    this(MIN_CAPACITY);
+  }
+
+  public ChannelKeyMap(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    highs  = new long[capacity];
+    lows   = new long[capacity];
+    values = new Object[capacity];
+  }
+
+  private int slot(long high, long low) {
+    int mask = values.length - 1;
+    int slot = ChannelKey.hash(high, low) & mask;
+
+    while (values[slot] != null && (highs[slot] != high || lows[slot] != low)) {
+      slot = (slot + 1) & mask;
+    }
+
+    return slot;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V get(long high, long low) {
+    return (V) values[slot(high, low)];
+  }
+
+  @SuppressWarnings("unchecked")
+  public V put(long high, long low, V value) {
+    if (value == null) {
+      throw new NullPointerException("null values are not supported");
+    }
+
+    int slot     = slot(high, low);
+    V   previous = (V) values[slot];
+
+    highs[slot]  = high;
+    lows[slot]   = low;
+    values[slot] = value;
+
+    if (previous == null && ++size * 2 > values.length) {
+      grow();
+    }
+
+    return previous;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V remove(long high, long low) {
+    int mask = values.length - 1;
+    int slot = slot(high, low);
+    V   removed = (V) values[slot];
+
+    if (removed == null) {
+      return null;
+    }
+
+    int hole = slot;
+    int next = (hole + 1) & mask;
+
+    while (values[next] != null) {
+      int home = ChannelKey.hash(highs[next], lows[next]) & mask;
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        highs[hole]  = highs[next];
+        lows[hole]   = lows[next];
+        values[hole] = values[next];
+        hole         = next;
+      }
+      next = (next + 1) & mask;
+    }
+
+    values[hole] = null;
+    size--;
+
+    return removed;
+  }
+
+  private void grow() {
+    long[]   oldHighs  = highs;
+    long[]   oldLows   = lows;
+    Object[] oldValues = values;
+
+    allocate(oldValues.length << 1);
+
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        int slot     = slot(oldHighs[i], oldLows[i]);
+        highs[slot]  = oldHighs[i];
+        lows[slot]   = oldLows[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  public void forEach(Consumer<V> consumer) {
+    for (Object value : values) {
+      if (value != null) {
+        consumer.accept((V) value);
+      }
+    }
+  }
+
+  public void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import io.radiowitness.kinesis.consumer.Checkpointer;
+
+/**
+ * A claim on consumed records whose audio is not durable yet. Checkpoint once the
+ * audio is durable or abandon when it never will be, either way the claim stops
+ * holding back the records after it.
+ */
+public interface Checkpoint extends Checkpointer {
+
+  void abandon();
+
+  /**
+   * @return one checkpoint standing in for both this and other, or null if the
+   *         two cannot be combined and both have to be kept.
+   */
+  Checkpoint merge(Checkpoint other);
+
+  static Checkpoint of(Checkpointer record) {
+    return new Checkpoint() {
+      @Override
+      public void checkpoint() {
+        record.checkpoint();
+      }
+
+      @Override
+      public void abandon() { }
+
+      @Override
+      public Checkpoint merge(Checkpoint other) {
+        return null;
+      }
+    };
+  }
+
+}
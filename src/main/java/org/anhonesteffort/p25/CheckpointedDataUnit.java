@@ -26,16 +26,22 @@ public class CheckpointedDataUnit {
   private final Double       latitude;
   private final Double       longitude;
   private final DataUnit     dataUnit;
-  private final Checkpointer checkpointer;
+  private final Checkpoint   checkpoint;
+
+  public CheckpointedDataUnit(
+      Long timestamp, Double latitude, Double longitude, DataUnit dataUnit, Checkpoint checkpoint
+  ) {
+    this.timestamp  = timestamp;
+    this.latitude   = latitude;
+    this.longitude  = longitude;
+    this.dataUnit   = dataUnit;
+    this.checkpoint = checkpoint;
+  }
 
   public CheckpointedDataUnit(
       Long timestamp, Double latitude, Double longitude, DataUnit dataUnit, Checkpointer checkpointer
   ) {
-    this.timestamp    = timestamp;
-    this.latitude     = latitude;
-    this.longitude    = longitude;
-    this.dataUnit     = dataUnit;
-    this.checkpointer = checkpointer;
+    this(timestamp, latitude, longitude, dataUnit, Checkpoint.of(checkpointer));
   }
 
   public Long getTimestamp() {
@@ -54,8 +60,8 @@ public class CheckpointedDataUnit {
     return dataUnit;
   }
 
-  public Checkpointer getCheckpointer() {
-    return checkpointer;
+  public Checkpoint getCheckpoint() {
+    return checkpoint;
   }
 
 }
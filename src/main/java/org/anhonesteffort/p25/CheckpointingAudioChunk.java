@@ -17,11 +17,10 @@
 
 package org.anhonesteffort.p25;
 
-import io.radiowitness.kinesis.consumer.Checkpointer;
 import org.anhonesteffort.dsp.Copyable;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
-import java.util.Arrays;
 import java.util.Collection;
 
 import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
@@ -38,12 +37,52 @@ public class CheckpointingAudioChunk implements Copyable<CheckpointingAudioChunk
   private final Double                   longitude;
   private final Integer                  sourceId;
   private final FloatBuffer              buffer;
-  private final Collection<Checkpointer> checkpoints;
+  private final ByteBuffer               codewords;
+  private final Collection<Checkpoint>   checkpoints;
+  private final AudioBufferPool          pool;
+  private       boolean                  released = false;
 
   public CheckpointingAudioChunk(
       P25ChannelId channelId, Boolean isFirst, Boolean isLast, Boolean terminated,
       Long startTime, Long endTime, Double latitude, Double longitude, Integer sourceId,
-      FloatBuffer buffer, Collection<Checkpointer> checkpoints)
+      FloatBuffer buffer, Collection<Checkpoint> checkpoints)
+  {
+    this(
+        channelId, isFirst, isLast, terminated, startTime, endTime,
+        latitude, longitude, sourceId, buffer, checkpoints, null
+    );
+  }
+
+  public CheckpointingAudioChunk(
+      P25ChannelId channelId, Boolean isFirst, Boolean isLast, Boolean terminated,
+      Long startTime, Long endTime, Double latitude, Double longitude, Integer sourceId,
+      FloatBuffer buffer, Collection<Checkpoint> checkpoints, AudioBufferPool pool)
+  {
+    this(
+        channelId, isFirst, isLast, terminated, startTime, endTime,
+        latitude, longitude, sourceId, buffer, ByteBuffer.allocate(0), checkpoints, pool
+    );
+  }
+
+  /**
+   * A chunk of undecoded IMBE codewords, each prefixed with its length in one byte.
+   */
+  public CheckpointingAudioChunk(
+      P25ChannelId channelId, Boolean isFirst, Boolean isLast, Boolean terminated,
+      Long startTime, Long endTime, Double latitude, Double longitude, Integer sourceId,
+      ByteBuffer codewords, Collection<Checkpoint> checkpoints)
+  {
+    this(
+        channelId, isFirst, isLast, terminated, startTime, endTime,
+        latitude, longitude, sourceId, FloatBuffer.allocate(0), codewords, checkpoints, null
+    );
+  }
+
+  private CheckpointingAudioChunk(
+      P25ChannelId channelId, Boolean isFirst, Boolean isLast, Boolean terminated,
+      Long startTime, Long endTime, Double latitude, Double longitude, Integer sourceId,
+      FloatBuffer buffer, ByteBuffer codewords, Collection<Checkpoint> checkpoints,
+      AudioBufferPool pool)
   {
     this.channelId   = channelId;
     this.isFirst     = isFirst;
@@ -55,7 +94,9 @@ public class CheckpointingAudioChunk implements Copyable<CheckpointingAudioChunk
     this.longitude   = longitude;
     this.sourceId    = sourceId;
     this.buffer      = buffer;
+    this.codewords   = codewords;
     this.checkpoints = checkpoints;
+    this.pool        = pool;
   }
 
   public P25ChannelId getChannelId() {
@@ -98,17 +139,56 @@ public class CheckpointingAudioChunk implements Copyable<CheckpointingAudioChunk
     return buffer;
   }
 
+  public ByteBuffer getCodewords() {
+    return codewords;
+  }
+
+  public boolean isEmpty() {
+    return !buffer.hasRemaining() && !codewords.hasRemaining();
+  }
+
+  /**
+   * @return bytes held by the buffers of this chunk, filled or not.
+   */
+  public long getAllocatedBytes() {
+    return ((long) buffer.capacity() * Float.BYTES) + codewords.capacity();
+  }
+
   public void checkpoint() throws RuntimeException {
-    checkpoints.forEach(Checkpointer::checkpoint);
+    checkpoints.forEach(Checkpoint::checkpoint);
+  }
+
+  public void abandon() {
+    checkpoints.forEach(Checkpoint::abandon);
+  }
+
+  public synchronized void release() {
+    if (pool != null && !released) {
+      released = true;
+      pool.release(buffer);
+    }
   }
 
   @Override
   public CheckpointingAudioChunk copy() {
-    float[] floats = buffer.array();
+    FloatBuffer source = buffer.duplicate();
+    FloatBuffer copy   = FloatBuffer.allocate(buffer.capacity());
+
+    source.clear();
+    copy.put(source);
+    copy.limit(buffer.limit());
+    copy.position(buffer.position());
+
+    ByteBuffer words = ByteBuffer.allocate(codewords.capacity());
+
+    words.put((ByteBuffer) codewords.duplicate().clear());
+    words.limit(codewords.limit());
+    words.position(codewords.position());
+
     return new CheckpointingAudioChunk(
         channelId, isFirst, isLast, terminated,
         startTime, endTime, latitude, longitude, sourceId,
-        FloatBuffer.wrap(Arrays.copyOf(floats, floats.length)), checkpoints
+        copy, words, checkpoints, null
     );
   }
 
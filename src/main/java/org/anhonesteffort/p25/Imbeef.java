@@ -18,13 +18,19 @@
 package org.anhonesteffort.p25;
 
 import com.amazonaws.services.kinesis.clientlibrary.lib.worker.Worker;
+import com.amazonaws.services.s3.transfer.TransferManager;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import io.radiowitness.kinesis.consumer.KclConfigFactory;
 import org.anhonesteffort.p25.audio.ImbeConverterFactory;
 import org.anhonesteffort.p25.call.CallManager;
+import org.anhonesteffort.p25.call.ChannelWorkerPool;
 import org.anhonesteffort.p25.consumer.KinesisP25ConsumerFactory;
+import org.anhonesteffort.p25.consumer.RecordFileWriter;
+import org.anhonesteffort.p25.prometheus.MetricsServer;
+import org.anhonesteffort.p25.serve.CallAudioServer;
+import org.anhonesteffort.p25.serve.S3CallStore;
 import org.anhonesteffort.p25.wav.TransferManagerFactory;
 import org.anhonesteffort.p25.wav.WaveHeaderFactory;
 import org.slf4j.Logger;
@@ -32,6 +38,7 @@ import org.slf4j.LoggerFactory;
 import pl.edu.icm.jlargearrays.ConcurrencyUtils;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -44,18 +51,88 @@ public class Imbeef {
     this.config = config;
   }
 
-  public void run() {
-    ImbeefMetrics.init(config, new MetricRegistry());
+  private void serve(AudioConverterPool converters,
+                     WaveHeaderFactory  headers,
+                     TransferManager    transfers,
+                     ImbeefMetrics      metrics)
+  {
+    try {
+
+      new CallAudioServer(
+          config, new S3CallStore(transfers.getAmazonS3Client(), config.getS3Bucket()),
+          converters, headers, metrics
+      ).start();
+
+    } catch (IOException e) {
+      log.error("unable to start call audio server", e);
+    }
+  }
+
+  private void serveMetrics(ImbeefMetrics metrics) {
+    try {
+
+      metrics.registerJvm();
+      new MetricsServer(config, metrics.getRegistry()).start();
+
+    } catch (IOException e) {
+      log.error("unable to start metrics server", e);
+    }
+  }
+
+  private RecordFileWriter recorder() {
+    if (config.getRecordFile().isEmpty()) {
+      return null;
+    }
+
+    try {
+
+      RecordFileWriter recorder = new RecordFileWriter(Paths.get(config.getRecordFile()));
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try {
+          recorder.close();
+        } catch (IOException e) {
+          log.error("error closing record file", e);
+        }
+      }));
 
+      log.info("recording kinesis records to " + config.getRecordFile());
+      return recorder;
+
+    } catch (IOException e) {
+      log.error("unable to open record file", e);
+      return null;
+    }
+  }
+
+  public void run() {
+    ImbeefMetrics        metrics    = new ImbeefMetrics(config, new MetricRegistry());
     ImbeConverterFactory converters = new ImbeConverterFactory();
-    WaveHeaderFactory    headers    = new WaveHeaderFactory();
+    WaveHeaderFactory    headers    = new WaveHeaderFactory(config.getWavEncoding());
+    AudioBufferPool      buffers    = new AudioBufferPool(config, metrics);
+    AudioBudget          memory     = new AudioBudget(config, metrics);
+    AudioConverterPool   decoders   = new AudioConverterPool(config, converters, metrics);
 
     ExecutorService        s3Pool    = Executors.newFixedThreadPool(config.getS3PoolSize());
     TransferManagerFactory transfers = new TransferManagerFactory(config, s3Pool);
+    TransferManager        transfer  = transfers.create();
+    UploadBudget           uploads   = new UploadBudget(config, metrics);
+
+    if (config.getMetricsPort() > 0) {
+      serveMetrics(metrics);
+    }
 
-    CallPipelineFactory       pipelines   = new CallPipelineFactory(config, converters, headers, transfers.create());
-    CallManager               callManager = new CallManager(config, pipelines);
-    KinesisP25ConsumerFactory consumers   = new KinesisP25ConsumerFactory(callManager);
+    if (config.getServePort() > 0) {
+      serve(decoders, headers, transfer, metrics);
+    }
+
+    CallPipelineFactory       pipelines   = new CallPipelineFactory(
+        config, decoders, headers, transfer, buffers, s3Pool, uploads, memory, metrics
+    );
+    CallManager               callManager = new CallManager(config, pipelines, memory, s3Pool, metrics);
+    ChannelWorkerPool         workers     = new ChannelWorkerPool(config, callManager, metrics);
+    KinesisP25ConsumerFactory consumers   = new KinesisP25ConsumerFactory(
+        config, workers, uploads, recorder(), metrics
+    );
 
     Worker worker = new Worker.Builder().recordProcessorFactory(consumers)
                               .config(new KclConfigFactory(config).create())
@@ -65,6 +142,10 @@ public class Imbeef {
         consumers.getErrorFuture(),
         new KclErrorCallback(worker, s3Pool)
     );
+    Futures.addCallback(
+        workers.getErrorFuture(),
+        new KclErrorCallback(worker, s3Pool)
+    );
 
     worker.run();
   }
@@ -20,6 +20,9 @@ package org.anhonesteffort.p25;
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.RegionUtils;
 import io.radiowitness.kinesis.consumer.KinesisConsumerConfig;
+import org.anhonesteffort.p25.flac.FlacEncoder;
+import org.anhonesteffort.p25.wav.MultipartWaveUpload;
+import org.anhonesteffort.p25.wav.WaveEncoding;
 
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -27,6 +30,12 @@ import java.util.Properties;
 
 public class ImbeefConfig implements KinesisConsumerConfig {
 
+  private static final int CORE_COUNT = Runtime.getRuntime().availableProcessors();
+
+  public static final String AUDIO_FORMAT_WAV  = "wav";
+  public static final String AUDIO_FORMAT_FLAC = "flac";
+  public static final String AUDIO_FORMAT_IMBE = "imbe";
+
   private final Region  region;
   private final String  streamName;
   private final String  accessKeyId;
@@ -35,19 +44,48 @@ public class ImbeefConfig implements KinesisConsumerConfig {
   private final String  appVersion;
 
   private final Long    readIntervalMs;
+  private final Long    checkpointIntervalMs;
   private final Double  minCallDataUnitRate;
   private final Double  callInactiveCheckRate;
   private final Long    terminatorTimeoutMs;
   private final Integer maxAudioChunkSize;
+  private final Integer audioBufferPoolSize;
+  private final Boolean audioBufferDirect;
+  private final Long    maxBufferedAudioBytes;
+  private final Integer converterPoolSize;
+  private final Integer workerCount;
+  private final Integer workerQueueSize;
 
   private final Integer s3PoolSize;
   private final String  s3Bucket;
   private final String  s3KeyPrefix;
+  private final Integer s3PartSize;
+  private final Long    s3MaxInFlightBytes;
+  private final Integer s3MaxInFlightUploads;
+
+  private final Integer spoolThresholdBytes;
+  private final String  spoolDir;
+
+  private final WaveEncoding wavEncoding;
+  private final String       audioFormat;
+  private final Integer      flacBlockSize;
+  private final Integer      flacMaxLpcOrder;
+
+  private final String  serveAddress;
+  private final Integer servePort;
+  private final Long    serveCacheBytes;
+  private final Integer serveThreads;
+
+  private final String recordFile;
+
+  private final String  metricsAddress;
+  private final Integer metricsPort;
 
   public ImbeefConfig() throws IOException {
-    Properties properties = new Properties();
-    properties.load(new FileInputStream("imbeef.properties"));
+    this(load("imbeef.properties"));
+  }
 
+  public ImbeefConfig(Properties properties) throws IOException {
     region      = RegionUtils.getRegion(properties.getProperty("region"));
     streamName  = properties.getProperty("stream_name");
     accessKeyId = properties.getProperty("access_key_id");
@@ -56,20 +94,83 @@ public class ImbeefConfig implements KinesisConsumerConfig {
     appVersion  = properties.getProperty("app_version");
 
     readIntervalMs        = Long.parseLong(properties.getProperty("read_interval_ms"));
+    checkpointIntervalMs  = Long.parseLong(properties.getProperty("checkpoint_interval_ms", "10000"));
     minCallDataUnitRate   = Double.parseDouble(properties.getProperty("min_call_data_unit_rate"));
     callInactiveCheckRate = Double.parseDouble(properties.getProperty("call_inactive_check_rate"));
     terminatorTimeoutMs   = Long.parseLong(properties.getProperty("terminator_timeout_ms"));
     maxAudioChunkSize     = Integer.parseInt(properties.getProperty("max_audio_chunk_size"));
+    audioBufferPoolSize   = Integer.parseInt(properties.getProperty("audio_buffer_pool_size", "256"));
+    audioBufferDirect     = Boolean.parseBoolean(properties.getProperty("audio_buffer_direct", "false"));
+    maxBufferedAudioBytes = Long.parseLong(properties.getProperty("max_buffered_audio_bytes", "0"));
+    converterPoolSize     = Integer.parseInt(properties.getProperty("converter_pool_size", "64"));
+    workerCount           = Integer.parseInt(properties.getProperty("worker_count", Integer.toString(CORE_COUNT)));
+    workerQueueSize       = Integer.parseInt(properties.getProperty("worker_queue_size", "1024"));
 
     s3PoolSize  = Integer.parseInt(properties.getProperty("s3_pool_size"));
     s3Bucket    = properties.getProperty("s3_bucket");
     s3KeyPrefix = properties.getProperty("s3_key_prefix");
+    s3PartSize  = Integer.parseInt(properties.getProperty("s3_part_size", "0"));
+
+    s3MaxInFlightBytes   = Long.parseLong(properties.getProperty("s3_max_in_flight_bytes", "268435456"));
+    s3MaxInFlightUploads = Integer.parseInt(properties.getProperty("s3_max_in_flight_uploads", "256"));
+
+    spoolThresholdBytes = Integer.parseInt(properties.getProperty("spool_threshold_bytes", "0"));
+    spoolDir            = properties.getProperty("spool_dir", System.getProperty("java.io.tmpdir"));
+
+    wavEncoding     = encoding(properties.getProperty("wav_encoding", "pcm16"));
+    audioFormat     = properties.getProperty("audio_format", AUDIO_FORMAT_WAV);
+    flacBlockSize   = Integer.parseInt(properties.getProperty("flac_block_size", "1152"));
+    flacMaxLpcOrder = Integer.parseInt(properties.getProperty("flac_max_lpc_order", "8"));
+
+    serveAddress    = properties.getProperty("serve_address", "127.0.0.1");
+    servePort       = Integer.parseInt(properties.getProperty("serve_port", "0"));
+    serveCacheBytes = Long.parseLong(properties.getProperty("serve_cache_bytes", "67108864"));
+    serveThreads    = Integer.parseInt(properties.getProperty("serve_threads", "4"));
+
+    recordFile = properties.getProperty("record_file", "");
+
+    metricsAddress = properties.getProperty("metrics_address", "127.0.0.1");
+    metricsPort    = Integer.parseInt(properties.getProperty("metrics_port", "0"));
 
     if (region == null) {
       throw new IOException("invalid region");
+    } else if (maxBufferedAudioBytes < 0) {
+      throw new IOException("max_buffered_audio_bytes must be 0 or more");
+    } else if (s3PartSize != 0 && s3PartSize < MultipartWaveUpload.MIN_PART_SIZE) {
+      throw new IOException("s3_part_size must be 0 or at least " + MultipartWaveUpload.MIN_PART_SIZE);
+    } else if (!audioFormat.equals(AUDIO_FORMAT_WAV) && !audioFormat.equals(AUDIO_FORMAT_FLAC) && !audioFormat.equals(AUDIO_FORMAT_IMBE)) {
+      throw new IOException("audio_format must be wav, flac or imbe");
+    } else if (!audioFormat.equals(AUDIO_FORMAT_WAV) && (s3PartSize != 0 || spoolThresholdBytes != 0)) {
+      throw new IOException(audioFormat + " audio_format requires s3_part_size and spool_threshold_bytes of 0");
+    } else if (flacBlockSize < FlacEncoder.MIN_BLOCK_SIZE || flacBlockSize > FlacEncoder.MAX_BLOCK_SIZE) {
+      throw new IOException("flac_block_size must be within " + FlacEncoder.MIN_BLOCK_SIZE + " and " + FlacEncoder.MAX_BLOCK_SIZE);
+    } else if (flacMaxLpcOrder < 0 || flacMaxLpcOrder > FlacEncoder.MAX_LPC_ORDER) {
+      throw new IOException("flac_max_lpc_order must be within 0 and " + FlacEncoder.MAX_LPC_ORDER);
+    } else if (servePort < 0 || servePort > 65535) {
+      throw new IOException("serve_port must be within 0 and 65535");
+    } else if (serveCacheBytes < 0) {
+      throw new IOException("serve_cache_bytes must be 0 or more");
+    } else if (serveThreads < 1) {
+      throw new IOException("serve_threads must be 1 or more");
+    } else if (metricsPort < 0 || metricsPort > 65535) {
+      throw new IOException("metrics_port must be within 0 and 65535");
+    }
+  }
+
+  private static WaveEncoding encoding(String name) throws IOException {
+    try {
+      return WaveEncoding.valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IOException("wav_encoding must be one of pcm16, ulaw or alaw");
     }
   }
 
+  private static Properties load(String file) throws IOException {
+    Properties properties = new Properties();
+    properties.load(new FileInputStream(file));
+    return properties;
+  }
+
   @Override
   public Region getRegion() {
     return region;
@@ -105,6 +206,10 @@ public class ImbeefConfig implements KinesisConsumerConfig {
     return readIntervalMs;
   }
 
+  public Long getCheckpointIntervalMs() {
+    return checkpointIntervalMs;
+  }
+
   public Double getMinCallDataUnitRate() {
     return minCallDataUnitRate;
   }
@@ -121,6 +226,30 @@ public class ImbeefConfig implements KinesisConsumerConfig {
     return maxAudioChunkSize;
   }
 
+  public Integer getAudioBufferPoolSize() {
+    return audioBufferPoolSize;
+  }
+
+  public Boolean getAudioBufferDirect() {
+    return audioBufferDirect;
+  }
+
+  public Long getMaxBufferedAudioBytes() {
+    return maxBufferedAudioBytes;
+  }
+
+  public Integer getConverterPoolSize() {
+    return converterPoolSize;
+  }
+
+  public Integer getWorkerCount() {
+    return workerCount;
+  }
+
+  public Integer getWorkerQueueSize() {
+    return workerQueueSize;
+  }
+
   public Integer getS3PoolSize() {
     return s3PoolSize;
   }
@@ -133,4 +262,68 @@ public class ImbeefConfig implements KinesisConsumerConfig {
     return s3KeyPrefix;
   }
 
+  public Integer getS3PartSize() {
+    return s3PartSize;
+  }
+
+  public Long getS3MaxInFlightBytes() {
+    return s3MaxInFlightBytes;
+  }
+
+  public Integer getS3MaxInFlightUploads() {
+    return s3MaxInFlightUploads;
+  }
+
+  public Integer getSpoolThresholdBytes() {
+    return spoolThresholdBytes;
+  }
+
+  public String getSpoolDir() {
+    return spoolDir;
+  }
+
+  public WaveEncoding getWavEncoding() {
+    return wavEncoding;
+  }
+
+  public String getAudioFormat() {
+    return audioFormat;
+  }
+
+  public Integer getFlacBlockSize() {
+    return flacBlockSize;
+  }
+
+  public Integer getFlacMaxLpcOrder() {
+    return flacMaxLpcOrder;
+  }
+
+  public String getServeAddress() {
+    return serveAddress;
+  }
+
+  public Integer getServePort() {
+    return servePort;
+  }
+
+  public Long getServeCacheBytes() {
+    return serveCacheBytes;
+  }
+
+  public Integer getServeThreads() {
+    return serveThreads;
+  }
+
+  public String getRecordFile() {
+    return recordFile;
+  }
+
+  public String getMetricsAddress() {
+    return metricsAddress;
+  }
+
+  public Integer getMetricsPort() {
+    return metricsPort;
+  }
+
 }
@@ -18,19 +18,112 @@
 package org.anhonesteffort.p25;
 
 import com.blacklocus.metrics.CloudWatchReporterBuilder;
+import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.Slf4jReporter;
+import com.codahale.metrics.Timer;
+import org.slf4j.LoggerFactory;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Every metric is resolved from the registry once at construction so hot
+ * paths never pay for a registry lookup. One instance is created at startup
+ * and handed to each component that reports metrics.
+ */
 public class ImbeefMetrics {
 
-  private static ImbeefMetrics instance;
+  private static final Set<String> LATENCY = new HashSet<>(Arrays.asList(
+      "ingestLag", "callEndToSend", "sendToDurable", "radioToDurable"
+  ));
+
+  private static final int TIMER_SAMPLES = 8192;
+
   private final MetricRegistry registry;
 
-  protected ImbeefMetrics(ImbeefConfig config, MetricRegistry registry) {
+  private final Counter   createPipeline;
+  private final Counter   inactivePipeline;
+  private final Counter   terminateTimeout;
+  private final Counter   headerDataUnit;
+  private final Counter   terminatorDataUnit;
+  private final Counter   unencryptedVoice;
+  private final Counter   encryptedVoice;
+  private final Counter   wavQueued;
+  private final Counter   wavPutSuccess;
+  private final Counter   wavPutFailure;
+  private final Counter   shardCheckpoint;
+  private final Counter   checkpointAbandoned;
+  private final Counter   wavSpooled;
+  private final Counter   audioBufferPoolMiss;
+  private final Counter   forcedFlush;
+  private final Counter   converterPoolHit;
+  private final Counter   converterPoolMiss;
+  private final Counter   serveCacheHit;
+  private final Counter   serveCacheMiss;
+  private final Counter   serveCacheEviction;
+  private final Timer     ingestLag;
+  private final Timer     callEndToSend;
+  private final Timer     sendToDurable;
+  private final Timer     radioToDurable;
+  private final Timer     s3Throttled;
+  private final Timer     serveDecode;
+  private final Timer     converterCreate;
+  private final Histogram wavSizeBytes;
+
+  /**
+   * Timers keep the last 8192 samples in a fixed ring rather than the default
+   * exponentially decaying sample of 1028, so p999 is read from real samples
+   * and an update is an array store whatever the event rate.
+   */
+  private Timer timer(String name) {
+    return registry.register(name, new Timer(new SlidingWindowReservoir(TIMER_SAMPLES)));
+  }
+
+  public ImbeefMetrics(MetricRegistry registry) {
     this.registry = registry;
 
+    createPipeline      = registry.counter("createPipeline");
+    inactivePipeline    = registry.counter("inactivePipeline");
+    terminateTimeout    = registry.counter("terminateTimeout");
+    headerDataUnit      = registry.counter("headerDataUnit");
+    terminatorDataUnit  = registry.counter("terminatorDataUnit");
+    unencryptedVoice    = registry.counter("unencryptedVoice");
+    encryptedVoice      = registry.counter("encryptedVoice");
+    wavQueued           = registry.counter("wavQueued");
+    wavPutSuccess       = registry.counter("wavPutSuccess");
+    wavPutFailure       = registry.counter("wavPutFailure");
+    shardCheckpoint     = registry.counter("shardCheckpoint");
+    checkpointAbandoned = registry.counter("checkpointAbandoned");
+    wavSpooled          = registry.counter("wavSpooled");
+    audioBufferPoolMiss = registry.counter("audioBufferPoolMiss");
+    forcedFlush         = registry.counter("forcedFlush");
+    converterPoolHit    = registry.counter("converterPoolHit");
+    converterPoolMiss   = registry.counter("converterPoolMiss");
+    serveCacheHit       = registry.counter("serveCacheHit");
+    serveCacheMiss      = registry.counter("serveCacheMiss");
+    serveCacheEviction  = registry.counter("serveCacheEviction");
+    ingestLag           = timer("ingestLag");
+    callEndToSend       = timer("callEndToSend");
+    sendToDurable       = timer("sendToDurable");
+    radioToDurable      = timer("radioToDurable");
+    s3Throttled         = timer("s3Throttled");
+    serveDecode         = timer("serveDecode");
+    converterCreate     = timer("converterCreate");
+    wavSizeBytes        = registry.histogram("wavSizeBytes");
+  }
+
+  public ImbeefMetrics(ImbeefConfig config, MetricRegistry registry) {
+    this(registry);
+
     System.getProperties().setProperty("aws.accessKeyId", config.getAccessKeyId());
     System.getProperties().setProperty("aws.secretKey",   config.getSecretKey());
 
@@ -39,70 +132,199 @@ public class ImbeefMetrics {
         .withRegistry(registry)
         .build()
         .start(1, TimeUnit.MINUTES);
+
+    Slf4jReporter.forRegistry(registry)
+                 .outputTo(LoggerFactory.getLogger(ImbeefMetrics.class))
+                 .filter((name, metric) -> LATENCY.contains(name))
+                 .convertDurationsTo(TimeUnit.MILLISECONDS)
+                 .build()
+                 .start(1, TimeUnit.MINUTES);
   }
 
-  protected static void mock(ImbeefMetrics mock) {
-    if (instance == null) {
-      instance = mock;
-    }
+  public MetricRegistry getRegistry() {
+    return registry;
   }
 
-  public static void init(ImbeefConfig config, MetricRegistry registry) {
-    if (instance == null) {
-      instance = new ImbeefMetrics(config, registry);
+  private static long allocatedBytes(com.sun.management.ThreadMXBean threads) {
+    long total = 0;
+    for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+      total += Math.max(0, bytes);
     }
+    return total;
   }
 
-  public static ImbeefMetrics getInstance() {
-    return instance;
+  /**
+   * Heap, GC and allocation gauges for local scraping, allocation is summed
+   * over live threads so it drops a little when a thread exits.
+   */
+  public void registerJvm() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    registry.register("jvmHeapUsedBytes",      (Gauge<Long>) () -> memory.getHeapMemoryUsage().getUsed());
+    registry.register("jvmHeapCommittedBytes", (Gauge<Long>) () -> memory.getHeapMemoryUsage().getCommitted());
+
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      registry.register("jvmGcCount." + gc.getName(), (Gauge<Long>) gc::getCollectionCount);
+      registry.register("jvmGcTimeMs." + gc.getName(), (Gauge<Long>) gc::getCollectionTime);
+    }
+
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+      if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+        registry.register("jvmAllocatedBytes", (Gauge<Long>) () -> allocatedBytes(threads));
+      }
+    }
   }
 
   public void createPipeline() {
-    registry.counter("createPipeline").inc();
+    createPipeline.inc();
   }
 
   public void inactivePipeline() {
-    registry.counter("inactivePipeline").inc();
+    inactivePipeline.inc();
   }
 
   public void terminateTimeout() {
-    registry.counter("terminateTimeout").inc();
+    terminateTimeout.inc();
   }
 
   public void headerDataUnit() {
-    registry.counter("headerDataUnit").inc();
+    headerDataUnit.inc();
   }
 
   public void terminatorDataUnit() {
-    registry.counter("terminatorDataUnit").inc();
+    terminatorDataUnit.inc();
   }
 
   public void unencryptedVoice() {
-    registry.counter("unencryptedVoice").inc();
+    unencryptedVoice.inc();
   }
 
   public void encryptedVoice() {
-    registry.counter("encryptedVoice").inc();
+    encryptedVoice.inc();
   }
 
   public void wavQueued() {
-    registry.counter("wavQueued").inc();
+    wavQueued.inc();
   }
 
   public void wavPutSuccess() {
-    registry.counter("wavPutSuccess").inc();
+    wavPutSuccess.inc();
   }
 
   public void wavPutFailure() {
-    registry.counter("wavPutFailure").inc();
+    wavPutFailure.inc();
+  }
+
+  public void shardCheckpoint() {
+    shardCheckpoint.inc();
+  }
+
+  public void checkpointAbandoned() {
+    checkpointAbandoned.inc();
+  }
+
+  public void wavSpooled() {
+    wavSpooled.inc();
   }
 
   public void wavSize(int bytes) {
-    registry.histogram("wavSizeBytes").update(bytes);
+    wavSizeBytes.update(bytes);
+  }
+
+  /**
+   * Time from a data unit's remote timestamp to it being consumed, negative
+   * values from clock skew are dropped by the timer.
+   */
+  public void ingestLag(long millis) {
+    ingestLag.update(millis, TimeUnit.MILLISECONDS);
+  }
+
+  public void callEndToSend(long millis) {
+    callEndToSend.update(millis, TimeUnit.MILLISECONDS);
+  }
+
+  public void sendToDurable(long millis) {
+    sendToDurable.update(millis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Time from the remote timestamp of the last data unit in a call to its audio file
+   * being durable in S3.
+   */
+  public void radioToDurable(long millis) {
+    radioToDurable.update(millis, TimeUnit.MILLISECONDS);
+  }
+
+  public void registerUploadBudget(Gauge<Long> bytes, Gauge<Integer> uploads) {
+    registry.register("s3InFlightBytes",   bytes);
+    registry.register("s3InFlightUploads", uploads);
+  }
+
+  public void s3Throttled(long millis) {
+    s3Throttled.update(millis, TimeUnit.MILLISECONDS);
   }
 
   public void registerCallManager(Gauge<Integer> gauge) {
     registry.register("callManager", gauge);
   }
 
+  public void registerChannelWorkers(Gauge<Integer> queueDepth) {
+    registry.register("channelWorkerQueueDepth", queueDepth);
+  }
+
+  public void audioBufferPoolMiss() {
+    audioBufferPoolMiss.inc();
+  }
+
+  public void registerAudioBufferPool(Gauge<Integer> idle, Gauge<Integer> inUse) {
+    registry.register("audioBufferPoolIdle",  idle);
+    registry.register("audioBufferPoolInUse", inUse);
+  }
+
+  public void registerAudioBudget(Gauge<Long> bytes) {
+    registry.register("bufferedAudioBytes", bytes);
+  }
+
+  public void forcedFlush() {
+    forcedFlush.inc();
+  }
+
+  public void converterPoolHit() {
+    converterPoolHit.inc();
+  }
+
+  public void converterPoolMiss() {
+    converterPoolMiss.inc();
+  }
+
+  public void converterCreate(long nanos) {
+    converterCreate.update(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void registerConverterPool(Gauge<Integer> idle, Gauge<Integer> inUse) {
+    registry.register("converterPoolIdle",  idle);
+    registry.register("converterPoolInUse", inUse);
+  }
+
+  public void serveCacheHit() {
+    serveCacheHit.inc();
+  }
+
+  public void serveCacheMiss() {
+    serveCacheMiss.inc();
+  }
+
+  public void serveCacheEviction() {
+    serveCacheEviction.inc();
+  }
+
+  public void serveDecode(long millis) {
+    serveDecode.update(millis, TimeUnit.MILLISECONDS);
+  }
+
+  public void registerServeCache(Gauge<Long> bytes) {
+    registry.register("serveCacheBytes", bytes);
+  }
+
 }
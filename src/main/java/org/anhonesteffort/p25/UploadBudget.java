@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import com.codahale.metrics.Gauge;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks bytes and requests handed to S3 but not yet finished. Uploads never
+ * block on the budget, consumers wait in awaitAvailable() while it is exceeded
+ * so records stop being pulled until uploads drain. A max of 0 means no limit.
+ */
+public class UploadBudget {
+
+  private final long          maxBytes;
+  private final int           maxUploads;
+  private final ImbeefMetrics metrics;
+  private       long          bytes   = 0;
+  private       int           uploads = 0;
+
+  public UploadBudget(long maxBytes, int maxUploads, ImbeefMetrics metrics) {
+    this.maxBytes   = maxBytes;
+    this.maxUploads = maxUploads;
+    this.metrics    = metrics;
+  }
+
+  public UploadBudget(ImbeefConfig config, ImbeefMetrics metrics) {
+    this(config.getS3MaxInFlightBytes(), config.getS3MaxInFlightUploads(), metrics);
+
+    metrics.registerUploadBudget(
+        new Gauge<Long>() {
+          @Override
+          public Long getValue() {
+            return getBytes();
+          }
+        },
+        new Gauge<Integer>() {
+          @Override
+          public Integer getValue() {
+            return getUploads();
+          }
+        }
+    );
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized int getUploads() {
+    return uploads;
+  }
+
+  public synchronized void acquire(long bytes) {
+    this.bytes += bytes;
+    uploads++;
+  }
+
+  public synchronized void release(long bytes) {
+    this.bytes -= bytes;
+    uploads--;
+    notifyAll();
+  }
+
+  public synchronized boolean isExceeded() {
+    return (maxBytes   > 0 && bytes   >= maxBytes) ||
+           (maxUploads > 0 && uploads >= maxUploads);
+  }
+
+  public synchronized void awaitAvailable() throws InterruptedException {
+    if (!isExceeded()) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    while (isExceeded()) {
+      wait();
+    }
+
+    metrics.s3Throttled(
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+    );
+  }
+
+}
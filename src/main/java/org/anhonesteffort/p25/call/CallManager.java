@@ -19,80 +19,217 @@ package org.anhonesteffort.p25.call;
 
 import com.codahale.metrics.Gauge;
 import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.p25.AudioBudget;
 import org.anhonesteffort.p25.CallPipeline;
 import org.anhonesteffort.p25.CallPipelineFactory;
+import org.anhonesteffort.p25.ChannelKey;
+import org.anhonesteffort.p25.ChannelKeyMap;
 import org.anhonesteffort.p25.ImbeefConfig;
 import org.anhonesteffort.p25.CheckpointedDataUnit;
 import org.anhonesteffort.p25.ImbeefMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
 
-public class CallManager extends TimerTask {
+public class CallManager extends TimerTask implements CallProcessor {
 
   private static final Logger log = LoggerFactory.getLogger(CallManager.class);
-  private final ProtoP25Factory proto = new ProtoP25Factory();
+  private static final int STRIPE_COUNT = 64;
+  private static final int WHEEL_SIZE   = 64;
 
-  private final Map<String, CallPipeline> pipelines = new ConcurrentHashMap<>();
-  private final Object txnLock = new Object();
-  private final CallPipelineFactory factory;
+  private final ProtoP25Factory proto         = new ProtoP25Factory();
+  private final Stripe[]        stripes       = new Stripe[STRIPE_COUNT];
+  private final AtomicInteger   pipelineCount = new AtomicInteger(0);
+  private final AtomicLong      flushing      = new AtomicLong(0);
 
-  public CallManager(ImbeefConfig config, CallPipelineFactory factory) {
-    this.factory = factory;
+  private final CallPipelineFactory factory;
+  private final AudioBudget         memory;
+  private final Executor            flushPool;
+  private final ImbeefMetrics       metrics;
+  private final TimingWheel<Call>   timeouts;
+
+  public CallManager(ImbeefConfig        config,
+                     CallPipelineFactory factory,
+                     AudioBudget         memory,
+                     Executor            flushPool,
+                     ImbeefMetrics       metrics)
+  {
+    this.factory   = factory;
+    this.memory    = memory;
+    this.flushPool = flushPool;
+    this.metrics   = metrics;
+    long checkMs = (long) (1000 / config.getCallInactiveCheckRate());
+    timeouts     = new TimingWheel<>(checkMs, WHEEL_SIZE, System.currentTimeMillis());
+
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new Stripe();
+    }
 
-    new Timer(true).scheduleAtFixedRate(
-        this, 0, (long) (1000 / config.getCallInactiveCheckRate())
-    );
-    ImbeefMetrics.getInstance().registerCallManager(new Gauge<Integer>() {
+    new Timer(true).scheduleAtFixedRate(this, 0, checkMs);
+    metrics.registerCallManager(new Gauge<Integer>() {
       @Override
       public Integer getValue() {
-        return pipelines.size();
+        return pipelineCount.get();
       }
     });
   }
 
-  private String key(P25ChannelId channelId) {
-    return proto.toString(channelId);
+  public CallManager(ImbeefConfig config, CallPipelineFactory factory, ImbeefMetrics metrics) {
+    this(config, factory, new AudioBudget(0), Runnable::run, metrics);
+  }
+
+  private Stripe stripe(long high, long low) {
+    int hash = ChannelKey.hash(high, low);
+    return stripes[(hash >>> 16) & (stripes.length - 1)];
   }
 
+  @Override
   public void process(P25ChannelId channelId, CheckpointedDataUnit dataUnit) {
-    String key = key(channelId);
-    synchronized (txnLock) {
+    long   high   = ChannelKey.high(channelId);
+    long   low    = ChannelKey.low(channelId);
+    Stripe stripe = stripe(high, low);
+
+    synchronized (stripe) {
+      TimingWheel.Timeout<Call> timeout = stripe.pipelines.get(high, low);
+
+      if (timeout == null) {
+        log.info(proto.toString(channelId) + " creating new call pipeline");
+        CallPipeline pipeline = factory.create(channelId);
+        Call         call     = new Call(channelId, high, low, pipeline);
+
+        pipeline.consume(dataUnit);
+        stripe.pipelines.put(high, low, timeouts.schedule(call, pipeline.getInactiveTime()));
+        pipelineCount.incrementAndGet();
+      } else {
+        CallPipeline pipeline = timeout.getValue().pipeline;
+
+        pipeline.consume(dataUnit);
+        timeout.rearm(pipeline.getInactiveTime());
+      }
+    }
+  }
 
-      if (!pipelines.containsKey(key)) {
-        log.info(key + " creating new call pipeline");
-        pipelines.put(key, factory.create(channelId));
+  /**
+   * Only the map entry is removed under the stripe lock, the final encode and
+   * upload of the call happen outside of it so other channels on the stripe
+   * are not held up. No more data units can reach a removed pipeline.
+   */
+  private void expire(TimingWheel.Timeout<Call> timeout, long localTime) {
+    Call   call   = timeout.getValue();
+    Stripe stripe = stripe(call.high, call.low);
+
+    synchronized (stripe) {
+      if (stripe.pipelines.get(call.high, call.low) != timeout) {
+        return;
+      } else if (localTime <= call.pipeline.getInactiveTime()) {
+        timeouts.reschedule(timeout, Math.max(call.pipeline.getInactiveTime(), localTime));
+        return;
+      } else {
+        stripe.pipelines.remove(call.high, call.low);
+        pipelineCount.decrementAndGet();
       }
-      pipelines.get(key).consume(dataUnit);
+    }
 
+    metrics.inactivePipeline();
+    log.info(proto.toString(call.channelId) + " removing call pipeline for inactivity");
+    call.pipeline.isInactive(localTime);
+    call.pipeline.close();
+  }
+
+  private boolean isExceeded() {
+    return memory.getBytes() - flushing.get() >= memory.getMaxBytes();
+  }
+
+  private void flush(Flush flush) {
+    try {
+
+      flush.call.pipeline.flush();
+
+    } finally {
+      flushing.addAndGet(-flush.bytes);
+      flush.call.flushing.set(false);
+    }
+  }
+
+  /**
+   * Flushes the calls holding the most audio as partial files until buffered
+   * audio not already being flushed is back under budget. Flushes encode, so
+   * they run on the flush pool rather than holding up expiry on the timer.
+   */
+  private synchronized void flushLargest() {
+    List<Flush> flushes = new ArrayList<>();
+
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.pipelines.forEach(timeout -> flushes.add(new Flush(timeout.getValue())));
+      }
+    }
+
+    flushes.sort(Comparator.comparingLong((Flush flush) -> flush.bytes).reversed());
+
+    for (Flush flush : flushes) {
+      if (!isExceeded() || flush.bytes <= 0) {
+        break;
+      } else if (!flush.call.flushing.compareAndSet(false, true)) {
+        continue;
+      }
+
+      metrics.forcedFlush();
+      log.warn(proto.toString(flush.call.channelId) + " flushing " + flush.bytes + " bytes of buffered audio early");
+      flushing.addAndGet(flush.bytes);
+      flushPool.execute(() -> flush(flush));
     }
   }
 
   @Override
   public void run() {
-    synchronized (txnLock) {
-      List<CallPipeline> inactive =
-          pipelines.keySet()
-                   .stream()
-                   .map(pipelines::get)
-                   .filter(pipeline -> pipeline.isInactive(System.currentTimeMillis()))
-                   .collect(Collectors.toList());
-
-      inactive.forEach(pipeline -> {
-        String key = key(pipeline.getChannelId());
-        ImbeefMetrics.getInstance().inactivePipeline();
-        log.info(key + " removing call pipeline for inactivity");
-        pipelines.remove(key);
-      });
+    long localTime = System.currentTimeMillis();
+    timeouts.advance(localTime).forEach(timeout -> expire(timeout, localTime));
+
+    if (memory.isExceeded()) {
+      flushLargest();
+    }
+  }
+
+  private static class Call {
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    private final P25ChannelId channelId;
+    private final long         high;
+    private final long         low;
+    private final CallPipeline pipeline;
+
+    public Call(P25ChannelId channelId, long high, long low, CallPipeline pipeline) {
+      this.channelId = channelId;
+      this.high      = high;
+      this.low       = low;
+      this.pipeline  = pipeline;
     }
   }
 
+  private static class Flush {
+    private final Call call;
+    private final long bytes;
+
+    public Flush(Call call) {
+      this.call  = call;
+      this.bytes = call.pipeline.getBufferedBytes();
+    }
+  }
+
+  private static class Stripe {
+    private final ChannelKeyMap<TimingWheel.Timeout<Call>> pipelines = new ChannelKeyMap<>();
+  }
+
 }
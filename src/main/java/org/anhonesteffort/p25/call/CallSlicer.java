@@ -20,6 +20,9 @@ package org.anhonesteffort.p25.call;
 import io.radiowitness.proto.p25.ProtoP25Factory;
 import org.anhonesteffort.dsp.Sink;
 import org.anhonesteffort.dsp.Source;
+import org.anhonesteffort.p25.AudioBudget;
+import org.anhonesteffort.p25.AudioConverterPool;
+import org.anhonesteffort.p25.AudioBufferPool;
 import org.anhonesteffort.p25.CallPipeline;
 import org.anhonesteffort.p25.ImbeefConfig;
 import org.anhonesteffort.p25.CheckpointingAudioChunk;
@@ -34,9 +37,13 @@ import org.anhonesteffort.p25.protocol.frame.VoiceFrame;
 import org.anhonesteffort.p25.protocol.frame.linkcontrol.GroupVoiceUserLwc;
 import org.anhonesteffort.p25.protocol.frame.linkcontrol.LinkControlWord;
 import org.anhonesteffort.p25.protocol.frame.linkcontrol.UnitToUnitVoiceUserLwc;
+import org.anhonesteffort.p25.trace.CallSpan;
+import org.anhonesteffort.p25.trace.CallStage;
+import org.anhonesteffort.p25.trace.CallTrace;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 
 import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
@@ -48,60 +55,220 @@ public class CallSlicer
 
   private static final Logger log = LoggerFactory.getLogger(CallSlicer.class);
 
+  private static final int SAMPLES_PER_FRAME = 160;
+  private static final int IMBE_FRAME_BYTES  = 18;
+  private static final int BYTES_PER_FRAME   = IMBE_FRAME_BYTES + 1;
+  private static final int FRAMES_PER_LLDU   = 9;
+
   private final ProtoP25Factory proto   = new ProtoP25Factory();
   private final Object          txnLock = new Object();
   private final CallState       state   = new CallState();
 
-  private final ImbeefConfig       config;
-  private final P25ChannelId       channelId;
-  private final SafeAudioConverter converter;
+  private final ImbeefConfig        config;
+  private final P25ChannelId        channelId;
+  private final SafeAudioConverter  converter;
+  private final AudioConverterPool  converters;
+  private final AudioBufferPool     buffers;
+  private final AudioBudget.Account memory;
+  private final ImbeefMetrics       metrics;
 
   private FloatBuffer queue;
-  private long callInactiveTime = Long.MIN_VALUE;
+  private ByteBuffer  codewords;
+  private volatile long callInactiveTime = Long.MIN_VALUE;
+
+  private CallSlicer(ImbeefConfig        config,
+                     P25ChannelId        channelId,
+                     SafeAudioConverter  converter,
+                     AudioConverterPool  converters,
+                     AudioBufferPool     buffers,
+                     AudioBudget.Account memory,
+                     ImbeefMetrics       metrics)
+  {
+    this.config     = config;
+    this.channelId  = channelId;
+    this.converter  = converter;
+    this.converters = converters;
+    this.buffers    = buffers;
+    this.memory     = memory;
+    this.metrics    = metrics;
+  }
+
+  /**
+   * Decodes with a converter borrowed from the pool, returned on close().
+   */
+  public CallSlicer(ImbeefConfig        config,
+                    P25ChannelId        channelId,
+                    AudioConverterPool  converters,
+                    AudioBufferPool     buffers,
+                    AudioBudget.Account memory,
+                    ImbeefMetrics       metrics)
+  {
+    this(config, channelId, converters.acquire(), converters, buffers, memory, metrics);
+  }
+
+  public CallSlicer(ImbeefConfig        config,
+                    P25ChannelId        channelId,
+                    SafeAudioConverter  converter,
+                    AudioBufferPool     buffers,
+                    AudioBudget.Account memory,
+                    ImbeefMetrics       metrics)
+  {
+    this(config, channelId, converter, null, buffers, memory, metrics);
+  }
+
+  public CallSlicer(ImbeefConfig       config,
+                    P25ChannelId       channelId,
+                    SafeAudioConverter converter,
+                    AudioBufferPool    buffers,
+                    ImbeefMetrics      metrics)
+  {
+    this(config, channelId, converter, buffers, new AudioBudget(0).account(), metrics);
+  }
+
+  /**
+   * Slices calls into chunks of raw IMBE codewords, nothing is decoded.
+   */
+  public CallSlicer(ImbeefConfig        config,
+                    P25ChannelId        channelId,
+                    AudioBudget.Account memory,
+                    ImbeefMetrics       metrics)
+  {
+    this(config, channelId, null, null, null, memory, metrics);
+  }
+
+  public CallSlicer(ImbeefConfig config, P25ChannelId channelId, ImbeefMetrics metrics) {
+    this(config, channelId, new AudioBudget(0).account(), metrics);
+  }
+
+  private FloatBuffer acquireQueue() {
+    FloatBuffer buffer = buffers.acquire();
+    memory.allocate((long) buffer.capacity() * Float.BYTES);
+    return buffer;
+  }
+
+  /**
+   * Codeword chunks span as much audio as sample chunks do, each 160 sample
+   * frame is stored as an 18 byte FEC codeword plus its length.
+   */
+  private int maxCodewordBytes() {
+    return Math.max(1, config.getMaxAudioChunkSize() / SAMPLES_PER_FRAME) * BYTES_PER_FRAME;
+  }
 
-  public CallSlicer(ImbeefConfig config, P25ChannelId channelId, SafeAudioConverter converter) {
-    this.config    = config;
-    this.channelId = channelId;
-    this.converter = converter;
-    queue          = FloatBuffer.allocate(config.getMaxAudioChunkSize());
+  private ByteBuffer allocateCodewords(int capacity) {
+    memory.allocate(capacity);
+    return ByteBuffer.allocate(capacity);
+  }
+
+  private ByteBuffer growCodewords(ByteBuffer words) {
+    ByteBuffer grown = allocateCodewords(Math.min(maxCodewordBytes(), words.capacity() * 2));
+
+    words.flip();
+    grown.put(words);
+    memory.free(words.capacity());
+
+    return grown;
+  }
+
+  private void send(CheckpointingAudioChunk chunk) {
+    int samples = chunk.getBuffer().remaining();
+    int bytes   = (samples * Float.BYTES) + chunk.getCodewords().remaining();
+
+    memory.free(chunk.getAllocatedBytes());
+    CallSpan event = CallTrace.begin(CallStage.CHUNK_BROADCAST);
+    broadcast(chunk);
+    event.commit(channelId, samples, bytes);
+  }
+
+  private void broadcastCodewords(boolean isLast, boolean terminated) {
+    ByteBuffer words = (codewords != null) ? codewords : ByteBuffer.allocate(0);
+
+    words.flip();
+    send(new CheckpointingAudioChunk(
+        channelId, state.isFirst(), isLast, terminated, state.getEarliestRemoteTime(),
+        state.getLatestRemoteTime(), state.getLatitude(), state.getLongitude(),
+        state.getSourceId(), words, state.getCheckpoints()
+    ));
+
+    codewords = null;
+  }
+
+  private void queueCodewords(LogicalLinkDataUnit lldu) {
+    int initial = Math.min(maxCodewordBytes(), FRAMES_PER_LLDU * BYTES_PER_FRAME);
+
+    for (VoiceFrame frame : lldu.getVoiceFrames()) {
+      byte[] bytes = frame.getBytes();
+
+      if (codewords == null) {
+        codewords = allocateCodewords(initial);
+      }
+      if (codewords.remaining() < bytes.length + 1 && codewords.capacity() < maxCodewordBytes()) {
+        codewords = growCodewords(codewords);
+      }
+      if (codewords.remaining() < bytes.length + 1) {
+        broadcastCodewords(false, false);
+        codewords = allocateCodewords(initial);
+        state.nextChunk();
+      }
+
+      codewords.put((byte) bytes.length);
+      codewords.put(bytes);
+    }
   }
 
   private void queueOrBroadcast(LogicalLinkDataUnit lldu) {
-    for (VoiceFrame voiceFrame : lldu.getVoiceFrames()) {
-      float[] audio = converter.decode(voiceFrame.getBytes());
-      if (queue.remaining() >= audio.length) {
-        queue.put(audio);
-      } else {
+    if (converter == null) {
+      queueCodewords(lldu);
+      return;
+    }
+
+    VoiceFrame[] frames  = lldu.getVoiceFrames();
+    int          decoded = 0;
+
+    while (decoded < frames.length || converter.hasPending()) {
+      if (queue == null) {
+        queue = acquireQueue();
+      }
+
+      decoded = converter.decode(frames, decoded, queue);
+
+      if (decoded < frames.length || converter.hasPending()) {
         queue.flip();
-        broadcast(new CheckpointingAudioChunk(
+        send(new CheckpointingAudioChunk(
             channelId, state.isFirst(), false, false, state.getEarliestRemoteTime(),
             state.getLatestRemoteTime(), state.getLatitude(), state.getLongitude(),
-            state.getSourceId(), queue, state.getCheckpoints()
+            state.getSourceId(), queue, state.getCheckpoints(), buffers
         ));
 
-        queue = FloatBuffer.allocate(config.getMaxAudioChunkSize());
+        queue = acquireQueue();
         state.nextChunk();
-        queue.put(audio);
       }
     }
   }
 
   private void handlePrepareNextCall(boolean terminated) {
-    queue.flip();
-    broadcast(new CheckpointingAudioChunk(
+    if (converter == null) {
+      broadcastCodewords(true, terminated);
+      state.nextCall();
+      return;
+    }
+
+    FloatBuffer audio = (queue != null) ? queue : FloatBuffer.allocate(0);
+
+    audio.flip();
+    send(new CheckpointingAudioChunk(
         channelId, state.isFirst(), true, terminated, state.getEarliestRemoteTime(),
         state.getLatestRemoteTime(), state.getLatitude(), state.getLongitude(),
-        state.getSourceId(), queue, state.getCheckpoints()
+        state.getSourceId(), audio, state.getCheckpoints(), buffers
     ));
 
-    queue = FloatBuffer.allocate(config.getMaxAudioChunkSize());
+    queue = null;
     state.nextCall();
   }
 
   private void handleCheckTerminateTimeout(CheckpointedDataUnit dataUnit) {
     long remoteTimeDiff = dataUnit.getTimestamp() - state.getLatestRemoteTime();
     if (state.getLatestRemoteTime() > 0 && remoteTimeDiff > config.getTerminatorTimeoutMs()) {
-      ImbeefMetrics.getInstance().terminateTimeout();
+      metrics.terminateTimeout();
       log.warn(proto.toString(channelId) + " timed out waiting for terminating data unit");
       handlePrepareNextCall(false);
     }
@@ -115,11 +282,11 @@ public class CallSlicer
       handleCheckTerminateTimeout(dataUnit);
 
       state.coordinates(dataUnit.getLatitude(), dataUnit.getLongitude());
-      state.addCheckpoint(dataUnit.getCheckpointer());
+      state.addCheckpoint(dataUnit.getCheckpoint());
 
       switch (dataUnit.getDataUnit().getNid().getDuid().getId()) {
         case Duid.ID_HEADER:
-          ImbeefMetrics.getInstance().headerDataUnit();
+          metrics.headerDataUnit();
           handlePrepareNextCall(false);
           state.setIsEncrypted(((HeaderDataUnit) dataUnit.getDataUnit()).getAlgorithmId() != 0x80);
           state.setEarliestRemoteTimeIfLess(dataUnit.getTimestamp());
@@ -131,10 +298,10 @@ public class CallSlicer
           state.setEarliestRemoteTimeIfLess(dataUnit.getTimestamp());
 
           if (!state.isEncrypted()) {
-            ImbeefMetrics.getInstance().unencryptedVoice();
+            metrics.unencryptedVoice();
             queueOrBroadcast(lldu2);
           } else {
-            ImbeefMetrics.getInstance().encryptedVoice();
+            metrics.encryptedVoice();
           }
           break;
 
@@ -154,15 +321,15 @@ public class CallSlicer
           }
 
           if (!state.isEncrypted()) {
-            ImbeefMetrics.getInstance().unencryptedVoice();
+            metrics.unencryptedVoice();
             queueOrBroadcast(lldu1);
           } else {
-            ImbeefMetrics.getInstance().encryptedVoice();
+            metrics.encryptedVoice();
           }
           break;
 
         case Duid.ID_TERMINATOR_WO_LINK:
-          ImbeefMetrics.getInstance().terminatorDataUnit();
+          metrics.terminatorDataUnit();
           state.setEarliestRemoteTimeIfLess(dataUnit.getTimestamp());
           handlePrepareNextCall(true);
           break;
@@ -170,6 +337,11 @@ public class CallSlicer
     }
   }
 
+  @Override
+  public long getInactiveTime() {
+    return callInactiveTime;
+  }
+
   @Override
   public boolean isInactive(long localTime) {
     synchronized (txnLock) {
@@ -182,6 +354,27 @@ public class CallSlicer
     }
   }
 
+  @Override
+  public long getBufferedBytes() {
+    return memory.getBytes();
+  }
+
+  @Override
+  public void flush() {
+    synchronized (txnLock) {
+      if (memory.getBytes() > 0) {
+        handlePrepareNextCall(false);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    if (converters != null) {
+      converters.release(converter);
+    }
+  }
+
   @Override
   public P25ChannelId getChannelId() {
     return channelId;
@@ -17,15 +17,15 @@
 
 package org.anhonesteffort.p25.call;
 
-import io.radiowitness.kinesis.consumer.Checkpointer;
+import org.anhonesteffort.p25.Checkpoint;
 import org.anhonesteffort.p25.P25Config;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.ArrayList;
+import java.util.List;
 
 public class CallState {
 
-  private Queue<Checkpointer> checkpoints = new ConcurrentLinkedQueue<>();
+  private List<Checkpoint> checkpoints = new ArrayList<>(1);
 
   private boolean isFirst     = true;
   private boolean isEncrypted = false;
@@ -40,7 +40,7 @@ public class CallState {
     isFirst            = false;
     earliestRemoteTime = Long.MAX_VALUE;
     latestRemoteTime   = Long.MIN_VALUE;
-    checkpoints        = new ConcurrentLinkedQueue<>();
+    checkpoints        = new ArrayList<>(1);
   }
 
   public void nextCall() {
@@ -51,7 +51,7 @@ public class CallState {
     sourceId           = P25Config.UNIT_ID_NONE;
     earliestRemoteTime = Long.MAX_VALUE;
     latestRemoteTime   = Long.MIN_VALUE;
-    checkpoints        = new ConcurrentLinkedQueue<>();
+    checkpoints        = new ArrayList<>(1);
   }
 
   public boolean isFirst() {
@@ -109,11 +109,24 @@ public class CallState {
     }
   }
 
-  public void addCheckpoint(Checkpointer check) {
+  /**
+   * Folds check into a checkpoint the chunk already holds where possible, so a
+   * chunk keeps one checkpoint per shard rather than one per data unit.
+   */
+  public void addCheckpoint(Checkpoint check) {
+    for (int i = 0; i < checkpoints.size(); i++) {
+      Checkpoint merged = checkpoints.get(i).merge(check);
+
+      if (merged != null) {
+        checkpoints.set(i, merged);
+        return;
+      }
+    }
+
     checkpoints.add(check);
   }
 
-  public Queue<Checkpointer> getCheckpoints() {
+  public List<Checkpoint> getCheckpoints() {
     return checkpoints;
   }
 
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.call;
+
+import com.codahale.metrics.Gauge;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.anhonesteffort.p25.ChannelKey;
+import org.anhonesteffort.p25.CheckpointedDataUnit;
+import org.anhonesteffort.p25.ImbeefConfig;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+
+/**
+ * Hands data units off from KCL record processor threads to a fixed set of worker
+ * threads, each channel always lands on the same worker so per channel order is
+ * kept. Queues are bounded, a full queue blocks the calling record processor.
+ */
+public class ChannelWorkerPool implements CallProcessor {
+
+  private static final Logger log = LoggerFactory.getLogger(ChannelWorkerPool.class);
+  private final SettableFuture<Void> error = SettableFuture.create();
+
+  private final CallProcessor callProcessor;
+  private final Worker[]      workers;
+
+  public ChannelWorkerPool(ImbeefConfig config, CallProcessor callProcessor, ImbeefMetrics metrics) {
+    this.callProcessor = callProcessor;
+    workers            = new Worker[config.getWorkerCount()];
+
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = new Worker(i, config.getWorkerQueueSize());
+      workers[i].start();
+    }
+
+    metrics.registerChannelWorkers(new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        int depth = 0;
+        for (Worker worker : workers) {
+          depth += worker.queue.size();
+        }
+        return depth;
+      }
+    });
+  }
+
+  public ListenableFuture<Void> getErrorFuture() {
+    return error;
+  }
+
+  @Override
+  public void process(P25ChannelId channelId, CheckpointedDataUnit dataUnit) {
+    int    hash   = ChannelKey.hash(ChannelKey.high(channelId), ChannelKey.low(channelId));
+    Worker worker = workers[Integer.remainderUnsigned(hash, workers.length)];
+
+    try {
+
+      worker.queue.put(new Work(channelId, dataUnit));
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("interrupted while queueing data unit", e);
+    }
+  }
+
+  public void shutdown() {
+    for (Worker worker : workers) {
+      worker.interrupt();
+    }
+  }
+
+  private static class Work {
+    private final P25ChannelId         channelId;
+    private final CheckpointedDataUnit dataUnit;
+
+    private Work(P25ChannelId channelId, CheckpointedDataUnit dataUnit) {
+      this.channelId = channelId;
+      this.dataUnit  = dataUnit;
+    }
+  }
+
+  private class Worker extends Thread {
+    private final BlockingQueue<Work> queue;
+
+    private Worker(int index, int queueSize) {
+      super("channel-worker-" + index);
+      setDaemon(true);
+      queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    @Override
+    public void run() {
+      try {
+
+        while (!isInterrupted()) {
+          Work work = queue.take();
+          callProcessor.process(work.channelId, work.dataUnit);
+        }
+
+      } catch (InterruptedException e) {
+        log.info(getName() + " interrupted, exiting");
+      } catch (Throwable e) {
+        log.error(getName() + " failed processing data unit", e);
+        error.setException(e);
+      }
+    }
+  }
+
+}
@@ -18,18 +18,43 @@
 package org.anhonesteffort.p25.call;
 
 import org.anhonesteffort.jmbe.iface.AudioConverter;
+import org.anhonesteffort.p25.protocol.frame.VoiceFrame;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
 public class SafeAudioConverter {
 
-  private static final Logger log = LoggerFactory.getLogger(SafeAudioConverter.class);
+  private static final Logger  log     = LoggerFactory.getLogger(SafeAudioConverter.class);
+  private static final float[] SILENCE = new float[10];
+
+  private static final int    IMBE_FRAME_BYTES = 18;
+  private static final int    PRIMING_FRAMES   = 4;
+  private static final byte[] MUTE_FRAME       = muteFrame();
+
   private final AudioConverter audioConverter;
+  private       float[]        pending;
+  private       int            pendingOffset;
 
   public SafeAudioConverter(AudioConverter audioConverter) {
     this.audioConverter = audioConverter;
   }
 
+  /**
+   * An 18 byte FEC codeword of all ones. Its Golay protected first vector is
+   * a valid codeword whatever the interleave and carries a pitch index of 255,
+   * which IMBE reserves as invalid. The vocoder answers a run of invalid frames
+   * by muting and reinitialising its model parameters, the state a new
+   * decoder starts in.
+   */
+  private static byte[] muteFrame() {
+    byte[] frame = new byte[IMBE_FRAME_BYTES];
+    Arrays.fill(frame, (byte) 0xFF);
+    return frame;
+  }
+
   public float[] decode(byte[] bytes) {
     try {
 
@@ -39,7 +64,98 @@ public class SafeAudioConverter {
       log.error("this is why I did this", e);
     }
 
-    return new float[10];
+    return SILENCE;
+  }
+
+  public boolean hasPending() {
+    return pending != null;
+  }
+
+  /**
+   * Writes the pending frame only once it fits whole. A buffer too small to
+   * ever hold a frame gets as much as fits and the rest stays pending, no
+   * samples are dropped either way.
+   */
+  private boolean putPending(FloatBuffer out) {
+    int length = pending.length - pendingOffset;
+
+    if (out.remaining() < length && out.position() > 0) {
+      return false;
+    } else if (out.remaining() < length) {
+      int put = out.remaining();
+      out.put(pending, pendingOffset, put);
+      pendingOffset += put;
+      return false;
+    }
+
+    out.put(pending, pendingOffset, length);
+    pending       = null;
+    pendingOffset = 0;
+    return true;
+  }
+
+  /**
+   * Decodes frames[offset..] into out until it is full, batching the frames of
+   * a data unit into the caller's buffer. jmbe still returns a new array per
+   * frame which is copied in. A decoded frame that does not fit is held as
+   * pending and written first on the next call, the decoder is stateful so a
+   * frame is never decoded twice.
+   * @return index of the first frame not yet decoded.
+   */
+  public int decode(VoiceFrame[] frames, int offset, FloatBuffer out) {
+    if (pending != null && !putPending(out)) {
+      return offset;
+    }
+
+    for (int i = offset; i < frames.length; i++) {
+      float[] audio = decode(frames[i].getBytes());
+
+      if (out.remaining() >= audio.length) {
+        out.put(audio);
+      } else {
+        pending = audio;
+        return i + 1;
+      }
+    }
+
+    return frames.length;
+  }
+
+  /**
+   * Decodes and discards more mute frames than the vocoder will repeat over.
+   * jmbe carries state from frame to frame, priming leaves it the same
+   * whichever call the converter last decoded.
+   */
+  public void prime() {
+    try {
+
+      for (int i = 0; i < PRIMING_FRAMES; i++) {
+        audioConverter.decode(MUTE_FRAME);
+      }
+
+    } catch (Throwable e) {
+      log.warn("error priming audio converter", e);
+    }
+  }
+
+  /**
+   * Drops any pending frame and primes the decoder so the converter can be
+   * handed to another call.
+   */
+  public void reset() {
+    pending       = null;
+    pendingOffset = 0;
+    prime();
+  }
+
+  public void dispose() {
+    try {
+
+      audioConverter.dispose();
+
+    } catch (Throwable e) {
+      log.error("error disposing audio converter", e);
+    }
   }
 
 }
@@ -24,11 +24,12 @@ public class SaneCallFilter extends Filter<CheckpointingAudioChunk> {
 
   @Override
   public void consume(CheckpointingAudioChunk audioChunk) {
-    if (audioChunk.getBuffer().remaining() > 0) {
+    if (!audioChunk.isEmpty()) {
       broadcast(audioChunk);
     } else if (!audioChunk.isFirst() && audioChunk.isLast()) {
       broadcast(audioChunk);
     } else {
+      audioChunk.release();
       audioChunk.checkpoint();
     }
   }
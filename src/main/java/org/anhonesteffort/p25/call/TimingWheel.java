@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.call;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel, level n has a tick of tickMs * wheelSize^n and
+ * levels are added as far out deadlines require them. Timeouts are re-armed
+ * lazily: {@link Timeout#rearm(long)} only writes the new deadline and the
+ * timeout is moved to the right bucket when its old bucket is flushed, so
+ * re-arming must only ever push a deadline later. Deadlines past the horizon
+ * of the top level are parked at the horizon and re-placed from there.
+ */
+public class TimingWheel<T> {
+
+  private final List<Timeout<T>[]> levels = new ArrayList<>();
+  private final long tickMs;
+  private final int  wheelSize;
+  private final long horizonMs;
+  private       long currentTime;
+
+  public TimingWheel(long tickMs, int wheelSize, long startTime) {
+    if (tickMs <= 0 || wheelSize < 2) {
+      throw new IllegalArgumentException("tickMs must be > 0 and wheelSize must be > 1");
+    }
+
+    this.tickMs    = tickMs;
+    this.wheelSize = wheelSize;
+    currentTime    = startTime - (startTime % tickMs);
+
+    long topTick = tickMs;
+    while (topTick <= Long.MAX_VALUE / 4 / wheelSize / wheelSize) {
+      topTick *= wheelSize;
+    }
+    horizonMs = topTick * (wheelSize - 1);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> Timeout<T>[] buckets(int size) {
+    return (Timeout<T>[]) new Timeout<?>[size];
+  }
+
+  private Timeout<T>[] level(int level) {
+    while (levels.size() <= level) {
+      levels.add(buckets(wheelSize));
+    }
+    return levels.get(level);
+  }
+
+  private long tick(int level) {
+    long tick = tickMs;
+    for (int i = 0; i < level; i++) {
+      tick *= wheelSize;
+    }
+    return tick;
+  }
+
+  private void place(Timeout<T> timeout) {
+    long deadline = Math.min(Math.max(timeout.deadline, currentTime), currentTime + horizonMs);
+
+    if (deadline < currentTime + (tickMs * wheelSize)) {
+      Timeout<T>[] buckets = level(0);
+      int          index   = (int) ((deadline / tickMs) % wheelSize);
+
+      timeout.next   = buckets[index];
+      buckets[index] = timeout;
+      return;
+    }
+
+    for (int level = 1; ; level++) {
+      long tick  = tick(level);
+      long start = currentTime - (currentTime % tick);
+
+      if (deadline < start + (tick * wheelSize)) {
+        Timeout<T>[] buckets = level(level);
+        int          index   = (int) ((deadline / tick) % wheelSize);
+
+        timeout.next   = buckets[index];
+        buckets[index] = timeout;
+        return;
+      }
+    }
+  }
+
+  private void flush(int level, long time, long now, List<Timeout<T>> expired) {
+    Timeout<T>[] buckets = levels.get(level);
+    int          index   = (int) ((time / tick(level)) % wheelSize);
+    Timeout<T>   timeout = buckets[index];
+
+    buckets[index] = null;
+
+    while (timeout != null) {
+      Timeout<T> next = timeout.next;
+      timeout.next = null;
+
+      if (timeout.cancelled) {
+        timeout.scheduled = false;
+      } else if (timeout.deadline <= now) {
+        timeout.scheduled = false;
+        expired.add(timeout);
+      } else {
+        place(timeout);
+      }
+
+      timeout = next;
+    }
+  }
+
+  public synchronized Timeout<T> schedule(T value, long deadline) {
+    Timeout<T> timeout = new Timeout<>(value, deadline);
+    reschedule(timeout, deadline);
+    return timeout;
+  }
+
+  public synchronized void reschedule(Timeout<T> timeout, long deadline) {
+    if (timeout.scheduled) {
+      throw new IllegalStateException("timeout is already scheduled");
+    }
+
+    timeout.deadline  = deadline;
+    timeout.cancelled = false;
+    timeout.scheduled = true;
+    place(timeout);
+  }
+
+  public synchronized List<Timeout<T>> advance(long now) {
+    List<Timeout<T>> expired = new LinkedList<>();
+
+    while (currentTime <= now) {
+      long time = currentTime;
+      currentTime += tickMs;
+
+      for (int level = levels.size() - 1; level >= 0; level--) {
+        if (time % tick(level) == 0) {
+          flush(level, time, now, expired);
+        }
+      }
+    }
+
+    return expired;
+  }
+
+  public static class Timeout<T> {
+    private final    T          value;
+    private volatile long       deadline;
+    private volatile boolean    cancelled = false;
+    private          boolean    scheduled = false;
+    private          Timeout<T> next;
+
+    private Timeout(T value, long deadline) {
+      this.value    = value;
+      this.deadline = deadline;
+    }
+
+    public T getValue() {
+      return value;
+    }
+
+    public long getDeadline() {
+      return deadline;
+    }
+
+    public void rearm(long deadline) {
+      this.deadline = deadline;
+    }
+
+    public void cancel() {
+      cancelled = true;
+    }
+
+    public boolean isCancelled() {
+      return cancelled;
+    }
+  }
+
+}
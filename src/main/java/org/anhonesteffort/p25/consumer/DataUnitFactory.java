@@ -26,6 +26,9 @@ import org.anhonesteffort.p25.protocol.frame.LogicalLinkDataUnit1;
 import org.anhonesteffort.p25.protocol.frame.LogicalLinkDataUnit2;
 import org.anhonesteffort.p25.protocol.frame.SimpleTerminatorDataUnit;
 import org.anhonesteffort.p25.protocol.frame.TrunkSignalDataUnit;
+import org.anhonesteffort.p25.trace.CallSpan;
+import org.anhonesteffort.p25.trace.CallStage;
+import org.anhonesteffort.p25.trace.CallTrace;
 
 import java.nio.ByteBuffer;
 
@@ -37,10 +40,7 @@ public class DataUnitFactory {
     return new Nid(dataUnit.getNac(), new Duid(dataUnit.getDuid()), true);
   }
 
-  public DataUnit create(P25DataUnit dataUnit) {
-    Nid        nid    = nid(dataUnit);
-    ByteBuffer buffer = ByteBuffer.wrap(dataUnit.getBytes().toByteArray());
-
+  private DataUnit parse(Nid nid, ByteBuffer buffer) {
     switch (nid.getDuid().getId()) {
       case Duid.ID_HEADER:
         return new HeaderDataUnit(nid, buffer);
@@ -65,4 +65,14 @@ public class DataUnitFactory {
     }
   }
 
+  public DataUnit create(P25DataUnit dataUnit) {
+    CallSpan   event  = CallTrace.begin(CallStage.DATA_UNIT_PARSE);
+    Nid        nid    = nid(dataUnit);
+    ByteBuffer buffer = ByteBuffer.wrap(dataUnit.getBytes().toByteArray());
+    DataUnit   parsed = parse(nid, buffer);
+
+    event.commit(dataUnit.getChannelId(), 0, buffer.capacity());
+    return parsed;
+  }
+
 }
@@ -22,9 +22,14 @@ import com.google.common.util.concurrent.SettableFuture;
 import io.radiowitness.kinesis.consumer.Checkpointer;
 import io.radiowitness.kinesis.consumer.KinesisRecordConsumer;
 import io.radiowitness.proto.p25.ProtoP25Factory;
-import org.anhonesteffort.p25.call.CallManager;
+import org.anhonesteffort.p25.call.CallProcessor;
+import org.anhonesteffort.p25.Checkpoint;
 import org.anhonesteffort.p25.CheckpointedDataUnit;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.anhonesteffort.p25.UploadBudget;
 import org.anhonesteffort.p25.protocol.frame.DataUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Optional;
@@ -35,17 +40,52 @@ import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
 
 public class KinesisP25Consumer extends KinesisRecordConsumer {
 
+  private static final Logger log = LoggerFactory.getLogger(KinesisP25Consumer.class);
   private final ProtoP25Factory proto = new ProtoP25Factory();
-  private final DataUnitFactory factory;
-  private final CallManager     callManager;
+
+  private final DataUnitFactory   factory;
+  private final CallProcessor     callProcessor;
+  private final UploadBudget      uploads;
+  private final ShardCheckpointer checkpoints;
+  private final RecordFileWriter  recorder;
+  private final ImbeefMetrics     metrics;
 
   public KinesisP25Consumer(SettableFuture<ShutdownReason> shutdown,
                             DataUnitFactory                factory,
-                            CallManager                    callManager)
+                            CallProcessor                  callProcessor,
+                            UploadBudget                   uploads,
+                            ShardCheckpointer              checkpoints,
+                            RecordFileWriter               recorder,
+                            ImbeefMetrics                  metrics)
   {
     super(shutdown);
-    this.factory     = factory;
-    this.callManager = callManager;
+    this.factory       = factory;
+    this.callProcessor = callProcessor;
+    this.uploads       = uploads;
+    this.checkpoints   = checkpoints;
+    this.recorder      = recorder;
+    this.metrics       = metrics;
+  }
+
+  public KinesisP25Consumer(SettableFuture<ShutdownReason> shutdown,
+                            DataUnitFactory                factory,
+                            CallProcessor                  callProcessor,
+                            UploadBudget                   uploads,
+                            ShardCheckpointer              checkpoints,
+                            ImbeefMetrics                  metrics)
+  {
+    this(shutdown, factory, callProcessor, uploads, checkpoints, null, metrics);
+  }
+
+  public KinesisP25Consumer(SettableFuture<ShutdownReason> shutdown,
+                            DataUnitFactory                factory,
+                            CallProcessor                  callProcessor,
+                            ImbeefMetrics                  metrics)
+  {
+    this(
+        shutdown, factory, callProcessor,
+        new UploadBudget(0, 0, metrics), new ShardCheckpointer(metrics), metrics
+    );
   }
 
   @Override
@@ -53,9 +93,36 @@ public class KinesisP25Consumer extends KinesisRecordConsumer {
     return Optional.of(Type.P25_DATA_UNIT);
   }
 
+  private void record(BaseMessage message) {
+    try {
+
+      recorder.write(System.currentTimeMillis(), message.toByteArray());
+
+    } catch (IOException e) {
+      log.error("error recording message", e);
+    }
+  }
+
   @Override
-  protected void process(BaseMessage message, Checkpointer checkpointer) throws RuntimeException {
-    P25ChannelId channelId = message.getP25DataUnit().getChannelId();
+  protected void process(BaseMessage message, Checkpointer record) throws RuntimeException {
+    if (recorder != null) {
+      record(message);
+    }
+
+    metrics.ingestLag(System.currentTimeMillis() - message.getTimeMs());
+
+    try {
+
+      uploads.awaitAvailable();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      shutdown.setException(e);
+      return;
+    }
+
+    Checkpoint   checkpoint = checkpoints.track(record);
+    P25ChannelId channelId  = message.getP25DataUnit().getChannelId();
 
     switch (channelId.getType()) {
       case TRAFFIC_DIRECT:
@@ -63,9 +130,9 @@ public class KinesisP25Consumer extends KinesisRecordConsumer {
         DataUnit dataUnit = factory.create(message.getP25DataUnit());
 
         if (dataUnit.isIntact()) {
-          callManager.process(channelId, new CheckpointedDataUnit(
+          callProcessor.process(channelId, new CheckpointedDataUnit(
               message.getTimeMs(), message.getP25DataUnit().getLatitude(),
-              message.getP25DataUnit().getLongitude(), dataUnit, checkpointer
+              message.getP25DataUnit().getLongitude(), dataUnit, checkpoint
           ));
         } else {
           shutdown.setException(new IOException(
@@ -75,7 +142,7 @@ public class KinesisP25Consumer extends KinesisRecordConsumer {
         break;
 
       default:
-        checkpointer.checkpoint();
+        checkpoint.checkpoint();
     }
   }
 
@@ -19,22 +19,57 @@ package org.anhonesteffort.p25.consumer;
 
 import com.amazonaws.services.kinesis.clientlibrary.types.ShutdownReason;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.radiowitness.kinesis.consumer.KinesisRecordConsumer;
 import io.radiowitness.kinesis.consumer.KinesisRecordConsumerFactory;
-import org.anhonesteffort.p25.call.CallManager;
+import org.anhonesteffort.p25.ImbeefConfig;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.anhonesteffort.p25.UploadBudget;
+import org.anhonesteffort.p25.call.CallProcessor;
+
+import java.util.Timer;
 
 public class KinesisP25ConsumerFactory extends KinesisRecordConsumerFactory {
 
   private final DataUnitFactory factory = new DataUnitFactory();
-  private final CallManager callManager;
+  private final Timer           timer   = new Timer(true);
+
+  private final ImbeefConfig     config;
+  private final CallProcessor    callProcessor;
+  private final UploadBudget     uploads;
+  private final RecordFileWriter recorder;
+  private final ImbeefMetrics    metrics;
+
+  public KinesisP25ConsumerFactory(ImbeefConfig     config,
+                                   CallProcessor    callProcessor,
+                                   UploadBudget     uploads,
+                                   RecordFileWriter recorder,
+                                   ImbeefMetrics    metrics)
+  {
+    this.config        = config;
+    this.callProcessor = callProcessor;
+    this.uploads       = uploads;
+    this.recorder      = recorder;
+    this.metrics       = metrics;
+  }
 
-  public KinesisP25ConsumerFactory(CallManager callManager) {
-    this.callManager = callManager;
+  public KinesisP25ConsumerFactory(ImbeefConfig  config,
+                                   CallProcessor callProcessor,
+                                   UploadBudget  uploads,
+                                   ImbeefMetrics metrics)
+  {
+    this(config, callProcessor, uploads, null, metrics);
   }
 
   @Override
   protected KinesisRecordConsumer create(SettableFuture<ShutdownReason> shutdown) {
-    return new KinesisP25Consumer(shutdown, factory, callManager);
+    ShardCheckpointer checkpoints = new ShardCheckpointer(metrics);
+    long              intervalMs  = config.getCheckpointIntervalMs();
+
+    timer.scheduleAtFixedRate(checkpoints, intervalMs, intervalMs);
+    shutdown.addListener(checkpoints::close, MoreExecutors.directExecutor());
+
+    return new KinesisP25Consumer(shutdown, factory, callProcessor, uploads, checkpoints, recorder, metrics);
   }
 
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.consumer;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static io.radiowitness.proto.Proto.BaseMessage;
+
+/**
+ * Reads a file written by {@link RecordFileWriter}. A record cut short by the
+ * writer dying mid write is treated as the end of the file.
+ */
+public class RecordFileReader implements Closeable {
+
+  private final DataInputStream in;
+
+  public RecordFileReader(Path path) throws IOException {
+    in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), RecordFileWriter.BUFFER_SIZE));
+
+    byte[] magic = new byte[RecordFileWriter.MAGIC.length];
+    in.readFully(magic);
+
+    if (!Arrays.equals(magic, RecordFileWriter.MAGIC)) {
+      in.close();
+      throw new IOException(path + " is not a record file");
+    }
+
+    byte version = in.readByte();
+    if (version != RecordFileWriter.VERSION) {
+      in.close();
+      throw new IOException("unsupported record file version " + version);
+    }
+  }
+
+  public static class Record {
+    private final long   arrivalMs;
+    private final byte[] bytes;
+
+    public Record(long arrivalMs, byte[] bytes) {
+      this.arrivalMs = arrivalMs;
+      this.bytes     = bytes;
+    }
+
+    public long getArrivalMs() {
+      return arrivalMs;
+    }
+
+    public byte[] getBytes() {
+      return bytes;
+    }
+
+    public BaseMessage getMessage() throws IOException {
+      return BaseMessage.parseFrom(bytes);
+    }
+  }
+
+  public Optional<Record> next() throws IOException {
+    try {
+
+      long   arrivalMs = in.readLong();
+      byte[] bytes     = new byte[in.readInt()];
+
+      in.readFully(bytes);
+      return Optional.of(new Record(arrivalMs, bytes));
+
+    } catch (EOFException e) {
+      return Optional.empty();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.consumer;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Appends the records a consumer sees to a local file for later replay by
+ * {@link RecordReplayer}. After a four byte magic and a version byte each record
+ * is its local arrival time in millis, a four byte length and the serialized
+ * BaseMessage. Shared by every consumer in the process.
+ */
+public class RecordFileWriter implements Closeable {
+
+  public static final byte[] MAGIC       = "IMBR".getBytes(StandardCharsets.US_ASCII);
+  public static final byte   VERSION     = 1;
+  public static final int    BUFFER_SIZE = 64 * 1024;
+
+  private final DataOutputStream out;
+  private       boolean          closed = false;
+
+  public RecordFileWriter(Path path) throws IOException {
+    out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+    out.write(MAGIC);
+    out.writeByte(VERSION);
+  }
+
+  public synchronized void write(long arrivalMs, byte[] record) throws IOException {
+    if (!closed) {
+      out.writeLong(arrivalMs);
+      out.writeInt(record.length);
+      out.write(record);
+    }
+  }
+
+  public synchronized void flush() throws IOException {
+    if (!closed) {
+      out.flush();
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      out.close();
+    }
+  }
+
+}
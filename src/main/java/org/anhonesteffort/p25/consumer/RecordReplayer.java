@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.consumer;
+
+import com.amazonaws.services.kinesis.clientlibrary.types.ShutdownReason;
+import com.google.common.util.concurrent.SettableFuture;
+import io.radiowitness.kinesis.consumer.Checkpointer;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pushes a recorded file through a consumer from the given factory as if
+ * it were one shard. With a speed of 1 records are replayed at the pace
+ * they arrived, 2 at twice that and 0 as fast as the consumer takes them.
+ */
+public class RecordReplayer {
+
+  private static final Checkpointer NONE = () -> { };
+
+  private final KinesisP25ConsumerFactory factory;
+  private final double                    speed;
+
+  public RecordReplayer(KinesisP25ConsumerFactory factory, double speed) {
+    this.factory = factory;
+    this.speed   = speed;
+  }
+
+  /**
+   * @return count of records replayed.
+   */
+  public long replay(RecordFileReader reader) throws IOException {
+    SettableFuture<ShutdownReason> shutdown = SettableFuture.create();
+    KinesisP25Consumer             consumer = (KinesisP25Consumer) factory.create(shutdown);
+    long                           start    = System.nanoTime();
+    long                           first    = -1;
+    long                           count    = 0;
+
+    try {
+
+      for (Optional<RecordFileReader.Record> record = reader.next();
+           record.isPresent() && !shutdown.isDone();
+           record = reader.next())
+      {
+        if (first < 0) {
+          first = record.get().getArrivalMs();
+        }
+
+        if (speed > 0) {
+          long due = start + (long) (((record.get().getArrivalMs() - first) * 1_000_000d) / speed);
+          LockSupport.parkNanos(due - System.nanoTime());
+        }
+
+        consumer.process(record.get().getMessage(), NONE);
+        count++;
+      }
+
+    } finally {
+      if (!shutdown.isDone()) {
+        shutdown.set(ShutdownReason.TERMINATE);
+      }
+    }
+
+    try {
+
+      shutdown.get();
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IOException("consumer failed after " + count + " records", e.getCause());
+    }
+
+    return count;
+  }
+
+}
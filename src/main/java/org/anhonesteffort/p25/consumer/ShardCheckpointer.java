@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.consumer;
+
+import io.radiowitness.kinesis.consumer.Checkpointer;
+import org.anhonesteffort.p25.Checkpoint;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.TimerTask;
+import java.util.TreeMap;
+
+/**
+ * Coalesces the checkpoints of a single shard. Every record read is numbered and
+ * held until the call it belongs to claims it, a call keeps only the hold on its
+ * lowest record. The watermark is the last record before the lowest hold, or the
+ * last record read when nothing is held, and is written at most once per run().
+ */
+public class ShardCheckpointer extends TimerTask {
+
+  private static final Logger log = LoggerFactory.getLogger(ShardCheckpointer.class);
+  private final TreeMap<Long, Hold> holds = new TreeMap<>();
+
+  private final ImbeefMetrics metrics;
+  private       long          sequence     = -1;
+  private       long          checkpointed = -1;
+  private       Checkpointer  latest       = null;
+
+  public ShardCheckpointer(ImbeefMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  public synchronized Checkpoint track(Checkpointer record) {
+    Hold hold = new Hold(this, ++sequence, latest);
+
+    latest = record;
+    holds.put(hold.sequence, hold);
+
+    return hold;
+  }
+
+  public synchronized int getPendingCount() {
+    return holds.size();
+  }
+
+  private synchronized void release(Hold hold) {
+    holds.remove(hold.sequence);
+  }
+
+  private synchronized Checkpointer takeWatermark() {
+    Hold         lowest = holds.isEmpty() ? null : holds.firstEntry().getValue();
+    long         mark   = lowest == null ? sequence : lowest.sequence - 1;
+    Checkpointer record = lowest == null ? latest   : lowest.before;
+
+    if (record == null || mark <= checkpointed) {
+      return null;
+    } else {
+      checkpointed = mark;
+      return record;
+    }
+  }
+
+  @Override
+  public void run() {
+    Checkpointer record = takeWatermark();
+
+    if (record != null) {
+      try {
+
+        record.checkpoint();
+        metrics.shardCheckpoint();
+
+      } catch (RuntimeException e) {
+        log.error("error checkpointing shard watermark", e);
+      }
+    }
+  }
+
+  /**
+   * Stops the timer and writes the watermark one last time so records that are
+   * already durable are not replayed by the next lease holder.
+   */
+  public void close() {
+    cancel();
+    run();
+  }
+
+  private static class Hold implements Checkpoint {
+    private final ShardCheckpointer shard;
+    private final long              sequence;
+    private final Checkpointer      before;
+
+    private Hold(ShardCheckpointer shard, long sequence, Checkpointer before) {
+      this.shard    = shard;
+      this.sequence = sequence;
+      this.before   = before;
+    }
+
+    @Override
+    public void checkpoint() {
+      shard.release(this);
+    }
+
+    @Override
+    public void abandon() {
+      shard.metrics.checkpointAbandoned();
+      shard.release(this);
+    }
+
+    @Override
+    public Checkpoint merge(Checkpoint other) {
+      if (!(other instanceof Hold) || ((Hold) other).shard != shard) {
+        return null;
+      }
+
+      Hold hold   = (Hold) other;
+      Hold lowest = hold.sequence < sequence ? hold : this;
+
+      shard.release(lowest == this ? hold : this);
+      return lowest;
+    }
+  }
+
+}
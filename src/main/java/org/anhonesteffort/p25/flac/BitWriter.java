@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.flac;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * MSB first bit packing into a byte array that is reused between frames and
+ * only grows when a frame is larger than any seen before.
+ */
+public class BitWriter {
+
+  private byte[] bytes;
+  private int    length = 0;
+  private long   cache  = 0;
+  private int    bits   = 0;
+
+  public BitWriter(int capacity) {
+    bytes = new byte[Math.max(8, capacity)];
+  }
+
+  public void reset() {
+    length = 0;
+    cache  = 0;
+    bits   = 0;
+  }
+
+  private void drain() {
+    while (bits >= 8) {
+      bits -= 8;
+      bytes[length++] = (byte) (cache >>> bits);
+    }
+  }
+
+  public byte[] getBytes() {
+    drain();
+    return bytes;
+  }
+
+  /**
+   * @return number of whole bytes written.
+   */
+  public int getLength() {
+    drain();
+    return length;
+  }
+
+  /**
+   * Writes the low count bits of value, count must be <= 32. Bits are
+   * buffered and stored a word at a time.
+   */
+  public void write(int value, int count) {
+    cache  = (cache << count) | (value & ((1L << count) - 1));
+    bits  += count;
+
+    if (bits >= 32) {
+      if (length + 8 > bytes.length) {
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+      }
+
+      bits -= 32;
+      int word = (int) (cache >>> bits);
+
+      bytes[length]     = (byte) (word >>> 24);
+      bytes[length + 1] = (byte) (word >>> 16);
+      bytes[length + 2] = (byte) (word >>> 8);
+      bytes[length + 3] = (byte) word;
+      length += 4;
+    }
+  }
+
+  public void write(long value, int count) {
+    if (count > 32) {
+      write((int) (value >>> 32), count - 32);
+      count = 32;
+    }
+    write((int) value, count);
+  }
+
+  public void writeRice(int value, int parameter) {
+    int fold     = (value << 1) ^ (value >> 31);
+    int quotient = fold >>> parameter;
+
+    if (quotient + 1 + parameter <= 32) {
+      write((1 << parameter) | (fold & ((1 << parameter) - 1)), quotient + 1 + parameter);
+    } else {
+      for (; quotient >= 32; quotient -= 32) {
+        write(0, 32);
+      }
+      write(1, quotient + 1);
+      write(fold, parameter);
+    }
+  }
+
+  public void writeUtf8(long value) {
+    if (value < 0x80) {
+      write((int) value, 8);
+    } else {
+      int count = 2;
+      while (count < 7 && value >= (1L << ((5 * count) + 1))) {
+        count++;
+      }
+
+      int prefix = (0xFF00 >>> count) & 0xFF;
+      write(prefix | ((int) (value >>> (6 * (count - 1))) & (0x7F >>> count)), 8);
+      for (int i = count - 2; i >= 0; i--) {
+        write(0x80 | (int) ((value >>> (6 * i)) & 0x3F), 8);
+      }
+    }
+  }
+
+  public void align() {
+    write(0, (8 - (bits & 7)) & 7);
+    drain();
+  }
+
+  public void writeTo(OutputStream out) throws IOException {
+    drain();
+    out.write(bytes, 0, length);
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.flac;
+
+/**
+ * The CRC-8 (poly 0x07) and CRC-16 (poly 0x8005) FLAC uses for frame headers
+ * and whole frames, both MSB first with a zero initial value. CRC-16 covers
+ * every byte of every frame so it is computed four bytes at a time.
+ */
+public class Crc {
+
+  private static final int[]   CRC8  = new int[256];
+  private static final int[][] CRC16 = new int[4][256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      int crc8  = i;
+      int crc16 = i << 8;
+
+      for (int bit = 0; bit < 8; bit++) {
+        crc8  = (crc8  & 0x80)   != 0 ? (crc8  << 1) ^ 0x07   : crc8  << 1;
+        crc16 = (crc16 & 0x8000) != 0 ? (crc16 << 1) ^ 0x8005 : crc16 << 1;
+      }
+
+      CRC8[i]     = crc8  & 0xFF;
+      CRC16[0][i] = crc16 & 0xFFFF;
+    }
+
+    for (int table = 1; table < CRC16.length; table++) {
+      for (int i = 0; i < 256; i++) {
+        int previous = CRC16[table - 1][i];
+        CRC16[table][i] = ((previous << 8) ^ CRC16[0][previous >>> 8]) & 0xFFFF;
+      }
+    }
+  }
+
+  public static int crc8(byte[] bytes, int offset, int length) {
+    int crc = 0;
+    for (int i = offset; i < offset + length; i++) {
+      crc = CRC8[(crc ^ bytes[i]) & 0xFF];
+    }
+    return crc;
+  }
+
+  public static int crc16(byte[] bytes, int offset, int length) {
+    int crc = 0;
+    int end = offset + length;
+    int i   = offset;
+
+    for (; i + 4 <= end; i += 4) {
+      crc = CRC16[3][((crc >>> 8) ^ bytes[i]) & 0xFF] ^
+            CRC16[2][(crc ^ bytes[i + 1]) & 0xFF]     ^
+            CRC16[1][bytes[i + 2] & 0xFF]             ^
+            CRC16[0][bytes[i + 3] & 0xFF];
+    }
+    for (; i < end; i++) {
+      crc = ((crc << 8) ^ CRC16[0][((crc >>> 8) ^ bytes[i]) & 0xFF]) & 0xFFFF;
+    }
+
+    return crc;
+  }
+
+}
@@ -0,0 +1,681 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.flac;
+
+import org.anhonesteffort.p25.wav.Pcm16Encoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Streaming FLAC encoder for mono 16 bit audio. Samples are quantized the same
+ * way as wav output and each fixed size block becomes one frame. A frame uses
+ * whichever of a constant, fixed, LPC or verbatim subframe is smallest, and its
+ * residual is Rice coded. Every working array is allocated once and then reused
+ * for each frame and each file.
+ */
+public class FlacEncoder {
+
+  public static final int HEADER_LENGTH  = 42;
+  public static final int MIN_BLOCK_SIZE = 16;
+  public static final int MAX_BLOCK_SIZE = 65535;
+  public static final int MAX_LPC_ORDER  = 32;
+
+  private static final int    BITS_PER_SAMPLE     = 16;
+  private static final int    MAX_FIXED_ORDER     = 4;
+  private static final int    MAX_PARTITION_ORDER = 8;
+  private static final int    MAX_RICE_PARAMETER  = 14;
+  private static final int    MAX_QLP_SHIFT       = 15;
+  private static final long   MAX_RESIDUAL        = 1L << 28;
+  private static final double LN_2                = Math.log(2);
+
+  private static final int TYPE_CONSTANT = 0;
+  private static final int TYPE_VERBATIM = 1;
+  private static final int TYPE_FIXED    = 8;
+  private static final int TYPE_LPC      = 32;
+
+  private static class Subframe {
+    private final int[] residual;
+    private final int[] parameters   = new int[1 << MAX_PARTITION_ORDER];
+    private final int[] coefficients = new int[MAX_LPC_ORDER];
+    private       int   type;
+    private       int   order;
+    private       int   shift;
+    private       int   partitionOrder;
+    private       long  bits;
+
+    private Subframe(int blockSize) {
+      residual = new int[blockSize];
+    }
+  }
+
+  private final int sampleRate;
+  private final int blockSize;
+  private final int maxLpcOrder;
+  private final int precision;
+
+  private final int[]      block;
+  private final byte[]     pcm;
+  private final double[]   window;
+  private final double[]   windowed;
+  private final double[]   autoc;
+  private final double[]   reflection;
+  private final double[][] lpc;
+  private final double[]   lpcError;
+  private final long[]     sums       = new long[1 << MAX_PARTITION_ORDER];
+  private final int[]      parameters = new int[1 << MAX_PARTITION_ORDER];
+  private final byte[]     digest     = new byte[16];
+
+  private final BitWriter     frame;
+  private final MessageDigest md5;
+  private       Subframe      best;
+  private       Subframe      trial;
+
+  private int  windowLength = 0;
+  private int  blockFill    = 0;
+  private long frameNumber  = 0;
+  private long sampleCount  = 0;
+  private int  minFrameSize = Integer.MAX_VALUE;
+  private int  maxFrameSize = 0;
+
+  public FlacEncoder(int sampleRate, int blockSize, int maxLpcOrder) {
+    if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+      throw new IllegalArgumentException("block size must be within " + MIN_BLOCK_SIZE + " and " + MAX_BLOCK_SIZE);
+    } else if (maxLpcOrder < 0 || maxLpcOrder > MAX_LPC_ORDER) {
+      throw new IllegalArgumentException("max lpc order must be within 0 and " + MAX_LPC_ORDER);
+    }
+
+    this.sampleRate  = sampleRate;
+    this.blockSize   = blockSize;
+    this.maxLpcOrder = maxLpcOrder;
+    this.precision   = precision(blockSize);
+
+    block      = new int[blockSize];
+    pcm        = new byte[blockSize * Short.BYTES];
+    window     = new double[blockSize];
+    windowed   = new double[blockSize];
+    autoc      = new double[maxLpcOrder + 1];
+    reflection = new double[maxLpcOrder];
+    lpc        = new double[maxLpcOrder][maxLpcOrder];
+    lpcError   = new double[maxLpcOrder];
+    frame      = new BitWriter(HEADER_LENGTH + (blockSize * Short.BYTES));
+    best       = new Subframe(blockSize);
+    trial      = new Subframe(blockSize);
+
+    try {
+
+      md5 = MessageDigest.getInstance("MD5");
+
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("md5 is required of every jvm", e);
+    }
+  }
+
+  private static int precision(int blockSize) {
+    if (blockSize <= 192) {
+      return 7;
+    } else if (blockSize <= 384) {
+      return 8;
+    } else if (blockSize <= 576) {
+      return 9;
+    } else if (blockSize <= 1152) {
+      return 10;
+    } else if (blockSize <= 2304) {
+      return 11;
+    } else if (blockSize <= 4608) {
+      return 12;
+    } else {
+      return 13;
+    }
+  }
+
+  public void reset() {
+    md5.reset();
+    blockFill    = 0;
+    frameNumber  = 0;
+    sampleCount  = 0;
+    minFrameSize = Integer.MAX_VALUE;
+    maxFrameSize = 0;
+  }
+
+  public long getSampleCount() {
+    return sampleCount + blockFill;
+  }
+
+  public void append(FloatBuffer samples, OutputStream out) throws IOException {
+    while (samples.hasRemaining()) {
+      int count = Math.min(samples.remaining(), blockSize - blockFill);
+
+      if (samples.hasArray()) {
+        float[] array  = samples.array();
+        int     offset = samples.arrayOffset() + samples.position();
+
+        for (int i = 0; i < count; i++) {
+          block[blockFill + i] = Pcm16Encoder.sample(array[offset + i]);
+        }
+        samples.position(samples.position() + count);
+      } else {
+        for (int i = 0; i < count; i++) {
+          block[blockFill + i] = Pcm16Encoder.sample(samples.get());
+        }
+      }
+
+      blockFill += count;
+      if (blockFill == blockSize) {
+        encodeFrame(blockSize, out);
+        blockFill = 0;
+      }
+    }
+  }
+
+  /**
+   * Writes the final partial block, after which {@link #header()} is complete.
+   */
+  public void finish(OutputStream out) throws IOException {
+    if (blockFill > 0) {
+      encodeFrame(blockFill, out);
+      blockFill = 0;
+    }
+
+    try {
+
+      md5.digest(digest, 0, digest.length);
+
+    } catch (DigestException e) {
+      throw new IllegalStateException("md5 digest should be 16 bytes", e);
+    }
+  }
+
+  /**
+   * @return the "fLaC" marker and STREAMINFO block for everything written
+   *         since the last reset.
+   */
+  public byte[] header() {
+    BitWriter header = new BitWriter(HEADER_LENGTH);
+
+    header.write(0x664C6143, 32);
+    header.write(0x80, 8);
+    header.write(HEADER_LENGTH - 8, 24);
+    header.write(blockSize, 16);
+    header.write(blockSize, 16);
+    header.write(frameNumber > 0 ? minFrameSize : 0, 24);
+    header.write(maxFrameSize, 24);
+    header.write(sampleRate, 20);
+    header.write(0, 3);
+    header.write(BITS_PER_SAMPLE - 1, 5);
+    header.write(sampleCount, 36);
+
+    for (byte b : digest) {
+      header.write(b, 8);
+    }
+
+    return Arrays.copyOf(header.getBytes(), header.getLength());
+  }
+
+  private void encodeFrame(int count, OutputStream out) throws IOException {
+    for (int i = 0; i < count; i++) {
+      pcm[(2 * i)]     = (byte) block[i];
+      pcm[(2 * i) + 1] = (byte) (block[i] >> 8);
+    }
+    md5.update(pcm, 0, count * Short.BYTES);
+
+    chooseSubframe(count);
+
+    frame.reset();
+    writeHeader(count);
+    writeSubframe(count);
+    frame.align();
+    frame.write(Crc.crc16(frame.getBytes(), 0, frame.getLength()), 16);
+    frame.writeTo(out);
+
+    minFrameSize  = Math.min(minFrameSize, frame.getLength());
+    maxFrameSize  = Math.max(maxFrameSize, frame.getLength());
+    sampleCount  += count;
+    frameNumber++;
+  }
+
+  private static int blockSizeCode(int count) {
+    switch (count) {
+      case 192:   return 1;
+      case 576:   return 2;
+      case 1152:  return 3;
+      case 2304:  return 4;
+      case 4608:  return 5;
+      case 256:   return 8;
+      case 512:   return 9;
+      case 1024:  return 10;
+      case 2048:  return 11;
+      case 4096:  return 12;
+      case 8192:  return 13;
+      case 16384: return 14;
+      case 32768: return 15;
+      default:    return count <= 256 ? 6 : 7;
+    }
+  }
+
+  private int sampleRateCode() {
+    switch (sampleRate) {
+      case 8000:  return 4;
+      case 16000: return 5;
+      case 22050: return 6;
+      case 24000: return 7;
+      case 32000: return 8;
+      case 44100: return 9;
+      case 48000: return 10;
+      case 96000: return 11;
+      default:    return 0;
+    }
+  }
+
+  private void writeHeader(int count) {
+    int blockSizeCode = blockSizeCode(count);
+
+    frame.write(0xFFF8, 16);
+    frame.write(blockSizeCode, 4);
+    frame.write(sampleRateCode(), 4);
+    frame.write(0, 4);
+    frame.write(4, 3);
+    frame.write(0, 1);
+    frame.writeUtf8(frameNumber);
+
+    if (blockSizeCode == 6) {
+      frame.write(count - 1, 8);
+    } else if (blockSizeCode == 7) {
+      frame.write(count - 1, 16);
+    }
+
+    frame.write(Crc.crc8(frame.getBytes(), 0, frame.getLength()), 8);
+  }
+
+  private void chooseSubframe(int count) {
+    boolean constant = true;
+    for (int i = 1; i < count && constant; i++) {
+      constant = block[i] == block[0];
+    }
+
+    if (constant) {
+      best.type = TYPE_CONSTANT;
+      return;
+    }
+
+    best.type = TYPE_VERBATIM;
+    best.bits = (long) count * BITS_PER_SAMPLE;
+
+    if (count > MAX_FIXED_ORDER) {
+      fixed(count);
+    }
+    if (maxLpcOrder > 0 && count > maxLpcOrder) {
+      lpc(count);
+    }
+  }
+
+  private void keepTrial() {
+    if (trial.bits < best.bits) {
+      Subframe swap = best;
+      best  = trial;
+      trial = swap;
+    }
+  }
+
+  private void fixed(int count) {
+    long sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0, sum4 = 0;
+    int  last0 = block[3];
+    int  last1 = block[3] - block[2];
+    int  last2 = last1 - (block[2] - block[1]);
+    int  last3 = last2 - ((block[2] - block[1]) - (block[1] - block[0]));
+
+    for (int i = MAX_FIXED_ORDER; i < count; i++) {
+      int error0 = block[i];
+      int error1 = error0 - last0;
+      int error2 = error1 - last1;
+      int error3 = error2 - last2;
+      int error4 = error3 - last3;
+
+      sum0 += Math.abs(error0);
+      sum1 += Math.abs(error1);
+      sum2 += Math.abs(error2);
+      sum3 += Math.abs(error3);
+      sum4 += Math.abs(error4);
+
+      last0 = error0;
+      last1 = error1;
+      last2 = error2;
+      last3 = error3;
+    }
+
+    int  order = 0;
+    long least = sum0;
+    if (sum1 < least) { order = 1; least = sum1; }
+    if (sum2 < least) { order = 2; least = sum2; }
+    if (sum3 < least) { order = 3; least = sum3; }
+    if (sum4 < least) { order = 4; }
+
+    int[] residual = trial.residual;
+    switch (order) {
+      case 0:
+        System.arraycopy(block, 0, residual, 0, count);
+        break;
+
+      case 1:
+        for (int i = 1; i < count; i++) {
+          residual[i - 1] = block[i] - block[i - 1];
+        }
+        break;
+
+      case 2:
+        for (int i = 2; i < count; i++) {
+          residual[i - 2] = block[i] - (2 * block[i - 1]) + block[i - 2];
+        }
+        break;
+
+      case 3:
+        for (int i = 3; i < count; i++) {
+          residual[i - 3] = block[i] - (3 * block[i - 1]) + (3 * block[i - 2]) - block[i - 3];
+        }
+        break;
+
+      default:
+        for (int i = 4; i < count; i++) {
+          residual[i - 4] = block[i] - (4 * block[i - 1]) + (6 * block[i - 2]) - (4 * block[i - 3]) + block[i - 4];
+        }
+    }
+
+    trial.type  = TYPE_FIXED;
+    trial.order = order;
+    trial.bits  = ((long) order * BITS_PER_SAMPLE) + riceBits(trial, count);
+    keepTrial();
+  }
+
+  private void window(int count) {
+    int taper = count / 4;
+
+    Arrays.fill(window, 0, count, 1d);
+    for (int i = 0; i < taper; i++) {
+      double weight = 0.5d - (0.5d * Math.cos((Math.PI * i) / taper));
+      window[i]             = weight;
+      window[count - 1 - i] = weight;
+    }
+
+    windowLength = count;
+  }
+
+  private int levinsonDurbin(int maxOrder) {
+    double error = autoc[0];
+
+    for (int i = 0; i < maxOrder; i++) {
+      double r = -autoc[i + 1];
+      for (int j = 0; j < i; j++) {
+        r -= reflection[j] * autoc[i - j];
+      }
+      r /= error;
+
+      reflection[i] = r;
+      int j = 0;
+      for (; j < (i >> 1); j++) {
+        double swap = reflection[j];
+        reflection[j]         += r * reflection[i - 1 - j];
+        reflection[i - 1 - j] += r * swap;
+      }
+      if ((i & 1) != 0) {
+        reflection[j] += reflection[j] * r;
+      }
+
+      error *= (1d - (r * r));
+      for (j = 0; j <= i; j++) {
+        lpc[i][j] = -reflection[j];
+      }
+      lpcError[i] = error;
+
+      if (error == 0d) {
+        return i + 1;
+      }
+    }
+
+    return maxOrder;
+  }
+
+  private int bestLpcOrder(int orders, int count) {
+    double scale = 0.5d / count;
+    double least = Double.MAX_VALUE;
+    int    order = 1;
+
+    for (int i = 0; i < orders; i++) {
+      double perSample = 0d;
+      if (lpcError[i] < 0d) {
+        perSample = 1e32;
+      } else if (lpcError[i] > 0d) {
+        perSample = Math.max(0d, (0.5d * Math.log(scale * lpcError[i])) / LN_2);
+      }
+
+      double bits = (perSample * (count - (i + 1))) + ((i + 1) * (BITS_PER_SAMPLE + precision));
+      if (bits < least) {
+        least = bits;
+        order = i + 1;
+      }
+    }
+
+    return order;
+  }
+
+  private boolean quantize(double[] coefficients, int order) {
+    int    bits = precision - 1;
+    int    qmax = (1 << bits) - 1;
+    int    qmin = -(1 << bits);
+    double cmax = 0d;
+
+    for (int i = 0; i < order; i++) {
+      cmax = Math.max(cmax, Math.abs(coefficients[i]));
+    }
+    if (cmax <= 0d || Double.isNaN(cmax) || Double.isInfinite(cmax)) {
+      return false;
+    }
+
+    int shift = Math.min(MAX_QLP_SHIFT, bits - Math.getExponent(cmax) - 1);
+    if (shift < 0) {
+      return false;
+    }
+
+    double error = 0d;
+    for (int i = 0; i < order; i++) {
+      error += coefficients[i] * (1 << shift);
+      int q = (int) Math.max(qmin, Math.min(qmax, Math.round(error)));
+      trial.coefficients[i]  = q;
+      error                 -= q;
+    }
+
+    trial.shift = shift;
+    return true;
+  }
+
+  private void lpc(int count) {
+    if (windowLength != count) {
+      window(count);
+    }
+    for (int i = 0; i < count; i++) {
+      windowed[i] = block[i] * window[i];
+    }
+
+    for (int lag = 0; lag <= maxLpcOrder; lag++) {
+      double sum = 0d;
+      for (int i = lag; i < count; i++) {
+        sum += windowed[i] * windowed[i - lag];
+      }
+      autoc[lag] = sum;
+    }
+
+    if (autoc[0] <= 0d) {
+      return;
+    }
+
+    int order = bestLpcOrder(levinsonDurbin(maxLpcOrder), count);
+    if (!quantize(lpc[order - 1], order)) {
+      return;
+    }
+
+    int[] coefficients = trial.coefficients;
+    int[] residual     = trial.residual;
+    int   shift        = trial.shift;
+
+    for (int i = order; i < count; i++) {
+      long sum = 0;
+      for (int j = 0; j < order; j++) {
+        sum += (long) coefficients[j] * block[i - 1 - j];
+      }
+
+      long error = block[i] - (sum >> shift);
+      if (error > MAX_RESIDUAL || error < -MAX_RESIDUAL) {
+        return;
+      }
+      residual[i - order] = (int) error;
+    }
+
+    trial.type  = TYPE_LPC;
+    trial.order = order;
+    trial.bits  = ((long) order * (BITS_PER_SAMPLE + precision)) + 9 + riceBits(trial, count);
+    keepTrial();
+  }
+
+  private static int riceParameter(long sum, int count) {
+    long mean      = sum / count;
+    int  estimate  = mean > 0 ? 63 - Long.numberOfLeadingZeros(mean) : 0;
+    int  parameter = 0;
+    long least     = Long.MAX_VALUE;
+
+    for (int k = Math.max(0, estimate - 1); k <= Math.min(MAX_RICE_PARAMETER, estimate + 1); k++) {
+      long bits = ((long) count * (k + 1)) + (sum >>> k);
+      if (bits < least) {
+        least     = bits;
+        parameter = k;
+      }
+    }
+
+    return parameter;
+  }
+
+  private long riceBits(Subframe subframe, int count) {
+    int[] residual = subframe.residual;
+    int   order    = subframe.order;
+    int   maxOrder = 0;
+
+    while (maxOrder < MAX_PARTITION_ORDER &&
+           (count & ((1 << (maxOrder + 1)) - 1)) == 0 &&
+           (count >> (maxOrder + 1)) > order)
+    {
+      maxOrder++;
+    }
+
+    int partitions = 1 << maxOrder;
+    int length     = count >> maxOrder;
+    for (int p = 0, i = 0; p < partitions; p++) {
+      long sum = 0;
+      for (int end = ((p + 1) * length) - order; i < end; i++) {
+        sum += ((residual[i] << 1) ^ (residual[i] >> 31)) & 0xFFFFFFFFL;
+      }
+      sums[p] = sum;
+    }
+
+    long least = Long.MAX_VALUE;
+    for (int partitionOrder = maxOrder; partitionOrder >= 0; partitionOrder--) {
+      partitions = 1 << partitionOrder;
+      length     = count >> partitionOrder;
+
+      long bits = 0;
+      for (int p = 0; p < partitions; p++) {
+        int samples = p == 0 ? length - order : length;
+        int k       = riceParameter(sums[p], samples);
+
+        parameters[p]  = k;
+        bits          += 4 + ((long) samples * (k + 1)) + (sums[p] >>> k);
+      }
+
+      if (bits < least) {
+        least                   = bits;
+        subframe.partitionOrder = partitionOrder;
+        System.arraycopy(parameters, 0, subframe.parameters, 0, partitions);
+      }
+
+      for (int p = 0; p < (partitions >> 1); p++) {
+        sums[p] = sums[2 * p] + sums[(2 * p) + 1];
+      }
+    }
+
+    return 6 + least;
+  }
+
+  private void writeSubframe(int count) {
+    switch (best.type) {
+      case TYPE_CONSTANT:
+        frame.write(TYPE_CONSTANT << 1, 8);
+        frame.write(block[0], BITS_PER_SAMPLE);
+        break;
+
+      case TYPE_VERBATIM:
+        frame.write(TYPE_VERBATIM << 1, 8);
+        for (int i = 0; i < count; i++) {
+          frame.write(block[i], BITS_PER_SAMPLE);
+        }
+        break;
+
+      case TYPE_FIXED:
+        frame.write((TYPE_FIXED | best.order) << 1, 8);
+        writeWarmup();
+        writeResidual(count);
+        break;
+
+      default:
+        frame.write((TYPE_LPC | (best.order - 1)) << 1, 8);
+        writeWarmup();
+        frame.write(precision - 1, 4);
+        frame.write(best.shift, 5);
+        for (int i = 0; i < best.order; i++) {
+          frame.write(best.coefficients[i], precision);
+        }
+        writeResidual(count);
+    }
+  }
+
+  private void writeWarmup() {
+    for (int i = 0; i < best.order; i++) {
+      frame.write(block[i], BITS_PER_SAMPLE);
+    }
+  }
+
+  private void writeResidual(int count) {
+    int[] residual   = best.residual;
+    int   partitions = 1 << best.partitionOrder;
+    int   length     = count >> best.partitionOrder;
+
+    frame.write(0, 2);
+    frame.write(best.partitionOrder, 4);
+
+    for (int p = 0, i = 0; p < partitions; p++) {
+      int k = best.parameters[p];
+      frame.write(k, 4);
+
+      for (int end = ((p + 1) * length) - best.order; i < end; i++) {
+        frame.writeRice(residual[i], k);
+      }
+    }
+  }
+
+}
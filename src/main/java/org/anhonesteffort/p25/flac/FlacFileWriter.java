@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.flac;
+
+import org.anhonesteffort.p25.CheckpointingAudioChunk;
+import org.anhonesteffort.p25.ImbeefConfig;
+import org.anhonesteffort.p25.audio.ImbeConverterFactory;
+import org.anhonesteffort.p25.wav.AudioFileWriter;
+import org.anhonesteffort.p25.wav.ByteBufferOutputStream;
+import org.anhonesteffort.p25.wav.WaveFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+
+public class FlacFileWriter implements AudioFileWriter {
+
+  public static final int PAGE_SIZE = 64 * 1024;
+
+  private final FlacEncoder encoder;
+
+  public FlacFileWriter(int blockSize, int maxLpcOrder) {
+    encoder = new FlacEncoder(ImbeConverterFactory.SAMPLE_RATE_8khz, blockSize, maxLpcOrder);
+  }
+
+  public FlacFileWriter(ImbeefConfig config) {
+    this(config.getFlacBlockSize(), config.getFlacMaxLpcOrder());
+  }
+
+  @Override
+  public String getExtension() {
+    return "flac";
+  }
+
+  @Override
+  public Optional<WaveFile> write(List<CheckpointingAudioChunk> chunks) throws IOException {
+    if (chunks.stream().noneMatch(chunk -> chunk.getBuffer().hasRemaining())) {
+      return Optional.empty();
+    }
+
+    ByteBufferOutputStream frames = new ByteBufferOutputStream(PAGE_SIZE);
+
+    encoder.reset();
+    for (CheckpointingAudioChunk chunk : chunks) {
+      encoder.append(chunk.getBuffer().duplicate(), frames);
+    }
+    encoder.finish(frames);
+
+    ByteBuffer[] pages   = frames.getBuffers();
+    ByteBuffer[] buffers = new ByteBuffer[pages.length + 1];
+
+    buffers[0] = ByteBuffer.wrap(encoder.header());
+    System.arraycopy(pages, 0, buffers, 1, pages.length);
+
+    return Optional.of(new WaveFile(buffers));
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.imbe;
+
+import org.anhonesteffort.jmbe.iface.AudioConverter;
+import org.anhonesteffort.p25.CheckpointingAudioChunk;
+import org.anhonesteffort.p25.P25Config;
+import org.anhonesteffort.p25.audio.ImbeConverterFactory;
+import org.anhonesteffort.p25.call.SafeAudioConverter;
+import org.anhonesteffort.p25.wav.AudioFileWriter;
+import org.anhonesteffort.p25.wav.WaveFile;
+import org.anhonesteffort.p25.wav.WaveFileWriter;
+import org.anhonesteffort.p25.wav.WaveHeaderFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.FloatBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Decodes an archive written by {@link ImbeFileWriter} into audio on read.
+ */
+public class ImbeFileDecoder {
+
+  private static final int SAMPLES_PER_FRAME = 160;
+
+  private final SafeAudioConverter converter;
+  private final AudioFileWriter    writer;
+
+  public ImbeFileDecoder(SafeAudioConverter converter, AudioFileWriter writer) {
+    this.converter = converter;
+    this.writer    = writer;
+  }
+
+  public ImbeFileDecoder(AudioConverter converter, AudioFileWriter writer) {
+    this(new SafeAudioConverter(converter), writer);
+  }
+
+  public static List<byte[]> read(InputStream in) throws IOException {
+    DataInputStream data   = new DataInputStream(in);
+    byte[]          header = new byte[ImbeFileWriter.HEADER_LENGTH];
+    List<byte[]>    frames = new LinkedList<>();
+
+    data.readFully(header);
+    if (!Arrays.equals(Arrays.copyOf(header, ImbeFileWriter.MAGIC.length), ImbeFileWriter.MAGIC)) {
+      throw new IOException("not an imbe archive");
+    } else if (header[ImbeFileWriter.MAGIC.length] != ImbeFileWriter.VERSION) {
+      throw new IOException("unsupported imbe archive version " + header[ImbeFileWriter.MAGIC.length]);
+    }
+
+    int length;
+    while ((length = data.read()) >= 0) {
+      byte[] frame = new byte[length];
+      try {
+        data.readFully(frame);
+      } catch (EOFException e) {
+        throw new IOException("imbe archive truncated mid frame", e);
+      }
+      frames.add(frame);
+    }
+
+    return frames;
+  }
+
+  public Optional<WaveFile> decode(InputStream in) throws IOException {
+    List<byte[]> frames = read(in);
+    FloatBuffer  audio  = FloatBuffer.allocate(frames.size() * SAMPLES_PER_FRAME);
+
+    for (byte[] frame : frames) {
+      float[] samples = converter.decode(frame);
+
+      if (audio.remaining() < samples.length) {
+        FloatBuffer grown = FloatBuffer.allocate(audio.capacity() * 2 + samples.length);
+        audio.flip();
+        audio = grown.put(audio);
+      }
+
+      audio.put(samples);
+    }
+
+    audio.flip();
+    return writer.write(Collections.singletonList(new CheckpointingAudioChunk(
+        null, true, true, true, 0l, 0l, 0d, 0d, P25Config.UNIT_ID_NONE,
+        audio, Collections.emptyList()
+    )));
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 2) {
+      System.err.println("usage: ImbeFileDecoder <in.imbe> <out.wav>");
+      System.exit(1);
+    }
+
+    AudioConverter converter = new ImbeConverterFactory().create(ImbeConverterFactory.AUDIO_FORMAT_8khz).get();
+    ImbeFileDecoder decoder  = new ImbeFileDecoder(converter, new WaveFileWriter(new WaveHeaderFactory()));
+
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(args[0])))) {
+      Optional<WaveFile> wave = decoder.decode(in);
+
+      if (!wave.isPresent()) {
+        System.err.println(args[0] + " contains no voice frames");
+        System.exit(1);
+      }
+
+      try (InputStream  audio = wave.get().getInputStream();
+           OutputStream out   = Files.newOutputStream(Paths.get(args[1])))
+      {
+        byte[] buffer = new byte[8192];
+        int    read;
+        while ((read = audio.read(buffer)) >= 0) {
+          out.write(buffer, 0, read);
+        }
+      }
+    } finally {
+      converter.dispose();
+    }
+  }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.imbe;
+
+import org.anhonesteffort.p25.CheckpointingAudioChunk;
+import org.anhonesteffort.p25.wav.AudioFileWriter;
+import org.anhonesteffort.p25.wav.WaveFile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Archives a call as the IMBE codewords it was received as, a four byte
+ * magic and a version byte followed by each codeword prefixed with its length.
+ * Audio is only decoded when someone listens, see {@link ImbeFileDecoder}.
+ */
+public class ImbeFileWriter implements AudioFileWriter {
+
+  public static final byte[] MAGIC         = "IMBE".getBytes(StandardCharsets.US_ASCII);
+  public static final byte   VERSION       = 1;
+  public static final int    HEADER_LENGTH = MAGIC.length + 1;
+
+  public static byte[] header() {
+    byte[] header = new byte[HEADER_LENGTH];
+
+    System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+    header[MAGIC.length] = VERSION;
+
+    return header;
+  }
+
+  @Override
+  public String getExtension() {
+    return "imbe";
+  }
+
+  @Override
+  public Optional<WaveFile> write(List<CheckpointingAudioChunk> chunks) throws IOException {
+    if (chunks.stream().noneMatch(chunk -> chunk.getCodewords().hasRemaining())) {
+      return Optional.empty();
+    }
+
+    ByteBuffer[] buffers = new ByteBuffer[chunks.size() + 1];
+    int          index   = 0;
+
+    buffers[index++] = ByteBuffer.wrap(header());
+    for (CheckpointingAudioChunk chunk : chunks) {
+      buffers[index++] = chunk.getCodewords().duplicate();
+    }
+
+    return Optional.of(new WaveFile(buffers));
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.prometheus;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.anhonesteffort.p25.ImbeefConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the metric registry as Prometheus text at /metrics. Scrapes are
+ * handled on one thread so the writer's buffers are never shared.
+ */
+public class MetricsServer {
+
+  public static final String CONTEXT = "/metrics";
+
+  private static final Logger log = LoggerFactory.getLogger(MetricsServer.class);
+
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+  private final HttpServer       server;
+  private final PrometheusWriter writer;
+
+  public MetricsServer(InetSocketAddress address, MetricRegistry registry) throws IOException {
+    this.server = HttpServer.create(address, 0);
+    this.writer = new PrometheusWriter(registry);
+
+    server.createContext(CONTEXT, this::handle);
+    server.setExecutor(executor);
+  }
+
+  public MetricsServer(ImbeefConfig config, MetricRegistry registry) throws IOException {
+    this(new InetSocketAddress(config.getMetricsAddress(), config.getMetricsPort()), registry);
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public void start() {
+    server.start();
+    log.info("serving metrics at " + server.getAddress() + CONTEXT);
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+
+      if (!exchange.getRequestMethod().equals("GET")) {
+        exchange.sendResponseHeaders(405, -1);
+      } else {
+        int length = writer.format();
+
+        exchange.getResponseHeaders().set("Content-Type", PrometheusWriter.CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+          out.write(writer.getBytes(), 0, length);
+        }
+      }
+
+    } catch (IOException | RuntimeException e) {
+      log.error("error serving metrics", e);
+    } finally {
+      exchange.close();
+    }
+  }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.prometheus;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Formats every metric in a registry as Prometheus text. Metrics are tracked
+ * through a registry listener so a scrape never copies the registry, and the
+ * text and byte buffers are reused between scrapes. Counters and meters are
+ * counters, numeric gauges are gauges, histograms and timers are summaries
+ * with p50, p99 and p999 quantiles, timers in seconds. Formatting is not
+ * thread safe, call format() from one thread at a time.
+ */
+public class PrometheusWriter extends MetricRegistryListener.Base {
+
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+  public static final String PREFIX       = "imbeef_";
+
+  private static final double   NANOS     = 1_000_000_000d;
+  private static final double[] QUANTILES = new double[] { 0.5d, 0.99d, 0.999d };
+  private static final String[] LABELS    = new String[] {
+      "{quantile=\"0.5\"} ", "{quantile=\"0.99\"} ", "{quantile=\"0.999\"} "
+  };
+
+  private final StringBuilder text    = new StringBuilder(16 * 1024);
+  private       byte[]        bytes   = new byte[16 * 1024];
+  private       Entry[]       entries = new Entry[0];
+
+  public PrometheusWriter(MetricRegistry registry) {
+    registry.addListener(this);
+  }
+
+  /**
+   * Prometheus names allow letters, digits, underscores and colons only.
+   */
+  public static String name(String name) {
+    StringBuilder clean = new StringBuilder(PREFIX.length() + name.length()).append(PREFIX);
+
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == ':') {
+        clean.append(c);
+      } else {
+        clean.append('_');
+      }
+    }
+
+    return clean.toString();
+  }
+
+  private synchronized void add(String name, Metric metric, String type) {
+    Entry[] next = Arrays.copyOf(entries, entries.length + 1);
+    next[entries.length] = new Entry(name, metric, type);
+    Arrays.sort(next, Comparator.comparing(entry -> entry.registryName));
+    entries = next;
+  }
+
+  private synchronized void remove(String name) {
+    entries = Arrays.stream(entries).filter(entry -> !entry.registryName.equals(name)).toArray(Entry[]::new);
+  }
+
+  private synchronized Entry[] entries() {
+    return entries;
+  }
+
+  private void value(double value) {
+    if (Double.isNaN(value)) {
+      text.append("NaN");
+    } else if (value == Double.POSITIVE_INFINITY) {
+      text.append("+Inf");
+    } else if (value == Double.NEGATIVE_INFINITY) {
+      text.append("-Inf");
+    } else {
+      text.append(value);
+    }
+  }
+
+  private void counter(Entry entry, long count) {
+    text.append(entry.header).append(entry.name).append(' ').append(count).append('\n');
+  }
+
+  private void gauge(Entry entry, Object value) {
+    if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+      text.append(entry.header).append(entry.name).append(' ').append(((Number) value).longValue()).append('\n');
+    } else if (value instanceof Number) {
+      text.append(entry.header).append(entry.name).append(' ');
+      value(((Number) value).doubleValue());
+      text.append('\n');
+    } else if (value instanceof Boolean) {
+      text.append(entry.header).append(entry.name).append(' ').append((Boolean) value ? 1 : 0).append('\n');
+    }
+  }
+
+  private void summary(Entry entry, Snapshot snapshot, long count, double scale) {
+    text.append(entry.header);
+
+    for (int i = 0; i < QUANTILES.length; i++) {
+      text.append(entry.name).append(LABELS[i]);
+      value(snapshot.getValue(QUANTILES[i]) / scale);
+      text.append('\n');
+    }
+
+    text.append(entry.name).append("_count ").append(count).append('\n');
+  }
+
+  private void write(Entry entry) {
+    if (entry.metric instanceof Counter) {
+      counter(entry, ((Counter) entry.metric).getCount());
+    } else if (entry.metric instanceof Meter) {
+      counter(entry, ((Meter) entry.metric).getCount());
+    } else if (entry.metric instanceof Gauge) {
+      gauge(entry, ((Gauge<?>) entry.metric).getValue());
+    } else if (entry.metric instanceof Timer) {
+      summary(entry, ((Timer) entry.metric).getSnapshot(), ((Timer) entry.metric).getCount(), NANOS);
+    } else if (entry.metric instanceof Histogram) {
+      summary(entry, ((Histogram) entry.metric).getSnapshot(), ((Histogram) entry.metric).getCount(), 1d);
+    }
+  }
+
+  /**
+   * @return length of the text now held by getBytes().
+   */
+  public int format() {
+    text.setLength(0);
+
+    for (Entry entry : entries()) {
+      write(entry);
+    }
+
+    if (bytes.length < text.length()) {
+      bytes = new byte[text.length() * 2];
+    }
+
+    for (int i = 0; i < text.length(); i++) {
+      bytes[i] = (byte) text.charAt(i);
+    }
+
+    return text.length();
+  }
+
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  @Override
+  public void onGaugeAdded(String name, Gauge<?> gauge) {
+    add(name, gauge, "gauge");
+  }
+
+  @Override
+  public void onGaugeRemoved(String name) {
+    remove(name);
+  }
+
+  @Override
+  public void onCounterAdded(String name, Counter counter) {
+    add(name, counter, "counter");
+  }
+
+  @Override
+  public void onCounterRemoved(String name) {
+    remove(name);
+  }
+
+  @Override
+  public void onHistogramAdded(String name, Histogram histogram) {
+    add(name, histogram, "summary");
+  }
+
+  @Override
+  public void onHistogramRemoved(String name) {
+    remove(name);
+  }
+
+  @Override
+  public void onMeterAdded(String name, Meter meter) {
+    add(name, meter, "counter");
+  }
+
+  @Override
+  public void onMeterRemoved(String name) {
+    remove(name);
+  }
+
+  @Override
+  public void onTimerAdded(String name, Timer timer) {
+    add(name, timer, "summary");
+  }
+
+  @Override
+  public void onTimerRemoved(String name) {
+    remove(name);
+  }
+
+  private static class Entry {
+    private final String registryName;
+    private final String name;
+    private final String header;
+    private final Metric metric;
+
+    private Entry(String registryName, Metric metric, String type) {
+      this.registryName = registryName;
+      this.name         = name(registryName) + (metric instanceof Timer ? "_seconds" : "");
+      this.header       = "# TYPE " + name + " " + type + "\n";
+      this.metric       = metric;
+    }
+  }
+
+}
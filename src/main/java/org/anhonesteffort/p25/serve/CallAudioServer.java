@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.serve;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.anhonesteffort.p25.AudioConverterPool;
+import org.anhonesteffort.p25.ImbeefConfig;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.anhonesteffort.p25.call.SafeAudioConverter;
+import org.anhonesteffort.p25.imbe.ImbeFileDecoder;
+import org.anhonesteffort.p25.wav.PagePool;
+import org.anhonesteffort.p25.wav.WaveFile;
+import org.anhonesteffort.p25.wav.WaveFileWriter;
+import org.anhonesteffort.p25.wav.WaveHeaderFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves stored calls at GET /calls/{key}, decoding archived codewords to wav
+ * on demand. Requests are handled on a fixed pool of threads, each decode
+ * borrows its own IMBE converter and builds its own writer because sample
+ * encoders are not thread safe. Recently served files come from a
+ * {@link WaveCache}.
+ */
+public class CallAudioServer {
+
+  public static final String CONTEXT = "/calls/";
+
+  private static final Logger log = LoggerFactory.getLogger(CallAudioServer.class);
+
+  private final PagePool pages = new PagePool();
+
+  private final ExecutorService    executor;
+  private final HttpServer         server;
+  private final CallStore          store;
+  private final AudioConverterPool converters;
+  private final WaveHeaderFactory  headers;
+  private final WaveCache          cache;
+  private final ImbeefMetrics      metrics;
+
+  public CallAudioServer(InetSocketAddress  address,
+                         int                threads,
+                         CallStore          store,
+                         AudioConverterPool converters,
+                         WaveHeaderFactory  headers,
+                         WaveCache          cache,
+                         ImbeefMetrics      metrics) throws IOException
+  {
+    this.executor   = Executors.newFixedThreadPool(threads);
+    this.server     = HttpServer.create(address, 0);
+    this.store      = store;
+    this.converters = converters;
+    this.headers    = headers;
+    this.cache      = cache;
+    this.metrics    = metrics;
+
+    server.createContext(CONTEXT, this::handle);
+    server.setExecutor(executor);
+  }
+
+  public CallAudioServer(ImbeefConfig       config,
+                         CallStore          store,
+                         AudioConverterPool converters,
+                         WaveHeaderFactory  headers,
+                         ImbeefMetrics      metrics) throws IOException
+  {
+    this(
+        new InetSocketAddress(config.getServeAddress(), config.getServePort()), config.getServeThreads(),
+        store, converters, headers, new WaveCache(config.getServeCacheBytes(), metrics), metrics
+    );
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public void start() {
+    server.start();
+    log.info("serving calls at " + server.getAddress() + CONTEXT);
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private static boolean isStored(String key) {
+    return key.endsWith(".wav") || key.endsWith(".flac");
+  }
+
+  private static String contentType(String key) {
+    return key.endsWith(".flac") ? "audio/flac" : "audio/wav";
+  }
+
+  /**
+   * Reads straight into the returned array, only trimming it if the stream
+   * ends short of a full buffer.
+   */
+  private static byte[] toBytes(InputStream in) throws IOException {
+    byte[] bytes = new byte[Math.max(in.available(), 8192)];
+    int    count = 0;
+
+    while (true) {
+      if (count == bytes.length) {
+        int next = in.read();
+        if (next < 0) {
+          return bytes;
+        }
+        bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        bytes[count++] = (byte) next;
+      }
+
+      int read = in.read(bytes, count, bytes.length - count);
+      if (read < 0) {
+        return Arrays.copyOf(bytes, count);
+      }
+      count += read;
+    }
+  }
+
+  private static byte[] toBytes(WaveFile wave) throws IOException {
+    byte[] bytes = new byte[wave.getLength()];
+
+    try (DataInputStream in = new DataInputStream(wave.getInputStream())) {
+
+      in.readFully(bytes);
+
+    } finally {
+      wave.release();
+    }
+
+    return bytes;
+  }
+
+  private Optional<WaveFile> decode(InputStream in) throws IOException {
+    SafeAudioConverter converter = converters.acquire();
+
+    try {
+
+      return new ImbeFileDecoder(converter, new WaveFileWriter(headers, pages)).decode(in);
+
+    } finally {
+      converters.release(converter);
+    }
+  }
+
+  private Optional<byte[]> transcode(String key) throws IOException {
+    try (InputStream in = store.open(key)) {
+      if (isStored(key)) {
+        return Optional.of(toBytes(in));
+      }
+
+      long               start = System.currentTimeMillis();
+      Optional<WaveFile> wave  = decode(in);
+      metrics.serveDecode(System.currentTimeMillis() - start);
+
+      if (!wave.isPresent()) {
+        return Optional.empty();
+      } else {
+        return Optional.of(toBytes(wave.get()));
+      }
+    }
+  }
+
+  private void respond(HttpExchange exchange, int status, String type, byte[] body) throws IOException {
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+    } else {
+      exchange.getResponseHeaders().set("Content-Type", type);
+      exchange.sendResponseHeaders(status, body.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    }
+  }
+
+  private void respond(HttpExchange exchange, int status) throws IOException {
+    respond(exchange, status, null, null);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+
+      String key = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+
+      if (!exchange.getRequestMethod().equals("GET")) {
+        respond(exchange, 405);
+      } else if (!isStored(key) && !key.endsWith(".imbe")) {
+        respond(exchange, 415);
+      } else {
+        Optional<byte[]> file = cache.get(key);
+
+        if (!file.isPresent()) {
+          file = transcode(key);
+          file.ifPresent(bytes -> cache.put(key, bytes));
+        }
+
+        if (file.isPresent()) {
+          respond(exchange, 200, contentType(key), file.get());
+        } else {
+          respond(exchange, 404);
+        }
+      }
+
+    } catch (FileNotFoundException e) {
+      respond(exchange, 404);
+    } catch (IOException | RuntimeException e) {
+      log.error("error serving " + exchange.getRequestURI(), e);
+      respond(exchange, 500);
+    } finally {
+      exchange.close();
+    }
+  }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.serve;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class S3CallStore implements CallStore {
+
+  private final AmazonS3 s3;
+  private final String   bucket;
+
+  public S3CallStore(AmazonS3 s3, String bucket) {
+    this.s3     = s3;
+    this.bucket = bucket;
+  }
+
+  @Override
+  public InputStream open(String key) throws IOException {
+    try {
+
+      return s3.getObject(bucket, key).getObjectContent();
+
+    } catch (AmazonServiceException e) {
+      if (e.getStatusCode() == 404) {
+        throw new FileNotFoundException(key);
+      } else {
+        throw new IOException("error getting " + key + " from s3", e);
+      }
+    }
+  }
+
+}
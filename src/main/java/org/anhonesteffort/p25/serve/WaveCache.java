@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.serve;
+
+import com.codahale.metrics.Gauge;
+import org.anhonesteffort.p25.ImbeefMetrics;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Least recently used cache of served wav files bounded by total byte size,
+ * a file larger than the bound is never cached.
+ */
+public class WaveCache {
+
+  private final LinkedHashMap<String, byte[]> files = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final long          maxBytes;
+  private final ImbeefMetrics metrics;
+  private       long          bytes = 0;
+
+  public WaveCache(long maxBytes, ImbeefMetrics metrics) {
+    this.maxBytes = maxBytes;
+    this.metrics  = metrics;
+
+    metrics.registerServeCache(
+        new Gauge<Long>() {
+          @Override
+          public Long getValue() {
+            return getBytes();
+          }
+        }
+    );
+  }
+
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  public synchronized int size() {
+    return files.size();
+  }
+
+  public synchronized Optional<byte[]> get(String key) {
+    byte[] file = files.get(key);
+
+    if (file != null) {
+      metrics.serveCacheHit();
+    } else {
+      metrics.serveCacheMiss();
+    }
+
+    return Optional.ofNullable(file);
+  }
+
+  public synchronized void put(String key, byte[] file) {
+    if (file.length > maxBytes) {
+      return;
+    }
+
+    byte[] previous = files.put(key, file);
+    bytes += file.length - (previous != null ? previous.length : 0);
+
+    Iterator<Map.Entry<String, byte[]>> eldest = files.entrySet().iterator();
+    while (bytes > maxBytes) {
+      bytes -= eldest.next().getValue().length;
+      eldest.remove();
+      metrics.serveCacheEviction();
+    }
+  }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.trace;
+
+import io.radiowitness.proto.p25.ProtoP25Factory;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+
+/**
+ * Base of the flight recorder events for each stage of a call, only created
+ * through {@link CallTrace}. Fields are only filled in once the event is known
+ * to be recorded.
+ */
+@Category("imbeef")
+public abstract class CallEvent extends Event implements CallSpan {
+
+  private static final ProtoP25Factory proto = new ProtoP25Factory();
+
+  @Label("Channel")
+  protected String channel;
+
+  @Label("Samples")
+  protected long samples;
+
+  @Label("Size")
+  @DataAmount
+  protected long bytes;
+
+  @Override
+  public void commit(P25ChannelId channelId, long samples, long bytes) {
+    end();
+
+    if (shouldCommit()) {
+      this.channel = proto.toString(channelId);
+      this.samples = samples;
+      this.bytes   = bytes;
+      commit();
+    }
+  }
+
+}
@@ -15,12 +15,13 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-package org.anhonesteffort.p25;
-
-public class MockMetrics {
-
-  public static void mockWith(ImbeefMetrics instance) {
-    ImbeefMetrics.mock(instance);
-  }
+package org.anhonesteffort.p25.trace;
 
+public enum CallStage {
+  DATA_UNIT_PARSE,
+  PIPELINE_CREATED,
+  CHUNK_BROADCAST,
+  AUDIO_ENCODE,
+  CALL_FINALIZED,
+  UPLOAD_COMPLETED
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.trace;
+
+/**
+ * Entry point for the flight recorder events. Nothing under jdk.jfr is linked
+ * unless the runtime has a usable flight recorder, older JDK 8 builds without
+ * one get {@link CallSpan#NONE} for every stage.
+ */
+public final class CallTrace {
+
+  private static final boolean AVAILABLE = available();
+
+  private CallTrace() { }
+
+  private static boolean available() {
+    try {
+
+      return FlightRecorderEvents.isAvailable();
+
+    } catch (LinkageError e) {
+      return false;
+    }
+  }
+
+  public static boolean isAvailable() {
+    return AVAILABLE;
+  }
+
+  /**
+   * Nothing is allocated unless a recording has the stage enabled.
+   */
+  public static CallSpan begin(CallStage stage) {
+    return AVAILABLE ? FlightRecorderEvents.begin(stage) : CallSpan.NONE;
+  }
+
+}
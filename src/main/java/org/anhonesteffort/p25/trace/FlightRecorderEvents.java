@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.trace;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Only loaded by {@link CallTrace} so that a runtime without jdk.jfr fails here
+ * rather than wherever a stage is traced.
+ */
+final class FlightRecorderEvents {
+
+  private FlightRecorderEvents() { }
+
+  static boolean isAvailable() {
+    return FlightRecorder.isAvailable();
+  }
+
+  private static CallEvent create(CallStage stage) {
+    switch (stage) {
+      case DATA_UNIT_PARSE:
+        return new DataUnitParseEvent();
+
+      case PIPELINE_CREATED:
+        return new PipelineCreatedEvent();
+
+      case CHUNK_BROADCAST:
+        return new ChunkBroadcastEvent();
+
+      case AUDIO_ENCODE:
+        return new AudioEncodeEvent();
+
+      case CALL_FINALIZED:
+        return new CallFinalizedEvent();
+
+      default:
+        return new UploadCompletedEvent();
+    }
+  }
+
+  static CallSpan begin(CallStage stage) {
+    if (!Types.TYPES[stage.ordinal()].isEnabled()) {
+      return CallSpan.NONE;
+    }
+
+    CallEvent event = create(stage);
+    event.begin();
+    return event;
+  }
+
+  private static class Types {
+    private static final EventType[] TYPES = new EventType[CallStage.values().length];
+
+    static {
+      for (CallStage stage : CallStage.values()) {
+        TYPES[stage.ordinal()] = EventType.getEventType(create(stage).getClass());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import org.anhonesteffort.p25.CheckpointingAudioChunk;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+
+public interface AudioFileWriter {
+
+  String getExtension();
+
+  Optional<WaveFile> write(List<CheckpointingAudioChunk> chunks) throws IOException;
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the remaining bytes of a sequence of buffers without copying them into
+ * one array. Supports mark and reset so S3 uploads can be retried.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+  private final ByteBuffer[] buffers;
+  private final int[]        starts;
+  private       int          index        = 0;
+  private       int          markIndex    = 0;
+  private       int          markPosition = 0;
+
+  public ByteBufferInputStream(ByteBuffer... buffers) {
+    this.buffers = new ByteBuffer[buffers.length];
+    this.starts  = new int[buffers.length];
+
+    for (int i = 0; i < buffers.length; i++) {
+      this.buffers[i] = buffers[i].duplicate();
+      this.starts[i]  = buffers[i].position();
+    }
+
+    if (buffers.length > 0) {
+      markPosition = starts[0];
+    }
+  }
+
+  private ByteBuffer current() {
+    while (index < buffers.length && !buffers[index].hasRemaining()) {
+      index++;
+    }
+    return index < buffers.length ? buffers[index] : null;
+  }
+
+  @Override
+  public int read() {
+    ByteBuffer buffer = current();
+    return buffer == null ? -1 : (buffer.get() & 0xFF);
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    }
+
+    int read = 0;
+    for (ByteBuffer buffer = current(); buffer != null && read < length; buffer = current()) {
+      int count = Math.min(buffer.remaining(), length - read);
+      buffer.get(bytes, offset + read, count);
+      read += count;
+    }
+
+    return read == 0 ? -1 : read;
+  }
+
+  @Override
+  public long skip(long count) {
+    long skipped = 0;
+    for (ByteBuffer buffer = current(); buffer != null && skipped < count; buffer = current()) {
+      int length = (int) Math.min(buffer.remaining(), count - skipped);
+      buffer.position(buffer.position() + length);
+      skipped += length;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    long available = 0;
+    for (int i = index; i < buffers.length; i++) {
+      available += buffers[i].remaining();
+    }
+    return (int) Math.min(Integer.MAX_VALUE, available);
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(int readLimit) {
+    markIndex    = Math.min(index, buffers.length - 1);
+    markPosition = buffers.length > 0 ? buffers[markIndex].position() : 0;
+  }
+
+  @Override
+  public synchronized void reset() {
+    for (int i = markIndex + 1; i <= index && i < buffers.length; i++) {
+      buffers[i].position(starts[i]);
+    }
+
+    if (buffers.length > 0) {
+      buffers[markIndex].position(markPosition);
+    }
+    index = markIndex;
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects written bytes in fixed size pages so output of unknown length never
+ * has to be grown and copied. The pages can be read back without copying
+ * through {@link ByteBufferInputStream}.
+ */
+public class ByteBufferOutputStream extends OutputStream {
+
+  private final List<ByteBuffer> pages = new ArrayList<>();
+  private final int              pageSize;
+  private       ByteBuffer       current;
+
+  public ByteBufferOutputStream(int pageSize) {
+    this.pageSize = pageSize;
+  }
+
+  private ByteBuffer page() {
+    if (current == null || !current.hasRemaining()) {
+      current = ByteBuffer.allocate(pageSize);
+      pages.add(current);
+    }
+    return current;
+  }
+
+  @Override
+  public void write(int b) {
+    page().put((byte) b);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) {
+    while (length > 0) {
+      ByteBuffer page  = page();
+      int        count = Math.min(page.remaining(), length);
+
+      page.put(bytes, offset, count);
+      offset += count;
+      length -= count;
+    }
+  }
+
+  public int getLength() {
+    return pages.stream().mapToInt(ByteBuffer::position).sum();
+  }
+
+  public ByteBuffer[] getBuffers() {
+    ByteBuffer[] buffers = new ByteBuffer[pages.size()];
+
+    for (int i = 0; i < buffers.length; i++) {
+      buffers[i] = pages.get(i).duplicate();
+      buffers[i].flip();
+    }
+
+    return buffers;
+  }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * 8-bit G.711 companding via lookup tables indexed by the 14-bit (mu-law)
+ * or 13-bit (A-law) linear sample, per the reference encoder from Sun's g711.c.
+ */
+public class G711Encoder implements SampleEncoder {
+
+  private static final int BLOCK_SIZE = 4096;
+  private static final int ULAW_BITS  = 14;
+  private static final int ALAW_BITS  = 13;
+  private static final int ULAW_CLIP  = 8159;
+  private static final int ULAW_BIAS  = 0x84 >> 2;
+
+  private static final byte[] ULAW_TABLE = table(ULAW_BITS, G711Encoder::linearToUlaw);
+  private static final byte[] ALAW_TABLE = table(ALAW_BITS, G711Encoder::linearToAlaw);
+
+  private final Pcm16Encoder pcm   = new Pcm16Encoder();
+  private final short[]      block = new short[BLOCK_SIZE];
+  private final byte[]       bytes = new byte[BLOCK_SIZE];
+  private final byte[]       table;
+  private final int          shift;
+  private final int          mask;
+
+  private G711Encoder(byte[] table, int bits) {
+    this.table = table;
+    this.shift = Short.SIZE - bits;
+    this.mask  = table.length - 1;
+  }
+
+  public static G711Encoder ulaw() {
+    return new G711Encoder(ULAW_TABLE, ULAW_BITS);
+  }
+
+  public static G711Encoder alaw() {
+    return new G711Encoder(ALAW_TABLE, ALAW_BITS);
+  }
+
+  private interface Companding {
+    int compress(int linear);
+  }
+
+  private static byte[] table(int bits, Companding companding) {
+    byte[] table = new byte[1 << bits];
+    for (int i = 0; i < table.length; i++) {
+      int linear = (i << (Integer.SIZE - bits)) >> (Integer.SIZE - bits);
+      table[i]   = (byte) companding.compress(linear);
+    }
+    return table;
+  }
+
+  private static int segment(int value, int firstEnd) {
+    int segment = 0;
+    for (int end = firstEnd; segment < 8 && value > end; end = (end << 1) | 1) {
+      segment++;
+    }
+    return segment;
+  }
+
+  static int linearToUlaw(int linear14) {
+    int mask = 0xFF;
+    if (linear14 < 0) {
+      linear14 = -linear14;
+      mask     = 0x7F;
+    }
+
+    int value   = Math.min(linear14, ULAW_CLIP) + ULAW_BIAS;
+    int segment = segment(value, 0x3F);
+
+    if (segment >= 8) {
+      return 0x7F ^ mask;
+    } else {
+      return ((segment << 4) | ((value >> (segment + 1)) & 0x0F)) ^ mask;
+    }
+  }
+
+  static int linearToAlaw(int linear13) {
+    int mask = 0xD5;
+    if (linear13 < 0) {
+      linear13 = -linear13 - 1;
+      mask     = 0x55;
+    }
+
+    int segment = segment(linear13, 0x1F);
+
+    if (segment >= 8) {
+      return 0x7F ^ mask;
+    } else if (segment < 2) {
+      return ((segment << 4) | ((linear13 >> 1) & 0x0F)) ^ mask;
+    } else {
+      return ((segment << 4) | ((linear13 >> segment) & 0x0F)) ^ mask;
+    }
+  }
+
+  public byte sample(short pcm16) {
+    return table[(pcm16 >> shift) & mask];
+  }
+
+  @Override
+  public int encode(FloatBuffer in, ByteBuffer out) {
+    int count = Math.min(in.remaining(), out.remaining());
+
+    for (int done = 0; done < count; ) {
+      int length = Math.min(BLOCK_SIZE, count - done);
+
+      if (in.hasArray()) {
+        pcm.encode(in.array(), in.arrayOffset() + in.position(), block, length);
+        in.position(in.position() + length);
+      } else {
+        for (int i = 0; i < length; i++) {
+          block[i] = Pcm16Encoder.sample(in.get());
+        }
+      }
+
+      for (int i = 0; i < length; i++) {
+        bytes[i] = table[(block[i] >> shift) & mask];
+      }
+
+      out.put(bytes, 0, length);
+      done += length;
+    }
+
+    return count;
+  }
+
+}
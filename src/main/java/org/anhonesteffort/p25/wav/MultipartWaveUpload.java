@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import org.anhonesteffort.p25.UploadBudget;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+
+/**
+ * Streams a wave file to S3 as a multipart upload. Part 1 carries the header so it
+ * is held until the call completes, every later part is sent as soon as it fills.
+ * Metadata known at initiation is replaced once the call ends by copying the object
+ * onto itself, one more request and a server side copy of the file per streamed call.
+ * S3 parts are not durable until the upload completes so callers can only checkpoint
+ * once per call rather than once per part.
+ */
+public class MultipartWaveUpload {
+
+  public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+  private static final Logger log = LoggerFactory.getLogger(MultipartWaveUpload.class);
+  private final List<CompletableFuture<PartETag>> parts = new LinkedList<>();
+
+  private final AmazonS3                  s3;
+  private final ExecutorService           executor;
+  private final WaveFileWriter            waveWriter;
+  private final UploadBudget              budget;
+  private final String                    bucket;
+  private final String                    key;
+  private final int                       partSize;
+  private final CompletableFuture<String> uploadId;
+  private final ByteBuffer                head;
+  private       ByteBuffer                current;
+  private       int                       partCount = 1;
+  private       int                       byteCount = 0;
+
+  public MultipartWaveUpload(AmazonS3        s3,
+                             ExecutorService executor,
+                             WaveFileWriter  waveWriter,
+                             UploadBudget    budget,
+                             String          bucket,
+                             String          key,
+                             ObjectMetadata  metadata,
+                             int             partSize)
+  {
+    this.s3         = s3;
+    this.executor   = executor;
+    this.waveWriter = waveWriter;
+    this.budget     = budget;
+    this.bucket     = bucket;
+    this.key        = key;
+    this.partSize   = partSize;
+
+    uploadId = CompletableFuture.supplyAsync(() -> s3.initiateMultipartUpload(
+        new InitiateMultipartUploadRequest(bucket, key, metadata)
+    ).getUploadId(), executor);
+
+    head = newPart();
+    head.position(WaveHeader.HEADER_LENGTH);
+    current = head;
+  }
+
+  private ByteBuffer newPart() {
+    return ByteBuffer.allocate(partSize).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  public int getLength() {
+    return WaveHeader.HEADER_LENGTH + byteCount;
+  }
+
+  private void uploadPart(int partNumber, ByteBuffer part) {
+    byte[] bytes  = part.array();
+    int    length = part.position();
+
+    budget.acquire(length);
+    CompletableFuture<PartETag> etag = uploadId.thenApplyAsync(id -> s3.uploadPart(
+        new UploadPartRequest().withBucketName(bucket)
+                               .withKey(key)
+                               .withUploadId(id)
+                               .withPartNumber(partNumber)
+                               .withPartSize(length)
+                               .withInputStream(new ByteArrayInputStream(bytes, 0, length))
+    ).getPartETag(), executor);
+
+    etag.whenComplete((ignored, error) -> budget.release(length));
+    parts.add(etag);
+  }
+
+  public void append(FloatBuffer samples) {
+    while (samples.hasRemaining()) {
+      byteCount += waveWriter.getBytesPerSample() * waveWriter.encode(samples, current);
+
+      if (!current.hasRemaining()) {
+        if (current != head) {
+          uploadPart(++partCount, current);
+        }
+        current = newPart();
+      }
+    }
+  }
+
+  private List<PartETag> etags() {
+    return parts.stream()
+                .map(CompletableFuture::join)
+                .sorted(Comparator.comparingInt(PartETag::getPartNumber))
+                .collect(Collectors.toList());
+  }
+
+  public void abort(Throwable error) {
+    log.error("aborting multipart upload of " + key, error);
+    uploadId.thenAcceptAsync(id -> s3.abortMultipartUpload(
+        new AbortMultipartUploadRequest(bucket, key, id)
+    ), executor);
+  }
+
+  public CompletableFuture<Void> complete(ObjectMetadata metadata) throws IOException {
+    byte[] header = waveWriter.toBytes(waveWriter.header(byteCount));
+    System.arraycopy(header, 0, head.array(), 0, WaveHeader.HEADER_LENGTH);
+
+    if (current != head && current.position() > 0) {
+      uploadPart(++partCount, current);
+    }
+    uploadPart(1, head);
+
+    CompletableFuture<?>[]  pending  = parts.toArray(new CompletableFuture<?>[parts.size()]);
+    CompletableFuture<Void> complete = CompletableFuture.allOf(pending)
+        .thenCombineAsync(uploadId, (ignored, id) -> {
+          s3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucket, key, id, etags()));
+          s3.copyObject(new CopyObjectRequest(bucket, key, bucket, key).withNewObjectMetadata(metadata));
+          return null;
+        }, executor);
+
+    complete.whenComplete((ignored, error) -> {
+      if (error != null) {
+        abort(error);
+      }
+    });
+
+    return complete;
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed size heap pages for encoded audio, returned once an upload no longer
+ * needs them so later files reuse the same memory. Safe for concurrent use.
+ */
+public class PagePool {
+
+  public static final int PAGE_SIZE = 64 * 1024;
+  public static final int POOL_SIZE = 256;
+
+  private final Queue<ByteBuffer> idle      = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger     idleCount = new AtomicInteger(0);
+
+  private final int pageSize;
+  private final int poolSize;
+
+  public PagePool(int pageSize, int poolSize) {
+    this.pageSize = pageSize;
+    this.poolSize = poolSize;
+  }
+
+  public PagePool() {
+    this(PAGE_SIZE, POOL_SIZE);
+  }
+
+  public int getIdleCount() {
+    return idleCount.get();
+  }
+
+  public ByteBuffer acquire() {
+    ByteBuffer page = idle.poll();
+
+    if (page != null) {
+      idleCount.decrementAndGet();
+      page.clear();
+      return page;
+    } else {
+      return ByteBuffer.allocate(pageSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+
+  public void release(ByteBuffer page) {
+    if (page.capacity() != pageSize) {
+      return;
+    }
+
+    if (idleCount.incrementAndGet() <= poolSize) {
+      idle.offer(page);
+    } else {
+      idleCount.decrementAndGet();
+    }
+  }
+
+}
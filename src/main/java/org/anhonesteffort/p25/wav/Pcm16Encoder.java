@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Encodes float samples in [-1, 1] to little endian signed 16 bit PCM, clamping
+ * out of range samples, mapping NaN to silence and rounding half up. Samples are
+ * encoded in blocks into a reused short[] then bulk copied to the output. Not
+ * thread safe.
+ */
+public class Pcm16Encoder implements SampleEncoder {
+
+  private static final int   BLOCK_SIZE = 4096;
+  private static final float SCALE      = Short.MAX_VALUE;
+
+  private final short[] block = new short[BLOCK_SIZE];
+
+  public static short sample(float sample) {
+    float clamped = Math.min(1f, Math.max(-1f, sample));
+    return (short) (clamped != clamped ? 0 : Math.round(clamped * SCALE));
+  }
+
+  public void encode(float[] in, int offset, short[] out, int count) {
+    for (int i = 0; i < count; i++) {
+      out[i] = sample(in[offset + i]);
+    }
+  }
+
+  @Override
+  public int encode(FloatBuffer in, ByteBuffer out) {
+    int         count  = Math.min(in.remaining(), out.remaining() / Short.BYTES);
+    ShortBuffer shorts = out.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+
+    for (int done = 0; done < count; ) {
+      int length = Math.min(BLOCK_SIZE, count - done);
+
+      if (in.hasArray()) {
+        encode(in.array(), in.arrayOffset() + in.position(), block, length);
+        in.position(in.position() + length);
+      } else {
+        for (int i = 0; i < length; i++) {
+          block[i] = sample(in.get());
+        }
+      }
+
+      shorts.put(block, 0, length);
+      done += length;
+    }
+
+    out.position(out.position() + (count * Short.BYTES));
+    return count;
+  }
+
+}
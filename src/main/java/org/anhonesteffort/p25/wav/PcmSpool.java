@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encoded PCM for a single call kept in a memory mapped file rather than on the
+ * heap. The file is mapped in fixed size segments as it grows, on close the
+ * segments are unmapped and the file is deleted. Nothing read from
+ * {@link #toWaveFile()} may be touched after close.
+ */
+public class PcmSpool implements Closeable {
+
+  public static final int SEGMENT_SIZE = 1024 * 1024;
+
+  private static final Logger   log      = LoggerFactory.getLogger(PcmSpool.class);
+  private static final Unmapper UNMAPPER = unmapper();
+
+  private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+  private final WaveFileWriter waveWriter;
+  private final Path           path;
+  private final FileChannel    channel;
+  private       int            byteCount = 0;
+
+  public PcmSpool(Path directory, WaveFileWriter waveWriter) throws IOException {
+    this.waveWriter = waveWriter;
+
+    Files.createDirectories(directory);
+    path    = Files.createTempFile(directory, "imbeef-", ".pcm");
+    channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+  }
+
+  private interface Unmapper {
+    void unmap(ByteBuffer buffer) throws ReflectiveOperationException;
+  }
+
+  /**
+   * Mapped buffers otherwise stay mapped until they are garbage collected. JDK 9+
+   * exposes Unsafe.invokeCleaner, JDK 8 only the buffer's own cleaner.
+   */
+  private static Unmapper unmapper() {
+    try {
+
+      Class<?> unsafeClass   = Class.forName("sun.misc.Unsafe");
+      Method   invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+      Field    theUnsafe     = unsafeClass.getDeclaredField("theUnsafe");
+
+      theUnsafe.setAccessible(true);
+      Object unsafe = theUnsafe.get(null);
+
+      return buffer -> invokeCleaner.invoke(unsafe, buffer);
+
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.debug("Unsafe.invokeCleaner unavailable, falling back to DirectBuffer.cleaner");
+    }
+
+    try {
+
+      Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+      Method clean   = Class.forName("sun.misc.Cleaner").getMethod("clean");
+
+      return buffer -> clean.invoke(cleaner.invoke(buffer));
+
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.warn("unable to unmap spool segments, they will stay mapped until gc", e);
+      return null;
+    }
+  }
+
+  static boolean unmap(ByteBuffer buffer) {
+    if (UNMAPPER == null || !buffer.isDirect()) {
+      return false;
+    }
+
+    try {
+
+      UNMAPPER.unmap(buffer);
+      return true;
+
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      log.warn("error unmapping spool segment", e);
+      return false;
+    }
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  public int getByteCount() {
+    return byteCount;
+  }
+
+  private MappedByteBuffer segment() throws IOException {
+    MappedByteBuffer segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+
+    if (segment == null || !segment.hasRemaining()) {
+      segment = channel.map(FileChannel.MapMode.READ_WRITE, (long) segments.size() * SEGMENT_SIZE, SEGMENT_SIZE);
+      segments.add(segment);
+    }
+
+    return segment;
+  }
+
+  public void append(FloatBuffer samples) throws IOException {
+    while (samples.hasRemaining()) {
+      byteCount += waveWriter.getBytesPerSample() * waveWriter.encode(samples, segment());
+    }
+  }
+
+  public WaveFile toWaveFile() throws IOException {
+    ByteBuffer[] buffers = new ByteBuffer[segments.size() + 1];
+    int          index   = 0;
+
+    buffers[index++] = ByteBuffer.wrap(waveWriter.toBytes(waveWriter.header(byteCount)));
+    for (MappedByteBuffer segment : segments) {
+      ByteBuffer bytes = segment.duplicate();
+      bytes.flip();
+      buffers[index++] = bytes;
+    }
+
+    return new WaveFile(buffers);
+  }
+
+  @Override
+  public void close() throws IOException {
+    segments.forEach(PcmSpool::unmap);
+    segments.clear();
+
+    channel.close();
+    Files.deleteIfExists(path);
+  }
+
+}
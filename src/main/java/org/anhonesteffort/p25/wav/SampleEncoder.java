@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+public interface SampleEncoder {
+
+  /**
+   * Encodes as many samples from in as fit in out, advancing both buffers.
+   * @return number of samples encoded.
+   */
+  int encode(FloatBuffer in, ByteBuffer out);
+
+}
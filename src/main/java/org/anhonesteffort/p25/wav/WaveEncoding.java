@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import java.util.function.Supplier;
+
+public enum WaveEncoding {
+
+  PCM16(WaveHeader.FORMAT_PCM,  16, Pcm16Encoder::new),
+  ULAW (WaveHeader.FORMAT_ULAW,  8, G711Encoder::ulaw),
+  ALAW (WaveHeader.FORMAT_ALAW,  8, G711Encoder::alaw);
+
+  private final short                   format;
+  private final short                   bitsPerSample;
+  private final Supplier<SampleEncoder> encoders;
+
+  WaveEncoding(short format, int bitsPerSample, Supplier<SampleEncoder> encoders) {
+    this.format        = format;
+    this.bitsPerSample = (short) bitsPerSample;
+    this.encoders      = encoders;
+  }
+
+  public short getFormat() {
+    return format;
+  }
+
+  public short getBitsPerSample() {
+    return bitsPerSample;
+  }
+
+  public int getBytesPerSample() {
+    return bitsPerSample / Byte.SIZE;
+  }
+
+  public SampleEncoder newEncoder() {
+    return encoders.get();
+  }
+
+}
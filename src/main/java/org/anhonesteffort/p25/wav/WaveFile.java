@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class WaveFile {
+
+  private final Runnable     release;
+  private final ByteBuffer[] buffers;
+  private final int          length;
+
+  public WaveFile(Runnable release, ByteBuffer... buffers) {
+    this.release = release;
+    this.buffers = buffers;
+    this.length  = Arrays.stream(buffers).mapToInt(ByteBuffer::remaining).sum();
+  }
+
+  public WaveFile(ByteBuffer... buffers) {
+    this(() -> { }, buffers);
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  public InputStream getInputStream() {
+    return new ByteBufferInputStream(buffers);
+  }
+
+  /**
+   * Hands any pooled pages back, the file must not be read afterwards.
+   */
+  public void release() {
+    release.run();
+  }
+
+}
@@ -18,26 +18,32 @@
 package org.anhonesteffort.p25.wav;
 
 import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.transfer.PersistableTransfer;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.internal.S3ProgressListener;
 import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.p25.AudioBudget;
 import org.anhonesteffort.p25.CheckpointingAudioChunk;
 import org.anhonesteffort.p25.ImbeefConfig;
 import org.anhonesteffort.p25.ImbeefMetrics;
 import org.anhonesteffort.p25.P25Config;
+import org.anhonesteffort.p25.UploadBudget;
+import org.anhonesteffort.p25.trace.CallSpan;
+import org.anhonesteffort.p25.trace.CallStage;
+import org.anhonesteffort.p25.trace.CallTrace;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
 
 import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
 
@@ -54,18 +60,69 @@ public class WaveFileS3Sender implements S3ProgressListener {
   private final List<CheckpointingAudioChunk> chunks = new LinkedList<>();
   private final ProtoP25Factory proto = new ProtoP25Factory();
 
-  private final ImbeefConfig    config;
-  private final WaveFileWriter  waveWriter;
-  private final TransferManager transferManager;
-  private       P25ChannelId    channelId;
-
-  public WaveFileS3Sender(ImbeefConfig    config,
-                          WaveFileWriter  waveWriter,
-                          TransferManager transferManager)
+  private final ImbeefConfig         config;
+  private final AudioFileWriter      fileWriter;
+  private final WaveFileWriter       waveWriter;
+  private final TransferManager      transferManager;
+  private final ExecutorService      executor;
+  private final UploadBudget         budget;
+  private final AudioBudget.Account  memory;
+  private final ImbeefMetrics        metrics;
+  private       P25ChannelId         channelId;
+  private       MultipartWaveUpload  upload;
+  private       PcmSpool             spool;
+  private       WaveFile             encoded;
+  private       CallSpan             transfer;
+  private       int                  byteCount   = 0;
+  private       int                  inFlight    = 0;
+  private       long                 sendTime    = -1;
+  private       long                 sampleCount = 0;
+  private       long                 fileBytes   = 0;
+  private       long                 buffered    = 0;
+
+  public WaveFileS3Sender(ImbeefConfig        config,
+                          AudioFileWriter     fileWriter,
+                          TransferManager     transferManager,
+                          ExecutorService     executor,
+                          UploadBudget        budget,
+                          AudioBudget.Account memory,
+                          ImbeefMetrics       metrics)
   {
     this.config          = config;
-    this.waveWriter      = waveWriter;
+    this.fileWriter      = fileWriter;
+    this.waveWriter      = fileWriter instanceof WaveFileWriter ? (WaveFileWriter) fileWriter : null;
     this.transferManager = transferManager;
+    this.executor        = executor;
+    this.budget          = budget;
+    this.memory          = memory;
+    this.metrics         = metrics;
+  }
+
+  public WaveFileS3Sender(ImbeefConfig    config,
+                          AudioFileWriter fileWriter,
+                          TransferManager transferManager,
+                          ExecutorService executor,
+                          UploadBudget    budget,
+                          ImbeefMetrics   metrics)
+  {
+    this(config, fileWriter, transferManager, executor, budget, new AudioBudget(0).account(), metrics);
+  }
+
+  public WaveFileS3Sender(ImbeefConfig    config,
+                          AudioFileWriter fileWriter,
+                          TransferManager transferManager,
+                          ExecutorService executor,
+                          ImbeefMetrics   metrics)
+  {
+    this(config, fileWriter, transferManager, executor, new UploadBudget(0, 0, metrics), metrics);
+  }
+
+  public WaveFileS3Sender(ImbeefConfig    config,
+                          AudioFileWriter fileWriter,
+                          TransferManager transferManager,
+                          ImbeefMetrics   metrics)
+  {
+    this(config, fileWriter, transferManager, null, metrics);
   }
 
   private P25ChannelId correctChannelId(P25ChannelId channelId) {
@@ -96,11 +153,94 @@ public class WaveFileS3Sender implements S3ProgressListener {
     }
   }
 
-  public void queue(CheckpointingAudioChunk chunk) {
+  private boolean streaming() {
+    return waveWriter != null && executor != null && config.getS3PartSize() > 0;
+  }
+
+  private void startUpload() {
+    upload = new MultipartWaveUpload(
+        transferManager.getAmazonS3Client(), executor, waveWriter, budget,
+        config.getS3Bucket(), key(), metadata(), config.getS3PartSize()
+    );
+
+    log.info(proto.toString(channelId) + " wave file streaming to s3 as multipart upload");
+    chunks.forEach(this::append);
+  }
+
+  private void hold(CheckpointingAudioChunk chunk) {
+    long bytes = chunk.getAllocatedBytes();
+    memory.allocate(bytes);
+    buffered += bytes;
+  }
+
+  private void free(CheckpointingAudioChunk chunk) {
+    long bytes = chunk.getAllocatedBytes();
+    memory.free(bytes);
+    buffered -= bytes;
+  }
+
+  private void append(CheckpointingAudioChunk chunk) {
+    upload.append(chunk.getBuffer().duplicate());
+    chunk.release();
+    free(chunk);
+  }
+
+  private boolean spooling() {
+    return waveWriter != null && !streaming() && config.getSpoolThresholdBytes() > 0;
+  }
+
+  private void startSpool() throws IOException {
+    spool = new PcmSpool(Paths.get(config.getSpoolDir()), waveWriter);
+
+    metrics.wavSpooled();
+    log.info(proto.toString(channelId) + " wave file spilling to " + spool.getPath());
+
+    for (CheckpointingAudioChunk chunk : chunks) {
+      spill(chunk);
+    }
+  }
+
+  private void spill(CheckpointingAudioChunk chunk) throws IOException {
+    spool.append(chunk.getBuffer().duplicate());
+    chunk.release();
+    free(chunk);
+  }
+
+  private void closeSpool() {
+    if (spool != null) {
+      try {
+
+        spool.close();
+
+      } catch (IOException e) {
+        log.error(proto.toString(channelId) + " error deleting spool file " + spool.getPath(), e);
+      }
+    }
+  }
+
+  public void queue(CheckpointingAudioChunk chunk) throws IOException {
     chunks.add(chunk);
+    hold(chunk);
+    sampleCount += chunk.getBuffer().remaining();
     if (channelId == null || channelId.getSourceId() == P25Config.UNIT_ID_NONE) {
       channelId = correctChannelId(chunk.getChannelId());
     }
+
+    if (upload != null) {
+      append(chunk);
+    } else if (spool != null) {
+      spill(chunk);
+    } else if (streaming()) {
+      byteCount += waveWriter.getBytesPerSample() * chunk.getBuffer().remaining();
+      if (byteCount >= config.getS3PartSize()) {
+        startUpload();
+      }
+    } else if (spooling()) {
+      byteCount += waveWriter.getBytesPerSample() * chunk.getBuffer().remaining();
+      if (byteCount >= config.getSpoolThresholdBytes()) {
+        startSpool();
+      }
+    }
   }
 
   private Long getStartTime() {
@@ -129,10 +269,9 @@ public class WaveFileS3Sender implements S3ProgressListener {
     return chunks.stream().anyMatch(CheckpointingAudioChunk::wasTerminated);
   }
 
-  private ObjectMetadata metadata(long length) {
+  private ObjectMetadata metadata() {
     ObjectMetadata metadata = new ObjectMetadata();
 
-    metadata.setContentLength(length);
     metadata.addUserMetadata(METADATA_CHANNEL_ID, proto.toString(channelId));
     metadata.addUserMetadata(METADATA_TERMINATED, wasTerminated().toString());
     metadata.addUserMetadata(METADATA_START_TIME, getStartTime().toString());
@@ -163,29 +302,126 @@ public class WaveFileS3Sender implements S3ProgressListener {
         throw new IllegalStateException("don't know how to work with this " + proto.toString(channelId));
     }
 
-    return prefix + ":" + System.currentTimeMillis() + ".wav";
+    return prefix + ":" + System.currentTimeMillis() + "." + fileWriter.getExtension();
+  }
+
+  /**
+   * Streamed files are initiated before the call ends so their end time and
+   * terminated flag are rewritten on completion. Checkpoints still wait for
+   * the whole upload.
+   */
+  private void completeUpload() throws IOException {
+    metrics.wavSize(upload.getLength());
+    metrics.wavQueued();
+    log.info(proto.toString(channelId) + " multipart wave file completing");
+
+    upload.complete(metadata()).whenComplete((ignored, error) -> {
+      if (error == null) {
+        progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_COMPLETED_EVENT));
+      } else {
+        progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_FAILED_EVENT));
+      }
+    });
   }
 
   public void writeAndSend() throws IOException {
-    Optional<ByteArrayOutputStream> outStream = waveWriter.write(chunks);
+    CallSpan event = CallTrace.begin(CallStage.CALL_FINALIZED);
+
+    sendTime = System.currentTimeMillis();
+    transfer = CallTrace.begin(CallStage.UPLOAD_COMPLETED);
+    metrics.callEndToSend(sendTime - getEndTime());
+
+    if (upload != null) {
+      fileBytes = upload.getLength();
+      completeUpload();
+    } else {
+      send();
+    }
+
+    event.commit(channelId, sampleCount, fileBytes);
+  }
+
+  private void send() throws IOException {
+    CallSpan encode = CallTrace.begin(CallStage.AUDIO_ENCODE);
 
-    if (!outStream.isPresent()) {
+    Optional<WaveFile> waveFile;
+
+    try {
+
+      waveFile = spool != null ? Optional.of(spool.toWaveFile()) : fileWriter.write(chunks);
+
+    } finally {
+      chunks.forEach(CheckpointingAudioChunk::release);
+      memory.free(buffered);
+      buffered = 0;
+    }
+
+    fileBytes = waveFile.isPresent() ? waveFile.get().getLength() : 0;
+    encode.commit(channelId, sampleCount, fileBytes);
+
+    if (!waveFile.isPresent()) {
       chunks.forEach(CheckpointingAudioChunk::checkpoint);
     } else {
-      byte[]               outBytes = outStream.get().toByteArray();
-      ByteArrayInputStream inStream = new ByteArrayInputStream(outBytes);
-      ObjectMetadata       metadata = metadata(outBytes.length);
+      ObjectMetadata metadata = metadata();
+
+      metadata.setContentLength(waveFile.get().getLength());
+      inFlight = waveFile.get().getLength();
+      encoded  = waveFile.get();
+      budget.acquire(inFlight);
 
-      ImbeefMetrics.getInstance().wavSize(outBytes.length);
-      ImbeefMetrics.getInstance().wavQueued();
+      metrics.wavSize(waveFile.get().getLength());
+      metrics.wavQueued();
       log.info(proto.toString(channelId) + " wave file queued for s3 upload");
       transferManager.upload(
-          new PutObjectRequest(config.getS3Bucket(), key(), inStream, metadata),
+          new PutObjectRequest(config.getS3Bucket(), key(), waveFile.get().getInputStream(), metadata),
           this
       );
     }
   }
 
+  /**
+   * Releases everything queued without uploading it, for when the call cannot
+   * be written. The data units behind it are abandoned rather than checkpointed.
+   */
+  public void discard() {
+    chunks.forEach(CheckpointingAudioChunk::release);
+    chunks.forEach(CheckpointingAudioChunk::abandon);
+    memory.free(buffered);
+    buffered = 0;
+
+    if (upload != null) {
+      upload.abort(new IOException("call discarded"));
+    }
+
+    releaseBudget();
+    releaseFile();
+    closeSpool();
+  }
+
+  private void releaseFile() {
+    if (encoded != null) {
+      encoded.release();
+      encoded = null;
+    }
+  }
+
+  private void releaseBudget() {
+    if (inFlight > 0) {
+      budget.release(inFlight);
+      inFlight = 0;
+    }
+  }
+
+  private void durable() {
+    long now = System.currentTimeMillis();
+
+    if (sendTime >= 0) {
+      metrics.sendToDurable(now - sendTime);
+      metrics.radioToDurable(now - getEndTime());
+      transfer.commit(channelId, sampleCount, fileBytes);
+    }
+  }
+
   @Override
   public void onPersistableTransfer(PersistableTransfer transfer) { }
 
@@ -193,16 +429,26 @@ public class WaveFileS3Sender implements S3ProgressListener {
   public void progressChanged(ProgressEvent event) {
     switch (event.getEventType()) {
       case TRANSFER_COMPLETED_EVENT:
-        ImbeefMetrics.getInstance().wavPutSuccess();
+        metrics.wavPutSuccess();
+        durable();
         log.info(proto.toString(channelId) + " wave file successfully put to s3");
         chunks.forEach(CheckpointingAudioChunk::checkpoint);
+        releaseBudget();
+        releaseFile();
+        closeSpool();
         break;
 
       case TRANSFER_CANCELED_EVENT:
       case TRANSFER_FAILED_EVENT:
       case TRANSFER_PART_FAILED_EVENT:
-        ImbeefMetrics.getInstance().wavPutFailure();
+        metrics.wavPutFailure();
         log.error(proto.toString(channelId) + " error sending wave file " + event.toString());
+        if (event.getEventType() != ProgressEventType.TRANSFER_PART_FAILED_EVENT) {
+          chunks.forEach(CheckpointingAudioChunk::abandon);
+          releaseBudget();
+          releaseFile();
+          closeSpool();
+        }
         break;
     }
   }
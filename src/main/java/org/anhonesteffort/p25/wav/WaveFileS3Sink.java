@@ -18,79 +18,124 @@
 package org.anhonesteffort.p25.wav;
 
 import com.amazonaws.services.s3.transfer.TransferManager;
-import io.radiowitness.proto.p25.ProtoP25Factory;
 import org.anhonesteffort.dsp.Sink;
+import org.anhonesteffort.p25.AudioBudget;
+import org.anhonesteffort.p25.ChannelKey;
+import org.anhonesteffort.p25.ChannelKeyMap;
 import org.anhonesteffort.p25.CheckpointingAudioChunk;
 import org.anhonesteffort.p25.ImbeefConfig;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.anhonesteffort.p25.UploadBudget;
+import org.anhonesteffort.p25.flac.FlacFileWriter;
+import org.anhonesteffort.p25.imbe.ImbeFileWriter;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-
-import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+import java.util.concurrent.ExecutorService;
 
 public class WaveFileS3Sink implements Sink<CheckpointingAudioChunk> {
 
-  private final ProtoP25Factory               proto     = new ProtoP25Factory();
-  private final Map<String, WaveFileS3Sender> senderMap = new HashMap<>();
-
-  private final ImbeefConfig      config;
-  private final WaveHeaderFactory headers;
-  private final TransferManager   transferManager;
-
-  public WaveFileS3Sink(ImbeefConfig      config,
-                        WaveHeaderFactory headers,
-                        TransferManager   transferManager)
+  private final ChannelKeyMap<WaveFileS3Sender> senderMap = new ChannelKeyMap<>();
+
+  private final ImbeefConfig        config;
+  private final AudioFileWriter     writer;
+  private final TransferManager     transferManager;
+  private final ExecutorService     executor;
+  private final UploadBudget        budget;
+  private final AudioBudget.Account memory;
+  private final ImbeefMetrics       metrics;
+
+  public WaveFileS3Sink(ImbeefConfig        config,
+                        WaveHeaderFactory   headers,
+                        PagePool            pages,
+                        TransferManager     transferManager,
+                        ExecutorService     executor,
+                        UploadBudget        budget,
+                        AudioBudget.Account memory,
+                        ImbeefMetrics       metrics)
   {
     this.config          = config;
-    this.headers         = headers;
+    this.writer          = writer(config, headers, pages);
     this.transferManager = transferManager;
+    this.executor        = executor;
+    this.budget          = budget;
+    this.memory          = memory;
+    this.metrics         = metrics;
+  }
+
+  private static AudioFileWriter writer(ImbeefConfig config, WaveHeaderFactory headers, PagePool pages) {
+    if (ImbeefConfig.AUDIO_FORMAT_FLAC.equals(config.getAudioFormat())) {
+      return new FlacFileWriter(config);
+    } else if (ImbeefConfig.AUDIO_FORMAT_IMBE.equals(config.getAudioFormat())) {
+      return new ImbeFileWriter();
+    } else {
+      return new WaveFileWriter(headers, pages);
+    }
+  }
+
+  private void drop(CheckpointingAudioChunk chunk) {
+    chunk.release();
+    chunk.abandon();
+  }
+
+  private void queue(long high, long low, WaveFileS3Sender sender, CheckpointingAudioChunk chunk) {
+    if (sender == null) {
+      drop(chunk);
+      return;
+    }
+
+    try {
+
+      sender.queue(chunk);
+
+    } catch (IOException e) {
+      senderMap.remove(high, low);
+      sender.discard();
+      throw new RuntimeException("error spooling wav file", e);
+    }
   }
 
-  private String key(P25ChannelId channelId) {
-    return proto.toString(channelId);
+  private void queueAndSend(WaveFileS3Sender sender, CheckpointingAudioChunk chunk) {
+    if (sender == null) {
+      drop(chunk);
+      return;
+    }
+
+    try {
+
+      sender.queue(chunk);
+      sender.writeAndSend();
+
+    } catch (IOException e) {
+      sender.discard();
+      throw new RuntimeException("error writing wav file", e);
+    }
   }
 
   @Override
   public void consume(CheckpointingAudioChunk chunk) {
+    long high = ChannelKey.high(chunk.getChannelId());
+    long low  = ChannelKey.low(chunk.getChannelId());
+
     if (chunk.isFirst() && !chunk.isLast()) {
-      WaveFileWriter   writer   = new WaveFileWriter(headers);
-      WaveFileS3Sender sender   = new WaveFileS3Sender(config, writer, transferManager);
-      WaveFileS3Sender previous = senderMap.put(key(chunk.getChannelId()), sender);
+      WaveFileS3Sender sender   = new WaveFileS3Sender(config, writer, transferManager, executor, budget, memory, metrics);
+      WaveFileS3Sender previous = senderMap.put(high, low, sender);
 
       if (previous != null) {
         throw new RuntimeException("sender map should not have previous value on first chunk");
       } else {
-        sender.queue(chunk);
+        queue(high, low, sender, chunk);
       }
     } else if (!chunk.isFirst() && !chunk.isLast()) {
-      senderMap.get(key(chunk.getChannelId())).queue(chunk);
+      queue(high, low, senderMap.get(high, low), chunk);
     } else if (!chunk.isFirst() && chunk.isLast()) {
-      WaveFileS3Sender sender = senderMap.remove(key(chunk.getChannelId()));
-
-      try {
-
-        sender.queue(chunk);
-        sender.writeAndSend();
-
-      } catch (IOException e) {
-        throw new RuntimeException("error writing wav file", e);
-      }
+      queueAndSend(senderMap.remove(high, low), chunk);
     } else {
-      WaveFileWriter   writer = new WaveFileWriter(headers);
-      WaveFileS3Sender sender = new WaveFileS3Sender(config, writer, transferManager);
+      WaveFileS3Sender sender = new WaveFileS3Sender(config, writer, transferManager, executor, budget, memory, metrics);
 
-      if (senderMap.containsKey(key(chunk.getChannelId()))) {
+      if (senderMap.get(high, low) != null) {
         throw new RuntimeException("sender map should not have previous value on first chunk");
       } else {
-        try {
-
-          sender.queue(chunk);
-          sender.writeAndSend();
-
-        } catch (IOException e) {
-          throw new RuntimeException("error writing wav file", e);
-        }
+        queueAndSend(sender, chunk);
       }
     }
 
@@ -22,51 +22,87 @@ import org.anhonesteffort.p25.CheckpointingAudioChunk;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
-import java.nio.ShortBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.IntStream;
 
-public class WaveFileWriter {
+/**
+ * Encodes calls into pages borrowed from a {@link PagePool}, the pages go back
+ * when the returned file is released.
+ */
+public class WaveFileWriter implements AudioFileWriter {
 
   private final WaveHeaderFactory headers;
+  private final PagePool          pages;
+  private final SampleEncoder     encoder;
+  private final int               bytesPerSample;
+
+  public WaveFileWriter(WaveHeaderFactory headers, PagePool pages) {
+    this.headers        = headers;
+    this.pages          = pages;
+    this.encoder        = headers.getEncoding().newEncoder();
+    this.bytesPerSample = headers.getEncoding().getBytesPerSample();
+  }
 
   public WaveFileWriter(WaveHeaderFactory headers) {
-    this.headers = headers;
+    this(headers, new PagePool());
+  }
+
+  @Override
+  public String getExtension() {
+    return "wav";
   }
 
-  private ByteArrayOutputStream streamForHeader(WaveHeader header) {
-    return new ByteArrayOutputStream(WaveHeader.HEADER_LENGTH + header.getNumBytes());
+  public int getBytesPerSample() {
+    return bytesPerSample;
   }
 
-  private byte[] toBytes(FloatBuffer buffer) {
-    ByteBuffer  bytes  = ByteBuffer.allocate(buffer.remaining() * 2).order(ByteOrder.LITTLE_ENDIAN);
-    ShortBuffer shorts = bytes.asShortBuffer();
+  public WaveHeader header(int byteCount) {
+    return headers.create(byteCount);
+  }
 
-    IntStream.range(0, buffer.remaining()).forEach(i -> shorts.put((short) (buffer.get(i) * Short.MAX_VALUE)));
+  public byte[] toBytes(WaveHeader header) throws IOException {
+    ByteArrayOutputStream stream = new ByteArrayOutputStream(WaveHeader.HEADER_LENGTH);
+    header.write(stream);
+    return stream.toByteArray();
+  }
 
-    return bytes.array();
+  public int encode(FloatBuffer samples, ByteBuffer out) {
+    return encoder.encode(samples, out);
   }
 
-  public Optional<ByteArrayOutputStream> write(List<CheckpointingAudioChunk> chunks) throws IOException {
+  @Override
+  public Optional<WaveFile> write(List<CheckpointingAudioChunk> chunks) throws IOException {
     WaveHeader header = headers.create(chunks);
 
     if (header.getNumBytes() <= 0) {
       return Optional.empty();
     } else {
-      ByteArrayOutputStream stream = streamForHeader(header);
+      List<ByteBuffer> used = new ArrayList<>();
+      ByteBuffer       page = pages.acquire();
+
+      used.add(page);
+      page.put(toBytes(header));
 
-      header.write(stream);
       for (CheckpointingAudioChunk chunk : chunks) {
-        stream.write(toBytes(chunk.getBuffer()));
+        FloatBuffer samples = chunk.getBuffer().duplicate();
+
+        while (samples.hasRemaining()) {
+          if (page.remaining() < bytesPerSample) {
+            page = pages.acquire();
+            used.add(page);
+          }
+          encoder.encode(samples, page);
+        }
       }
 
-      stream.flush();
-      stream.close();
+      ByteBuffer[] buffers = new ByteBuffer[used.size()];
+      for (int i = 0; i < buffers.length; i++) {
+        buffers[i] = (ByteBuffer) used.get(i).duplicate().flip();
+      }
 
-      return Optional.of(stream);
+      return Optional.of(new WaveFile(() -> used.forEach(pages::release), buffers));
     }
   }
 
@@ -24,13 +24,30 @@ import java.util.List;
 
 public class WaveHeaderFactory {
 
+  private final WaveEncoding encoding;
+
+  public WaveHeaderFactory(WaveEncoding encoding) {
+    this.encoding = encoding;
+  }
+
+  public WaveHeaderFactory() {
+    this(WaveEncoding.PCM16);
+  }
+
+  public WaveEncoding getEncoding() {
+    return encoding;
+  }
+
   public WaveHeader create(List<CheckpointingAudioChunk> chunks) {
-    int byteCount = Short.BYTES * chunks.stream().mapToInt(chunk -> chunk.getBuffer().remaining()).sum();
+    return create(encoding.getBytesPerSample() * chunks.stream().mapToInt(chunk -> chunk.getBuffer().remaining()).sum());
+  }
+
+  public WaveHeader create(int byteCount) {
     return new WaveHeader(
-        WaveHeader.FORMAT_PCM,
+        encoding.getFormat(),
         (short)ImbeConverterFactory.CHANNEL_COUNT,
         ImbeConverterFactory.SAMPLE_RATE_8khz,
-        (short) ImbeConverterFactory.SAMPLE_BIT_LENGTH,
+        encoding.getBitsPerSample(),
         byteCount
     );
   }
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import org.junit.Test;
+
+public class AudioBudgetTest {
+
+  @Test
+  public void testZeroMaxIsUnlimited() {
+    final AudioBudget BUDGET = new AudioBudget(0);
+
+    BUDGET.account().allocate(Long.MAX_VALUE / 2);
+    assert !BUDGET.isExceeded();
+  }
+
+  @Test
+  public void testAccountsSumToBudget() {
+    final AudioBudget         BUDGET = new AudioBudget(100);
+    final AudioBudget.Account ONE    = BUDGET.account();
+    final AudioBudget.Account TWO    = BUDGET.account();
+
+    ONE.allocate(60);
+    TWO.allocate(39);
+    assert BUDGET.getBytes() == 99;
+    assert !BUDGET.isExceeded();
+
+    TWO.allocate(1);
+    assert ONE.getBytes() == 60;
+    assert TWO.getBytes() == 40;
+    assert BUDGET.isExceeded();
+
+    ONE.free(60);
+    assert ONE.getBytes()    == 0;
+    assert BUDGET.getBytes() == 40;
+    assert !BUDGET.isExceeded();
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import com.codahale.metrics.Gauge;
+import org.anhonesteffort.p25.call.SaneCallFilter;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.nio.FloatBuffer;
+import java.util.LinkedList;
+
+public class AudioBufferPoolTest {
+
+  private final ImbeefMetrics metrics = Mockito.mock(ImbeefMetrics.class);
+
+  @Test
+  public void testReleasedBufferReusedAndCleared() {
+    final AudioBufferPool POOL   = new AudioBufferPool(10, 2, false, metrics);
+    final FloatBuffer     BUFFER = POOL.acquire();
+
+    assert BUFFER.capacity() == 10;
+    BUFFER.put(new float[5]);
+    BUFFER.flip();
+
+    POOL.release(BUFFER);
+    final FloatBuffer REUSED = POOL.acquire();
+
+    assert REUSED == BUFFER;
+    assert REUSED.position() == 0;
+    assert REUSED.remaining() == 10;
+  }
+
+  @Test
+  public void testPoolSizeBounded() {
+    final AudioBufferPool POOL    = new AudioBufferPool(10, 1, false, metrics);
+    final FloatBuffer     BUFFER1 = POOL.acquire();
+    final FloatBuffer     BUFFER2 = POOL.acquire();
+
+    POOL.release(BUFFER1);
+    POOL.release(BUFFER2);
+
+    assert POOL.acquire() == BUFFER1;
+    assert POOL.acquire() != BUFFER2;
+  }
+
+  @Test
+  public void testForeignBuffersNotPooled() {
+    final AudioBufferPool POOL    = new AudioBufferPool(10, 2, false, metrics);
+    final FloatBuffer     FOREIGN = FloatBuffer.allocate(0);
+
+    POOL.release(FOREIGN);
+    assert POOL.acquire() != FOREIGN;
+  }
+
+  @Test
+  public void testDirectBuffers() {
+    final AudioBufferPool POOL   = new AudioBufferPool(10, 2, true, metrics);
+    final FloatBuffer     BUFFER = POOL.acquire();
+
+    assert BUFFER.isDirect();
+    assert BUFFER.capacity() == 10;
+  }
+
+  @Test
+  public void testChunkReleasesOnce() {
+    final AudioBufferPool         POOL   = new AudioBufferPool(10, 2, false, metrics);
+    final FloatBuffer             BUFFER = POOL.acquire();
+    final CheckpointingAudioChunk CHUNK  = new CheckpointingAudioChunk(
+        null, true, true, true, 10l, 20l, 10d, 20d, 30, BUFFER, null, POOL
+    );
+
+    CHUNK.release();
+    CHUNK.release();
+
+    assert POOL.acquire() == BUFFER;
+    assert POOL.acquire() != BUFFER;
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testFilterDropReleasesBuffer() {
+    final AudioBufferPool       POOL   = new AudioBufferPool(10, 2, false, metrics);
+    final ArgumentCaptor<Gauge> IN_USE = ArgumentCaptor.forClass(Gauge.class);
+
+    Mockito.verify(metrics).registerAudioBufferPool(Mockito.any(), IN_USE.capture());
+
+    final FloatBuffer             BUFFER = POOL.acquire();
+    final CheckpointingAudioChunk CHUNK  = new CheckpointingAudioChunk(
+        null, true, false, false, 10l, 20l, 10d, 20d, 30, BUFFER, new LinkedList<>(), POOL
+    );
+
+    BUFFER.flip();
+    assert IN_USE.getValue().getValue().equals(1);
+
+    new SaneCallFilter().consume(CHUNK);
+    assert IN_USE.getValue().getValue().equals(0);
+  }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import org.anhonesteffort.jmbe.iface.AudioConverter;
+import org.anhonesteffort.p25.audio.ImbeConverterFactory;
+import org.anhonesteffort.p25.call.SafeAudioConverter;
+import org.anhonesteffort.p25.protocol.frame.VoiceFrame;
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+public class AudioConverterPoolTest {
+
+  private final ImbeefMetrics metrics = Mockito.mock(ImbeefMetrics.class);
+
+  private ImbeConverterFactory converters() {
+    final ImbeConverterFactory CONVERTERS = Mockito.mock(ImbeConverterFactory.class);
+
+    Mockito.when(CONVERTERS.create(Mockito.anyString())).then(invocation -> {
+      AudioConverter codec = Mockito.mock(AudioConverter.class);
+      Mockito.when(codec.decode(Mockito.any())).thenReturn(new float[10]);
+      return Optional.of(codec);
+    });
+
+    return CONVERTERS;
+  }
+
+  @Test
+  public void testReleasedConverterReusedAndReset() {
+    final AudioConverterPool POOL      = new AudioConverterPool(converters(), 2, metrics);
+    final SafeAudioConverter CONVERTER = POOL.acquire();
+    final VoiceFrame[]       FRAMES    = new VoiceFrame[] {new VoiceFrame(new byte[10])};
+
+    CONVERTER.decode(FRAMES, 0, FloatBuffer.allocate(5));
+    assert CONVERTER.hasPending();
+
+    POOL.release(CONVERTER);
+    final SafeAudioConverter REUSED = POOL.acquire();
+
+    assert REUSED == CONVERTER;
+    assert !REUSED.hasPending();
+
+    Mockito.verify(metrics, Mockito.times(1)).converterPoolMiss();
+    Mockito.verify(metrics, Mockito.times(1)).converterPoolHit();
+    Mockito.verify(metrics, Mockito.times(1)).converterCreate(Mockito.anyLong());
+  }
+
+  @Test
+  public void testPoolSizeBounded() {
+    final ImbeConverterFactory CONVERTERS = converters();
+    final AudioConverterPool   POOL       = new AudioConverterPool(CONVERTERS, 1, metrics);
+    final SafeAudioConverter   CONVERTER1 = POOL.acquire();
+    final SafeAudioConverter   CONVERTER2 = POOL.acquire();
+
+    POOL.release(CONVERTER1);
+    POOL.release(CONVERTER2);
+
+    assert POOL.acquire() == CONVERTER1;
+    assert POOL.acquire() != CONVERTER2;
+    Mockito.verify(CONVERTERS, Mockito.times(3)).create(ImbeConverterFactory.AUDIO_FORMAT_8khz);
+  }
+
+  private ImbeConverterFactory statefulConverters() {
+    final ImbeConverterFactory CONVERTERS = Mockito.mock(ImbeConverterFactory.class);
+
+    Mockito.when(CONVERTERS.create(Mockito.anyString())).then(invocation -> {
+      AudioConverter codec    = Mockito.mock(AudioConverter.class);
+      byte[][]       previous = new byte[][] {new byte[1]};
+
+      Mockito.when(codec.decode(Mockito.any())).then(decode -> {
+        byte[] frame = (byte[]) decode.getArguments()[0];
+        float  last  = previous[0][0];
+        previous[0]  = frame;
+        return new float[] {last, frame[0]};
+      });
+
+      return Optional.of(codec);
+    });
+
+    return CONVERTERS;
+  }
+
+  @Test
+  public void testFirstFrameDecodesSameFreshOrReused() {
+    final AudioConverterPool POOL  = new AudioConverterPool(statefulConverters(), 2, metrics);
+    final byte[]             FRAME = new byte[18];
+    final byte[]             OTHER = new byte[18];
+
+    Arrays.fill(FRAME, (byte) 7);
+    Arrays.fill(OTHER, (byte) 9);
+
+    final SafeAudioConverter FRESH = POOL.acquire();
+    final SafeAudioConverter USED  = POOL.acquire();
+
+    USED.decode(OTHER);
+    POOL.release(USED);
+
+    final SafeAudioConverter REUSED = POOL.acquire();
+    assert REUSED == USED;
+    assert Arrays.equals(FRESH.decode(FRAME), REUSED.decode(FRAME));
+  }
+
+  @Test
+  public void testRealConverterPrimedToFreshState() {
+    final ImbeConverterFactory CONVERTERS = new ImbeConverterFactory();
+    Assume.assumeTrue(CONVERTERS.create(ImbeConverterFactory.AUDIO_FORMAT_8khz).isPresent());
+
+    final AudioConverterPool POOL   = new AudioConverterPool(CONVERTERS, 2, metrics);
+    final Random             RANDOM = new Random(1);
+    final byte[]             FRAME  = new byte[18];
+    final byte[]             OTHER  = new byte[18];
+
+    RANDOM.nextBytes(FRAME);
+
+    final SafeAudioConverter FRESH = POOL.acquire();
+    final SafeAudioConverter USED  = POOL.acquire();
+
+    for (int i = 0; i < 27; i++) {
+      RANDOM.nextBytes(OTHER);
+      USED.decode(OTHER);
+    }
+    POOL.release(USED);
+
+    final SafeAudioConverter REUSED = POOL.acquire();
+    assert REUSED == USED;
+    assert Arrays.equals(FRESH.decode(FRAME), REUSED.decode(FRAME));
+  }
+
+}
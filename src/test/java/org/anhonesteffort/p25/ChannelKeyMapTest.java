@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+
+public class ChannelKeyMapTest {
+
+  @Test
+  public void testDistinctChannelsHaveDistinctKeys() {
+    final ProtoP25Factory PROTO  = new ProtoP25Factory();
+    final P25ChannelId    GROUP1 = PROTO.groupId(1, 2, 3, 4, 5, 851012500d).build();
+    final P25ChannelId    GROUP2 = PROTO.groupId(1, 2, 3, 4, 5, 851025000d).build();
+    final P25ChannelId    GROUP3 = PROTO.groupId(1, 2, 3, 4, 6, 851012500d).build();
+    final P25ChannelId    DIRECT = PROTO.directId(1, 2, 3, 4, 5).build();
+
+    final ChannelKeyMap<P25ChannelId> MAP = new ChannelKeyMap<>();
+
+    for (P25ChannelId channel : new P25ChannelId[] {GROUP1, GROUP2, GROUP3, DIRECT}) {
+      assert MAP.put(ChannelKey.high(channel), ChannelKey.low(channel), channel) == null;
+    }
+
+    assert MAP.size() == 4;
+    assert MAP.get(ChannelKey.high(GROUP2), ChannelKey.low(GROUP2)) == GROUP2;
+    assert MAP.get(ChannelKey.high(DIRECT), ChannelKey.low(DIRECT)) == DIRECT;
+  }
+
+  @Test
+  public void testPutReplacesPrevious() {
+    final ChannelKeyMap<String> MAP = new ChannelKeyMap<>();
+
+    assert MAP.put(1, 2, "a") == null;
+    assert MAP.put(1, 2, "b").equals("a");
+    assert MAP.get(1, 2).equals("b");
+    assert MAP.size() == 1;
+  }
+
+  @Test
+  public void testRemoveMissingReturnsNull() {
+    final ChannelKeyMap<String> MAP = new ChannelKeyMap<>();
+
+    MAP.put(1, 2, "a");
+
+    assert MAP.remove(2, 1) == null;
+    assert MAP.remove(1, 2).equals("a");
+    assert MAP.remove(1, 2) == null;
+    assert MAP.isEmpty();
+  }
+
+  @Test
+  public void testMatchesHashMapUnderChurn() {
+    final ChannelKeyMap<Long> MAP    = new ChannelKeyMap<>();
+    final Map<Long, Long>     EXPECT = new HashMap<>();
+    final Random              RANDOM = new Random(1337);
+
+    for (int i = 0; i < 100000; i++) {
+      final long KEY = RANDOM.nextInt(2048);
+
+      if (RANDOM.nextBoolean()) {
+        assert (MAP.put(KEY, ~KEY, KEY) == null) == (EXPECT.put(KEY, KEY) == null);
+      } else {
+        assert (MAP.remove(KEY, ~KEY) == null) == (EXPECT.remove(KEY) == null);
+      }
+      assert MAP.size() == EXPECT.size();
+    }
+
+    for (long key = 0; key < 2048; key++) {
+      assert (MAP.get(key, ~key) == null) == !EXPECT.containsKey(key);
+    }
+  }
+
+}
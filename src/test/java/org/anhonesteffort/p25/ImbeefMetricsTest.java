@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class ImbeefMetricsTest {
+
+  @Test
+  public void testTimerSamplesBounded() {
+    final MetricRegistry REGISTRY = new MetricRegistry();
+    final ImbeefMetrics  METRICS  = new ImbeefMetrics(REGISTRY);
+
+    for (int i = 0; i < 20000; i++) {
+      METRICS.ingestLag(i < 19000 ? 10 : 1000);
+    }
+
+    final Snapshot SNAPSHOT = REGISTRY.timer("ingestLag").getSnapshot();
+
+    assert SNAPSHOT.size() == 8192;
+    assert SNAPSHOT.getMedian()          == TimeUnit.MILLISECONDS.toNanos(10);
+    assert SNAPSHOT.get999thPercentile() == TimeUnit.MILLISECONDS.toNanos(1000);
+    assert REGISTRY.timer("ingestLag").getCount() == 20000;
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class UploadBudgetTest {
+
+  private final ImbeefMetrics metrics = Mockito.mock(ImbeefMetrics.class);
+
+  @Test
+  public void testZeroMaxIsUnlimited() {
+    final UploadBudget BUDGET = new UploadBudget(0, 0, metrics);
+
+    BUDGET.acquire(Integer.MAX_VALUE);
+    BUDGET.acquire(Integer.MAX_VALUE);
+
+    assert !BUDGET.isExceeded();
+  }
+
+  @Test
+  public void testExceededByBytesOrUploads() {
+    final UploadBudget BYTES   = new UploadBudget(100, 0, metrics);
+    final UploadBudget UPLOADS = new UploadBudget(0, 2, metrics);
+
+    BYTES.acquire(99);
+    assert !BYTES.isExceeded();
+    BYTES.acquire(1);
+    assert BYTES.isExceeded();
+    BYTES.release(50);
+    assert !BYTES.isExceeded();
+
+    UPLOADS.acquire(1);
+    assert !UPLOADS.isExceeded();
+    UPLOADS.acquire(1);
+    assert UPLOADS.isExceeded();
+    UPLOADS.release(1);
+    assert !UPLOADS.isExceeded();
+  }
+
+  @Test
+  public void testAwaitBlocksUntilReleased() throws Exception {
+    final UploadBudget   BUDGET  = new UploadBudget(0, 1, metrics);
+    final CountDownLatch WAITING = new CountDownLatch(1);
+    final CountDownLatch DONE    = new CountDownLatch(1);
+
+    BUDGET.acquire(10);
+    new Thread(() -> {
+      try {
+
+        WAITING.countDown();
+        BUDGET.awaitAvailable();
+        DONE.countDown();
+
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }).start();
+
+    assert WAITING.await(1, TimeUnit.SECONDS);
+    assert !DONE.await(100, TimeUnit.MILLISECONDS);
+
+    BUDGET.release(10);
+    assert DONE.await(1, TimeUnit.SECONDS);
+  }
+
+}
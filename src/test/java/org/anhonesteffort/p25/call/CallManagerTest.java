@@ -17,25 +17,27 @@
 
 package org.anhonesteffort.p25.call;
 
+import com.codahale.metrics.Gauge;
 import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.p25.AudioBudget;
 import org.anhonesteffort.p25.CallPipelineFactory;
 import org.anhonesteffort.p25.ImbeefConfig;
 import org.anhonesteffort.p25.CheckpointedDataUnit;
 import org.anhonesteffort.p25.ImbeefMetrics;
-import org.anhonesteffort.p25.MockMetrics;
-import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
 import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
 
 public class CallManagerTest {
 
-  @Before
-  public void mockMetrics() {
-    final ImbeefMetrics mock = Mockito.mock(ImbeefMetrics.class);
-    MockMetrics.mockWith(mock);
-  }
+  private final ImbeefMetrics metrics = Mockito.mock(ImbeefMetrics.class);
 
   @Test
   public void testSlicerCreatedOnProcessCall() throws Exception {
@@ -48,7 +50,7 @@ public class CallManagerTest {
 
     Mockito.when(CALL_FACTORY.create(Mockito.any())).thenReturn(CALL);
 
-    final CallManager          CALL_MANAGER = new CallManager(CONFIG, CALL_FACTORY);
+    final CallManager          CALL_MANAGER = new CallManager(CONFIG, CALL_FACTORY, metrics);
     final ProtoP25Factory      PROTO        = new ProtoP25Factory();
     final P25ChannelId         ID           = PROTO.directId(1, 2, 3, 4, 5).build();
     final CheckpointedDataUnit DATA_UNIT    = Mockito.mock(CheckpointedDataUnit.class);
@@ -70,7 +72,7 @@ public class CallManagerTest {
 
     Mockito.when(CALL_FACTORY.create(Mockito.any())).thenReturn(CALL);
 
-    final CallManager          CALL_MANAGER = new CallManager(CONFIG, CALL_FACTORY);
+    final CallManager          CALL_MANAGER = new CallManager(CONFIG, CALL_FACTORY, metrics);
     final ProtoP25Factory      PROTO        = new ProtoP25Factory();
     final P25ChannelId         ID           = PROTO.directId(1, 2, 3, 4, 5).build();
     final CheckpointedDataUnit DATA_UNIT    = Mockito.mock(CheckpointedDataUnit.class);
@@ -94,7 +96,7 @@ public class CallManagerTest {
     Mockito.when(CALL_FACTORY.create(Mockito.any())).thenReturn(CALL);
     Mockito.when(CALL.isInactive(Mockito.anyLong())).thenReturn(true);
 
-    final CallManager          CALL_MANAGER = new CallManager(CONFIG, CALL_FACTORY);
+    final CallManager          CALL_MANAGER = new CallManager(CONFIG, CALL_FACTORY, metrics);
     final ProtoP25Factory      PROTO        = new ProtoP25Factory();
     final P25ChannelId         ID           = PROTO.directId(1, 2, 3, 4, 5).build();
     final CheckpointedDataUnit DATA_UNIT    = Mockito.mock(CheckpointedDataUnit.class);
@@ -108,6 +110,127 @@ public class CallManagerTest {
 
     CALL_MANAGER.process(ID, DATA_UNIT);
     Mockito.verify(CALL_FACTORY, Mockito.times(2)).create(Mockito.eq(ID));
+    Mockito.verify(CALL, Mockito.atLeastOnce()).close();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testPipelineGaugeCountsPipelines() throws Exception {
+    final ImbeefConfig CONFIG = Mockito.mock(ImbeefConfig.class);
+
+    Mockito.when(CONFIG.getCallInactiveCheckRate()).thenReturn(0.1);
+
+    final CallPipelineFactory CALL_FACTORY = Mockito.mock(CallPipelineFactory.class);
+    final CallSlicer          CALL         = Mockito.mock(CallSlicer.class);
+
+    Mockito.when(CALL_FACTORY.create(Mockito.any())).thenReturn(CALL);
+    Mockito.when(CALL.getInactiveTime()).thenReturn(Long.MAX_VALUE);
+
+    final CallManager           CALL_MANAGER = new CallManager(CONFIG, CALL_FACTORY, metrics);
+    final ProtoP25Factory       PROTO        = new ProtoP25Factory();
+    final CheckpointedDataUnit  DATA_UNIT    = Mockito.mock(CheckpointedDataUnit.class);
+    final ArgumentCaptor<Gauge> GAUGE        = ArgumentCaptor.forClass(Gauge.class);
+
+    Mockito.verify(metrics).registerCallManager(GAUGE.capture());
+    assert GAUGE.getValue().getValue().equals(0);
+
+    CALL_MANAGER.process(PROTO.directId(1, 2, 3, 4, 5).build(), DATA_UNIT);
+    CALL_MANAGER.process(PROTO.directId(1, 2, 3, 4, 6).build(), DATA_UNIT);
+    CALL_MANAGER.process(PROTO.directId(1, 2, 3, 4, 6).build(), DATA_UNIT);
+
+    assert GAUGE.getValue().getValue().equals(2);
+  }
+
+  @Test
+  public void testCallFinishedOutsideStripeLock() throws Exception {
+    final ImbeefConfig CONFIG = Mockito.mock(ImbeefConfig.class);
+
+    Mockito.when(CONFIG.getCallInactiveCheckRate()).thenReturn(10.0);
+
+    final CallPipelineFactory  CALL_FACTORY = Mockito.mock(CallPipelineFactory.class);
+    final CallSlicer           CALL         = Mockito.mock(CallSlicer.class);
+    final CallSlicer           NEXT         = Mockito.mock(CallSlicer.class);
+    final ProtoP25Factory      PROTO        = new ProtoP25Factory();
+    final P25ChannelId         ID           = PROTO.directId(1, 2, 3, 4, 5).build();
+    final CheckpointedDataUnit DATA_UNIT    = Mockito.mock(CheckpointedDataUnit.class);
+    final CountDownLatch       PROCESSED    = new CountDownLatch(1);
+    final CallManager[]        CALL_MANAGER = new CallManager[1];
+
+    Mockito.when(CALL_FACTORY.create(Mockito.any())).thenReturn(CALL, NEXT);
+    Mockito.when(NEXT.getInactiveTime()).thenReturn(Long.MAX_VALUE);
+    Mockito.when(CALL.isInactive(Mockito.anyLong())).then(invocation -> {
+      Thread other = new Thread(() -> {
+        CALL_MANAGER[0].process(ID, DATA_UNIT);
+        PROCESSED.countDown();
+      });
+
+      other.start();
+      return PROCESSED.await(1, TimeUnit.SECONDS);
+    });
+
+    CALL_MANAGER[0] = new CallManager(CONFIG, CALL_FACTORY, metrics);
+    CALL_MANAGER[0].process(ID, DATA_UNIT);
+
+    assert PROCESSED.await(2, TimeUnit.SECONDS);
+    Mockito.verify(NEXT, Mockito.times(1)).consume(DATA_UNIT);
+  }
+
+  @Test
+  public void testLargestCallFlushedOverBudget() throws Exception {
+    final ImbeefConfig CONFIG = Mockito.mock(ImbeefConfig.class);
+
+    Mockito.when(CONFIG.getCallInactiveCheckRate()).thenReturn(0.1);
+
+    final AudioBudget         BUDGET      = new AudioBudget(100);
+    final AudioBudget.Account BIG_BYTES   = BUDGET.account();
+    final AudioBudget.Account SMALL_BYTES = BUDGET.account();
+
+    final CallPipelineFactory CALL_FACTORY = Mockito.mock(CallPipelineFactory.class);
+    final CallSlicer          BIG          = Mockito.mock(CallSlicer.class);
+    final CallSlicer          SMALL        = Mockito.mock(CallSlicer.class);
+
+    Mockito.when(BIG.getInactiveTime()).thenReturn(Long.MAX_VALUE);
+    Mockito.when(SMALL.getInactiveTime()).thenReturn(Long.MAX_VALUE);
+    Mockito.when(BIG.getBufferedBytes()).then(invocation -> BIG_BYTES.getBytes());
+    Mockito.when(SMALL.getBufferedBytes()).then(invocation -> SMALL_BYTES.getBytes());
+    Mockito.doAnswer(invocation -> {
+      BIG_BYTES.free(BIG_BYTES.getBytes());
+      return null;
+    }).when(BIG).flush();
+
+    final List<Runnable>       FLUSHES      = new LinkedList<>();
+    final CallManager          CALL_MANAGER = new CallManager(CONFIG, CALL_FACTORY, BUDGET, FLUSHES::add, metrics);
+    final ProtoP25Factory      PROTO        = new ProtoP25Factory();
+    final P25ChannelId         BIG_ID       = PROTO.directId(1, 2, 3, 4, 5).build();
+    final P25ChannelId         SMALL_ID     = PROTO.directId(1, 2, 3, 4, 6).build();
+    final CheckpointedDataUnit DATA_UNIT    = Mockito.mock(CheckpointedDataUnit.class);
+
+    Mockito.when(CALL_FACTORY.create(Mockito.eq(BIG_ID))).thenReturn(BIG);
+    Mockito.when(CALL_FACTORY.create(Mockito.eq(SMALL_ID))).thenReturn(SMALL);
+
+    CALL_MANAGER.process(BIG_ID,   DATA_UNIT);
+    CALL_MANAGER.process(SMALL_ID, DATA_UNIT);
+
+    BIG_BYTES.allocate(60);
+    SMALL_BYTES.allocate(30);
+    CALL_MANAGER.run();
+
+    Mockito.verify(BIG,   Mockito.never()).flush();
+    Mockito.verify(SMALL, Mockito.never()).flush();
+
+    BIG_BYTES.allocate(20);
+    CALL_MANAGER.run();
+    CALL_MANAGER.run();
+
+    assert FLUSHES.size() == 1;
+    Mockito.verify(BIG, Mockito.never()).flush();
+
+    FLUSHES.remove(0).run();
+
+    Mockito.verify(BIG,   Mockito.times(1)).flush();
+    Mockito.verify(SMALL, Mockito.never()).flush();
+    Mockito.verify(metrics, Mockito.times(1)).forcedFlush();
+    assert BUDGET.getBytes() == 30;
   }
 
 }
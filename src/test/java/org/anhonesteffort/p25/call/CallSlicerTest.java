@@ -20,11 +20,15 @@ package org.anhonesteffort.p25.call;
 import io.radiowitness.kinesis.consumer.Checkpointer;
 import io.radiowitness.proto.p25.ProtoP25Factory;
 import org.anhonesteffort.dsp.Sink;
+import org.anhonesteffort.jmbe.iface.AudioConverter;
+import org.anhonesteffort.p25.AudioBudget;
+import org.anhonesteffort.p25.AudioBufferPool;
+import org.anhonesteffort.p25.AudioConverterPool;
 import org.anhonesteffort.p25.ImbeefConfig;
 import org.anhonesteffort.p25.CheckpointingAudioChunk;
 import org.anhonesteffort.p25.CheckpointedDataUnit;
 import org.anhonesteffort.p25.ImbeefMetrics;
-import org.anhonesteffort.p25.MockMetrics;
+import org.anhonesteffort.p25.consumer.ShardCheckpointer;
 import org.anhonesteffort.p25.protocol.Duid;
 import org.anhonesteffort.p25.protocol.Nid;
 import org.anhonesteffort.p25.protocol.frame.DataUnit;
@@ -35,7 +39,6 @@ import org.anhonesteffort.p25.protocol.frame.SimpleTerminatorDataUnit;
 import org.anhonesteffort.p25.protocol.frame.VoiceFrame;
 import org.anhonesteffort.p25.protocol.frame.linkcontrol.GroupVoiceUserLwc;
 import org.anhonesteffort.p25.protocol.frame.linkcontrol.LinkControlWord;
-import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
@@ -43,6 +46,8 @@ import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
 
 public class CallSlicerTest {
 
+  private final ImbeefMetrics metrics = Mockito.mock(ImbeefMetrics.class);
+
   private P25ChannelId channel() {
     return new ProtoP25Factory().groupId(
         1, 2, 3, 4, 5, 6d
@@ -74,7 +79,7 @@ public class CallSlicerTest {
   private DataUnit lldu1() {
     Duid                 duid        = new Duid(Duid.ID_LLDU1);
     Nid                  nid         = new Nid(1337, duid, true);
-    VoiceFrame[]         voiceFrames = new VoiceFrame[] {new VoiceFrame(new byte[10])};
+    VoiceFrame[]         voiceFrames = new VoiceFrame[] {new VoiceFrame(new byte[18])};
     LogicalLinkDataUnit1 dataUnit    = Mockito.mock(LogicalLinkDataUnit1.class);
     GroupVoiceUserLwc    word        = Mockito.mock(GroupVoiceUserLwc.class);
 
@@ -91,7 +96,7 @@ public class CallSlicerTest {
   private DataUnit lldu2() {
     Duid                 duid        = new Duid(Duid.ID_LLDU2);
     Nid                  nid         = new Nid(1337, duid, true);
-    VoiceFrame[]         voiceFrames = new VoiceFrame[] {new VoiceFrame(new byte[10])};
+    VoiceFrame[]         voiceFrames = new VoiceFrame[] {new VoiceFrame(new byte[18])};
     LogicalLinkDataUnit2 dataUnit    = Mockito.mock(LogicalLinkDataUnit2.class);
 
     Mockito.when(dataUnit.getNid()).thenReturn(nid);
@@ -104,7 +109,7 @@ public class CallSlicerTest {
   private DataUnit lldu2Crypt() {
     Duid                 duid        = new Duid(Duid.ID_LLDU2);
     Nid                  nid         = new Nid(1337, duid, true);
-    VoiceFrame[]         voiceFrames = new VoiceFrame[] {new VoiceFrame(new byte[10])};
+    VoiceFrame[]         voiceFrames = new VoiceFrame[] {new VoiceFrame(new byte[18])};
     LogicalLinkDataUnit2 dataUnit    = Mockito.mock(LogicalLinkDataUnit2.class);
 
     Mockito.when(dataUnit.getNid()).thenReturn(nid);
@@ -124,12 +129,6 @@ public class CallSlicerTest {
     return dataUnit;
   }
 
-  @Before
-  public void mockMetrics() {
-    final ImbeefMetrics mock = Mockito.mock(ImbeefMetrics.class);
-    MockMetrics.mockWith(mock);
-  }
-
   @Test
   public void testMinCallDataUnitRate() throws Exception {
     final ImbeefConfig CONFIG        = Mockito.mock(ImbeefConfig.class);
@@ -142,11 +141,12 @@ public class CallSlicerTest {
     Mockito.when(CONFIG.getTerminatorTimeoutMs()).thenReturn(TERMINATE_MS);
 
     final P25ChannelId       CHANNEL = channel();
-    final SafeAudioConverter DECODER = Mockito.mock(SafeAudioConverter.class);
+    final AudioConverter     CODEC   = Mockito.mock(AudioConverter.class);
+    final SafeAudioConverter DECODER = new SafeAudioConverter(CODEC);
     final Checkpointer       CHECK   = Mockito.mock(Checkpointer.class);
-    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER);
+    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER, new AudioBufferPool(CONFIG, metrics), metrics);
 
-    Mockito.when(DECODER.decode(Mockito.any())).thenReturn(new float[10]);
+    Mockito.when(CODEC.decode(Mockito.any())).thenReturn(new float[10]);
 
     assert SLICER.isInactive(System.currentTimeMillis());
     SLICER.consume(new CheckpointedDataUnit(System.currentTimeMillis(), 10d, 20d, lldu1(), CHECK));
@@ -167,13 +167,14 @@ public class CallSlicerTest {
     Mockito.when(CONFIG.getTerminatorTimeoutMs()).thenReturn(TERMINATE_MS);
 
     final P25ChannelId       CHANNEL = channel();
-    final SafeAudioConverter DECODER = Mockito.mock(SafeAudioConverter.class);
+    final AudioConverter     CODEC   = Mockito.mock(AudioConverter.class);
+    final SafeAudioConverter DECODER = new SafeAudioConverter(CODEC);
     final Checkpointer       CHECK   = Mockito.mock(Checkpointer.class);
-    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER);
+    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER, new AudioBufferPool(CONFIG, metrics), metrics);
     final SaneCallFilter     SANITY  = new SaneCallFilter();
     final SimpleSink         OUT     = new SimpleSink();
 
-    Mockito.when(DECODER.decode(Mockito.any())).thenReturn(new float[10]);
+    Mockito.when(CODEC.decode(Mockito.any())).thenReturn(new float[10]);
 
     SLICER.addSink(SANITY);
     SANITY.addSink(OUT);
@@ -209,6 +210,36 @@ public class CallSlicerTest {
     Mockito.verify(CHECK, Mockito.times(4)).checkpoint();
   }
 
+  @Test
+  public void testChunkHoldsOneCheckpointPerShard() throws Exception {
+    final ImbeefConfig CONFIG = Mockito.mock(ImbeefConfig.class);
+
+    Mockito.when(CONFIG.getMaxAudioChunkSize()).thenReturn(8192);
+    Mockito.when(CONFIG.getMinCallDataUnitRate()).thenReturn(2.0);
+    Mockito.when(CONFIG.getTerminatorTimeoutMs()).thenReturn(1000l);
+
+    final AudioConverter     CODEC  = Mockito.mock(AudioConverter.class);
+    final SafeAudioConverter DECODE = new SafeAudioConverter(CODEC);
+    final CallSlicer         SLICER = new CallSlicer(CONFIG, channel(), DECODE, new AudioBufferPool(CONFIG, metrics), metrics);
+    final ShardCheckpointer  SHARD  = new ShardCheckpointer(metrics);
+    final Checkpointer       RECORD = Mockito.mock(Checkpointer.class);
+    final SimpleSink         OUT    = new SimpleSink();
+    final Long               TIME   = System.currentTimeMillis();
+
+    Mockito.when(CODEC.decode(Mockito.any())).thenReturn(new float[10]);
+    SLICER.addSink(OUT);
+
+    SLICER.consume(new CheckpointedDataUnit(TIME,     10d, 20d, lldu1(),      SHARD.track(RECORD)));
+    SLICER.consume(new CheckpointedDataUnit(TIME + 1, 10d, 20d, lldu2(),      SHARD.track(RECORD)));
+    SLICER.consume(new CheckpointedDataUnit(TIME + 2, 10d, 20d, lldu1(),      SHARD.track(RECORD)));
+    SLICER.consume(new CheckpointedDataUnit(TIME + 3, 10d, 20d, terminator(), SHARD.track(RECORD)));
+
+    assert SHARD.getPendingCount() == 1;
+
+    OUT.getLast().checkpoint();
+    assert SHARD.getPendingCount() == 0;
+  }
+
   @Test
   public void testTwoCallsWithTerminators() throws Exception {
     final ImbeefConfig CONFIG        = Mockito.mock(ImbeefConfig.class);
@@ -221,13 +252,14 @@ public class CallSlicerTest {
     Mockito.when(CONFIG.getTerminatorTimeoutMs()).thenReturn(TERMINATE_MS);
 
     final P25ChannelId       CHANNEL = channel();
-    final SafeAudioConverter DECODER = Mockito.mock(SafeAudioConverter.class);
+    final AudioConverter     CODEC   = Mockito.mock(AudioConverter.class);
+    final SafeAudioConverter DECODER = new SafeAudioConverter(CODEC);
     final Checkpointer       CHECK   = Mockito.mock(Checkpointer.class);
-    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER);
+    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER, new AudioBufferPool(CONFIG, metrics), metrics);
     final SaneCallFilter     SANITY  = new SaneCallFilter();
     final SimpleSink         OUT     = new SimpleSink();
 
-    Mockito.when(DECODER.decode(Mockito.any())).thenReturn(new float[10]);
+    Mockito.when(CODEC.decode(Mockito.any())).thenReturn(new float[10]);
 
     SLICER.addSink(SANITY);
     SANITY.addSink(OUT);
@@ -279,13 +311,14 @@ public class CallSlicerTest {
     Mockito.when(CONFIG.getTerminatorTimeoutMs()).thenReturn(TERMINATE_MS);
 
     final P25ChannelId       CHANNEL = channel();
-    final SafeAudioConverter DECODER = Mockito.mock(SafeAudioConverter.class);
+    final AudioConverter     CODEC   = Mockito.mock(AudioConverter.class);
+    final SafeAudioConverter DECODER = new SafeAudioConverter(CODEC);
     final Checkpointer       CHECK   = Mockito.mock(Checkpointer.class);
-    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER);
+    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER, new AudioBufferPool(CONFIG, metrics), metrics);
     final SaneCallFilter     SANITY  = new SaneCallFilter();
     final SimpleSink         OUT     = new SimpleSink();
 
-    Mockito.when(DECODER.decode(Mockito.any())).thenReturn(new float[10]);
+    Mockito.when(CODEC.decode(Mockito.any())).thenReturn(new float[10]);
 
     SLICER.addSink(SANITY);
     SANITY.addSink(OUT);
@@ -335,13 +368,14 @@ public class CallSlicerTest {
     Mockito.when(CONFIG.getTerminatorTimeoutMs()).thenReturn(TERMINATE_MS);
 
     final P25ChannelId       CHANNEL = channel();
-    final SafeAudioConverter DECODER = Mockito.mock(SafeAudioConverter.class);
+    final AudioConverter     CODEC   = Mockito.mock(AudioConverter.class);
+    final SafeAudioConverter DECODER = new SafeAudioConverter(CODEC);
     final Checkpointer       CHECK   = Mockito.mock(Checkpointer.class);
-    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER);
+    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER, new AudioBufferPool(CONFIG, metrics), metrics);
     final SaneCallFilter     SANITY  = new SaneCallFilter();
     final SimpleSink         OUT     = new SimpleSink();
 
-    Mockito.when(DECODER.decode(Mockito.any())).thenReturn(new float[10]);
+    Mockito.when(CODEC.decode(Mockito.any())).thenReturn(new float[10]);
 
     SLICER.addSink(SANITY);
     SANITY.addSink(OUT);
@@ -369,13 +403,14 @@ public class CallSlicerTest {
     Mockito.when(CONFIG.getTerminatorTimeoutMs()).thenReturn(TERMINATE_MS);
 
     final P25ChannelId       CHANNEL = channel();
-    final SafeAudioConverter DECODER = Mockito.mock(SafeAudioConverter.class);
+    final AudioConverter     CODEC   = Mockito.mock(AudioConverter.class);
+    final SafeAudioConverter DECODER = new SafeAudioConverter(CODEC);
     final Checkpointer       CHECK   = Mockito.mock(Checkpointer.class);
-    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER);
+    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER, new AudioBufferPool(CONFIG, metrics), metrics);
     final SaneCallFilter     SANITY  = new SaneCallFilter();
     final SimpleSink         OUT     = new SimpleSink();
 
-    Mockito.when(DECODER.decode(Mockito.any())).thenReturn(new float[10]);
+    Mockito.when(CODEC.decode(Mockito.any())).thenReturn(new float[10]);
 
     SLICER.addSink(SANITY);
     SANITY.addSink(OUT);
@@ -412,13 +447,14 @@ public class CallSlicerTest {
     Mockito.when(CONFIG.getTerminatorTimeoutMs()).thenReturn(TERMINATE_MS);
 
     final P25ChannelId       CHANNEL = channel();
-    final SafeAudioConverter DECODER = Mockito.mock(SafeAudioConverter.class);
+    final AudioConverter     CODEC   = Mockito.mock(AudioConverter.class);
+    final SafeAudioConverter DECODER = new SafeAudioConverter(CODEC);
     final Checkpointer       CHECK   = Mockito.mock(Checkpointer.class);
-    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER);
+    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER, new AudioBufferPool(CONFIG, metrics), metrics);
     final SaneCallFilter     SANITY  = new SaneCallFilter();
     final SimpleSink         OUT     = new SimpleSink();
 
-    Mockito.when(DECODER.decode(Mockito.any())).thenReturn(new float[10]);
+    Mockito.when(CODEC.decode(Mockito.any())).thenReturn(new float[10]);
 
     SLICER.addSink(SANITY);
     SANITY.addSink(OUT);
@@ -455,13 +491,14 @@ public class CallSlicerTest {
     Mockito.when(CONFIG.getTerminatorTimeoutMs()).thenReturn(TERMINATE_MS);
 
     final P25ChannelId       CHANNEL = channel();
-    final SafeAudioConverter DECODER = Mockito.mock(SafeAudioConverter.class);
+    final AudioConverter     CODEC   = Mockito.mock(AudioConverter.class);
+    final SafeAudioConverter DECODER = new SafeAudioConverter(CODEC);
     final Checkpointer       CHECK   = Mockito.mock(Checkpointer.class);
-    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER);
+    final CallSlicer         SLICER  = new CallSlicer(CONFIG, CHANNEL, DECODER, new AudioBufferPool(CONFIG, metrics), metrics);
     final SaneCallFilter     SANITY  = new SaneCallFilter();
     final SimpleSink         OUT     = new SimpleSink();
 
-    Mockito.when(DECODER.decode(Mockito.any())).thenReturn(new float[10]);
+    Mockito.when(CODEC.decode(Mockito.any())).thenReturn(new float[10]);
 
     SLICER.addSink(SANITY);
     SANITY.addSink(OUT);
@@ -485,6 +522,154 @@ public class CallSlicerTest {
     Mockito.verify(CHECK, Mockito.times(3)).checkpoint();
   }
 
+  @Test
+  public void testCodewordsSlicedWithoutDecoding() throws Exception {
+    final ImbeefConfig CONFIG        = Mockito.mock(ImbeefConfig.class);
+    final Integer      CHUNK_SIZE    = 320;
+    final Double       MIN_DATA_RATE = 2.0;
+    final Long         TERMINATE_MS  = 1000l;
+
+    Mockito.when(CONFIG.getMaxAudioChunkSize()).thenReturn(CHUNK_SIZE);
+    Mockito.when(CONFIG.getMinCallDataUnitRate()).thenReturn(MIN_DATA_RATE);
+    Mockito.when(CONFIG.getTerminatorTimeoutMs()).thenReturn(TERMINATE_MS);
+
+    final P25ChannelId   CHANNEL = channel();
+    final Checkpointer   CHECK   = Mockito.mock(Checkpointer.class);
+    final CallSlicer     SLICER  = new CallSlicer(CONFIG, CHANNEL, metrics);
+    final SaneCallFilter SANITY  = new SaneCallFilter();
+    final SimpleSink     OUT     = new SimpleSink();
+
+    SLICER.addSink(SANITY);
+    SANITY.addSink(OUT);
+
+    final Long START_TIME = System.currentTimeMillis();
+
+    SLICER.consume(new CheckpointedDataUnit(START_TIME,     10d, 20d, hdu(),   CHECK));
+    SLICER.consume(new CheckpointedDataUnit(START_TIME + 1, 10d, 20d, lldu1(), CHECK));
+    SLICER.consume(new CheckpointedDataUnit(START_TIME + 2, 10d, 20d, lldu2(), CHECK));
+    assert OUT.getLast() == null;
+    SLICER.consume(new CheckpointedDataUnit(START_TIME + 3, 10d, 20d, lldu1(), CHECK));
+
+    assert OUT.getLast().isFirst();
+    assert !OUT.getLast().isLast();
+    assert OUT.getLast().getBuffer().remaining()    == 0;
+    assert OUT.getLast().getCodewords().remaining() == 38;
+    assert OUT.getLast().getCodewords().get(0)      == 18;
+    assert OUT.getLast().getCodewords().get(19)     == 18;
+
+    SLICER.consume(new CheckpointedDataUnit(START_TIME + 4, 10d, 20d, terminator(), CHECK));
+
+    assert !OUT.getLast().isFirst();
+    assert OUT.getLast().isLast();
+    assert OUT.getLast().wasTerminated();
+    assert OUT.getLast().getCodewords().remaining() == 19;
+  }
+
+  @Test
+  public void testCodewordChunksGrowAsFramesArrive() throws Exception {
+    final ImbeefConfig CONFIG = Mockito.mock(ImbeefConfig.class);
+
+    Mockito.when(CONFIG.getMaxAudioChunkSize()).thenReturn(96000);
+    Mockito.when(CONFIG.getMinCallDataUnitRate()).thenReturn(2.0);
+    Mockito.when(CONFIG.getTerminatorTimeoutMs()).thenReturn(1000l);
+
+    final Checkpointer CHECK  = Mockito.mock(Checkpointer.class);
+    final AudioBudget  BUDGET = new AudioBudget(0);
+    final CallSlicer   SLICER = new CallSlicer(CONFIG, channel(), BUDGET.account(), metrics);
+    final SimpleSink   OUT    = new SimpleSink();
+    final Long         TIME   = System.currentTimeMillis();
+
+    SLICER.addSink(OUT);
+    SLICER.consume(new CheckpointedDataUnit(TIME, 10d, 20d, lldu1(), CHECK));
+
+    assert SLICER.getBufferedBytes() == 9 * 19;
+    assert BUDGET.getBytes()         == 9 * 19;
+
+    for (int i = 1; i <= 10; i++) {
+      SLICER.consume(new CheckpointedDataUnit(TIME + i, 10d, 20d, lldu2(), CHECK));
+    }
+
+    assert OUT.getLast() == null;
+    assert SLICER.getBufferedBytes() == 2 * 9 * 19;
+    assert BUDGET.getBytes()         == 2 * 9 * 19;
+
+    SLICER.consume(new CheckpointedDataUnit(TIME + 11, 10d, 20d, terminator(), CHECK));
+
+    assert OUT.getLast().getCodewords().remaining() == 11 * 19;
+    assert BUDGET.getBytes() == 0;
+  }
+
+  @Test
+  public void testFlushSendsPartialCall() throws Exception {
+    final ImbeefConfig CONFIG        = Mockito.mock(ImbeefConfig.class);
+    final Integer      CHUNK_SIZE    = 320;
+    final Integer      CHUNK_BYTES   = 38;
+    final Double       MIN_DATA_RATE = 2.0;
+    final Long         TERMINATE_MS  = 1000l;
+
+    Mockito.when(CONFIG.getMaxAudioChunkSize()).thenReturn(CHUNK_SIZE);
+    Mockito.when(CONFIG.getMinCallDataUnitRate()).thenReturn(MIN_DATA_RATE);
+    Mockito.when(CONFIG.getTerminatorTimeoutMs()).thenReturn(TERMINATE_MS);
+
+    final P25ChannelId        CHANNEL = channel();
+    final Checkpointer        CHECK   = Mockito.mock(Checkpointer.class);
+    final AudioBudget         BUDGET  = new AudioBudget(0);
+    final AudioBudget.Account ACCOUNT = BUDGET.account();
+    final CallSlicer          SLICER  = new CallSlicer(CONFIG, CHANNEL, ACCOUNT, metrics);
+    final SaneCallFilter      SANITY  = new SaneCallFilter();
+    final SimpleSink          OUT     = new SimpleSink();
+
+    SLICER.addSink(SANITY);
+    SANITY.addSink(OUT);
+
+    SLICER.flush();
+    assert OUT.getLast() == null;
+
+    final Long START_TIME = System.currentTimeMillis();
+
+    SLICER.consume(new CheckpointedDataUnit(START_TIME,     10d, 20d, hdu(),   CHECK));
+    SLICER.consume(new CheckpointedDataUnit(START_TIME + 1, 10d, 20d, lldu1(), CHECK));
+
+    assert SLICER.getBufferedBytes() == CHUNK_BYTES;
+    assert BUDGET.getBytes()         == CHUNK_BYTES;
+
+    SLICER.flush();
+
+    assert OUT.getLast().isFirst();
+    assert OUT.getLast().isLast();
+    assert !OUT.getLast().wasTerminated();
+    assert OUT.getLast().getCodewords().remaining() == 19;
+    assert SLICER.getBufferedBytes() == 0;
+    assert BUDGET.getBytes()         == 0;
+
+    SLICER.consume(new CheckpointedDataUnit(START_TIME + 2, 10d, 20d, lldu2(), CHECK));
+    SLICER.consume(new CheckpointedDataUnit(START_TIME + 3, 10d, 20d, lldu1(), CHECK));
+    SLICER.consume(new CheckpointedDataUnit(START_TIME + 4, 10d, 20d, lldu2(), CHECK));
+
+    assert OUT.getLast().isFirst();
+    assert !OUT.getLast().isLast();
+  }
+
+  @Test
+  public void testPooledConverterReturnedOnClose() throws Exception {
+    final ImbeefConfig       CONFIG    = Mockito.mock(ImbeefConfig.class);
+    final AudioConverterPool POOL      = Mockito.mock(AudioConverterPool.class);
+    final SafeAudioConverter CONVERTER = new SafeAudioConverter(Mockito.mock(AudioConverter.class));
+
+    Mockito.when(CONFIG.getMaxAudioChunkSize()).thenReturn(8192);
+    Mockito.when(POOL.acquire()).thenReturn(CONVERTER);
+
+    final CallSlicer SLICER = new CallSlicer(
+        CONFIG, channel(), POOL, new AudioBufferPool(CONFIG, metrics), new AudioBudget(0).account(), metrics
+    );
+
+    Mockito.verify(POOL, Mockito.times(1)).acquire();
+    Mockito.verify(POOL, Mockito.never()).release(Mockito.any());
+
+    SLICER.close();
+    Mockito.verify(POOL, Mockito.times(1)).release(CONVERTER);
+  }
+
   private static class SimpleSink implements Sink<CheckpointingAudioChunk> {
     private CheckpointingAudioChunk last = null;
     @Override
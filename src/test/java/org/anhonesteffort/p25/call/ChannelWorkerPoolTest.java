@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.call;
+
+import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.p25.CheckpointedDataUnit;
+import org.anhonesteffort.p25.ImbeefConfig;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+
+public class ChannelWorkerPoolTest {
+
+  private final ImbeefMetrics metrics = Mockito.mock(ImbeefMetrics.class);
+
+  private ImbeefConfig config() {
+    final ImbeefConfig CONFIG = Mockito.mock(ImbeefConfig.class);
+    Mockito.when(CONFIG.getWorkerCount()).thenReturn(4);
+    Mockito.when(CONFIG.getWorkerQueueSize()).thenReturn(8);
+    return CONFIG;
+  }
+
+  private CheckpointedDataUnit dataUnit(long sequence) {
+    return new CheckpointedDataUnit(sequence, 10d, 20d, null, () -> { });
+  }
+
+  @Test
+  public void testChannelOrderPreservedAcrossWorkers() throws Exception {
+    final int                           COUNT   = 1000;
+    final ProtoP25Factory               PROTO   = new ProtoP25Factory();
+    final Map<P25ChannelId, List<Long>> SEEN    = new ConcurrentHashMap<>();
+    final Map<P25ChannelId, Thread>     THREADS = new ConcurrentHashMap<>();
+    final CountDownLatch                DONE    = new CountDownLatch(COUNT * 16);
+    final ChannelWorkerPool             WORKERS = new ChannelWorkerPool(config(), (channelId, dataUnit) -> {
+      assert THREADS.computeIfAbsent(channelId, id -> Thread.currentThread()) == Thread.currentThread();
+      SEEN.computeIfAbsent(channelId, id -> new ArrayList<>()).add(dataUnit.getTimestamp());
+      DONE.countDown();
+    }, metrics);
+
+    final P25ChannelId[] CHANNELS = new P25ChannelId[16];
+    for (int i = 0; i < CHANNELS.length; i++) {
+      CHANNELS[i] = PROTO.groupId(1, 2, 3, 4, 100 + i, 851_000_000d).build();
+    }
+
+    for (long sequence = 0; sequence < COUNT; sequence++) {
+      for (P25ChannelId channel : CHANNELS) {
+        WORKERS.process(channel, dataUnit(sequence));
+      }
+    }
+
+    assert DONE.await(10, TimeUnit.SECONDS);
+    assert THREADS.values().stream().distinct().count() > 1;
+
+    for (P25ChannelId channel : CHANNELS) {
+      final List<Long> SEQUENCES = SEEN.get(channel);
+
+      assert SEQUENCES.size() == COUNT;
+      for (int i = 0; i < COUNT; i++) {
+        assert SEQUENCES.get(i) == i;
+      }
+    }
+
+    WORKERS.shutdown();
+  }
+
+  @Test
+  public void testProcessingErrorFailsErrorFuture() throws Exception {
+    final ChannelWorkerPool WORKERS = new ChannelWorkerPool(config(), (channelId, dataUnit) -> {
+      throw new IllegalStateException("nope");
+    }, metrics);
+
+    WORKERS.process(new ProtoP25Factory().directId(1, 2, 3, 4, 5).build(), dataUnit(0));
+
+    try {
+
+      WORKERS.getErrorFuture().get(10, TimeUnit.SECONDS);
+      assert false;
+
+    } catch (ExecutionException e) {
+      assert e.getCause() instanceof IllegalStateException;
+    }
+  }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.call;
+
+import org.anhonesteffort.jmbe.iface.AudioConverter;
+import org.anhonesteffort.p25.protocol.frame.VoiceFrame;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.nio.FloatBuffer;
+
+public class SafeAudioConverterTest {
+
+  private VoiceFrame[] frames(int count) {
+    VoiceFrame[] frames = new VoiceFrame[count];
+    for (int i = 0; i < count; i++) {
+      frames[i] = new VoiceFrame(new byte[] {(byte) i});
+    }
+    return frames;
+  }
+
+  private AudioConverter codec() {
+    AudioConverter codec = Mockito.mock(AudioConverter.class);
+    Mockito.when(codec.decode(Mockito.any())).thenAnswer(invocation -> {
+      byte[]  bytes = (byte[]) invocation.getArguments()[0];
+      float[] audio = new float[4];
+      for (int i = 0; i < audio.length; i++) {
+        audio[i] = bytes[0];
+      }
+      return audio;
+    });
+    return codec;
+  }
+
+  @Test
+  public void testAllFramesDecodedIntoBuffer() {
+    final AudioConverter     CODEC     = codec();
+    final SafeAudioConverter CONVERTER = new SafeAudioConverter(CODEC);
+    final FloatBuffer        OUT       = FloatBuffer.allocate(36);
+
+    assert CONVERTER.decode(frames(9), 0, OUT) == 9;
+    assert !CONVERTER.hasPending();
+    assert OUT.remaining() == 0;
+    assert OUT.get(35) == 8f;
+    Mockito.verify(CODEC, Mockito.times(9)).decode(Mockito.any());
+  }
+
+  @Test
+  public void testFrameThatDoesNotFitHeldAsPending() {
+    final AudioConverter     CODEC     = codec();
+    final SafeAudioConverter CONVERTER = new SafeAudioConverter(CODEC);
+    final VoiceFrame[]       FRAMES    = frames(9);
+    final FloatBuffer        OUT1      = FloatBuffer.allocate(10);
+    final FloatBuffer        OUT2      = FloatBuffer.allocate(40);
+
+    assert CONVERTER.decode(FRAMES, 0, OUT1) == 3;
+    assert CONVERTER.hasPending();
+    assert OUT1.position() == 8;
+
+    assert CONVERTER.decode(FRAMES, 3, OUT2) == 9;
+    assert !CONVERTER.hasPending();
+    assert OUT2.position() == 28;
+    assert OUT2.get(0) == 2f;
+
+    Mockito.verify(CODEC, Mockito.times(9)).decode(Mockito.any());
+  }
+
+  @Test
+  public void testPendingFrameNeverTruncated() {
+    final AudioConverter     CODEC     = codec();
+    final SafeAudioConverter CONVERTER = new SafeAudioConverter(CODEC);
+    final VoiceFrame[]       FRAMES    = frames(2);
+    final FloatBuffer        OUT1      = FloatBuffer.allocate(6);
+    final FloatBuffer        OUT2      = FloatBuffer.allocate(6);
+
+    assert CONVERTER.decode(FRAMES, 0, OUT1) == 2;
+    assert CONVERTER.hasPending();
+    assert OUT1.position() == 4;
+
+    OUT2.position(3);
+    assert CONVERTER.decode(FRAMES, 2, OUT2) == 2;
+    assert CONVERTER.hasPending();
+    assert OUT2.position() == 3;
+
+    OUT2.clear();
+    assert CONVERTER.decode(FRAMES, 2, OUT2) == 2;
+    assert !CONVERTER.hasPending();
+    assert OUT2.position() == 4;
+    assert OUT2.get(3) == 1f;
+  }
+
+  @Test
+  public void testFrameSplitWhenBufferCanNeverHoldIt() {
+    final AudioConverter     CODEC     = codec();
+    final SafeAudioConverter CONVERTER = new SafeAudioConverter(CODEC);
+    final VoiceFrame[]       FRAMES    = frames(1);
+    final FloatBuffer        OUT       = FloatBuffer.allocate(3);
+    int                      samples   = 0;
+
+    assert CONVERTER.decode(FRAMES, 0, OUT) == 1;
+    samples += OUT.position();
+
+    while (CONVERTER.hasPending()) {
+      OUT.clear();
+      CONVERTER.decode(FRAMES, 1, OUT);
+      samples += OUT.position();
+    }
+
+    assert samples == 4;
+    Mockito.verify(CODEC, Mockito.times(1)).decode(Mockito.any());
+  }
+
+  @Test
+  public void testDecodeErrorBecomesSilence() {
+    final AudioConverter     CODEC     = Mockito.mock(AudioConverter.class);
+    final SafeAudioConverter CONVERTER = new SafeAudioConverter(CODEC);
+    final FloatBuffer        OUT       = FloatBuffer.allocate(100);
+
+    Mockito.when(CODEC.decode(Mockito.any())).thenThrow(new IllegalStateException("corrupt"));
+
+    assert CONVERTER.decode(frames(2), 0, OUT) == 2;
+    assert OUT.position() == 20;
+    assert OUT.get(0) == 0f;
+  }
+
+}
@@ -17,9 +17,9 @@
 
 package org.anhonesteffort.p25.call;
 
-import io.radiowitness.kinesis.consumer.Checkpointer;
 import io.radiowitness.proto.p25.ProtoP25Factory;
 import org.anhonesteffort.dsp.Sink;
+import org.anhonesteffort.p25.Checkpoint;
 import org.anhonesteffort.p25.CheckpointingAudioChunk;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -49,7 +49,7 @@ public class SaneCallFilterTest {
   }
 
   private CheckpointingAudioChunk newChunk(
-      boolean first, boolean last, boolean empty, List<Checkpointer> checks
+      boolean first, boolean last, boolean empty, List<Checkpoint> checks
   ) {
     final P25ChannelId CHANNEL = new ProtoP25Factory().controlId(1, 2, 3, 4).build();
     final FloatBuffer  FLOATS  = FloatBuffer.allocate(10);
@@ -122,8 +122,8 @@ public class SaneCallFilterTest {
   public void testAllChunksAlwaysCheckpointed() {
     final SaneCallFilter           SANITY = new SaneCallFilter();
     final CheckpointingSink        SINK   = new CheckpointingSink();
-    final Checkpointer             CHECK  = Mockito.mock(Checkpointer.class);
-    final LinkedList<Checkpointer> CHECKS = new LinkedList<>();
+    final Checkpoint               CHECK  = Mockito.mock(Checkpoint.class);
+    final LinkedList<Checkpoint>   CHECKS = new LinkedList<>();
 
     CHECKS.add(CHECK);
     SANITY.addSink(SINK);
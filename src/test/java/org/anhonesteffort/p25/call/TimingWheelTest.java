@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.call;
+
+import org.junit.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+
+public class TimingWheelTest {
+
+  private void advanceTo(TimingWheel<String> wheel, long start, long end, List<String> expired) {
+    for (long time = start; time <= end; time++) {
+      wheel.advance(time).forEach(timeout -> expired.add(timeout.getValue()));
+    }
+  }
+
+  @Test
+  public void testTimeoutExpiresAtDeadline() {
+    final TimingWheel<String> WHEEL = new TimingWheel<>(10, 8, 0);
+
+    WHEEL.schedule("a", 25);
+
+    assert WHEEL.advance(19).isEmpty();
+    assert WHEEL.advance(24).isEmpty();
+    assert WHEEL.advance(30).get(0).getValue().equals("a");
+    assert WHEEL.advance(100).isEmpty();
+  }
+
+  @Test
+  public void testExpiredTimeoutNeverEarly() {
+    final TimingWheel<String> WHEEL    = new TimingWheel<>(10, 4, 0);
+    final List<String>        EXPIRED  = new LinkedList<>();
+    final long                DEADLINE = 1234;
+
+    WHEEL.schedule("far", DEADLINE);
+
+    advanceTo(WHEEL, 0, DEADLINE - 1, EXPIRED);
+    assert EXPIRED.isEmpty();
+
+    advanceTo(WHEEL, DEADLINE, DEADLINE + 10, EXPIRED);
+    assert EXPIRED.size() == 1;
+    assert EXPIRED.get(0).equals("far");
+  }
+
+  @Test
+  public void testRearmedTimeoutExpiresAtNewDeadline() {
+    final TimingWheel<String>         WHEEL   = new TimingWheel<>(10, 8, 0);
+    final TimingWheel.Timeout<String> TIMEOUT = WHEEL.schedule("a", 25);
+    final List<String>                EXPIRED = new LinkedList<>();
+
+    TIMEOUT.rearm(555);
+
+    advanceTo(WHEEL, 0, 554, EXPIRED);
+    assert EXPIRED.isEmpty();
+
+    advanceTo(WHEEL, 555, 570, EXPIRED);
+    assert EXPIRED.size() == 1;
+  }
+
+  @Test
+  public void testCancelledTimeoutNeverExpires() {
+    final TimingWheel<String>         WHEEL   = new TimingWheel<>(10, 8, 0);
+    final TimingWheel.Timeout<String> TIMEOUT = WHEEL.schedule("a", 25);
+
+    TIMEOUT.cancel();
+
+    assert TIMEOUT.isCancelled();
+    assert WHEEL.advance(1000).isEmpty();
+  }
+
+  @Test
+  public void testExpiredTimeoutCanBeRescheduled() {
+    final TimingWheel<String>               WHEEL   = new TimingWheel<>(10, 8, 0);
+    final TimingWheel.Timeout<String>       TIMEOUT = WHEEL.schedule("a", 25);
+    final List<TimingWheel.Timeout<String>> EXPIRED = WHEEL.advance(30);
+
+    assert EXPIRED.size() == 1;
+    WHEEL.reschedule(TIMEOUT, 45);
+
+    assert WHEEL.advance(40).isEmpty();
+    assert WHEEL.advance(50).get(0) == TIMEOUT;
+  }
+
+  @Test
+  public void testPastDeadlineExpiresOnNextAdvance() {
+    final TimingWheel<String> WHEEL = new TimingWheel<>(10, 8, 1000);
+
+    WHEEL.schedule("a", 0);
+    assert WHEEL.advance(1000).size() == 1;
+  }
+
+  @Test
+  public void testUnboundedDeadlineNeverExpires() {
+    final TimingWheel<String> WHEEL = new TimingWheel<>(1000, 64, System.currentTimeMillis());
+
+    WHEEL.schedule("a", Long.MAX_VALUE);
+    assert WHEEL.advance(System.currentTimeMillis() + 1000000).isEmpty();
+  }
+
+}
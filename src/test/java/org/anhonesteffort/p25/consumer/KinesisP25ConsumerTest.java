@@ -21,6 +21,8 @@ import com.amazonaws.services.kinesis.clientlibrary.types.ShutdownReason;
 import com.google.common.util.concurrent.SettableFuture;
 import io.radiowitness.kinesis.consumer.Checkpointer;
 import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.anhonesteffort.p25.UploadBudget;
 import org.anhonesteffort.p25.call.CallManager;
 import org.anhonesteffort.p25.protocol.frame.DataUnit;
 import org.junit.Test;
@@ -35,22 +37,26 @@ import static io.radiowitness.proto.p25.ProtoP25.P25DataUnit;
 
 public class KinesisP25ConsumerTest {
 
+  private final ImbeefMetrics metrics = Mockito.mock(ImbeefMetrics.class);
+
   @Test
   public void testGetType() throws Exception {
     final SettableFuture<ShutdownReason> FUTURE   = SettableFuture.create();
     final DataUnitFactory                FACTORY  = Mockito.mock(DataUnitFactory.class);
     final CallManager                    CALLS    = Mockito.mock(CallManager.class);
-    final KinesisP25Consumer             CONSUMER = new KinesisP25Consumer(FUTURE, FACTORY, CALLS);
+    final KinesisP25Consumer             CONSUMER = new KinesisP25Consumer(FUTURE, FACTORY, CALLS, metrics);
 
     assert CONSUMER.getType().get().equals(BaseMessage.Type.P25_DATA_UNIT);
   }
 
   @Test
-  public void testControlDataCheckpointed() throws Exception {
+  public void testControlDataCheckpointedOnFlush() throws Exception {
     final SettableFuture<ShutdownReason> FUTURE     = SettableFuture.create();
     final DataUnitFactory                FACTORY    = Mockito.mock(DataUnitFactory.class);
     final CallManager                    CALLS      = Mockito.mock(CallManager.class);
-    final KinesisP25Consumer             CONSUMER   = new KinesisP25Consumer(FUTURE, FACTORY, CALLS);
+    final UploadBudget                   UPLOADS    = new UploadBudget(0, 0, metrics);
+    final ShardCheckpointer              SHARD      = new ShardCheckpointer(metrics);
+    final KinesisP25Consumer             CONSUMER   = new KinesisP25Consumer(FUTURE, FACTORY, CALLS, UPLOADS, SHARD, metrics);
     final Checkpointer                   CHECKPOINT = Mockito.mock(Checkpointer.class);
 
     final ProtoP25Factory      PROTO      = new ProtoP25Factory();
@@ -59,6 +65,9 @@ public class KinesisP25ConsumerTest {
     final BaseMessage          MESSAGE    = PROTO.messageP25(System.currentTimeMillis(), PROTO_DU);
 
     CONSUMER.process(MESSAGE, CHECKPOINT);
+    Mockito.verify(CHECKPOINT, Mockito.never()).checkpoint();
+
+    SHARD.run();
     Mockito.verify(CHECKPOINT, Mockito.times(1)).checkpoint();
   }
 
@@ -67,7 +76,7 @@ public class KinesisP25ConsumerTest {
     final SettableFuture<ShutdownReason> FUTURE     = SettableFuture.create();
     final DataUnitFactory                FACTORY    = Mockito.mock(DataUnitFactory.class);
     final CallManager                    CALLS      = Mockito.mock(CallManager.class);
-    final KinesisP25Consumer             CONSUMER   = new KinesisP25Consumer(FUTURE, FACTORY, CALLS);
+    final KinesisP25Consumer             CONSUMER   = new KinesisP25Consumer(FUTURE, FACTORY, CALLS, metrics);
     final Checkpointer                   CHECKPOINT = Mockito.mock(Checkpointer.class);
 
     final DataUnit DATA_UNIT = Mockito.mock(DataUnit.class);
@@ -98,7 +107,7 @@ public class KinesisP25ConsumerTest {
     final SettableFuture<ShutdownReason> FUTURE     = SettableFuture.create();
     final DataUnitFactory                FACTORY    = Mockito.mock(DataUnitFactory.class);
     final CallManager                    CALLS      = Mockito.mock(CallManager.class);
-    final KinesisP25Consumer             CONSUMER   = new KinesisP25Consumer(FUTURE, FACTORY, CALLS);
+    final KinesisP25Consumer             CONSUMER   = new KinesisP25Consumer(FUTURE, FACTORY, CALLS, metrics);
     final Checkpointer                   CHECKPOINT = Mockito.mock(Checkpointer.class);
 
     final ProtoP25Factory      PROTO      = new ProtoP25Factory();
@@ -118,7 +127,7 @@ public class KinesisP25ConsumerTest {
     final SettableFuture<ShutdownReason> FUTURE     = SettableFuture.create();
     final DataUnitFactory                FACTORY    = Mockito.mock(DataUnitFactory.class);
     final CallManager                    CALLS      = Mockito.mock(CallManager.class);
-    final KinesisP25Consumer             CONSUMER   = new KinesisP25Consumer(FUTURE, FACTORY, CALLS);
+    final KinesisP25Consumer             CONSUMER   = new KinesisP25Consumer(FUTURE, FACTORY, CALLS, metrics);
     final Checkpointer                   CHECKPOINT = Mockito.mock(Checkpointer.class);
 
     final DataUnit DATA_UNIT = Mockito.mock(DataUnit.class);
@@ -141,7 +150,7 @@ public class KinesisP25ConsumerTest {
     final SettableFuture<ShutdownReason> FUTURE     = SettableFuture.create();
     final DataUnitFactory                FACTORY    = Mockito.mock(DataUnitFactory.class);
     final CallManager                    CALLS      = Mockito.mock(CallManager.class);
-    final KinesisP25Consumer             CONSUMER   = new KinesisP25Consumer(FUTURE, FACTORY, CALLS);
+    final KinesisP25Consumer             CONSUMER   = new KinesisP25Consumer(FUTURE, FACTORY, CALLS, metrics);
     final Checkpointer                   CHECKPOINT = Mockito.mock(Checkpointer.class);
 
     final DataUnit DATA_UNIT = Mockito.mock(DataUnit.class);
@@ -162,7 +171,7 @@ public class KinesisP25ConsumerTest {
     final SettableFuture<ShutdownReason> FUTURE     = SettableFuture.create();
     final DataUnitFactory                FACTORY    = Mockito.mock(DataUnitFactory.class);
     final CallManager                    CALLS      = Mockito.mock(CallManager.class);
-    final KinesisP25Consumer             CONSUMER   = new KinesisP25Consumer(FUTURE, FACTORY, CALLS);
+    final KinesisP25Consumer             CONSUMER   = new KinesisP25Consumer(FUTURE, FACTORY, CALLS, metrics);
     final Checkpointer                   CHECKPOINT = Mockito.mock(Checkpointer.class);
 
     final DataUnit DATA_UNIT = Mockito.mock(DataUnit.class);
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.consumer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+public class RecordFileTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRecordsReadBackInOrder() throws Exception {
+    final Path   FILE    = folder.newFile("records.imbr").toPath();
+    final byte[] RECORD0 = new byte[] { 1, 2, 3 };
+    final byte[] RECORD1 = new byte[0];
+    final byte[] RECORD2 = new byte[] { 4, 5, 6, 7, 8 };
+
+    try (RecordFileWriter writer = new RecordFileWriter(FILE)) {
+      writer.write(1000l, RECORD0);
+      writer.write(1180l, RECORD1);
+      writer.write(1360l, RECORD2);
+    }
+
+    try (RecordFileReader reader = new RecordFileReader(FILE)) {
+      final RecordFileReader.Record READ0 = reader.next().get();
+      final RecordFileReader.Record READ1 = reader.next().get();
+      final RecordFileReader.Record READ2 = reader.next().get();
+
+      assert READ0.getArrivalMs() == 1000l && Arrays.equals(READ0.getBytes(), RECORD0);
+      assert READ1.getArrivalMs() == 1180l && Arrays.equals(READ1.getBytes(), RECORD1);
+      assert READ2.getArrivalMs() == 1360l && Arrays.equals(READ2.getBytes(), RECORD2);
+      assert !reader.next().isPresent();
+    }
+  }
+
+  @Test
+  public void testTruncatedRecordIgnored() throws Exception {
+    final Path FILE = folder.newFile("records.imbr").toPath();
+
+    try (RecordFileWriter writer = new RecordFileWriter(FILE)) {
+      writer.write(1000l, new byte[] { 1, 2, 3 });
+      writer.write(1180l, new byte[] { 4, 5, 6 });
+    }
+
+    try (RandomAccessFile file = new RandomAccessFile(FILE.toFile(), "rw")) {
+      file.setLength(file.length() - 2);
+    }
+
+    try (RecordFileReader reader = new RecordFileReader(FILE)) {
+      final Optional<RecordFileReader.Record> READ0 = reader.next();
+      assert READ0.isPresent() && READ0.get().getArrivalMs() == 1000l;
+      assert !reader.next().isPresent();
+    }
+  }
+
+  @Test
+  public void testWritesAfterCloseDropped() throws Exception {
+    final Path             FILE   = folder.newFile("records.imbr").toPath();
+    final RecordFileWriter WRITER = new RecordFileWriter(FILE);
+
+    WRITER.close();
+    WRITER.write(1000l, new byte[] { 1, 2, 3 });
+    WRITER.close();
+
+    try (RecordFileReader reader = new RecordFileReader(FILE)) {
+      assert !reader.next().isPresent();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testBadMagicRejected() throws Exception {
+    final Path FILE = folder.newFile("records.imbr").toPath();
+    Files.write(FILE, new byte[] { 'R', 'I', 'F', 'F', 1 });
+    new RecordFileReader(FILE).close();
+  }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.consumer;
+
+import io.radiowitness.kinesis.consumer.Checkpointer;
+import org.anhonesteffort.p25.Checkpoint;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ShardCheckpointerTest {
+
+  private final ImbeefMetrics metrics = Mockito.mock(ImbeefMetrics.class);
+
+  @Test
+  public void testWatermarkWaitsForEarlierRecords() {
+    final ShardCheckpointer SHARD   = new ShardCheckpointer(metrics);
+    final Checkpointer      RECORD0 = Mockito.mock(Checkpointer.class);
+    final Checkpointer      RECORD1 = Mockito.mock(Checkpointer.class);
+    final Checkpointer      RECORD2 = Mockito.mock(Checkpointer.class);
+
+    final Checkpoint MARK0 = SHARD.track(RECORD0);
+    final Checkpoint MARK1 = SHARD.track(RECORD1);
+    final Checkpoint MARK2 = SHARD.track(RECORD2);
+
+    MARK1.checkpoint();
+    MARK2.checkpoint();
+    SHARD.run();
+
+    Mockito.verify(RECORD1, Mockito.never()).checkpoint();
+    Mockito.verify(RECORD2, Mockito.never()).checkpoint();
+    assert SHARD.getPendingCount() == 1;
+
+    MARK0.checkpoint();
+    SHARD.run();
+
+    Mockito.verify(RECORD0, Mockito.never()).checkpoint();
+    Mockito.verify(RECORD1, Mockito.never()).checkpoint();
+    Mockito.verify(RECORD2, Mockito.times(1)).checkpoint();
+    assert SHARD.getPendingCount() == 0;
+  }
+
+  @Test
+  public void testWatermarkWrittenOncePerRun() {
+    final ShardCheckpointer SHARD  = new ShardCheckpointer(metrics);
+    final Checkpointer      RECORD = Mockito.mock(Checkpointer.class);
+
+    SHARD.track(RECORD).checkpoint();
+    SHARD.run();
+    SHARD.run();
+
+    Mockito.verify(RECORD, Mockito.times(1)).checkpoint();
+  }
+
+  @Test
+  public void testAbandonedRecordsAdvanceWatermark() {
+    final ShardCheckpointer SHARD   = new ShardCheckpointer(metrics);
+    final Checkpointer      RECORD0 = Mockito.mock(Checkpointer.class);
+    final Checkpointer      RECORD1 = Mockito.mock(Checkpointer.class);
+
+    SHARD.track(RECORD0).abandon();
+    SHARD.track(RECORD1).checkpoint();
+    SHARD.run();
+
+    Mockito.verify(RECORD1, Mockito.times(1)).checkpoint();
+  }
+
+  @Test
+  public void testCheckpointErrorDoesNotThrow() {
+    final ShardCheckpointer SHARD  = new ShardCheckpointer(metrics);
+    final Checkpointer      RECORD = Mockito.mock(Checkpointer.class);
+
+    Mockito.doThrow(new IllegalStateException("lease lost")).when(RECORD).checkpoint();
+    SHARD.track(RECORD).checkpoint();
+    SHARD.run();
+  }
+
+  @Test
+  public void testWatermarkStopsBeforeLowestHold() {
+    final ShardCheckpointer SHARD   = new ShardCheckpointer(metrics);
+    final Checkpointer      RECORD0 = Mockito.mock(Checkpointer.class);
+    final Checkpointer      RECORD1 = Mockito.mock(Checkpointer.class);
+    final Checkpointer      RECORD2 = Mockito.mock(Checkpointer.class);
+
+    SHARD.track(RECORD0).checkpoint();
+    final Checkpoint HOLD = SHARD.track(RECORD1);
+    SHARD.track(RECORD2).checkpoint();
+    SHARD.run();
+
+    Mockito.verify(RECORD0, Mockito.times(1)).checkpoint();
+    Mockito.verify(RECORD2, Mockito.never()).checkpoint();
+
+    HOLD.checkpoint();
+    SHARD.run();
+    Mockito.verify(RECORD2, Mockito.times(1)).checkpoint();
+  }
+
+  @Test
+  public void testMergedHoldsKeepLowestRecord() {
+    final ShardCheckpointer SHARD   = new ShardCheckpointer(metrics);
+    final Checkpointer      RECORD0 = Mockito.mock(Checkpointer.class);
+    final Checkpointer      RECORD1 = Mockito.mock(Checkpointer.class);
+    final Checkpointer      RECORD2 = Mockito.mock(Checkpointer.class);
+
+    SHARD.track(RECORD0).checkpoint();
+    final Checkpoint CALL = SHARD.track(RECORD1).merge(SHARD.track(RECORD2));
+
+    assert SHARD.getPendingCount() == 1;
+    SHARD.run();
+    Mockito.verify(RECORD0, Mockito.times(1)).checkpoint();
+
+    CALL.checkpoint();
+    SHARD.run();
+
+    Mockito.verify(RECORD1, Mockito.never()).checkpoint();
+    Mockito.verify(RECORD2, Mockito.times(1)).checkpoint();
+    assert SHARD.getPendingCount() == 0;
+  }
+
+  @Test
+  public void testHoldsFromOtherShardsNotMerged() {
+    final ShardCheckpointer SHARD0 = new ShardCheckpointer(metrics);
+    final ShardCheckpointer SHARD1 = new ShardCheckpointer(metrics);
+    final Checkpointer      RECORD = Mockito.mock(Checkpointer.class);
+
+    assert SHARD0.track(RECORD).merge(SHARD1.track(RECORD)) == null;
+    assert SHARD0.track(RECORD).merge(Checkpoint.of(RECORD)) == null;
+    assert SHARD0.getPendingCount() == 2;
+    assert SHARD1.getPendingCount() == 1;
+  }
+
+  @Test
+  public void testCloseWritesFinalWatermark() {
+    final ShardCheckpointer SHARD  = new ShardCheckpointer(metrics);
+    final Checkpointer      RECORD = Mockito.mock(Checkpointer.class);
+
+    SHARD.track(RECORD).checkpoint();
+    SHARD.close();
+
+    Mockito.verify(RECORD, Mockito.times(1)).checkpoint();
+  }
+
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.flac;
+
+import org.anhonesteffort.p25.wav.ByteBufferOutputStream;
+import org.anhonesteffort.p25.wav.Pcm16Encoder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+public class FlacEncoderTest {
+
+  private static class BitReader {
+    private final byte[] bytes;
+    private       long   position = 0;
+
+    private BitReader(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    private long read(int count) {
+      long value = 0;
+      for (int i = 0; i < count; i++, position++) {
+        int bit = (bytes[(int) (position >> 3)] >> (7 - (position & 7))) & 1;
+        value   = (value << 1) | bit;
+      }
+      return value;
+    }
+
+    private int readSigned(int count) {
+      return (int) (read(count) << (64 - count) >> (64 - count));
+    }
+
+    private int readRice(int parameter) {
+      int quotient = 0;
+      while (read(1) == 0) {
+        quotient++;
+      }
+      int fold = (quotient << parameter) | (int) read(parameter);
+      return (fold >>> 1) ^ -(fold & 1);
+    }
+
+    private long readUtf8() {
+      int first = (int) read(8);
+      int count = Integer.numberOfLeadingZeros(~first << 24);
+      if (count == 0) {
+        return first;
+      }
+
+      long value = first & (0x7F >> count);
+      for (int i = 1; i < count; i++) {
+        long next = read(8);
+        assert (next & 0xC0) == 0x80;
+        value = (value << 6) | (next & 0x3F);
+      }
+      return value;
+    }
+
+    private int byteOffset() {
+      assert (position & 7) == 0;
+      return (int) (position >> 3);
+    }
+
+    private void align() {
+      position = (position + 7) & ~7L;
+    }
+
+    private boolean hasRemaining() {
+      return (position >> 3) < bytes.length;
+    }
+  }
+
+  private static class Decoded {
+    private int    minBlockSize;
+    private int    maxBlockSize;
+    private int    sampleRate;
+    private long   sampleCount;
+    private byte[] md5 = new byte[16];
+    private int    frameCount;
+    private int[]  samples;
+  }
+
+  private static int blockSize(int code, BitReader reader, int streamBlockSize) {
+    switch (code) {
+      case 1:  return 192;
+      case 6:  return (int) reader.read(8) + 1;
+      case 7:  return (int) reader.read(16) + 1;
+      default: return code < 6 ? 576 << (code - 2) : 256 << (code - 8);
+    }
+  }
+
+  private static void residual(BitReader reader, int[] out, int order, int count) {
+    assert reader.read(2) == 0;
+    int partitionOrder = (int) reader.read(4);
+    int length         = count >> partitionOrder;
+
+    for (int p = 0, i = order; p < (1 << partitionOrder); p++) {
+      int parameter = (int) reader.read(4);
+      assert parameter != 15;
+      for (int end = (p + 1) * length; i < end; i++) {
+        out[i] = reader.readRice(parameter);
+      }
+    }
+  }
+
+  private static void subframe(BitReader reader, int[] out, int count) {
+    assert reader.read(1) == 0;
+    int type = (int) reader.read(6);
+    assert reader.read(1) == 0;
+
+    if (type == 0) {
+      Arrays.fill(out, 0, count, reader.readSigned(16));
+    } else if (type == 1) {
+      for (int i = 0; i < count; i++) {
+        out[i] = reader.readSigned(16);
+      }
+    } else if ((type & 0x38) == 0x08) {
+      int order = type & 0x07;
+      assert order <= 4;
+      for (int i = 0; i < order; i++) {
+        out[i] = reader.readSigned(16);
+      }
+      residual(reader, out, order, count);
+
+      for (int i = order; i < count; i++) {
+        switch (order) {
+          case 1: out[i] += out[i - 1]; break;
+          case 2: out[i] += (2 * out[i - 1]) - out[i - 2]; break;
+          case 3: out[i] += (3 * out[i - 1]) - (3 * out[i - 2]) + out[i - 3]; break;
+          case 4: out[i] += (4 * out[i - 1]) - (6 * out[i - 2]) + (4 * out[i - 3]) - out[i - 4]; break;
+        }
+      }
+    } else {
+      assert (type & 0x20) != 0;
+      int order = (type & 0x1F) + 1;
+      for (int i = 0; i < order; i++) {
+        out[i] = reader.readSigned(16);
+      }
+
+      int   precision    = (int) reader.read(4) + 1;
+      int   shift        = reader.readSigned(5);
+      int[] coefficients = new int[order];
+      for (int i = 0; i < order; i++) {
+        coefficients[i] = reader.readSigned(precision);
+      }
+
+      assert shift >= 0;
+      residual(reader, out, order, count);
+
+      for (int i = order; i < count; i++) {
+        long sum = 0;
+        for (int j = 0; j < order; j++) {
+          sum += (long) coefficients[j] * out[i - 1 - j];
+        }
+        out[i] += (int) (sum >> shift);
+      }
+    }
+  }
+
+  private static Decoded decode(byte[] bytes) {
+    final Decoded   DECODED = new Decoded();
+    final BitReader READER  = new BitReader(bytes);
+
+    assert READER.read(32) == 0x664C6143;
+    assert READER.read(1)  == 1;
+    assert READER.read(7)  == 0;
+    assert READER.read(24) == 34;
+
+    DECODED.minBlockSize = (int) READER.read(16);
+    DECODED.maxBlockSize = (int) READER.read(16);
+    READER.read(48);
+    DECODED.sampleRate  = (int) READER.read(20);
+    assert READER.read(3) == 0;
+    assert READER.read(5) == 15;
+    DECODED.sampleCount = READER.read(36);
+    for (int i = 0; i < 16; i++) {
+      DECODED.md5[i] = (byte) READER.read(8);
+    }
+
+    int[] samples = new int[(int) DECODED.sampleCount];
+    int   decoded = 0;
+
+    while (READER.hasRemaining()) {
+      int start = READER.byteOffset();
+
+      assert READER.read(14) == 0x3FFE;
+      assert READER.read(2)  == 0;
+
+      int blockSizeCode  = (int) READER.read(4);
+      int sampleRateCode = (int) READER.read(4);
+      assert READER.read(4) == 0;
+      assert READER.read(3) == 4;
+      assert READER.read(1) == 0;
+      assert READER.readUtf8() == DECODED.frameCount;
+
+      int count = blockSize(blockSizeCode, READER, DECODED.maxBlockSize);
+      assert sampleRateCode == 4;
+      int crc8 = Crc.crc8(bytes, start, READER.byteOffset() - start);
+      assert READER.read(8) == crc8;
+
+      int[] block = new int[count];
+      subframe(READER, block, count);
+      READER.align();
+
+      int end = READER.byteOffset();
+      assert READER.read(16) == Crc.crc16(bytes, start, end - start);
+
+      System.arraycopy(block, 0, samples, decoded, count);
+      decoded += count;
+      DECODED.frameCount++;
+    }
+
+    assert decoded == DECODED.sampleCount;
+    DECODED.samples = samples;
+    return DECODED;
+  }
+
+  private static byte[] encode(FlacEncoder encoder, float[]... chunks) throws Exception {
+    final ByteArrayOutputStream OUT = new ByteArrayOutputStream();
+
+    encoder.reset();
+    for (float[] chunk : chunks) {
+      encoder.append(FloatBuffer.wrap(chunk), OUT);
+    }
+    encoder.finish(OUT);
+
+    final ByteArrayOutputStream FILE = new ByteArrayOutputStream();
+    FILE.write(encoder.header());
+    OUT.writeTo(FILE);
+    return FILE.toByteArray();
+  }
+
+  private static float[] voice(int count, long seed) {
+    final Random   RANDOM   = new Random(seed);
+    final float[]  SAMPLES  = new float[count];
+    final double[] FORMANTS = new double[] {500d, 1500d, 2500d};
+    final double[] LAST1    = new double[FORMANTS.length];
+    final double[] LAST2    = new double[FORMANTS.length];
+    int            pulse    = 0;
+    float          peak     = 0f;
+
+    for (int i = 0; i < count; i++) {
+      double excitation = 0.02d * RANDOM.nextGaussian();
+      if (i == pulse) {
+        excitation += 1d;
+        pulse      += 60 + RANDOM.nextInt(12);
+      }
+
+      for (int f = 0; f < FORMANTS.length; f++) {
+        double omega = (2d * Math.PI * FORMANTS[f]) / 8000d;
+        double out   = excitation + (2d * 0.97d * Math.cos(omega) * LAST1[f]) - (0.97d * 0.97d * LAST2[f]);
+        LAST2[f]     = LAST1[f];
+        LAST1[f]     = out;
+        excitation   = out * 0.03d;
+      }
+
+      SAMPLES[i] = (i % 2400) < 1600 ? (float) excitation : 0f;
+      peak       = Math.max(peak, Math.abs(SAMPLES[i]));
+    }
+
+    for (int i = 0; i < count; i++) {
+      SAMPLES[i] = (SAMPLES[i] * (0.6f / peak)) + (float) (0.0003d * RANDOM.nextGaussian());
+    }
+
+    return SAMPLES;
+  }
+
+  private static void assertLossless(Decoded decoded, float[]... chunks) throws Exception {
+    final MessageDigest MD5   = MessageDigest.getInstance("MD5");
+    int                 index = 0;
+
+    for (float[] chunk : chunks) {
+      for (float sample : chunk) {
+        short pcm = Pcm16Encoder.sample(sample);
+        assert decoded.samples[index++] == pcm;
+        MD5.update(new byte[] {(byte) pcm, (byte) (pcm >> 8)});
+      }
+    }
+
+    assert index == decoded.sampleCount;
+    assert Arrays.equals(MD5.digest(), decoded.md5);
+  }
+
+  @Test
+  public void testVoiceRoundTripIsLossless() throws Exception {
+    final FlacEncoder ENCODER = new FlacEncoder(8000, 1152, 8);
+    final float[]     CHUNK1  = voice(96000, 1L);
+    final float[]     CHUNK2  = voice(1337, 2L);
+    final Decoded     DECODED = decode(encode(ENCODER, CHUNK1, CHUNK2));
+
+    assert DECODED.minBlockSize == 1152;
+    assert DECODED.maxBlockSize == 1152;
+    assert DECODED.sampleRate   == 8000;
+    assert DECODED.sampleCount  == CHUNK1.length + CHUNK2.length;
+    assert DECODED.frameCount   == ((CHUNK1.length + CHUNK2.length) / 1152) + 1;
+    assertLossless(DECODED, CHUNK1, CHUNK2);
+  }
+
+  @Test
+  public void testFixedPredictionRoundTripIsLossless() throws Exception {
+    final FlacEncoder ENCODER = new FlacEncoder(8000, 4096, 0);
+    final float[]     CHUNK   = voice(20000, 3L);
+
+    assertLossless(decode(encode(ENCODER, CHUNK)), CHUNK);
+  }
+
+  @Test
+  public void testNoiseSilenceAndClippingRoundTripIsLossless() throws Exception {
+    final FlacEncoder ENCODER = new FlacEncoder(8000, 16, 12);
+    final Random      RANDOM  = new Random(4L);
+    final float[]     NOISE   = new float[3001];
+    final float[]     SILENCE = new float[500];
+    final float[]     CLIPPED = new float[777];
+
+    for (int i = 0; i < NOISE.length; i++) {
+      NOISE[i] = (RANDOM.nextFloat() * 2f) - 1f;
+    }
+    for (int i = 0; i < CLIPPED.length; i++) {
+      CLIPPED[i] = (float) (4d * Math.sin(i * 0.05d));
+    }
+
+    final Decoded DECODED = decode(encode(ENCODER, NOISE, SILENCE, CLIPPED));
+
+    assert DECODED.frameCount > 256;
+    assertLossless(DECODED, NOISE, SILENCE, CLIPPED);
+  }
+
+  @Test
+  public void testNonFiniteAndLargeSamplesClamped() throws Exception {
+    final FlacEncoder ENCODER = new FlacEncoder(8000, 16, 8);
+    final float[]     CHUNK   = new float[] {
+        Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, 1e10f, -1e10f, 0.5f
+    };
+    final int[]       PCM     = new int[] {
+        0, Short.MAX_VALUE, -Short.MAX_VALUE, Short.MAX_VALUE, -Short.MAX_VALUE, 16384
+    };
+
+    assert Arrays.equals(decode(encode(ENCODER, CHUNK)).samples, PCM);
+  }
+
+  @Test
+  public void testEncoderReusedAcrossFiles() throws Exception {
+    final FlacEncoder ENCODER = new FlacEncoder(8000, 1152, 8);
+    final float[]     FIRST   = voice(5000, 5L);
+    final float[]     SECOND  = voice(3000, 6L);
+    final byte[]      ONCE    = encode(new FlacEncoder(8000, 1152, 8), SECOND);
+
+    encode(ENCODER, FIRST);
+    assert Arrays.equals(encode(ENCODER, SECOND), ONCE);
+  }
+
+  @Test
+  public void testVoiceCompressedWithLpc() throws Exception {
+    final float[] CHUNK = voice(96000, 7L);
+    final byte[]  FIXED = encode(new FlacEncoder(8000, 1152, 0), CHUNK);
+    final byte[]  LPC   = encode(new FlacEncoder(8000, 1152, 8), CHUNK);
+
+    assert LPC.length < FIXED.length;
+    assert LPC.length < (CHUNK.length * Short.BYTES * 2) / 3;
+  }
+
+  @Test
+  public void testSilenceUsesConstantFrames() throws Exception {
+    final byte[] FLAC = encode(new FlacEncoder(8000, 1152, 8), new float[1152 * 10]);
+
+    assert FLAC.length < FlacEncoder.HEADER_LENGTH + (10 * 16);
+    assert Arrays.equals(decode(FLAC).samples, new int[1152 * 10]);
+  }
+
+  @Test
+  public void testDirectBuffersAndPagedOutput() throws Exception {
+    final FlacEncoder            ENCODER = new FlacEncoder(8000, 1152, 8);
+    final float[]                CHUNK   = voice(10000, 8L);
+    final FloatBuffer            DIRECT  = ByteBuffer.allocateDirect(CHUNK.length * Float.BYTES).asFloatBuffer();
+    final ByteBufferOutputStream OUT     = new ByteBufferOutputStream(1000);
+
+    DIRECT.put(CHUNK);
+    DIRECT.flip();
+
+    ENCODER.append(DIRECT, OUT);
+    ENCODER.finish(OUT);
+
+    final ByteArrayOutputStream FILE = new ByteArrayOutputStream();
+    FILE.write(ENCODER.header());
+    for (ByteBuffer page : OUT.getBuffers()) {
+      FILE.write(page.array(), page.position(), page.remaining());
+    }
+
+    assert !DIRECT.hasRemaining();
+    assert Arrays.equals(FILE.toByteArray(), encode(new FlacEncoder(8000, 1152, 8), CHUNK));
+    assertLossless(decode(FILE.toByteArray()), CHUNK);
+  }
+
+}
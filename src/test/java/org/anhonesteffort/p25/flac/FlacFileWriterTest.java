@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.flac;
+
+import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.p25.Checkpoint;
+import org.anhonesteffort.p25.CheckpointingAudioChunk;
+import org.anhonesteffort.p25.wav.WaveFile;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.FloatBuffer;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+
+public class FlacFileWriterTest {
+
+  private CheckpointingAudioChunk newChunk(float[] floats, List<Checkpoint> checks) {
+    final P25ChannelId CHANNEL = new ProtoP25Factory().controlId(1, 2, 3, 4).build();
+    return new CheckpointingAudioChunk(CHANNEL, true, true, true, 10l, 20l, 10d, 20d, 30, FloatBuffer.wrap(floats), checks);
+  }
+
+  private byte[] toBytes(WaveFile file) throws Exception {
+    final ByteArrayOutputStream OUT = new ByteArrayOutputStream();
+    final InputStream           IN  = file.getInputStream();
+
+    for (int read = IN.read(); read >= 0; read = IN.read()) {
+      OUT.write(read);
+    }
+
+    return OUT.toByteArray();
+  }
+
+  @Test
+  public void testEmptyChunksReturnEmpty() throws Exception {
+    final FlacFileWriter                WRITER = new FlacFileWriter(1152, 8);
+    final List<CheckpointingAudioChunk> CHUNKS = new LinkedList<>();
+
+    CHUNKS.add(newChunk(new float[0], new LinkedList<>()));
+    assert !WRITER.write(CHUNKS).isPresent();
+  }
+
+  @Test
+  public void testChunksWrittenAsOneStream() throws Exception {
+    final FlacFileWriter                WRITER = new FlacFileWriter(1152, 8);
+    final List<CheckpointingAudioChunk> CHUNKS = new LinkedList<>();
+
+    CHUNKS.add(newChunk(new float[3000], new LinkedList<>()));
+    CHUNKS.add(newChunk(new float[] {0.5f, -0.5f}, new LinkedList<>()));
+
+    final Optional<WaveFile> FILE  = WRITER.write(CHUNKS);
+    final byte[]             BYTES = toBytes(FILE.get());
+
+    assert WRITER.getExtension().equals("flac");
+    assert BYTES.length == FILE.get().getLength();
+    assert new String(BYTES, 0, 4, "US-ASCII").equals("fLaC");
+    assert BYTES[FlacEncoder.HEADER_LENGTH]     == (byte) 0xFF;
+    assert BYTES[FlacEncoder.HEADER_LENGTH + 1] == (byte) 0xF8;
+    assert BYTES[24] == 3002 >> 8;
+    assert BYTES[25] == (byte) 3002;
+    assert CHUNKS.get(0).getBuffer().remaining() == 3000;
+  }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.imbe;
+
+import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.jmbe.iface.AudioConverter;
+import org.anhonesteffort.p25.CheckpointingAudioChunk;
+import org.anhonesteffort.p25.wav.WaveFile;
+import org.anhonesteffort.p25.wav.WaveFileWriter;
+import org.anhonesteffort.p25.wav.WaveHeader;
+import org.anhonesteffort.p25.wav.WaveHeaderFactory;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+
+public class ImbeFileDecoderTest {
+
+  private CheckpointingAudioChunk newChunk(byte[]... frames) {
+    final P25ChannelId CHANNEL = new ProtoP25Factory().controlId(1, 2, 3, 4).build();
+    final ByteBuffer   WORDS   = ByteBuffer.allocate(1024);
+
+    for (byte[] frame : frames) {
+      WORDS.put((byte) frame.length);
+      WORDS.put(frame);
+    }
+    WORDS.flip();
+
+    return new CheckpointingAudioChunk(CHANNEL, true, true, true, 10l, 20l, 10d, 20d, 30, WORDS, new LinkedList<>());
+  }
+
+  private byte[] frame(int value) {
+    final byte[] FRAME = new byte[18];
+    Arrays.fill(FRAME, (byte) value);
+    return FRAME;
+  }
+
+  private byte[] toBytes(WaveFile file) throws IOException {
+    final byte[]      BYTES = new byte[file.getLength()];
+    final InputStream IN    = file.getInputStream();
+    int               read  = 0;
+
+    while (read < BYTES.length) {
+      read += IN.read(BYTES, read, BYTES.length - read);
+    }
+
+    return BYTES;
+  }
+
+  @Test
+  public void testEmptyChunksReturnEmpty() throws Exception {
+    final ImbeFileWriter                WRITER = new ImbeFileWriter();
+    final List<CheckpointingAudioChunk> CHUNKS = new LinkedList<>();
+
+    CHUNKS.add(newChunk());
+    assert !WRITER.write(CHUNKS).isPresent();
+  }
+
+  @Test
+  public void testFramesRoundTrip() throws Exception {
+    final ImbeFileWriter                WRITER = new ImbeFileWriter();
+    final List<CheckpointingAudioChunk> CHUNKS = new LinkedList<>();
+
+    CHUNKS.add(newChunk(frame(1), frame(2)));
+    CHUNKS.add(newChunk(frame(3)));
+
+    final WaveFile     FILE   = WRITER.write(CHUNKS).get();
+    final List<byte[]> FRAMES = ImbeFileDecoder.read(new ByteArrayInputStream(toBytes(FILE)));
+
+    assert FILE.getLength() == ImbeFileWriter.HEADER_LENGTH + (3 * 19);
+    assert FRAMES.size() == 3;
+    assert Arrays.equals(FRAMES.get(0), frame(1));
+    assert Arrays.equals(FRAMES.get(1), frame(2));
+    assert Arrays.equals(FRAMES.get(2), frame(3));
+  }
+
+  @Test
+  public void testDecodedOnReadToWave() throws Exception {
+    final AudioConverter  CODEC   = Mockito.mock(AudioConverter.class);
+    final WaveFileWriter  WAVE    = new WaveFileWriter(new WaveHeaderFactory());
+    final ImbeFileDecoder DECODER = new ImbeFileDecoder(CODEC, WAVE);
+    final ImbeFileWriter  WRITER  = new ImbeFileWriter();
+
+    Mockito.when(CODEC.decode(Mockito.any())).thenReturn(new float[160]);
+
+    final List<CheckpointingAudioChunk> CHUNKS = new LinkedList<>();
+    CHUNKS.add(newChunk(frame(1), frame(2), frame(3)));
+
+    final WaveFile ARCHIVE = WRITER.write(CHUNKS).get();
+    Mockito.verify(CODEC, Mockito.never()).decode(Mockito.any());
+
+    final Optional<WaveFile> AUDIO = DECODER.decode(new ByteArrayInputStream(toBytes(ARCHIVE)));
+    final InOrder            ORDER = Mockito.inOrder(CODEC);
+
+    ORDER.verify(CODEC).decode(Mockito.argThat(new FrameMatcher(frame(1))));
+    ORDER.verify(CODEC).decode(Mockito.argThat(new FrameMatcher(frame(2))));
+    ORDER.verify(CODEC).decode(Mockito.argThat(new FrameMatcher(frame(3))));
+
+    assert AUDIO.isPresent();
+    assert AUDIO.get().getLength() == WaveHeader.HEADER_LENGTH + (3 * 160 * Short.BYTES);
+    assert ARCHIVE.getLength() * 16 < AUDIO.get().getLength();
+  }
+
+  @Test(expected = IOException.class)
+  public void testBadMagicThrows() throws Exception {
+    ImbeFileDecoder.read(new ByteArrayInputStream("RIFF\1".getBytes()));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedFrameThrows() throws Exception {
+    final byte[] ARCHIVE = Arrays.copyOf(ImbeFileWriter.header(), ImbeFileWriter.HEADER_LENGTH + 5);
+    ARCHIVE[ImbeFileWriter.HEADER_LENGTH] = 18;
+    ImbeFileDecoder.read(new ByteArrayInputStream(ARCHIVE));
+  }
+
+  private static class FrameMatcher extends ArgumentMatcher<byte[]> {
+    private final byte[] frame;
+
+    public FrameMatcher(byte[] frame) {
+      this.frame = frame;
+    }
+
+    @Override
+    public boolean matches(Object argument) {
+      return Arrays.equals(frame, (byte[]) argument);
+    }
+  }
+
+}
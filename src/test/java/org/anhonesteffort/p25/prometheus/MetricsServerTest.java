@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.prometheus;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+public class MetricsServerTest {
+
+  private final MetricRegistry registry = new MetricRegistry();
+
+  private MetricsServer server;
+
+  @Before
+  public void start() throws Exception {
+    server = new MetricsServer(new InetSocketAddress("127.0.0.1", 0), registry);
+    server.start();
+  }
+
+  @After
+  public void stop() {
+    server.stop();
+  }
+
+  private HttpURLConnection connect(String method) throws Exception {
+    final URL               URL  = new URL("http://127.0.0.1:" + server.getPort() + MetricsServer.CONTEXT);
+    final HttpURLConnection CONN = (HttpURLConnection) URL.openConnection();
+
+    CONN.setRequestMethod(method);
+    return CONN;
+  }
+
+  private String read(HttpURLConnection connection) throws Exception {
+    final ByteArrayOutputStream OUT    = new ByteArrayOutputStream();
+    final byte[]                BUFFER = new byte[1024];
+
+    try (InputStream in = connection.getInputStream()) {
+      int read;
+      while ((read = in.read(BUFFER)) >= 0) {
+        OUT.write(BUFFER, 0, read);
+      }
+    }
+
+    return new String(OUT.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testScrapeServesRegistry() throws Exception {
+    registry.counter("wavPutSuccess").inc(2);
+
+    final HttpURLConnection CONN = connect("GET");
+
+    assert CONN.getResponseCode() == 200;
+    assert CONN.getContentType().startsWith("text/plain");
+    assert read(CONN).contains("imbeef_wavPutSuccess 2\n");
+  }
+
+  @Test
+  public void testScrapesSeeNewValues() throws Exception {
+    registry.counter("wavPutSuccess").inc();
+    assert read(connect("GET")).contains("imbeef_wavPutSuccess 1\n");
+
+    registry.counter("wavPutSuccess").inc();
+    assert read(connect("GET")).contains("imbeef_wavPutSuccess 2\n");
+  }
+
+  @Test
+  public void testNonGetRejected() throws Exception {
+    assert connect("POST").getResponseCode() == 405;
+  }
+
+}
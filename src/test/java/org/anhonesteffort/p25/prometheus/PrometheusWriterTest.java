@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.prometheus;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+public class PrometheusWriterTest {
+
+  private String format(PrometheusWriter writer) {
+    final int LENGTH = writer.format();
+    return new String(writer.getBytes(), 0, LENGTH, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testNamesSanitized() {
+    assert PrometheusWriter.name("wavPutSuccess").equals("imbeef_wavPutSuccess");
+    assert PrometheusWriter.name("jvmGcCount.G1 Young Generation").equals("imbeef_jvmGcCount_G1_Young_Generation");
+  }
+
+  @Test
+  public void testCountersAndGauges() {
+    final MetricRegistry   REGISTRY = new MetricRegistry();
+    final PrometheusWriter WRITER   = new PrometheusWriter(REGISTRY);
+
+    REGISTRY.counter("wavQueued").inc(3);
+    REGISTRY.register("callManager", (Gauge<Integer>) () -> 12);
+    REGISTRY.register("ratio", (Gauge<Double>) () -> 0.25d);
+    REGISTRY.register("label", (Gauge<String>) () -> "nope");
+
+    final String TEXT = format(WRITER);
+
+    assert TEXT.contains("# TYPE imbeef_wavQueued counter\nimbeef_wavQueued 3\n");
+    assert TEXT.contains("# TYPE imbeef_callManager gauge\nimbeef_callManager 12\n");
+    assert TEXT.contains("imbeef_ratio 0.25\n");
+    assert !TEXT.contains("label");
+  }
+
+  @Test
+  public void testTimersAreSummariesInSeconds() {
+    final MetricRegistry   REGISTRY = new MetricRegistry();
+    final PrometheusWriter WRITER   = new PrometheusWriter(REGISTRY);
+
+    REGISTRY.timer("ingestLag").update(250, TimeUnit.MILLISECONDS);
+    REGISTRY.histogram("wavSizeBytes").update(1024);
+
+    final String TEXT = format(WRITER);
+
+    assert TEXT.contains("# TYPE imbeef_ingestLag_seconds summary\n");
+    assert TEXT.contains("imbeef_ingestLag_seconds{quantile=\"0.5\"} 0.25\n");
+    assert TEXT.contains("imbeef_ingestLag_seconds{quantile=\"0.999\"} 0.25\n");
+    assert TEXT.contains("imbeef_ingestLag_seconds_count 1\n");
+    assert TEXT.contains("imbeef_wavSizeBytes{quantile=\"0.99\"} 1024.0\n");
+  }
+
+  @Test
+  public void testRegistryChangesTracked() {
+    final MetricRegistry REGISTRY = new MetricRegistry();
+    REGISTRY.counter("before").inc();
+
+    final PrometheusWriter WRITER = new PrometheusWriter(REGISTRY);
+    REGISTRY.counter("after").inc();
+
+    assert format(WRITER).contains("imbeef_before 1\n");
+    assert format(WRITER).contains("imbeef_after 1\n");
+
+    REGISTRY.remove("before");
+    assert !format(WRITER).contains("imbeef_before");
+  }
+
+  @Test
+  public void testBufferGrows() {
+    final MetricRegistry   REGISTRY = new MetricRegistry();
+    final PrometheusWriter WRITER   = new PrometheusWriter(REGISTRY);
+
+    for (int i = 0; i < 1000; i++) {
+      REGISTRY.counter("counter" + i).inc(i);
+    }
+
+    final String TEXT = format(WRITER);
+
+    assert TEXT.length() > 16 * 1024;
+    assert TEXT.contains("imbeef_counter999 999\n");
+  }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.serve;
+
+import org.anhonesteffort.jmbe.iface.AudioConverter;
+import org.anhonesteffort.p25.AudioConverterPool;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.anhonesteffort.p25.audio.ImbeConverterFactory;
+import org.anhonesteffort.p25.imbe.ImbeFileWriter;
+import org.anhonesteffort.p25.wav.WaveHeader;
+import org.anhonesteffort.p25.wav.WaveHeaderFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.AdditionalMatchers;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CallAudioServerTest {
+
+  private final ImbeefMetrics metrics = Mockito.mock(ImbeefMetrics.class);
+  private final byte[]        frame   = new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18};
+
+  private final CountDownLatch      slow  = new CountDownLatch(1);
+  private final Map<String, byte[]> calls = new HashMap<>();
+  private final CallStore           store = key -> {
+    if (key.startsWith("slow")) {
+      try {
+        slow.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (!calls.containsKey(key)) {
+      throw new FileNotFoundException(key);
+    }
+    return new ByteArrayInputStream(calls.get(key));
+  };
+
+  private ImbeConverterFactory converters;
+  private AudioConverter       codec;
+  private CallAudioServer      server;
+
+  private CallAudioServer server(long cacheBytes) throws Exception {
+    return new CallAudioServer(
+        new InetSocketAddress("127.0.0.1", 0), 2, store, new AudioConverterPool(converters, 1, metrics),
+        new WaveHeaderFactory(), new WaveCache(cacheBytes, metrics), metrics
+    );
+  }
+
+  @Before
+  public void start() throws Exception {
+    converters = Mockito.mock(ImbeConverterFactory.class);
+    codec      = Mockito.mock(AudioConverter.class);
+    server     = server(1024 * 1024);
+
+    Mockito.when(converters.create(Mockito.anyString())).thenReturn(Optional.of(codec));
+    Mockito.when(codec.decode(Mockito.any())).thenReturn(new float[160]);
+    server.start();
+  }
+
+  @After
+  public void stop() {
+    slow.countDown();
+    server.stop();
+  }
+
+  private byte[] archive(int frames) {
+    return archive(frames, frame);
+  }
+
+  private byte[] archive(int frames, byte[] frame) {
+    final ByteArrayOutputStream OUT = new ByteArrayOutputStream();
+
+    OUT.write(ImbeFileWriter.header(), 0, ImbeFileWriter.HEADER_LENGTH);
+    for (int i = 0; i < frames; i++) {
+      OUT.write(frame.length);
+      OUT.write(frame, 0, frame.length);
+    }
+
+    return OUT.toByteArray();
+  }
+
+  private HttpURLConnection get(CallAudioServer server, String key) throws Exception {
+    return (HttpURLConnection) new URL(
+        "http://127.0.0.1:" + server.getPort() + CallAudioServer.CONTEXT + key
+    ).openConnection();
+  }
+
+  private HttpURLConnection get(String key) throws Exception {
+    return get(server, key);
+  }
+
+  private byte[] body(HttpURLConnection connection) throws Exception {
+    final ByteArrayOutputStream OUT = new ByteArrayOutputStream();
+
+    try (InputStream in = connection.getInputStream()) {
+      for (int read = in.read(); read >= 0; read = in.read()) {
+        OUT.write(read);
+      }
+    }
+
+    return OUT.toByteArray();
+  }
+
+  @Test
+  public void testArchiveDecodedOnceThenCached() throws Exception {
+    final String KEY = "imbeef/1/2/3/TRAFFIC_GROUP:4:5:6.0:1000.imbe";
+    calls.put(KEY, archive(5));
+
+    final HttpURLConnection FIRST = get(KEY);
+    assert FIRST.getResponseCode() == 200;
+    assert FIRST.getContentType().equals("audio/wav");
+    assert body(FIRST).length == WaveHeader.HEADER_LENGTH + (5 * 160 * Short.BYTES);
+
+    final HttpURLConnection SECOND = get(KEY);
+    assert SECOND.getResponseCode() == 200;
+    assert body(SECOND).length == WaveHeader.HEADER_LENGTH + (5 * 160 * Short.BYTES);
+
+    Mockito.verify(codec, Mockito.times(5)).decode(AdditionalMatchers.aryEq(frame));
+  }
+
+  @Test
+  public void testWaveServedAsStored() throws Exception {
+    final String KEY  = "imbeef/1/2/3/TRAFFIC_GROUP:4:5:6.0:1000.wav";
+    final byte[] WAVE = new byte[] {1, 2, 3, 4};
+    calls.put(KEY, WAVE);
+
+    final HttpURLConnection RESPONSE = get(KEY);
+    assert RESPONSE.getResponseCode() == 200;
+    assert Arrays.equals(body(RESPONSE), WAVE);
+    Mockito.verify(codec, Mockito.never()).decode(Mockito.any());
+  }
+
+  @Test
+  public void testFlacServedAsStored() throws Exception {
+    final String KEY  = "imbeef/1/2/3/TRAFFIC_GROUP:4:5:6.0:1000.flac";
+    final byte[] FLAC = new byte[] {'f', 'L', 'a', 'C'};
+    calls.put(KEY, FLAC);
+
+    final HttpURLConnection RESPONSE = get(KEY);
+    assert RESPONSE.getResponseCode() == 200;
+    assert RESPONSE.getContentType().equals("audio/flac");
+    assert Arrays.equals(body(RESPONSE), FLAC);
+  }
+
+  @Test
+  public void testSlowCallDoesNotBlockOthers() throws Exception {
+    calls.put("slow.wav", new byte[] {1});
+    calls.put("fast.wav", new byte[] {2});
+
+    final Thread SLOW = new Thread(() -> {
+      try {
+        get("slow.wav").getResponseCode();
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    SLOW.start();
+
+    final HttpURLConnection FAST = get("fast.wav");
+    FAST.setReadTimeout((int) TimeUnit.SECONDS.toMillis(5));
+    assert FAST.getResponseCode() == 200;
+
+    slow.countDown();
+    SLOW.join();
+  }
+
+  @Test
+  public void testConverterBorrowedPerDecode() throws Exception {
+    calls.put("one.imbe", archive(1));
+    calls.put("two.imbe", archive(1));
+
+    assert get("one.imbe").getResponseCode() == 200;
+    assert get("two.imbe").getResponseCode() == 200;
+
+    Mockito.verify(converters, Mockito.times(1)).create(ImbeConverterFactory.AUDIO_FORMAT_8khz);
+    Mockito.verify(metrics, Mockito.times(1)).converterPoolHit();
+  }
+
+  @Test
+  public void testMissingCallNotFound() throws Exception {
+    assert get("nope.imbe").getResponseCode() == 404;
+  }
+
+  @Test
+  public void testEmptyArchiveNotFound() throws Exception {
+    calls.put("empty.imbe", archive(0));
+    assert get("empty.imbe").getResponseCode() == 404;
+  }
+
+  @Test
+  public void testUnknownFormatUnsupported() throws Exception {
+    calls.put("call.mp3", new byte[10]);
+    assert get("call.mp3").getResponseCode() == 415;
+  }
+
+  @Test
+  public void testConcurrentDecodesDoNotMix() throws Exception {
+    final byte[] LOW  = new byte[18];
+    final byte[] HIGH = new byte[18];
+
+    Arrays.fill(LOW,  (byte) 10);
+    Arrays.fill(HIGH, (byte) 100);
+    calls.put("low.imbe",  archive(500, LOW));
+    calls.put("high.imbe", archive(500, HIGH));
+
+    Mockito.when(codec.decode(Mockito.any())).then(invocation -> {
+      float[] samples = new float[160];
+      Arrays.fill(samples, ((byte[]) invocation.getArguments()[0])[0] / 128f);
+      return samples;
+    });
+
+    final CallAudioServer UNCACHED = server(0);
+    UNCACHED.start();
+
+    try {
+
+      final byte[] LOW_WAVE  = body(get(UNCACHED, "low.imbe"));
+      final byte[] HIGH_WAVE = body(get(UNCACHED, "high.imbe"));
+      assert !Arrays.equals(LOW_WAVE, HIGH_WAVE);
+
+      for (int i = 0; i < 10; i++) {
+        final byte[][] LOW_BODY = new byte[1][];
+        final Thread   LOWS     = new Thread(() -> {
+          try {
+            LOW_BODY[0] = body(get(UNCACHED, "low.imbe"));
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        });
+
+        LOWS.start();
+        final byte[] HIGH_BODY = body(get(UNCACHED, "high.imbe"));
+        LOWS.join();
+
+        assert Arrays.equals(LOW_BODY[0], LOW_WAVE);
+        assert Arrays.equals(HIGH_BODY,   HIGH_WAVE);
+      }
+
+    } finally {
+      UNCACHED.stop();
+    }
+  }
+
+}
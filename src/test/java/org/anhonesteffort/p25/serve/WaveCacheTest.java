@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.serve;
+
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class WaveCacheTest {
+
+  private final ImbeefMetrics metrics = Mockito.mock(ImbeefMetrics.class);
+
+  @Test
+  public void testLeastRecentlyUsedEvicted() throws Exception {
+    final WaveCache CACHE = new WaveCache(30, metrics);
+
+    CACHE.put("a", new byte[10]);
+    CACHE.put("b", new byte[10]);
+    CACHE.put("c", new byte[10]);
+    assert CACHE.getBytes() == 30;
+
+    assert CACHE.get("a").isPresent();
+    CACHE.put("d", new byte[10]);
+
+    assert CACHE.size()     == 3;
+    assert CACHE.getBytes() == 30;
+    assert !CACHE.get("b").isPresent();
+    assert CACHE.get("a").isPresent();
+    assert CACHE.get("c").isPresent();
+    assert CACHE.get("d").isPresent();
+  }
+
+  @Test
+  public void testLargeFileEvictsMany() throws Exception {
+    final WaveCache CACHE = new WaveCache(30, metrics);
+
+    CACHE.put("a", new byte[10]);
+    CACHE.put("b", new byte[10]);
+    CACHE.put("c", new byte[25]);
+
+    assert CACHE.size()     == 1;
+    assert CACHE.getBytes() == 25;
+    assert CACHE.get("c").isPresent();
+  }
+
+  @Test
+  public void testOversizedFileNotCached() throws Exception {
+    final WaveCache CACHE = new WaveCache(30, metrics);
+
+    CACHE.put("a", new byte[10]);
+    CACHE.put("b", new byte[31]);
+
+    assert CACHE.size() == 1;
+    assert !CACHE.get("b").isPresent();
+  }
+
+  @Test
+  public void testReplaceAccountsBytes() throws Exception {
+    final WaveCache CACHE = new WaveCache(30, metrics);
+
+    CACHE.put("a", new byte[10]);
+    CACHE.put("a", new byte[20]);
+
+    assert CACHE.size()     == 1;
+    assert CACHE.getBytes() == 20;
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.trace;
+
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import io.radiowitness.proto.p25.ProtoP25Factory;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.anhonesteffort.p25.CheckpointingAudioChunk;
+import org.anhonesteffort.p25.ImbeefConfig;
+import org.anhonesteffort.p25.ImbeefMetrics;
+import org.anhonesteffort.p25.consumer.DataUnitFactory;
+import org.anhonesteffort.p25.wav.WaveFileS3Sender;
+import org.anhonesteffort.p25.wav.WaveFileWriter;
+import org.anhonesteffort.p25.wav.WaveHeader;
+import org.anhonesteffort.p25.wav.WaveHeaderFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+
+import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
+
+public class CallEventTest {
+
+  private final ImbeefMetrics metrics = Mockito.mock(ImbeefMetrics.class);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private Optional<RecordedEvent> find(List<RecordedEvent> events, String name) {
+    return events.stream().filter(event -> event.getEventType().getName().equals(name)).findAny();
+  }
+
+  @Test
+  public void testSenderStagesRecorded() throws Exception {
+    final ImbeefConfig     CONFIG  = Mockito.mock(ImbeefConfig.class);
+    final P25ChannelId     CHANNEL = new ProtoP25Factory().groupId(1, 2, 3, 4, 5, 6d).build();
+    final WaveFileS3Sender SENDER  = new WaveFileS3Sender(
+        CONFIG, new WaveFileWriter(new WaveHeaderFactory()), Mockito.mock(TransferManager.class), metrics
+    );
+
+    Mockito.when(CONFIG.getS3Bucket()).thenReturn("bucket");
+    Mockito.when(CONFIG.getS3KeyPrefix()).thenReturn("key");
+
+    final Path FILE = folder.newFile("trace.jfr").toPath();
+
+    try (Recording recording = new Recording()) {
+      recording.enable(AudioEncodeEvent.class).withThreshold(Duration.ZERO);
+      recording.enable(CallFinalizedEvent.class).withThreshold(Duration.ZERO);
+      recording.enable(UploadCompletedEvent.class).withThreshold(Duration.ZERO);
+      recording.start();
+
+      SENDER.queue(new CheckpointingAudioChunk(
+          CHANNEL, true, true, true, 10l, 20l, 10d, 20d, 4, FloatBuffer.allocate(10), new LinkedList<>()
+      ));
+      SENDER.writeAndSend();
+      SENDER.progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_COMPLETED_EVENT));
+
+      recording.stop();
+      recording.dump(FILE);
+    }
+
+    final List<RecordedEvent> EVENTS = RecordingFile.readAllEvents(FILE);
+
+    for (String name : new String[] { "imbeef.AudioEncode", "imbeef.CallFinalized", "imbeef.UploadCompleted" }) {
+      final Optional<RecordedEvent> EVENT = find(EVENTS, name);
+
+      assert EVENT.isPresent();
+      assert EVENT.get().getString("channel").equals(new ProtoP25Factory().toString(CHANNEL));
+      assert EVENT.get().getLong("samples") == 10;
+      assert EVENT.get().getLong("bytes")   == WaveHeader.HEADER_LENGTH + 20;
+    }
+  }
+
+  @Test
+  public void testDataUnitParseRecorded() throws Exception {
+    final ProtoP25Factory      PROTO   = new ProtoP25Factory();
+    final P25ChannelId.Builder CHANNEL = PROTO.groupId(1, 2, 3, 4, 5, 6d);
+    final Path                 FILE    = folder.newFile("trace.jfr").toPath();
+
+    try (Recording recording = new Recording()) {
+      recording.enable(DataUnitParseEvent.class).withThreshold(Duration.ZERO);
+      recording.start();
+
+      new DataUnitFactory().create(PROTO.dataUnit(CHANNEL, 5d, 6d, 7, 8, new byte[7]).build());
+
+      recording.stop();
+      recording.dump(FILE);
+    }
+
+    final Optional<RecordedEvent> EVENT = find(RecordingFile.readAllEvents(FILE), "imbeef.DataUnitParse");
+
+    assert EVENT.isPresent();
+    assert EVENT.get().getString("channel").equals(PROTO.toString(CHANNEL.build()));
+    assert EVENT.get().getLong("bytes") == 7;
+  }
+
+  @Test
+  public void testNoEventAllocatedUnlessEnabled() throws Exception {
+    assert CallTrace.isAvailable();
+    assert CallTrace.begin(CallStage.CHUNK_BROADCAST) == CallSpan.NONE;
+
+    try (Recording recording = new Recording()) {
+      recording.enable(ChunkBroadcastEvent.class);
+      recording.disable(AudioEncodeEvent.class);
+      recording.start();
+
+      assert CallTrace.begin(CallStage.CHUNK_BROADCAST) instanceof ChunkBroadcastEvent;
+      assert CallTrace.begin(CallStage.AUDIO_ENCODE) == CallSpan.NONE;
+    }
+  }
+
+  @Test
+  public void testNothingRecordedWhenDisabled() throws Exception {
+    final P25ChannelId CHANNEL = new ProtoP25Factory().groupId(1, 2, 3, 4, 5, 6d).build();
+    final Path         FILE    = folder.newFile("trace.jfr").toPath();
+
+    try (Recording recording = new Recording()) {
+      recording.disable(ChunkBroadcastEvent.class);
+      recording.start();
+
+      final ChunkBroadcastEvent EVENT = new ChunkBroadcastEvent();
+      EVENT.begin();
+      EVENT.commit(CHANNEL, 10, 40);
+
+      assert !EVENT.shouldCommit();
+
+      recording.stop();
+      recording.dump(FILE);
+    }
+
+    assert !find(RecordingFile.readAllEvents(FILE), "imbeef.ChunkBroadcast").isPresent();
+  }
+
+}
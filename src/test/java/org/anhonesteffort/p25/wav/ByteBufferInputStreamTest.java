@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class ByteBufferInputStreamTest {
+
+  private ByteBuffer[] buffers() {
+    final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    final ByteBuffer FIRST = ByteBuffer.wrap(new byte[] {0, 1, 2});
+    final ByteBuffer LAST  = ByteBuffer.wrap(new byte[] {9, 3, 4, 5});
+
+    LAST.position(1);
+    return new ByteBuffer[] {EMPTY, FIRST, EMPTY, LAST};
+  }
+
+  @Test
+  public void testReadAcrossBuffers() {
+    final ByteBuffer[]          BUFFERS = buffers();
+    final ByteBufferInputStream STREAM  = new ByteBufferInputStream(BUFFERS);
+    final byte[]                BYTES   = new byte[10];
+
+    assert STREAM.available() == 6;
+    assert STREAM.read() == 0;
+    assert STREAM.read(BYTES, 0, BYTES.length) == 5;
+    assert BYTES[0] == 1 && BYTES[1] == 2 && BYTES[2] == 3 && BYTES[4] == 5;
+    assert STREAM.read() == -1;
+    assert STREAM.read(BYTES, 0, BYTES.length) == -1;
+    assert STREAM.available() == 0;
+
+    assert BUFFERS[1].position() == 0;
+    assert BUFFERS[3].position() == 1;
+  }
+
+  @Test
+  public void testSkip() {
+    final ByteBufferInputStream STREAM = new ByteBufferInputStream(buffers());
+
+    assert STREAM.skip(4) == 4;
+    assert STREAM.read() == 4;
+    assert STREAM.skip(10) == 1;
+    assert STREAM.read() == -1;
+  }
+
+  @Test
+  public void testResetToStart() {
+    final ByteBufferInputStream STREAM = new ByteBufferInputStream(buffers());
+    final byte[]                BYTES  = new byte[6];
+
+    assert STREAM.markSupported();
+    STREAM.mark(Integer.MAX_VALUE);
+
+    assert STREAM.read(BYTES, 0, BYTES.length) == 6;
+    assert STREAM.read() == -1;
+
+    STREAM.reset();
+    assert STREAM.available() == 6;
+    assert STREAM.read() == 0;
+  }
+
+  @Test
+  public void testResetToMark() {
+    final ByteBufferInputStream STREAM = new ByteBufferInputStream(buffers());
+
+    STREAM.skip(2);
+    STREAM.mark(Integer.MAX_VALUE);
+    STREAM.skip(3);
+    assert STREAM.read() == 5;
+
+    STREAM.reset();
+    assert STREAM.read() == 2;
+    assert STREAM.read() == 3;
+  }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+public class G711EncoderTest {
+
+  @Test
+  public void testUlawReferenceValues() {
+    final G711Encoder ENCODER = G711Encoder.ulaw();
+
+    assert ENCODER.sample((short) 0)                 == (byte) 0xFF;
+    assert ENCODER.sample(Short.MAX_VALUE)           == (byte) 0x80;
+    assert ENCODER.sample(Short.MIN_VALUE)           == (byte) 0x00;
+    assert ENCODER.sample((short) -1)                == (byte) 0x7E;
+    assert G711Encoder.linearToUlaw(1000 >> 2)       == 0xCE;
+  }
+
+  @Test
+  public void testAlawReferenceValues() {
+    final G711Encoder ENCODER = G711Encoder.alaw();
+
+    assert ENCODER.sample((short) 0)           == (byte) 0xD5;
+    assert ENCODER.sample(Short.MAX_VALUE)     == (byte) 0xAA;
+    assert ENCODER.sample(Short.MIN_VALUE)     == (byte) 0x2A;
+    assert ENCODER.sample((short) -1)          == (byte) 0x55;
+    assert G711Encoder.linearToAlaw(1000 >> 3) == 0xFA;
+  }
+
+  @Test
+  public void testTablesMatchReferenceEncoder() {
+    final G711Encoder ULAW = G711Encoder.ulaw();
+    final G711Encoder ALAW = G711Encoder.alaw();
+
+    for (int pcm = Short.MIN_VALUE; pcm <= Short.MAX_VALUE; pcm++) {
+      assert ULAW.sample((short) pcm) == (byte) G711Encoder.linearToUlaw(pcm >> 2);
+      assert ALAW.sample((short) pcm) == (byte) G711Encoder.linearToAlaw(pcm >> 3);
+    }
+  }
+
+  private void assertEncoded(FloatBuffer in) {
+    final G711Encoder ENCODER = G711Encoder.ulaw();
+    final ByteBuffer  OUT     = ByteBuffer.allocate(2);
+
+    assert ENCODER.encode(in, OUT) == 2;
+    assert in.remaining() == 1;
+    assert !OUT.hasRemaining();
+    assert OUT.get(0) == (byte) 0x80;
+    assert OUT.get(1) == (byte) 0xFF;
+  }
+
+  @Test
+  public void testHeapBuffersEncodedUntilOutputFull() {
+    assertEncoded(FloatBuffer.wrap(new float[] {1f, 0f, -1f}));
+  }
+
+  @Test
+  public void testDirectBuffersEncodedUntilOutputFull() {
+    final FloatBuffer IN = ByteBuffer.allocateDirect(3 * Float.BYTES).asFloatBuffer();
+
+    IN.put(new float[] {1f, 0f, -1f});
+    IN.flip();
+
+    assertEncoded(IN);
+  }
+
+  @Test
+  public void testNonFiniteAndLargeSamplesClamped() {
+    final G711Encoder ENCODER = G711Encoder.ulaw();
+    final FloatBuffer IN      = FloatBuffer.wrap(new float[] {
+        Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, 1e10f, -1e10f
+    });
+    final ByteBuffer  OUT     = ByteBuffer.allocate(5);
+
+    assert ENCODER.encode(IN, OUT) == 5;
+    assert OUT.get(0) == ENCODER.sample((short) 0);
+    assert OUT.get(1) == ENCODER.sample(Short.MAX_VALUE);
+    assert OUT.get(2) == ENCODER.sample((short) -Short.MAX_VALUE);
+    assert OUT.get(3) == ENCODER.sample(Short.MAX_VALUE);
+    assert OUT.get(4) == ENCODER.sample((short) -Short.MAX_VALUE);
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+public class Pcm16EncoderTest {
+
+  @Test
+  public void testSamplesClampedAndRounded() {
+    assert Pcm16Encoder.sample(0f)  == 0;
+    assert Pcm16Encoder.sample(1f)  == Short.MAX_VALUE;
+    assert Pcm16Encoder.sample(-1f) == -Short.MAX_VALUE;
+    assert Pcm16Encoder.sample(2f)  == Short.MAX_VALUE;
+    assert Pcm16Encoder.sample(-2f) == -Short.MAX_VALUE;
+
+    assert Pcm16Encoder.sample(0.6f  / Short.MAX_VALUE) == 1;
+    assert Pcm16Encoder.sample(0.4f  / Short.MAX_VALUE) == 0;
+    assert Pcm16Encoder.sample(-0.6f / Short.MAX_VALUE) == -1;
+    assert Pcm16Encoder.sample(-0.4f / Short.MAX_VALUE) == 0;
+  }
+
+  @Test
+  public void testNonFiniteAndLargeSamplesClamped() {
+    assert Pcm16Encoder.sample(Float.NaN)               == 0;
+    assert Pcm16Encoder.sample(Float.POSITIVE_INFINITY) == Short.MAX_VALUE;
+    assert Pcm16Encoder.sample(Float.NEGATIVE_INFINITY) == -Short.MAX_VALUE;
+    assert Pcm16Encoder.sample(Float.MAX_VALUE)         == Short.MAX_VALUE;
+    assert Pcm16Encoder.sample(-Float.MAX_VALUE)        == -Short.MAX_VALUE;
+    assert Pcm16Encoder.sample(70000f)                  == Short.MAX_VALUE;
+    assert Pcm16Encoder.sample(-70000f)                 == -Short.MAX_VALUE;
+    assert Pcm16Encoder.sample(-1e10f)                  == -Short.MAX_VALUE;
+  }
+
+  private void assertEncoded(FloatBuffer in, ByteBuffer out) {
+    final Pcm16Encoder ENCODER = new Pcm16Encoder();
+
+    assert ENCODER.encode(in, out) == 3;
+    assert !in.hasRemaining();
+    assert out.position() == 6;
+
+    out.flip();
+    out.order(ByteOrder.LITTLE_ENDIAN);
+
+    assert out.getShort() == Short.MAX_VALUE;
+    assert out.getShort() == 0;
+    assert out.getShort() == -Short.MAX_VALUE;
+  }
+
+  @Test
+  public void testHeapBuffersEncodedLittleEndian() {
+    final FloatBuffer IN  = FloatBuffer.wrap(new float[] {1f, 0f, -1f});
+    final ByteBuffer  OUT = ByteBuffer.allocate(6).order(ByteOrder.BIG_ENDIAN);
+
+    assertEncoded(IN, OUT);
+  }
+
+  @Test
+  public void testDirectBuffersEncodedLittleEndian() {
+    final FloatBuffer IN  = ByteBuffer.allocateDirect(12).asFloatBuffer().put(new float[] {1f, 0f, -1f});
+    final ByteBuffer  OUT = ByteBuffer.allocateDirect(6).order(ByteOrder.BIG_ENDIAN);
+
+    IN.flip();
+    assertEncoded(IN, OUT);
+  }
+
+  @Test
+  public void testEncodeStopsWhenOutputFull() {
+    final Pcm16Encoder ENCODER = new Pcm16Encoder();
+    final FloatBuffer  IN      = FloatBuffer.wrap(new float[5]);
+    final ByteBuffer   OUT     = ByteBuffer.allocate(5);
+
+    assert ENCODER.encode(IN, OUT) == 2;
+    assert IN.remaining()  == 3;
+    assert OUT.remaining() == 1;
+  }
+
+  @Test
+  public void testEncodeSpansBlocks() {
+    final Pcm16Encoder ENCODER = new Pcm16Encoder();
+    final float[]      FLOATS  = new float[10000];
+    final ByteBuffer   OUT     = ByteBuffer.allocate(FLOATS.length * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    FLOATS[FLOATS.length - 1] = 1f;
+
+    assert ENCODER.encode(FloatBuffer.wrap(FLOATS), OUT) == FLOATS.length;
+    assert OUT.getShort(OUT.capacity() - Short.BYTES) == Short.MAX_VALUE;
+  }
+
+  @Test
+  public void testEncodeRespectsOffsets() {
+    final Pcm16Encoder ENCODER = new Pcm16Encoder();
+    final FloatBuffer  IN      = FloatBuffer.wrap(new float[] {0f, 1f, 0f});
+    final ByteBuffer   OUT     = ByteBuffer.allocate(6);
+
+    IN.position(1);
+    OUT.position(2);
+    ENCODER.encode(IN, OUT.slice());
+
+    assert OUT.get(0) == 0 && OUT.get(1) == 0;
+    assert OUT.getShort(2) == Short.reverseBytes(Short.MAX_VALUE);
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 An Honest Effort LLC.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.anhonesteffort.p25.wav;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+public class PcmSpoolTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private ByteBuffer toBytes(WaveFile waveFile) throws Exception {
+    final ByteBuffer  BYTES = ByteBuffer.allocate(waveFile.getLength()).order(ByteOrder.LITTLE_ENDIAN);
+    final InputStream IN    = waveFile.getInputStream();
+
+    while (BYTES.hasRemaining()) {
+      BYTES.position(BYTES.position() + IN.read(BYTES.array(), BYTES.position(), BYTES.remaining()));
+    }
+
+    assert IN.read() == -1;
+    return BYTES;
+  }
+
+  @Test
+  public void testSpoolSpansSegments() throws Exception {
+    final WaveFileWriter WRITER = new WaveFileWriter(new WaveHeaderFactory());
+    final PcmSpool       SPOOL  = new PcmSpool(folder.getRoot().toPath().resolve("spool"), WRITER);
+    final float[]        FLOATS = new float[PcmSpool.SEGMENT_SIZE];
+
+    FLOATS[0]                 = 1f;
+    FLOATS[FLOATS.length - 1] = -1f;
+
+    SPOOL.append(FloatBuffer.wrap(FLOATS));
+    SPOOL.append(FloatBuffer.wrap(new float[] {1f}));
+
+    final int        BYTE_COUNT = Short.BYTES * (FLOATS.length + 1);
+    final ByteBuffer BYTES      = toBytes(SPOOL.toWaveFile());
+
+    assert SPOOL.getByteCount() == BYTE_COUNT;
+    assert BYTES.capacity()     == WaveHeader.HEADER_LENGTH + BYTE_COUNT;
+    assert BYTES.getInt(40)     == BYTE_COUNT;
+
+    assert BYTES.getShort(WaveHeader.HEADER_LENGTH)             == Short.MAX_VALUE;
+    assert BYTES.getShort(BYTES.capacity() - (2 * Short.BYTES)) == -Short.MAX_VALUE;
+    assert BYTES.getShort(BYTES.capacity() - Short.BYTES)       == Short.MAX_VALUE;
+  }
+
+  @Test
+  public void testCloseDeletesFile() throws Exception {
+    final WaveFileWriter WRITER = new WaveFileWriter(new WaveHeaderFactory());
+    final PcmSpool       SPOOL  = new PcmSpool(folder.getRoot().toPath(), WRITER);
+
+    SPOOL.append(FloatBuffer.wrap(new float[10]));
+    assert Files.exists(SPOOL.getPath());
+
+    SPOOL.close();
+    assert !Files.exists(SPOOL.getPath());
+  }
+
+  @Test
+  public void testSegmentsUnmapped() throws Exception {
+    final FileChannel CHANNEL = FileChannel.open(folder.newFile("mapped").toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    final ByteBuffer  MAPPED  = CHANNEL.map(FileChannel.MapMode.READ_WRITE, 0, 16);
+
+    CHANNEL.close();
+    assert PcmSpool.unmap(MAPPED);
+    assert !PcmSpool.unmap(ByteBuffer.allocate(16));
+  }
+
+}
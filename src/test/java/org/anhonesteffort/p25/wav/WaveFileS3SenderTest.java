@@ -17,31 +17,57 @@
 
 package org.anhonesteffort.p25.wav;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.event.ProgressEvent;
 import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
 import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.internal.S3ProgressListener;
-import io.radiowitness.kinesis.consumer.Checkpointer;
+import com.codahale.metrics.Gauge;
+import com.google.common.util.concurrent.MoreExecutors;
 import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.p25.AudioBudget;
+import org.anhonesteffort.p25.AudioBufferPool;
+import org.anhonesteffort.p25.Checkpoint;
 import org.anhonesteffort.p25.CheckpointingAudioChunk;
 import org.anhonesteffort.p25.ImbeefConfig;
 import org.anhonesteffort.p25.ImbeefMetrics;
-import org.anhonesteffort.p25.MockMetrics;
-import org.junit.Before;
+import org.anhonesteffort.p25.UploadBudget;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 
 import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
 
 public class WaveFileS3SenderTest {
 
+  private final ImbeefMetrics metrics = Mockito.mock(ImbeefMetrics.class);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   private ImbeefConfig config() {
     final ImbeefConfig CONFIG = Mockito.mock(ImbeefConfig.class);
     Mockito.when(CONFIG.getS3Bucket()).thenReturn("bucket");
@@ -49,7 +75,7 @@ public class WaveFileS3SenderTest {
     return CONFIG;
   }
 
-  private CheckpointingAudioChunk newChunk(boolean empty, List<Checkpointer> checks) {
+  private CheckpointingAudioChunk newChunk(boolean empty, boolean terminated, long endTime, List<Checkpoint> checks) {
     final P25ChannelId CHANNEL = new ProtoP25Factory().groupId(1, 2, 3, 4, 5, 6d).build();
     final FloatBuffer  FLOATS  = FloatBuffer.allocate(10);
 
@@ -59,13 +85,11 @@ public class WaveFileS3SenderTest {
       FLOATS.limit(10);
     }
 
-    return new CheckpointingAudioChunk(CHANNEL, true, true, true, 10l, 20l, 10d, 20d, 30, FLOATS, checks);
+    return new CheckpointingAudioChunk(CHANNEL, true, true, terminated, 10l, endTime, 10d, 20d, 30, FLOATS, checks);
   }
 
-  @Before
-  public void mockMetrics() {
-    final ImbeefMetrics mock = Mockito.mock(ImbeefMetrics.class);
-    MockMetrics.mockWith(mock);
+  private CheckpointingAudioChunk newChunk(boolean empty, List<Checkpoint> checks) {
+    return newChunk(empty, true, 20l, checks);
   }
 
   @Test
@@ -73,12 +97,12 @@ public class WaveFileS3SenderTest {
     final ImbeefConfig     CONFIG    = config();
     final WaveFileWriter   WRITER    = Mockito.mock(WaveFileWriter.class);
     final TransferManager  TRANSFERS = Mockito.mock(TransferManager.class);
-    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS);
+    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS, metrics);
 
     Mockito.when(WRITER.write(Mockito.any())).thenReturn(Optional.empty());
 
-    final Checkpointer       CHECK  = Mockito.mock(Checkpointer.class);
-    final List<Checkpointer> CHECKS = new LinkedList<>();
+    final Checkpoint         CHECK  = Mockito.mock(Checkpoint.class);
+    final List<Checkpoint>   CHECKS = new LinkedList<>();
 
     CHECKS.add(CHECK);
     SENDER.queue(newChunk(true, CHECKS));
@@ -94,13 +118,11 @@ public class WaveFileS3SenderTest {
     final ImbeefConfig     CONFIG    = config();
     final WaveFileWriter   WRITER    = Mockito.mock(WaveFileWriter.class);
     final TransferManager  TRANSFERS = Mockito.mock(TransferManager.class);
-    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS);
+    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS, metrics);
 
-    final ByteArrayOutputStream WRITER_STREAM = Mockito.mock(ByteArrayOutputStream.class);
-    final byte[]                WRITER_BYTES  = new byte[10];
+    final WaveFile WAVE_FILE = new WaveFile(ByteBuffer.allocate(10));
 
-    Mockito.when(WRITER_STREAM.toByteArray()).thenReturn(WRITER_BYTES);
-    Mockito.when(WRITER.write(Mockito.any())).thenReturn(Optional.of(WRITER_STREAM));
+    Mockito.when(WRITER.write(Mockito.any())).thenReturn(Optional.of(WAVE_FILE));
 
     SENDER.queue(newChunk(false, new LinkedList<>()));
 
@@ -109,15 +131,108 @@ public class WaveFileS3SenderTest {
     Mockito.verify(TRANSFERS, Mockito.times(1)).upload(Mockito.any(PutObjectRequest.class), Mockito.eq(SENDER));
   }
 
+  @Test
+  public void testBufferedAudioFreedOnceEncoded() throws Exception {
+    final ImbeefConfig     CONFIG    = config();
+    final WaveFileWriter   WRITER    = new WaveFileWriter(new WaveHeaderFactory());
+    final TransferManager  TRANSFERS = Mockito.mock(TransferManager.class);
+    final AudioBudget      MEMORY    = new AudioBudget(0);
+    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(
+        CONFIG, WRITER, TRANSFERS, null, new UploadBudget(0, 0, metrics), MEMORY.account(), metrics
+    );
+
+    SENDER.queue(newChunk(false, new LinkedList<>()));
+    SENDER.queue(newChunk(false, new LinkedList<>()));
+    assert MEMORY.getBytes() == 2 * 10 * Float.BYTES;
+
+    SENDER.writeAndSend();
+    assert MEMORY.getBytes() == 0;
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testFailedWriteReleasesBuffers() throws Exception {
+    final ImbeefConfig          CONFIG    = config();
+    final WaveFileWriter        WRITER    = Mockito.mock(WaveFileWriter.class);
+    final TransferManager       TRANSFERS = Mockito.mock(TransferManager.class);
+    final AudioBudget           MEMORY    = new AudioBudget(0);
+    final AudioBufferPool       POOL      = new AudioBufferPool(10, 2, false, metrics);
+    final ArgumentCaptor<Gauge> IN_USE    = ArgumentCaptor.forClass(Gauge.class);
+    final WaveFileS3Sender      SENDER    = new WaveFileS3Sender(
+        CONFIG, WRITER, TRANSFERS, null, new UploadBudget(0, 0, metrics), MEMORY.account(), metrics
+    );
+
+    Mockito.verify(metrics).registerAudioBufferPool(Mockito.any(), IN_USE.capture());
+    Mockito.when(WRITER.write(Mockito.any())).thenThrow(new IOException("nope"));
+
+    final FloatBuffer BUFFER = POOL.acquire();
+    BUFFER.limit(10);
+
+    SENDER.queue(new CheckpointingAudioChunk(
+        newChunk(false, new LinkedList<>()).getChannelId(), true, true, true,
+        10l, 20l, 10d, 20d, 30, BUFFER, new LinkedList<>(), POOL
+    ));
+
+    try {
+
+      SENDER.writeAndSend();
+      assert false;
+
+    } catch (IOException e) {
+      assert IN_USE.getValue().getValue().equals(0);
+      assert MEMORY.getBytes() == 0;
+    }
+  }
+
+  @Test
+  public void testUploadBudgetHeldUntilTransferComplete() throws Exception {
+    final ImbeefConfig     CONFIG    = config();
+    final WaveFileWriter   WRITER    = new WaveFileWriter(new WaveHeaderFactory());
+    final TransferManager  TRANSFERS = Mockito.mock(TransferManager.class);
+    final UploadBudget     BUDGET    = new UploadBudget(0, 0, metrics);
+    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS, null, BUDGET, metrics);
+
+    SENDER.queue(newChunk(false, new LinkedList<>()));
+    SENDER.writeAndSend();
+
+    assert BUDGET.getUploads() == 1;
+    assert BUDGET.getBytes()   == WaveHeader.HEADER_LENGTH + 20;
+
+    SENDER.progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_PART_FAILED_EVENT));
+    assert BUDGET.getUploads() == 1;
+
+    SENDER.progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_COMPLETED_EVENT));
+    assert BUDGET.getUploads() == 0;
+    assert BUDGET.getBytes()   == 0;
+  }
+
+  @Test
+  public void testPagesReleasedOnTransferComplete() throws Exception {
+    final ImbeefConfig     CONFIG    = config();
+    final PagePool         PAGES     = new PagePool();
+    final WaveFileWriter   WRITER    = new WaveFileWriter(new WaveHeaderFactory(), PAGES);
+    final TransferManager  TRANSFERS = Mockito.mock(TransferManager.class);
+    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS, metrics);
+
+    SENDER.queue(newChunk(false, new LinkedList<>()));
+    SENDER.writeAndSend();
+
+    SENDER.progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_PART_FAILED_EVENT));
+    assert PAGES.getIdleCount() == 0;
+
+    SENDER.progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_COMPLETED_EVENT));
+    assert PAGES.getIdleCount() == 1;
+  }
+
   @Test
   public void testNonEmptyWavCheckpointedOnTransferComplete() throws Exception {
     final ImbeefConfig     CONFIG    = config();
     final WaveFileWriter   WRITER    = Mockito.mock(WaveFileWriter.class);
     final TransferManager  TRANSFERS = Mockito.mock(TransferManager.class);
-    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS);
+    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS, metrics);
 
-    final List<Checkpointer> CHECKS = new LinkedList<>();
-    final Checkpointer       CHECK  = Mockito.mock(Checkpointer.class);
+    final List<Checkpoint>   CHECKS = new LinkedList<>();
+    final Checkpoint         CHECK  = Mockito.mock(Checkpoint.class);
 
     CHECKS.add(CHECK);
     SENDER.queue(newChunk(false, CHECKS));
@@ -127,15 +242,36 @@ public class WaveFileS3SenderTest {
     Mockito.verify(CHECK, Mockito.times(1)).checkpoint();
   }
 
+  @Test
+  public void testLatencyRecordedOnTransferComplete() throws Exception {
+    final ImbeefConfig     CONFIG    = config();
+    final WaveFileWriter   WRITER    = new WaveFileWriter(new WaveHeaderFactory());
+    final TransferManager  TRANSFERS = Mockito.mock(TransferManager.class);
+    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS, metrics);
+
+    SENDER.queue(newChunk(false, new LinkedList<>()));
+    SENDER.writeAndSend();
+
+    Mockito.verify(metrics, Mockito.times(1)).callEndToSend(Mockito.anyLong());
+    Mockito.verify(metrics, Mockito.never()).sendToDurable(Mockito.anyLong());
+
+    SENDER.progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_FAILED_EVENT));
+    Mockito.verify(metrics, Mockito.never()).sendToDurable(Mockito.anyLong());
+
+    SENDER.progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_COMPLETED_EVENT));
+    Mockito.verify(metrics, Mockito.times(1)).sendToDurable(Mockito.anyLong());
+    Mockito.verify(metrics, Mockito.times(1)).radioToDurable(Mockito.anyLong());
+  }
+
   @Test
   public void testNonEmptyWavNotCheckpointedOnTransferFailed() throws Exception {
     final ImbeefConfig     CONFIG    = config();
     final WaveFileWriter   WRITER    = Mockito.mock(WaveFileWriter.class);
     final TransferManager  TRANSFERS = Mockito.mock(TransferManager.class);
-    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS);
+    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS, metrics);
 
-    final List<Checkpointer> CHECKS = new LinkedList<>();
-    final Checkpointer       CHECK  = Mockito.mock(Checkpointer.class);
+    final List<Checkpoint>   CHECKS = new LinkedList<>();
+    final Checkpoint         CHECK  = Mockito.mock(Checkpoint.class);
 
     CHECKS.add(CHECK);
     SENDER.queue(newChunk(false, CHECKS));
@@ -145,4 +281,167 @@ public class WaveFileS3SenderTest {
     Mockito.verify(CHECK, Mockito.never()).checkpoint();
   }
 
+  @Test
+  public void testLongWavSpooledAndSpoolDeletedOnTransferComplete() throws Exception {
+    final ImbeefConfig     CONFIG    = config();
+    final TransferManager  TRANSFERS = Mockito.mock(TransferManager.class);
+    final WaveFileWriter   WRITER    = new WaveFileWriter(new WaveHeaderFactory());
+    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS, metrics);
+
+    Mockito.when(CONFIG.getSpoolThresholdBytes()).thenReturn(64);
+    Mockito.when(CONFIG.getSpoolDir()).thenReturn(folder.getRoot().getAbsolutePath());
+
+    final List<Checkpoint>   CHECKS = new LinkedList<>();
+    final Checkpoint         CHECK  = Mockito.mock(Checkpoint.class);
+
+    CHECKS.add(CHECK);
+    for (int i = 0; i < 10; i++) {
+      SENDER.queue(newChunk(false, CHECKS));
+    }
+
+    assert folder.getRoot().list().length == 1;
+    SENDER.writeAndSend();
+
+    final ArgumentCaptor<PutObjectRequest> PUT = ArgumentCaptor.forClass(PutObjectRequest.class);
+    Mockito.verify(TRANSFERS, Mockito.times(1)).upload(PUT.capture(), Mockito.eq(SENDER));
+
+    assert PUT.getValue().getMetadata().getContentLength() == WaveHeader.HEADER_LENGTH + 200;
+    assert PUT.getValue().getInputStream().available()     == WaveHeader.HEADER_LENGTH + 200;
+
+    SENDER.progressChanged(new ProgressEvent(ProgressEventType.TRANSFER_COMPLETED_EVENT));
+    Mockito.verify(CHECK, Mockito.times(10)).checkpoint();
+    assert folder.getRoot().list().length == 0;
+  }
+
+  private AmazonS3 s3(Map<Integer, byte[]> parts) {
+    final AmazonS3                      S3       = Mockito.mock(AmazonS3.class);
+    final InitiateMultipartUploadResult INITIATE = new InitiateMultipartUploadResult();
+
+    INITIATE.setUploadId("upload");
+    Mockito.when(S3.initiateMultipartUpload(Mockito.any(InitiateMultipartUploadRequest.class))).thenReturn(INITIATE);
+    Mockito.when(S3.uploadPart(Mockito.any(UploadPartRequest.class))).thenAnswer(invocation -> {
+      final UploadPartRequest REQUEST = (UploadPartRequest) invocation.getArguments()[0];
+      final InputStream       STREAM  = REQUEST.getInputStream();
+      final byte[]            BYTES   = new byte[STREAM.available()];
+      final UploadPartResult  RESULT  = new UploadPartResult();
+
+      STREAM.read(BYTES);
+      parts.put(REQUEST.getPartNumber(), BYTES);
+      RESULT.setPartNumber(REQUEST.getPartNumber());
+      RESULT.setETag("etag" + REQUEST.getPartNumber());
+
+      return RESULT;
+    });
+
+    return S3;
+  }
+
+  @Test
+  public void testLongWavStreamedAsMultipart() throws Exception {
+    final ImbeefConfig         CONFIG    = config();
+    final Map<Integer, byte[]> PARTS     = new HashMap<>();
+    final AmazonS3             S3        = s3(PARTS);
+    final TransferManager      TRANSFERS = Mockito.mock(TransferManager.class);
+    final ExecutorService      EXECUTOR  = MoreExecutors.newDirectExecutorService();
+    final WaveFileWriter       WRITER    = new WaveFileWriter(new WaveHeaderFactory());
+    final UploadBudget         BUDGET    = new UploadBudget(0, 0, metrics);
+    final WaveFileS3Sender     SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS, EXECUTOR, BUDGET, metrics);
+
+    Mockito.when(CONFIG.getS3PartSize()).thenReturn(64);
+    Mockito.when(TRANSFERS.getAmazonS3Client()).thenReturn(S3);
+
+    final List<Checkpoint>   CHECKS = new LinkedList<>();
+    final Checkpoint         CHECK  = Mockito.mock(Checkpoint.class);
+
+    CHECKS.add(CHECK);
+    for (int i = 0; i < 10; i++) {
+      SENDER.queue(newChunk(false, CHECKS));
+    }
+
+    Mockito.verify(S3, Mockito.times(2)).uploadPart(Mockito.any(UploadPartRequest.class));
+    SENDER.writeAndSend();
+
+    final ArgumentCaptor<CompleteMultipartUploadRequest> COMPLETE = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+    Mockito.verify(S3, Mockito.times(1)).completeMultipartUpload(COMPLETE.capture());
+    Mockito.verify(S3, Mockito.times(1)).copyObject(Mockito.any(CopyObjectRequest.class));
+    Mockito.verify(TRANSFERS, Mockito.never()).upload(Mockito.any(PutObjectRequest.class), Mockito.any(S3ProgressListener.class));
+    Mockito.verify(CHECK, Mockito.times(10)).checkpoint();
+    assert BUDGET.getUploads() == 0;
+
+    assert COMPLETE.getValue().getPartETags().size() == 4;
+    assert COMPLETE.getValue().getPartETags().get(0).getPartNumber() == 1;
+    assert PARTS.get(1).length == 64;
+    assert PARTS.get(2).length == 64;
+    assert PARTS.get(3).length == 64;
+    assert PARTS.get(4).length == 52;
+    assert ByteBuffer.wrap(PARTS.get(1)).order(ByteOrder.LITTLE_ENDIAN).getInt(40) == 200;
+  }
+
+  @Test
+  public void testStreamedWavGetsEndOfCallMetadata() throws Exception {
+    final ImbeefConfig     CONFIG    = config();
+    final AmazonS3         S3        = s3(new HashMap<>());
+    final TransferManager  TRANSFERS = Mockito.mock(TransferManager.class);
+    final ExecutorService  EXECUTOR  = MoreExecutors.newDirectExecutorService();
+    final WaveFileWriter   WRITER    = new WaveFileWriter(new WaveHeaderFactory());
+    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS, EXECUTOR, metrics);
+
+    Mockito.when(CONFIG.getS3PartSize()).thenReturn(64);
+    Mockito.when(TRANSFERS.getAmazonS3Client()).thenReturn(S3);
+
+    final List<Checkpoint> CHECKS = new LinkedList<>();
+    CHECKS.add(Mockito.mock(Checkpoint.class));
+
+    for (int i = 0; i < 9; i++) {
+      SENDER.queue(newChunk(false, false, 20l + i, CHECKS));
+    }
+    SENDER.queue(newChunk(false, true, 50l, CHECKS));
+    SENDER.writeAndSend();
+
+    final ArgumentCaptor<InitiateMultipartUploadRequest> INITIATE = ArgumentCaptor.forClass(InitiateMultipartUploadRequest.class);
+    final ArgumentCaptor<CopyObjectRequest>              COPY     = ArgumentCaptor.forClass(CopyObjectRequest.class);
+
+    Mockito.verify(S3, Mockito.times(1)).initiateMultipartUpload(INITIATE.capture());
+    Mockito.verify(S3, Mockito.times(1)).copyObject(COPY.capture());
+
+    final Map<String, String> INITIAL = INITIATE.getValue().getObjectMetadata().getUserMetadata();
+    final Map<String, String> FINAL   = COPY.getValue().getNewObjectMetadata().getUserMetadata();
+
+    assert INITIAL.get(WaveFileS3Sender.METADATA_TERMINATED).equals("false");
+    assert !INITIAL.get(WaveFileS3Sender.METADATA_END_TIME).equals("50");
+
+    assert COPY.getValue().getSourceKey().equals(COPY.getValue().getDestinationKey());
+    assert COPY.getValue().getSourceKey().equals(INITIATE.getValue().getKey());
+    assert FINAL.get(WaveFileS3Sender.METADATA_TERMINATED).equals("true");
+    assert FINAL.get(WaveFileS3Sender.METADATA_END_TIME).equals("50");
+    assert FINAL.get(WaveFileS3Sender.METADATA_START_TIME).equals("10");
+  }
+
+  @Test
+  public void testStreamedWavAbortedAndNotCheckpointedOnPartFailure() throws Exception {
+    final ImbeefConfig     CONFIG    = config();
+    final AmazonS3         S3        = s3(new HashMap<>());
+    final TransferManager  TRANSFERS = Mockito.mock(TransferManager.class);
+    final ExecutorService  EXECUTOR  = MoreExecutors.newDirectExecutorService();
+    final WaveFileWriter   WRITER    = new WaveFileWriter(new WaveHeaderFactory());
+    final WaveFileS3Sender SENDER    = new WaveFileS3Sender(CONFIG, WRITER, TRANSFERS, EXECUTOR, metrics);
+
+    Mockito.when(CONFIG.getS3PartSize()).thenReturn(64);
+    Mockito.when(TRANSFERS.getAmazonS3Client()).thenReturn(S3);
+    Mockito.doThrow(new AmazonClientException("nope")).when(S3).uploadPart(Mockito.any(UploadPartRequest.class));
+
+    final List<Checkpoint>   CHECKS = new LinkedList<>();
+    final Checkpoint         CHECK  = Mockito.mock(Checkpoint.class);
+
+    CHECKS.add(CHECK);
+    for (int i = 0; i < 10; i++) {
+      SENDER.queue(newChunk(false, CHECKS));
+    }
+    SENDER.writeAndSend();
+
+    Mockito.verify(S3, Mockito.never()).completeMultipartUpload(Mockito.any(CompleteMultipartUploadRequest.class));
+    Mockito.verify(S3, Mockito.times(1)).abortMultipartUpload(Mockito.any(AbortMultipartUploadRequest.class));
+    Mockito.verify(CHECK, Mockito.never()).checkpoint();
+  }
+
 }
@@ -17,12 +17,15 @@
 
 package org.anhonesteffort.p25.wav;
 
-import io.radiowitness.kinesis.consumer.Checkpointer;
 import io.radiowitness.proto.p25.ProtoP25Factory;
+import org.anhonesteffort.p25.Checkpoint;
 import org.anhonesteffort.p25.CheckpointingAudioChunk;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.util.LinkedList;
 import java.util.List;
@@ -32,7 +35,7 @@ import static io.radiowitness.proto.p25.ProtoP25.P25ChannelId;
 
 public class WaveFileWriterTest {
 
-  private CheckpointingAudioChunk newChunk(float[] floats, List<Checkpointer> checks) {
+  private CheckpointingAudioChunk newChunk(float[] floats, List<Checkpoint> checks) {
     final P25ChannelId CHANNEL = new ProtoP25Factory().controlId(1, 2, 3, 4).build();
     final FloatBuffer  FLOATS;
 
@@ -45,6 +48,17 @@ public class WaveFileWriterTest {
     return new CheckpointingAudioChunk(CHANNEL, true, true, true, 10l, 20l, 10d, 20d, 30, FLOATS, checks);
   }
 
+  private byte[] toBytes(WaveFile waveFile) throws Exception {
+    final ByteArrayOutputStream OUT = new ByteArrayOutputStream();
+    final InputStream           IN  = waveFile.getInputStream();
+
+    for (int read = IN.read(); read >= 0; read = IN.read()) {
+      OUT.write(read);
+    }
+
+    return OUT.toByteArray();
+  }
+
   @Test
   public void testEmptyChunksReturnEmpty() throws Exception {
     final WaveHeaderFactory             HEADERS = new WaveHeaderFactory();
@@ -83,12 +97,78 @@ public class WaveFileWriterTest {
     CHUNKS.add(newChunk(CHUNK1, new LinkedList<>()));
     CHUNKS.add(newChunk(CHUNK2, new LinkedList<>()));
 
-    final WaveHeader                      HEADER     = HEADERS.create(CHUNKS);
-    final Optional<ByteArrayOutputStream> OUT_STREAM = WRITER.write(CHUNKS);
-    final byte[]                          OUT_BYTES  = OUT_STREAM.get().toByteArray();
+    final WaveHeader         HEADER    = HEADERS.create(CHUNKS);
+    final Optional<WaveFile> WAVE_FILE = WRITER.write(CHUNKS);
+    final byte[]             OUT_BYTES = toBytes(WAVE_FILE.get());
 
     assert HEADER.getNumBytes() == Short.BYTES * (CHUNK1.length + CHUNK2.length);
+    assert WaveHeader.HEADER_LENGTH + HEADER.getNumBytes() == WAVE_FILE.get().getLength();
     assert WaveHeader.HEADER_LENGTH + HEADER.getNumBytes() == OUT_BYTES.length;
   }
 
+  @Test
+  public void testChunksEncodedAsPcm16() throws Exception {
+    final WaveHeaderFactory             HEADERS = new WaveHeaderFactory();
+    final WaveFileWriter                WRITER  = new WaveFileWriter(HEADERS);
+    final List<CheckpointingAudioChunk> CHUNKS  = new LinkedList<>();
+
+    CHUNKS.add(newChunk(new float[] {1f, -1f, 2f}, new LinkedList<>()));
+    CHUNKS.add(newChunk(new float[10000], new LinkedList<>()));
+
+    final ByteBuffer OUT = ByteBuffer.wrap(toBytes(WRITER.write(CHUNKS).get())).order(ByteOrder.LITTLE_ENDIAN);
+
+    assert OUT.capacity() == WaveHeader.HEADER_LENGTH + (Short.BYTES * 10003);
+    assert OUT.getShort(WaveHeader.HEADER_LENGTH)     == Short.MAX_VALUE;
+    assert OUT.getShort(WaveHeader.HEADER_LENGTH + 2) == -Short.MAX_VALUE;
+    assert OUT.getShort(WaveHeader.HEADER_LENGTH + 4) == Short.MAX_VALUE;
+    assert CHUNKS.get(0).getBuffer().remaining() == 3;
+  }
+
+  @Test
+  public void testChunksEncodedAsUlaw() throws Exception {
+    final WaveHeaderFactory             HEADERS = new WaveHeaderFactory(WaveEncoding.ULAW);
+    final WaveFileWriter                WRITER  = new WaveFileWriter(HEADERS);
+    final List<CheckpointingAudioChunk> CHUNKS  = new LinkedList<>();
+
+    CHUNKS.add(newChunk(new float[] {1f, 0f, -1f}, new LinkedList<>()));
+    CHUNKS.add(newChunk(new float[10000], new LinkedList<>()));
+
+    final WaveHeader HEADER = HEADERS.create(CHUNKS);
+    final byte[]     OUT    = toBytes(WRITER.write(CHUNKS).get());
+
+    assert HEADER.getFormat()        == WaveHeader.FORMAT_ULAW;
+    assert HEADER.getBitsPerSample() == 8;
+    assert HEADER.getNumBytes()      == 10003;
+    assert OUT.length                == WaveHeader.HEADER_LENGTH + 10003;
+    assert OUT[WaveHeader.HEADER_LENGTH]     == (byte) 0x80;
+    assert OUT[WaveHeader.HEADER_LENGTH + 1] == (byte) 0xFF;
+    assert OUT[WaveHeader.HEADER_LENGTH + 2] == (byte) 0x00;
+  }
+
+  @Test
+  public void testPagesReusedOnceReleased() throws Exception {
+    final PagePool                      PAGES   = new PagePool(128, 4);
+    final WaveFileWriter                WRITER  = new WaveFileWriter(new WaveHeaderFactory(), PAGES);
+    final List<CheckpointingAudioChunk> CHUNKS  = new LinkedList<>();
+    final float[]                       SAMPLES = new float[100];
+
+    SAMPLES[99] = 1f;
+    CHUNKS.add(newChunk(SAMPLES, new LinkedList<>()));
+
+    final WaveFile   FIRST = WRITER.write(CHUNKS).get();
+    final ByteBuffer OUT   = ByteBuffer.wrap(toBytes(FIRST)).order(ByteOrder.LITTLE_ENDIAN);
+
+    assert FIRST.getLength() == WaveHeader.HEADER_LENGTH + 200;
+    assert OUT.getShort(WaveHeader.HEADER_LENGTH + 198) == Short.MAX_VALUE;
+    assert PAGES.getIdleCount() == 0;
+
+    FIRST.release();
+    assert PAGES.getIdleCount() == 2;
+
+    final WaveFile SECOND = WRITER.write(CHUNKS).get();
+
+    assert PAGES.getIdleCount() == 0;
+    assert ByteBuffer.wrap(toBytes(SECOND)).equals(ByteBuffer.wrap(OUT.array()));
+  }
+
 }